@@ -59,6 +59,7 @@ public class YamlConfigurationReaderTest {
             Configuration actual = new YamlConfigurationReader().read(in).build();
             Configuration expected = Configuration.builder() //
                     .configModelVersion("3.0") //
+                    .artifactDigester("xxh64") //
                     .encoding(Charset.forName("UTF-16")) //
                     .forwardAsMasterConfig(true) //
                     .forwardProperty("myProp1") //
@@ -108,6 +109,12 @@ public class YamlConfigurationReaderTest {
                                     .exclude("group4:artifact4") //
                                     .url("url1") //
                                     .url("url2") //
+                                    .shallowFetch(true) //
+                                    .raceUrls(true) //
+                                    .gitCli(true) //
+                                    .branchFetchTtl(Duration.of("1h")) //
+                                    .buildDirectoryPoolSize(0) //
+                                    .buildDirectoryWaitTimeout(Duration.of("30m")) //
                                     .buildArgument("-arg1") //
                                     .buildArgument("-arg2") //
                                     .addDefaultBuildArguments(false) //
@@ -120,6 +127,7 @@ public class YamlConfigurationReaderTest {
                                                     .versionsMavenPluginVersion("2.2") //
                                                     .useVersionsMavenPlugin(true) //
                                                     .excludeNonRequired(true) //
+                                                    .sparseCheckout(true) //
                                                     .includeRequired(true) //
                                                     .include("org.srcdeps.example:artifact1") //
                                                     .include("org.srcdeps.other:artifact2") //
@@ -139,6 +147,12 @@ public class YamlConfigurationReaderTest {
                                     .include("group4:artifact4:1.2.3") //
                                     .url("url3") //
                                     .url("url4") //
+                                    .shallowFetch(true) //
+                                    .raceUrls(true) //
+                                    .gitCli(true) //
+                                    .branchFetchTtl(Duration.of("1h")) //
+                                    .buildDirectoryPoolSize(0) //
+                                    .buildDirectoryWaitTimeout(Duration.of("30m")) //
                                     .buildArgument("arg3") //
                                     .addDefaultBuildArguments(false) //
                                     .skipTests(false) //
@@ -146,6 +160,7 @@ public class YamlConfigurationReaderTest {
                                             ScmRepositoryMaven.builder() //
                                                     .useVersionsMavenPlugin(true) //
                                                     .excludeNonRequired(true) //
+                                                    .sparseCheckout(true) //
                                                     .includeRequired(true) //
                                     ) //
 
@@ -165,6 +180,7 @@ public class YamlConfigurationReaderTest {
             Configuration actual = new YamlConfigurationReader().read(in).build();
             Configuration expected = Configuration.builder() //
                     .configModelVersion("3.0") //
+                    .artifactDigester("sha1") //
                     .forwardAsMasterConfig(false) //
                     .forwardProperty("myProp1") //
                     .forwardProperty("myProp2") //
@@ -208,6 +224,12 @@ public class YamlConfigurationReaderTest {
                                     .include("group2:artifact2:*") //
                                     .url("url1") //
                                     .url("url2") //
+                                    .shallowFetch(true) //
+                                    .raceUrls(false) //
+                                    .gitCli(false) //
+                                    .branchFetchTtl(Duration.zero()) //
+                                    .buildDirectoryPoolSize(0) //
+                                    .buildDirectoryWaitTimeout(Duration.of("5m")) //
                                     .buildArgument("-arg1") //
                                     .buildArgument("-arg2") //
                                     .addDefaultBuildArguments(false) //
@@ -218,6 +240,7 @@ public class YamlConfigurationReaderTest {
                                                     .versionsMavenPluginVersion("2.2") //
                                                     .useVersionsMavenPlugin(false) //
                                                     .excludeNonRequired(false) //
+                                                    .sparseCheckout(false) //
                                                     .includeRequired(false) //
                                     ) //
                     ) //
@@ -230,12 +253,19 @@ public class YamlConfigurationReaderTest {
                                     .include("group4:artifact4:1.2.3") //
                                     .url("url3") //
                                     .url("url4") //
+                                    .shallowFetch(true) //
+                                    .raceUrls(false) //
+                                    .gitCli(false) //
+                                    .branchFetchTtl(Duration.zero()) //
+                                    .buildDirectoryPoolSize(0) //
+                                    .buildDirectoryWaitTimeout(Duration.of("5m")) //
                                     .buildArgument("arg3") //
                                     .addDefaultBuildArguments(false) //
                                     .skipTests(false).maven( //
                                             ScmRepositoryMaven.builder() //
                                                     .useVersionsMavenPlugin(false) //
                                                     .excludeNonRequired(false) //
+                                                    .sparseCheckout(false) //
                                                     .includeRequired(false) //
                                     ) //
                     ) //
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A cache of the artifacts produced by source dependency builds, keyed by the hash of the {@link BuildRequest} and
+ * by the commitId out of which the artifacts were built. It allows for skipping the checkout and the build when the
+ * artifacts disappeared from the local Maven repository (e.g. in a fresh CI container or after
+ * {@code ~/.m2/repository} was wiped) but they were built before.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public interface ArtifactCache {
+
+    /**
+     * Copies the artifacts built in the past out of the given {@code buildRequestIdHash} and {@code commitId} from
+     * this {@link ArtifactCache} to the given {@link MavenLocalRepository}. Either all or none of the artifacts get
+     * restored.
+     *
+     * @param requestId the id of the current request, for logging purposes
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param commitId the commitId out of which the artifacts should have been built
+     * @param localRepository the {@link MavenLocalRepository} to restore the artifacts to
+     * @return the restored artifacts or {@code null} if this {@link ArtifactCache} does not contain all of them
+     */
+    List<GavtcPath> restore(String requestId, String buildRequestIdHash, String commitId,
+            MavenLocalRepository localRepository);
+
+    /**
+     * Stores the given {@code artifacts} produced by a successful build in this {@link ArtifactCache}.
+     *
+     * @param requestId the id of the current request, for logging purposes
+     * @param buildRequestIdHash hash of the {@link BuildRequest} that produced the {@code artifacts}
+     * @param commitId the commitId out of which the {@code artifacts} were built
+     * @param artifacts the artifacts to store
+     */
+    void store(String requestId, String buildRequestIdHash, String commitId,
+            Collection<? extends GavtcPath> artifacts);
+
+}
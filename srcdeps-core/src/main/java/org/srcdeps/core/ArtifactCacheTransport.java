@@ -0,0 +1,81 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.srcdeps.core.impl.cache.FileSystemTransport;
+import org.srcdeps.core.impl.cache.HttpTransport;
+
+/**
+ * Transfers files between a local filesystem and a remote store shared by several machines, such as a shared
+ * filesystem or an HTTP server. The files are identified by relative keys like {@code blobs/ab/abcdef...}. The
+ * implementations must be thread safe.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public interface ArtifactCacheTransport {
+
+    /**
+     * @param uri the root of the remote store; {@code file:} URIs are served by {@link FileSystemTransport},
+     *        {@code http:} and {@code https:} URIs by {@link HttpTransport}
+     * @return a new {@link ArtifactCacheTransport} for the given {@code uri}
+     * @throws IllegalArgumentException if there is no {@link ArtifactCacheTransport} for the scheme of the given
+     *         {@code uri}
+     */
+    static ArtifactCacheTransport of(URI uri) {
+        final String scheme = uri.getScheme();
+        if ("file".equals(scheme)) {
+            return new FileSystemTransport(Paths.get(uri));
+        } else if ("http".equals(scheme) || "https".equals(scheme)) {
+            return new HttpTransport(uri);
+        }
+        throw new IllegalArgumentException(String.format("No %s available for URI [%s]; expected any of [%s]",
+                ArtifactCacheTransport.class.getSimpleName(), uri, "file, http, https"));
+    }
+
+    /**
+     * @param key the key of the file
+     * @return {@code true} if the file having the given {@code key} exists in the remote store
+     * @throws IOException on communication errors
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Downloads the file having the given {@code key}.
+     *
+     * @param key the key of the file
+     * @param destination the local file to write; gets overwritten if it exists
+     * @return {@code true} if the file was downloaded or {@code false} if there is no file with the given {@code key}
+     * @throws IOException on communication errors
+     */
+    boolean get(String key, Path destination) throws IOException;
+
+    /**
+     * Uploads the given {@code source} file under the given {@code key}, overwriting any file with the same key.
+     *
+     * @param key the key of the file
+     * @param source the local file to upload
+     * @throws IOException on communication errors
+     */
+    void put(String key, Path source) throws IOException;
+
+}
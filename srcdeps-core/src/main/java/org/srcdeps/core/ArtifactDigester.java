@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.srcdeps.core.config.Configuration;
+import org.srcdeps.core.impl.digest.ArtifactDigesters;
+import org.srcdeps.core.impl.digest.Sha1SidecarArtifactDigester;
+
+/**
+ * Computes or otherwise obtains the digest of an artifact in the local Maven repository for the purposes of
+ * {@link BuildMetadataStore}. The implementations must be thread safe.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public interface ArtifactDigester {
+
+    /**
+     * The name of the system property to select the algorithm used by {@link #getDefault()}, such as
+     * {@value #SHA1} (the default) or {@code xxh64}. If set, it overrides
+     * {@link Configuration#getArtifactDigester()}, see {@link #forConfiguration(Configuration)}.
+     */
+    String ALGORITHM_PROPERTY = "srcdeps.hashing.algorithm";
+
+    /** The name of the SHA-1 algorithm */
+    String SHA1 = "sha1";
+
+    /**
+     * If {@code true}, {@link #getDefault()} returns an {@link ArtifactDigester} that reads the sha1 from the
+     * {@code .sha1} file next to the artifact if it is there and up to date, see
+     * {@link Sha1SidecarArtifactDigester}. The default is {@code false}. Has no effect unless the algorithm is
+     * {@value #SHA1}.
+     */
+    String SHA1_SIDECARS_PROPERTY = "srcdeps.hashing.sha1Sidecars";
+
+    /**
+     * @param storedValue a value produced by {@link #tag(String, String)}
+     * @return the name of the algorithm that produced the given {@code storedValue}
+     */
+    static String algorithmOf(String storedValue) {
+        final int colonPos = storedValue.indexOf(':');
+        return colonPos >= 0 ? storedValue.substring(0, colonPos) : SHA1;
+    }
+
+    /**
+     * @param algorithm the name of the algorithm, such as {@value #SHA1} or
+     *        {@code xxh64}
+     * @return the {@link ArtifactDigester} for the given {@code algorithm}
+     * @throws IllegalArgumentException if there is no {@link ArtifactDigester} for the given {@code algorithm}
+     */
+    static ArtifactDigester forAlgorithm(String algorithm) {
+        return ArtifactDigesters.forAlgorithm(algorithm);
+    }
+
+    /**
+     * @param configuration the {@link Configuration} whose {@link Configuration#getArtifactDigester()} should be
+     *        used unless overridden by the {@value #ALGORITHM_PROPERTY} system property
+     * @return the {@link ArtifactDigester} selected by the {@value #ALGORITHM_PROPERTY} system property if set or
+     *         by {@link Configuration#getArtifactDigester()} otherwise, taking the {@value #SHA1_SIDECARS_PROPERTY}
+     *         system property into account
+     * @throws IllegalArgumentException if there is no {@link ArtifactDigester} for the selected algorithm
+     */
+    static ArtifactDigester forConfiguration(Configuration configuration) {
+        final String configured = configuration.getArtifactDigester();
+        return ArtifactDigesters.forAlgorithm(System.getProperty(ALGORITHM_PROPERTY, configured == null ? SHA1
+                : configured), Boolean.getBoolean(SHA1_SIDECARS_PROPERTY));
+    }
+
+    /**
+     * @return the {@link ArtifactDigester} selected by {@value #ALGORITHM_PROPERTY} and
+     *         {@value #SHA1_SIDECARS_PROPERTY} system properties
+     * @throws IllegalArgumentException if there is no {@link ArtifactDigester} for the selected algorithm
+     */
+    static ArtifactDigester getDefault() {
+        return ArtifactDigesters.forAlgorithm(System.getProperty(ALGORITHM_PROPERTY, SHA1),
+                Boolean.getBoolean(SHA1_SIDECARS_PROPERTY));
+    }
+
+    /**
+     * Prefixes the given {@code digest} with the given {@code algorithm} so that the algorithm is known when the
+     * value is read from a {@link BuildMetadataStore} later. Plain sha1s are stored without any prefix, so that the
+     * values stored by older srcdeps versions stay valid.
+     *
+     * @param algorithm the name of the algorithm that produced the {@code digest}
+     * @param digest the digest in hex form or {@code null}
+     * @return {@code digest} if {@code algorithm} is {@value #SHA1}, {@code algorithm:digest} otherwise or
+     *         {@code null} if {@code digest} is {@code null}
+     */
+    static String tag(String algorithm, String digest) {
+        if (digest == null || SHA1.equals(algorithm)) {
+            return digest;
+        }
+        return algorithm + ":" + digest;
+    }
+
+    /**
+     * @param artifact the file to digest
+     * @return the digest of the given {@code artifact} in hex form or {@code null} if the {@code artifact} does not
+     *         exist
+     * @throws IOException on read errors
+     */
+    String digest(Path artifact) throws IOException;
+
+    /**
+     * @return the name of the algorithm this {@link ArtifactDigester} uses, such as {@value #SHA1}; the
+     *         {@link ArtifactDigester}s are looked up by this name, see {@link #forAlgorithm(String)}
+     */
+    String getAlgorithm();
+
+}
@@ -16,14 +16,33 @@
  */
 package org.srcdeps.core;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.srcdeps.core.impl.digest.ArtifactDigesters;
 import org.srcdeps.core.util.Consumer;
-import org.srcdeps.core.util.SrcdepsCoreUtils;
+import org.srcdeps.core.util.HashingExecutors;
 
 /**
  * A service to tell whether a given {@link BuildRequest} was performed already in the past, out of which SCM revision
@@ -37,97 +56,421 @@ public interface BuildMetadataStore {
     /**
      * A {@link Consumer} to check whether the sha1 hash stored in a {@link BuildMetadataStore} is the same as of the
      * one in the local Maven repository.
+     * <p>
+     * Unless in paranoid mode, the sha1 of an artifact is computed only if its {@link FileStat} differs from the one
+     * stored in the {@link BuildMetadataStore}. The paranoid mode computes the sha1 of every artifact, which is
+     * advisable on filesystems with coarse modification times where an artifact can get overwritten with a content
+     * of the same size without changing its {@link FileStat}.
+     * <p>
+     * The sha1s are obtained from an {@link ArtifactDigester}, by default the one returned by
+     * {@link BuildMetadataStore#getArtifactDigester()}, in parallel using an {@link ExecutorService}, by default the
+     * one returned by {@link HashingExecutors#getDefault()}. All outstanding computations are cancelled as soon as any
+     * artifact is found to differ.
+     * <p>
+     * This class is thread safe, so that {@link #accept(GavtcPath)} can be called concurrently, e.g. by
+     * {@link GavSetWalker#walk(Consumer, java.util.concurrent.ForkJoinPool)}.
      *
      * @since 3.2.2
      */
     class CheckSha1Consumer implements Consumer<GavtcPath> {
 
+        /** The number of artifacts checked at once by {@link #isAnyArtifactChanged(Stream)} */
+        private static final int CHECK_BATCH_SIZE = 256;
+
         private static final Logger log = LoggerFactory.getLogger(CheckSha1Consumer.class);
 
-        private boolean anyArtifactChanged = false;
+        private volatile boolean anyArtifactChanged = false;
         private final BuildMetadataStore buildMetadataStore;
 
         private final String buildRequestIdHash;
+
+        /** Obtains the sha1s of the artifacts */
+        private final ArtifactDigester digester;
+
+        /** The {@link ExecutorService} to compute the sha1s on */
+        private final ExecutorService executor;
+
+        /** If {@code true} the sha1 of every artifact is computed regardless of its {@link FileStat} */
+        private final boolean paranoid;
+
+        /**
+         * The {@link GavtcPath}s passed to {@link #accept(GavtcPath)} but not checked yet; guarded by {@code this}
+         */
+        private final List<GavtcPath> pending = new ArrayList<>();
         private final String requestId;
 
         public CheckSha1Consumer(BuildMetadataStore buildMetadataStore, String requestId, String buildRequestIdHash) {
+            this(buildMetadataStore, requestId, buildRequestIdHash, false);
+        }
+
+        /**
+         * @param buildMetadataStore the {@link BuildMetadataStore} to check against
+         * @param requestId the id of the current request, for logging purposes
+         * @param buildRequestIdHash hash of a {@link BuildRequest}
+         * @param paranoid if {@code true} the sha1 of every artifact is computed regardless of whether its
+         *        {@link FileStat} changed and regardless of any {@code .sha1} files next to the artifacts
+         * @since 5.0.2
+         */
+        public CheckSha1Consumer(BuildMetadataStore buildMetadataStore, String requestId, String buildRequestIdHash,
+                boolean paranoid) {
+            this(buildMetadataStore, requestId, buildRequestIdHash, paranoid, HashingExecutors.getDefault(),
+                    paranoid ? ArtifactDigesters.forAlgorithm(buildMetadataStore.getArtifactDigester().getAlgorithm())
+                            : buildMetadataStore.getArtifactDigester());
+        }
+
+        /**
+         * @param buildMetadataStore the {@link BuildMetadataStore} to check against
+         * @param requestId the id of the current request, for logging purposes
+         * @param buildRequestIdHash hash of a {@link BuildRequest}
+         * @param paranoid if {@code true} the sha1 of every artifact is computed regardless of whether its
+         *        {@link FileStat} changed
+         * @param executor the {@link ExecutorService} to compute the sha1s on
+         * @param digester obtains the sha1s of the artifacts
+         * @since 5.0.2
+         */
+        public CheckSha1Consumer(BuildMetadataStore buildMetadataStore, String requestId, String buildRequestIdHash,
+                boolean paranoid, ExecutorService executor, ArtifactDigester digester) {
             this.buildMetadataStore = buildMetadataStore;
             this.requestId = requestId;
             this.buildRequestIdHash = buildRequestIdHash;
+            this.paranoid = paranoid;
+            this.executor = executor;
+            this.digester = digester;
         }
 
+        /**
+         * Remembers the given {@link GavtcPath} for checking in {@link #isAnyArtifactChanged()}.
+         */
         @Override
-        public void accept(GavtcPath gavtcPath) {
+        public synchronized void accept(GavtcPath gavtcPath) {
             if (!anyArtifactChanged) {
-                final String pastSha1 = buildMetadataStore.retrieveSha1(requestId, buildRequestIdHash, gavtcPath);
-                if (pastSha1 == null) {
+                pending.add(gavtcPath);
+            }
+        }
+
+        /**
+         * Checks the {@link #pending} {@link GavtcPath}s against a single snapshot retrieved from
+         * {@link #buildMetadataStore}. Artifacts unknown to the {@link #buildMetadataStore} are looked for first so
+         * that no sha1 needs to be computed in that case. Unless {@link #paranoid}, the sha1 is computed only for
+         * artifacts whose {@link FileStat} changed; the {@link FileStat}s of those found unchanged by their sha1 are
+         * updated in the {@link #buildMetadataStore} so that the next check does not need to compute their sha1. The
+         * sha1s are computed in parallel on {@link #executor} and the outstanding computations are cancelled as soon
+         * as any artifact is found to differ.
+         */
+        private void check() {
+            final Map<String, FileStat> pastStats = new HashMap<>();
+            final Map<String, String> pastSha1s = buildMetadataStore.retrieveSha1sAndFileStats(requestId,
+                    buildRequestIdHash, pending, pastStats);
+            for (GavtcPath gavtcPath : pending) {
+                if (!pastSha1s.containsKey(gavtcPath.getGavtcString())) {
                     log.info("srcdeps[{}]: Rebuilding: sha1 of artifact [{}] was not found in {}", requestId,
                             gavtcPath.getGavtcString(), BuildMetadataStore.class.getSimpleName());
                     anyArtifactChanged = true;
-                } else {
-                    final Path path = gavtcPath.getPath();
-                    try {
-                        final String mvnLocalRepoArtifactSha1 = SrcdepsCoreUtils.sha1HexString(path);
-                        if (!pastSha1.equals(mvnLocalRepoArtifactSha1)) {
-                            log.info(
-                                    "srcdeps[{}]: Rebuilding: sha1 of artifact [{}] in local Maven repository differs from last known sha1 built by srcdeps",
-                                    requestId, gavtcPath.getGavtcString());
-                            anyArtifactChanged = true;
+                    return;
+                }
+            }
+            if (paranoid) {
+                pastStats.clear();
+            }
+            final Map<GavtcPath, FileStat> newStats = new ConcurrentHashMap<>();
+            /* The tasks in the order of their completion */
+            final BlockingQueue<Future<GavtcPath>> completed = new LinkedBlockingQueue<>();
+            final List<Future<GavtcPath>> futures = new ArrayList<>(pending.size());
+            try {
+                for (GavtcPath gavtcPath : pending) {
+                    final String pastSha1 = pastSha1s.get(gavtcPath.getGavtcString());
+                    final FileStat pastStat = pastStats.get(gavtcPath.getGavtcString());
+                    final FutureTask<GavtcPath> task = new FutureTask<GavtcPath>(
+                            () -> check(gavtcPath, pastSha1, pastStat, newStats)) {
+                        @Override
+                        protected void done() {
+                            completed.add(this);
                         }
-                    } catch (NoSuchAlgorithmException | IOException e) {
-                        throw new RuntimeException(e);
+                    };
+                    futures.add(task);
+                    executor.execute(task);
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    final GavtcPath changed = completed.take().get();
+                    if (changed != null) {
+                        log.info(
+                                "srcdeps[{}]: Rebuilding: sha1 of artifact [{}] in local Maven repository differs from last known sha1 built by srcdeps",
+                                requestId, changed.getGavtcString());
+                        anyArtifactChanged = true;
+                        return;
                     }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                /* A no-op for the completed ones */
+                for (Future<GavtcPath> future : futures) {
+                    future.cancel(true);
+                }
+            }
+            if (!newStats.isEmpty()) {
+                final Map<GavtcPath, String> unchangedSha1s = new HashMap<>();
+                for (GavtcPath gavtcPath : newStats.keySet()) {
+                    unchangedSha1s.put(gavtcPath, pastSha1s.get(gavtcPath.getGavtcString()));
+                }
+                buildMetadataStore.storeSha1sAndFileStats(requestId, buildRequestIdHash, unchangedSha1s, newStats);
+            }
+        }
+
+        /**
+         * Checks a single artifact; called concurrently from the {@link #executor} threads.
+         *
+         * @param gavtcPath the artifact to check
+         * @param pastSha1 the sha1 of the artifact stored in {@link #buildMetadataStore}
+         * @param pastStat the {@link FileStat} of the artifact stored in {@link #buildMetadataStore} or {@code null}
+         * @param newStats the {@link Map} to put the {@link FileStat} of the artifact to if it needs to be updated in
+         *        {@link #buildMetadataStore}
+         * @return the given {@code gavtcPath} if the artifact has changed or {@code null} otherwise
+         * @throws IOException on read errors
+         */
+        private GavtcPath check(GavtcPath gavtcPath, String pastSha1, FileStat pastStat,
+                Map<GavtcPath, FileStat> newStats) throws IOException {
+            final Path path = gavtcPath.getPath();
+            FileStat stat = null;
+            if (!paranoid) {
+                /* stat before hashing so that a change made while hashing gets noticed next time */
+                try {
+                    stat = FileStat.of(path);
+                } catch (NoSuchFileException e) {
+                    return gavtcPath;
+                }
+                if (stat.equals(pastStat)) {
+                    log.debug("srcdeps[{}]: File attributes of artifact [{}] have not changed", requestId,
+                            gavtcPath.getGavtcString());
+                    return null;
+                }
             }
+            /* The past value may have been produced by a different algorithm than the one currently configured */
+            final String pastAlgorithm = ArtifactDigester.algorithmOf(pastSha1);
+            final ArtifactDigester pastDigester;
+            if (pastAlgorithm.equals(digester.getAlgorithm())) {
+                pastDigester = digester;
+            } else {
+                try {
+                    pastDigester = ArtifactDigester.forAlgorithm(pastAlgorithm);
+                } catch (IllegalArgumentException e) {
+                    log.debug("srcdeps[{}]: Unknown digest algorithm [{}] of artifact [{}]", requestId, pastAlgorithm,
+                            gavtcPath.getGavtcString());
+                    return gavtcPath;
+                }
+            }
+            final String mvnLocalRepoArtifactSha1 = ArtifactDigester.tag(pastAlgorithm, pastDigester.digest(path));
+            if (!pastSha1.equals(mvnLocalRepoArtifactSha1)) {
+                return gavtcPath;
+            }
+            if (stat != null) {
+                newStats.put(gavtcPath, stat);
+            }
+            return null;
         }
 
         /**
          * @return {@code true} if any of the artifacts passed in through {@link #accept(GavtcPath)} had a different
          *         sha1 as compared with the value stored in {@link #buildMetadataStore}
          */
-        public boolean isAnyArtifactChanged() {
+        public synchronized boolean isAnyArtifactChanged() {
+            if (!anyArtifactChanged && !pending.isEmpty()) {
+                check();
+            }
+            pending.clear();
             return anyArtifactChanged;
         }
 
+        /**
+         * Pulls the artifacts out of the given {@code artifacts} {@link Stream} and checks them in batches. No more
+         * artifacts are pulled as soon as any of them is found to differ, so that a lazy {@link Stream} such as
+         * {@link GavSetWalker#stream()} does not need to traverse the rest of the local Maven repository.
+         *
+         * @param artifacts the artifacts to check
+         * @return {@code true} if any of the given {@code artifacts} or of those passed in through
+         *         {@link #accept(GavtcPath)} had a different sha1 as compared with the value stored in
+         *         {@link #buildMetadataStore}
+         * @since 5.0.2
+         */
+        public synchronized boolean isAnyArtifactChanged(Stream<GavtcPath> artifacts) {
+            final Iterator<GavtcPath> it = artifacts.iterator();
+            while (!anyArtifactChanged && it.hasNext()) {
+                pending.add(it.next());
+                if (pending.size() >= CHECK_BATCH_SIZE) {
+                    check();
+                    pending.clear();
+                }
+            }
+            return isAnyArtifactChanged();
+        }
+
     }
 
     /**
-     * A {@link Consumer} to store the sha1 hashes of artifacts to {@link BuildMetadataStore}.
+     * A {@link Consumer} to store the sha1 hashes of artifacts to {@link BuildMetadataStore}. The sha1s are obtained
+     * from an {@link ArtifactDigester}, by default the one returned by
+     * {@link BuildMetadataStore#getArtifactDigester()}, in parallel using an {@link ExecutorService}, by default the
+     * one returned by {@link HashingExecutors#getDefault()}.
+     * <p>
+     * The sha1s are stored in batches of at most {@value #STORE_BATCH_SIZE} artifacts, so the last batch is stored
+     * only by {@link #close()}, {@link #flush()} or {@link #getCount()}. All {@code GavSetWalker.walk(...)} methods
+     * call {@link #flush()} at the end of the walk, so {@code walker.walk(store.createStoreSha1Consumer(...))} stores
+     * all sha1s like before. When calling {@link #accept(GavtcPath)} directly, the instances should be used in a
+     * try-with-resources block.
+     * <p>
+     * This class is thread safe, so that {@link #accept(GavtcPath)} can be called concurrently, e.g. by
+     * {@link GavSetWalker#walk(Consumer, java.util.concurrent.ForkJoinPool)}. The {@link FileStat} is read and the
+     * sha1 computation is submitted outside of the lock; only the bookkeeping and {@link #flush()} hold it.
      *
      * @since 3.2.2
      */
-    class StoreSha1Consumer implements Consumer<GavtcPath> {
+    class StoreSha1Consumer implements Consumer<GavtcPath>, Closeable, Flushable {
+        /**
+         * The maximal number of sha1s being computed at once; {@link #accept(GavtcPath)} {@link #flush() flushes} as
+         * soon as it is reached
+         */
+        private static final int STORE_BATCH_SIZE = 256;
+
         private final BuildMetadataStore buildMetadataStore;
         private final String buildRequestIdHash;
+        /** Guarded by {@code this} */
         private int count = 0;
+
+        /** Obtains the sha1s of the artifacts */
+        private final ArtifactDigester digester;
+
+        /** The {@link ExecutorService} to compute the sha1s on */
+        private final ExecutorService executor;
+
+        /** The sha1s being computed since {@link #accept(GavtcPath)} but not stored yet; guarded by {@code this} */
+        private final Map<GavtcPath, Future<String>> pending = new LinkedHashMap<>();
+
+        /** The {@link FileStat}s of the {@link #pending} artifacts; guarded by {@code this} */
+        private final Map<GavtcPath, FileStat> pendingStats = new LinkedHashMap<>();
         private final String requestId;
 
         public StoreSha1Consumer(BuildMetadataStore buildMetadataStore, String requestId, String buildRequestIdHash) {
+            this(buildMetadataStore, requestId, buildRequestIdHash, HashingExecutors.getDefault(),
+                    buildMetadataStore.getArtifactDigester());
+        }
+
+        /**
+         * @param buildMetadataStore the {@link BuildMetadataStore} to store the sha1s to
+         * @param requestId the id of the current request, for logging purposes
+         * @param buildRequestIdHash hash of a {@link BuildRequest}
+         * @param executor the {@link ExecutorService} to compute the sha1s on
+         * @param digester obtains the sha1s of the artifacts
+         * @since 5.0.2
+         */
+        public StoreSha1Consumer(BuildMetadataStore buildMetadataStore, String requestId, String buildRequestIdHash,
+                ExecutorService executor, ArtifactDigester digester) {
             this.buildMetadataStore = buildMetadataStore;
             this.requestId = requestId;
             this.buildRequestIdHash = buildRequestIdHash;
+            this.executor = executor;
+            this.digester = digester;
         }
 
         /**
-         * Computes sha1 of the file under the given {@link GavtcPath#getPath()} and stores it in
-         * {@link #buildMetadataStore}
+         * Reads the {@link FileStat} of the file under the given {@link GavtcPath#getPath()} and submits obtaining
+         * its sha1 from {@link #digester} to {@link #executor}. Both are stored in {@link #buildMetadataStore} on the
+         * next {@link #flush()}, which happens here if there are {@value #STORE_BATCH_SIZE} sha1s pending.
          */
         @Override
         public void accept(GavtcPath gavtcPath) {
+            final Path path = gavtcPath.getPath();
+            final FileStat stat;
             try {
-                final Path path = gavtcPath.getPath();
-                final String mvnLocalRepoArtifactSha1 = SrcdepsCoreUtils.sha1HexString(path);
-                buildMetadataStore.storeSha1(requestId, buildRequestIdHash, gavtcPath, mvnLocalRepoArtifactSha1);
-                count++;
-            } catch (NoSuchAlgorithmException | IOException e) {
+                /* stat before hashing so that a change made while hashing gets noticed by CheckSha1Consumer */
+                stat = FileStat.of(path);
+            } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+            final Future<String> sha1 = executor
+                    .submit(() -> ArtifactDigester.tag(digester.getAlgorithm(), digester.digest(path)));
+            synchronized (this) {
+                pendingStats.put(gavtcPath, stat);
+                pending.put(gavtcPath, sha1);
+                count++;
+                if (pending.size() >= STORE_BATCH_SIZE) {
+                    flush();
+                }
+            }
         }
 
         /**
+         * {@link #flush() Flushes} the pending sha1s to {@link #buildMetadataStore}.
+         *
+         * @since 5.0.2
+         */
+        @Override
+        public synchronized void close() {
+            flush();
+        }
+
+        /**
+         * Waits for the sha1s submitted by {@link #accept(GavtcPath)} since the last {@link #flush()} and stores them
+         * together with the {@link FileStat}s in {@link #buildMetadataStore} using a single
+         * {@link BuildMetadataStore#storeSha1sAndFileStats(String, String, Map, Map)} call. The artifacts whose sha1
+         * and {@link FileStat} are equal to those stored in {@link #buildMetadataStore} already are not written
+         * again.
+         *
+         * @since 5.0.2
+         */
+        @Override
+        public synchronized void flush() {
+            if (!pending.isEmpty()) {
+                final Map<GavtcPath, String> sha1s = new LinkedHashMap<>();
+                try {
+                    for (Map.Entry<GavtcPath, Future<String>> en : pending.entrySet()) {
+                        sha1s.put(en.getKey(), en.getValue().get());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                } finally {
+                    if (sha1s.size() < pending.size()) {
+                        for (Future<String> future : pending.values()) {
+                            future.cancel(true);
+                        }
+                        pending.clear();
+                        pendingStats.clear();
+                    }
+                }
+                final Map<String, FileStat> pastStats = new HashMap<>();
+                final Map<String, String> pastSha1s = buildMetadataStore.retrieveSha1sAndFileStats(requestId,
+                        buildRequestIdHash, sha1s.keySet(), pastStats);
+                final Map<GavtcPath, String> changed = new LinkedHashMap<>();
+                final Map<GavtcPath, FileStat> changedStats = new LinkedHashMap<>();
+                for (Map.Entry<GavtcPath, String> en : sha1s.entrySet()) {
+                    final String gavtcString = en.getKey().getGavtcString();
+                    final FileStat stat = pendingStats.get(en.getKey());
+                    if (!en.getValue().equals(pastSha1s.get(gavtcString)) || !stat.equals(pastStats.get(gavtcString))) {
+                        changed.put(en.getKey(), en.getValue());
+                        changedStats.put(en.getKey(), stat);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    buildMetadataStore.storeSha1sAndFileStats(requestId, buildRequestIdHash, changed, changedStats);
+                }
+                pending.clear();
+                pendingStats.clear();
+            }
+        }
+
+        /**
+         * {@link #flush() Flushes} the pending sha1s to {@link #buildMetadataStore} and returns the number of
+         * {@link GavtcPath}s processed.
+         *
          * @return the number of {@link GavtcPath}s processed by {@link #accept(GavtcPath)}
          */
-        public int getCount() {
+        public synchronized int getCount() {
+            flush();
             return count;
         }
 
@@ -141,6 +484,34 @@ public interface BuildMetadataStore {
      */
     CheckSha1Consumer createCheckSha1Checker(String requestId, String buildRequestIdHash);
 
+    /**
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param paranoid if {@code true} the returned {@link CheckSha1Consumer} computes the sha1 of every artifact
+     *        regardless of whether its {@link FileStat} changed
+     * @return a new {@link CheckSha1Consumer}
+     *
+     * @since 5.0.2
+     */
+    default CheckSha1Consumer createCheckSha1Checker(String requestId, String buildRequestIdHash, boolean paranoid) {
+        return new CheckSha1Consumer(this, requestId, buildRequestIdHash, paranoid);
+    }
+
+    /**
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param paranoid if {@code true} the returned {@link CheckSha1Consumer} computes the digest of every artifact
+     *        regardless of whether its {@link FileStat} changed
+     * @param digester the {@link ArtifactDigester} to use for artifacts whose digest was stored by the same
+     *        algorithm
+     * @return a new {@link CheckSha1Consumer}
+     *
+     * @since 5.0.2
+     */
+    default CheckSha1Consumer createCheckSha1Checker(String requestId, String buildRequestIdHash, boolean paranoid,
+            ArtifactDigester digester) {
+        return new CheckSha1Consumer(this, requestId, buildRequestIdHash, paranoid, HashingExecutors.getDefault(),
+                digester);
+    }
+
     /**
      * @param buildRequestIdHash hash of a {@link BuildRequest}
      * @return a new {@link StoreSha1Consumer}
@@ -149,6 +520,29 @@ public interface BuildMetadataStore {
      */
     StoreSha1Consumer createStoreSha1Consumer(String requestId, String buildRequestIdHash);
 
+    /**
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param digester the {@link ArtifactDigester} to compute the digests of the artifacts
+     * @return a new {@link StoreSha1Consumer}
+     *
+     * @since 5.0.2
+     */
+    default StoreSha1Consumer createStoreSha1Consumer(String requestId, String buildRequestIdHash,
+            ArtifactDigester digester) {
+        return new StoreSha1Consumer(this, requestId, buildRequestIdHash, HashingExecutors.getDefault(), digester);
+    }
+
+    /**
+     * @return the {@link ArtifactDigester} used by the {@link CheckSha1Consumer}s and {@link StoreSha1Consumer}s of
+     *         this {@link BuildMetadataStore} unless another one is passed explicitly; the default implementation
+     *         returns {@link ArtifactDigester#getDefault()}
+     *
+     * @since 5.0.2
+     */
+    default ArtifactDigester getArtifactDigester() {
+        return ArtifactDigester.getDefault();
+    }
+
     /**
      * Returns a {@code commitId} out of which the {@link BuildRequest} characterized by the given
      * {@code buildRequestIdHash} was built in the past or {@code null} if the {@code buildRequestIdHash} is not know to
@@ -163,6 +557,23 @@ public interface BuildMetadataStore {
      */
     String retrieveCommitId(String requestId, String buildRequestIdHash);
 
+    /**
+     * Retrieves the {@link FileStat}s of the given {@link Gavtc}s recorded along with their sha1s for the given
+     * {@code buildRequestIdHash}. The default implementation returns an empty {@link Map} which makes
+     * {@link CheckSha1Consumer} compute the sha1 of every artifact.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param gavtcs the artifacts to look up
+     * @return a {@link Map} from {@link Gavtc#getGavtcString()} to {@link FileStat}; the {@link Gavtc}s having no
+     *         {@link FileStat} stored for the given {@code buildRequestIdHash} are not present in the {@link Map}
+     *
+     * @since 5.0.2
+     */
+    default Map<String, FileStat> retrieveFileStats(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        return Collections.emptyMap();
+    }
+
     /**
      * @param buildRequestIdHash hash of a {@link BuildRequest}
      * @param gavtc the artifact
@@ -173,6 +584,52 @@ public interface BuildMetadataStore {
      */
     String retrieveSha1(String requestId, String buildRequestIdHash, Gavtc gavtc);
 
+    /**
+     * Retrieves both the sha1s and the {@link FileStat}s of the given {@link Gavtc}s stored for the given
+     * {@code buildRequestIdHash}. The default implementation calls
+     * {@link #retrieveSha1s(String, String, Collection)} and {@link #retrieveFileStats(String, String, Collection)};
+     * implementations storing both values together are encouraged to override it so that each artifact is read only
+     * once.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param gavtcs the artifacts to look up
+     * @param fileStats the {@link Map} to put the {@link FileStat}s to, keyed by {@link Gavtc#getGavtcString()}
+     * @return a {@link Map} from {@link Gavtc#getGavtcString()} to sha1 in hex form; the {@link Gavtc}s not stored for
+     *         the given {@code buildRequestIdHash} before are not present in the {@link Map}
+     *
+     * @since 5.0.2
+     */
+    default Map<String, String> retrieveSha1sAndFileStats(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs, Map<String, FileStat> fileStats) {
+        final Map<String, String> result = retrieveSha1s(requestId, buildRequestIdHash, gavtcs);
+        fileStats.putAll(retrieveFileStats(requestId, buildRequestIdHash, gavtcs));
+        return result;
+    }
+
+    /**
+     * Retrieves the sha1s of all given {@link Gavtc}s stored for the given {@code buildRequestIdHash} in a single
+     * operation. The default implementation calls {@link #retrieveSha1(String, String, Gavtc)} for each of the given
+     * {@link Gavtc}s; implementations are encouraged to override it with something more efficient.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param gavtcs the artifacts to look up
+     * @return a {@link Map} from {@link Gavtc#getGavtcString()} to sha1 in hex form; the {@link Gavtc}s not stored for
+     *         the given {@code buildRequestIdHash} before are not present in the {@link Map}
+     *
+     * @since 5.0.2
+     */
+    default Map<String, String> retrieveSha1s(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        final Map<String, String> result = new HashMap<>();
+        for (Gavtc gavtc : gavtcs) {
+            final String sha1 = retrieveSha1(requestId, buildRequestIdHash, gavtc);
+            if (sha1 != null) {
+                result.put(gavtc.getGavtcString(), sha1);
+            }
+        }
+        return result;
+    }
+
     /**
      * Link the given {@code buildRequestIdHash} with the given {@code commitId}.
      *
@@ -195,6 +652,55 @@ public interface BuildMetadataStore {
      */
     void storeSha1(String requestId, String buildRequestIdHash, Gavtc gavtc, String sha1);
 
+    /**
+     * Store the given {@link Gavtc} to {@link FileStat} mappings for the given {@code buildRequestIdHash}. The
+     * default implementation does nothing.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param fileStats the {@link FileStat}s by artifact
+     *
+     * @since 5.0.2
+     */
+    default void storeFileStats(String requestId, String buildRequestIdHash,
+            Map<? extends Gavtc, FileStat> fileStats) {
+    }
+
+    /**
+     * Store the given {@link Gavtc} to sha1 mappings for the given {@code buildRequestIdHash} in a single operation.
+     * The default implementation calls {@link #storeSha1(String, String, Gavtc, String)} for each entry;
+     * implementations are encouraged to override it with something more efficient.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param sha1s the sha1 hashes in hex form by artifact
+     *
+     * @since 5.0.2
+     */
+    default void storeSha1s(String requestId, String buildRequestIdHash, Map<? extends Gavtc, String> sha1s) {
+        for (Map.Entry<? extends Gavtc, String> en : sha1s.entrySet()) {
+            storeSha1(requestId, buildRequestIdHash, en.getKey(), en.getValue());
+        }
+    }
+
+    /**
+     * Store the given sha1s together with the given {@link FileStat}s for the given {@code buildRequestIdHash}. The
+     * default implementation calls {@link #storeSha1s(String, String, Map)} and
+     * {@link #storeFileStats(String, String, Map)}; implementations storing both values together are encouraged to
+     * override it so that each artifact is written only once.
+     *
+     * @param buildRequestIdHash hash of a {@link BuildRequest}
+     * @param sha1s the sha1 hashes in hex form by artifact
+     * @param fileStats the {@link FileStat}s by artifact; typically of the same artifacts as {@code sha1s}
+     *
+     * @since 5.0.2
+     */
+    default void storeSha1sAndFileStats(String requestId, String buildRequestIdHash,
+            Map<? extends Gavtc, String> sha1s, Map<? extends Gavtc, FileStat> fileStats) {
+        storeSha1s(requestId, buildRequestIdHash, sha1s);
+        if (!fileStats.isEmpty()) {
+            storeFileStats(requestId, buildRequestIdHash, fileStats);
+        }
+    }
+
     /**
      * Iterate over {@link BuildRequest} hashes stored in this {@link BuildMetadataStore} and pass them to the given
      * {@link Consumer}
@@ -69,12 +69,17 @@ public class BuildRequest {
         private Set<String> forwardPropertyNames = new LinkedHashSet<>();
         private Map<String, String> forwardPropertyValues = new LinkedHashMap<>();
         private GavSet gavSet = GavSet.includeAll();
+        private boolean gitCli = false;
         private CharStreamSource gradleModelTransformer;
         private Supplier<LineConsumer> output;
         private Path projectRootDirectory;
+        private boolean raceUrls = false;
         private String scmRepositoryId;
         private List<String> scmUrls = new ArrayList<>();
+        private boolean shallowFetch = false;
+        private Path sharedObjectStoreDirectory;
         private boolean skipTests = true;
+        private boolean sparseCheckout = false;
         private SrcVersion srcVersion;
         private long timeoutMs = DEFAULT_TIMEOUT_MS;
         private boolean useVersionsMavenPlugin = false;
@@ -128,7 +133,8 @@ public class BuildRequest {
                     scmRepositoryId, encoding, useScmUrls, useBuildArgs, skipTests, addDefaultBuildArguments,
                     useFwdPropNames, useFwdPropValues, useBuildEnv, addDefaultBuildEnvironment, verbosity, output,
                     timeoutMs, versionsMavenPluginVersion, useVersionsMavenPlugin, useBuildIncludes, excludeNonRequired,
-                    gradleModelTransformer);
+                    gradleModelTransformer, sharedObjectStoreDirectory, shallowFetch, raceUrls, gitCli,
+                    sparseCheckout);
         }
 
         /**
@@ -283,6 +289,15 @@ public class BuildRequest {
             return this;
         }
 
+        /**
+         * @param gitCli see {@link BuildRequest#isGitCli()}
+         * @return this {@link BuildRequestBuilder}
+         */
+        public BuildRequestBuilder gitCli(boolean gitCli) {
+            this.gitCli = gitCli;
+            return this;
+        }
+
         /**
          * @param gradleModelTransformer see {@link BuildRequest#getGradleModelTransformer()}
          * @return this {@link BuildRequestBuilder}
@@ -310,6 +325,15 @@ public class BuildRequest {
             return this;
         }
 
+        /**
+         * @param raceUrls see {@link BuildRequest#isRaceUrls()}
+         * @return this {@link BuildRequestBuilder}
+         */
+        public BuildRequestBuilder raceUrls(boolean raceUrls) {
+            this.raceUrls = raceUrls;
+            return this;
+        }
+
         /**
          * @see BuildRequest#getScmRepositoryId()
          * @param scmRepositoryId the ID of the SCM repository to set
@@ -338,6 +362,24 @@ public class BuildRequest {
             return this;
         }
 
+        /**
+         * @param shallowFetch see {@link BuildRequest#isShallowFetch()}
+         * @return this {@link BuildRequestBuilder}
+         */
+        public BuildRequestBuilder shallowFetch(boolean shallowFetch) {
+            this.shallowFetch = shallowFetch;
+            return this;
+        }
+
+        /**
+         * @param sharedObjectStoreDirectory see {@link BuildRequest#getSharedObjectStoreDirectory()}
+         * @return this {@link BuildRequestBuilder}
+         */
+        public BuildRequestBuilder sharedObjectStoreDirectory(Path sharedObjectStoreDirectory) {
+            this.sharedObjectStoreDirectory = sharedObjectStoreDirectory;
+            return this;
+        }
+
         /**
          * @param skipTests see {@link BuildRequest#isSkipTests()}
          * @return this {@link BuildRequestBuilder}
@@ -347,6 +389,15 @@ public class BuildRequest {
             return this;
         }
 
+        /**
+         * @param sparseCheckout see {@link BuildRequest#isSparseCheckout()}
+         * @return this {@link BuildRequestBuilder}
+         */
+        public BuildRequestBuilder sparseCheckout(boolean sparseCheckout) {
+            this.sparseCheckout = sparseCheckout;
+            return this;
+        }
+
         /**
          * @param srcVersion see {@link BuildRequest#getSrcVersion()}
          * @return this {@link BuildRequestBuilder}
@@ -530,13 +581,18 @@ public class BuildRequest {
     private final Set<String> forwardPropertyNames;
     private final Map<String, String> forwardPropertyValues;
     private final GavSet gavSet;
+    private final boolean gitCli;
     private final CharStreamSource gradleModelTransformer;
     private final String hash;
     private final Supplier<LineConsumer> output;
     private final Path projectRootDirectory;
+    private final boolean raceUrls;
     private final String scmRepositoryId;
     private final List<String> scmUrls;
+    private final boolean shallowFetch;
+    private final Path sharedObjectStoreDirectory;
     private final boolean skipTests;
+    private final boolean sparseCheckout;
     private final SrcVersion srcVersion;
     private final long timeoutMs;
     private final boolean useVersionsMavenPlugin;
@@ -552,7 +608,8 @@ public class BuildRequest {
             Map<String, String> buildEnvironment, boolean addDefaultBuildEnvironment, Verbosity verbosity,
             Supplier<LineConsumer> output, long timeoutMs, String versionsMavenPluginVersion,
             boolean useVersionsMavenPlugin, Set<Ga> buildIncludes, boolean excludeNonRequired,
-            CharStreamSource gradleModelTransformer) {
+            CharStreamSource gradleModelTransformer, Path sharedObjectStoreDirectory, boolean shallowFetch,
+            boolean raceUrls, boolean gitCli, boolean sparseCheckout) {
         super();
 
         SrcdepsCoreUtils.assertArgNotNull(scmRepositoryId, "scmRepositoryId");
@@ -595,6 +652,11 @@ public class BuildRequest {
         this.buildIncludes = buildIncludes;
         this.excludeNonRequired = excludeNonRequired;
         this.gradleModelTransformer = gradleModelTransformer;
+        this.sharedObjectStoreDirectory = sharedObjectStoreDirectory;
+        this.shallowFetch = shallowFetch;
+        this.raceUrls = raceUrls;
+        this.gitCli = gitCli;
+        this.sparseCheckout = sparseCheckout;
         this.hash = computeHash(addDefaultBuildArguments, addDefaultBuildEnvironment, buildArguments, buildEnvironment,
                 forwardPropertyNames, encoding, gavSet, scmUrls, skipTests, srcVersion, versionsMavenPluginVersion,
                 useVersionsMavenPlugin, buildIncludes, excludeNonRequired, timeoutMs, verbosity);
@@ -726,6 +788,17 @@ public class BuildRequest {
         return scmUrls;
     }
 
+    /**
+     * @return an optional directory where the {@link Scm} implementation should keep the SCM objects (commits, trees,
+     *         blobs, etc.) shared by all checkouts of the same SCM repository, or {@code null} if every checkout should
+     *         have its own private store
+     * @see org.srcdeps.core.fs.BuildDirectoriesManager#getSharedObjectStore(Path)
+     * @since 5.0.2
+     */
+    public Path getSharedObjectStoreDirectory() {
+        return sharedObjectStoreDirectory;
+    }
+
     /**
      * @return the {@link SrcVersion} to checkout
      */
@@ -790,6 +863,38 @@ public class BuildRequest {
         return excludeNonRequired;
     }
 
+    /**
+     * @return {@code true} if {@code git:} URLs should be checked out using the native {@code git} executable
+     *         rather than JGit; {@code false} otherwise. {@code git-cli:} URLs are always checked out using the native
+     *         {@code git} executable.
+     * @see org.srcdeps.core.config.ScmRepository#isGitCli()
+     * @since 5.0.2
+     */
+    public boolean isGitCli() {
+        return gitCli;
+    }
+
+    /**
+     * @return {@code true} if the {@link Scm} should probe all {@link #getScmUrls()} in parallel and use the first
+     *         one that advertises the requested {@link #getSrcVersion()}; {@code false} if the URLs should be tried
+     *         one after another in the given order
+     * @see org.srcdeps.core.config.ScmRepository#isRaceUrls()
+     * @since 5.0.2
+     */
+    public boolean isRaceUrls() {
+        return raceUrls;
+    }
+
+    /**
+     * @return {@code true} if the {@link Scm} should fetch only the single commit or tag required by an immutable
+     *         {@link #getSrcVersion()} rather than the whole history of all branches; {@code false} otherwise
+     * @see org.srcdeps.core.config.ScmRepository#isShallowFetch()
+     * @since 5.0.2
+     */
+    public boolean isShallowFetch() {
+        return shallowFetch;
+    }
+
     /**
      * @return {@code true} if no tests should be run when building the dependency. For dependencies built with Maven,
      *         this accounts to adding {@code -DskipTests} to the {@code mvn} arguments.
@@ -798,6 +903,17 @@ public class BuildRequest {
         return skipTests;
     }
 
+    /**
+     * @return {@code true} if only the directories of the modules from the closure of {@link #getBuildIncludes()}
+     *         and all {@code pom.xml} files should be materialized in the working tree; {@code false} if the whole
+     *         tree should be checked out. Has no effect if {@link #getBuildIncludes()} is empty.
+     * @see ScmRepositoryMaven#isSparseCheckout()
+     * @since 5.0.2
+     */
+    public boolean isSparseCheckout() {
+        return sparseCheckout;
+    }
+
     /**
      * @return {@code true} if {@code mvn versions:set -DnewVersion...} should be used to set version in the dependency
      *         source tree. Otherwise {@link MavenSourceTree#setVersions(String, java.util.function.Predicate)} will be
@@ -817,10 +933,12 @@ public class BuildRequest {
                 + ", forwardPropertyNames=" + forwardPropertyNames + ", forwardPropertyValues=" + forwardPropertyValues
                 + ", gavSet=" + gavSet + ", gradleModelTransformer=" + gradleModelTransformer + ", id=" + hash
                 + ", output=" + output + ", projectRootDirectory=" + projectRootDirectory + ", scmUrls=" + scmUrls
+                + ", sharedObjectStoreDirectory=" + sharedObjectStoreDirectory
                 + ", skipTests=" + skipTests + ", srcVersion=" + srcVersion + ", timeoutMs=" + timeoutMs
                 + ", verbosity=" + verbosity + ", version=" + version + ", versionsMavenPluginVersion="
                 + versionsMavenPluginVersion + ", useVersionsMavenPlugin=" + useVersionsMavenPlugin + " buildIncludes="
-                + buildIncludes + ", excludeNonRequired=" + excludeNonRequired + "]";
+                + buildIncludes + ", excludeNonRequired=" + excludeNonRequired + ", shallowFetch=" + shallowFetch
+                + ", raceUrls=" + raceUrls + ", gitCli=" + gitCli + ", sparseCheckout=" + sparseCheckout + "]";
     }
 
 }
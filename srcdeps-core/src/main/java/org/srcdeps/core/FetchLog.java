@@ -16,12 +16,21 @@
  */
 package org.srcdeps.core;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.srcdeps.core.fs.LockedLogFile;
 
 /**
  * A facility to ensure that we do not fetch and build the same SCM repo multiple times during a single outer build. If
@@ -29,17 +38,140 @@ import org.slf4j.LoggerFactory;
  * saves time but is also especially important with branch srcdeps versions, where fetching twice might lead to two
  * builds out of two different commits. The remote branch might have changed between the two fetch operations.
  * <p>
- * {@link FetchLog} uses an in-memory store and does not require a fetch from a remote SMC repository.
- * {@link BuildMetadataStore} on the other hand requires both persistent storage and a fetch from the remote.
+ * {@link FetchLog} uses an in-memory store unless created via {@link #FetchLog(Path)} and it does not require a
+ * fetch from a remote SMC repository. {@link BuildMetadataStore} on the other hand requires both persistent storage
+ * and a fetch from the remote.
+ * <p>
+ * If created via {@link #FetchLog(Path)}, the {@link FetchLog} additionally persists the time and the resulting
+ * commit of each fetch recorded via {@link #add(FetchId, SrcVersion, String)} so that subsequent builds in other JVMs
+ * can skip fetching immutable versions altogether and fetch branches only once their
+ * {@link org.srcdeps.core.config.ScmRepository#getBranchFetchTtl()} has elapsed.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  * @since 3.2.1
  */
 public class FetchLog {
+
+    /**
+     * An immutable record of a single fetch.
+     *
+     * @since 5.0.2
+     */
+    public static class Entry {
+        private static Entry parse(String rawEntry) {
+            final int delimPos = rawEntry.indexOf(' ');
+            if (delimPos <= 0) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(rawEntry.substring(0, delimPos)), rawEntry.substring(delimPos + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private final String commitId;
+        private final long fetchTime;
+
+        public Entry(long fetchTime, String commitId) {
+            super();
+            this.fetchTime = fetchTime;
+            this.commitId = commitId;
+        }
+
+        /**
+         * @return the commit the fetched {@link SrcVersion} resolved to
+         */
+        public String getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return the time of the fetch in milliseconds since the epoch
+         */
+        public long getFetchTime() {
+            return fetchTime;
+        }
+
+        @Override
+        public String toString() {
+            return fetchTime + " " + commitId;
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(FetchLog.class);
 
+    private static boolean isUpToDate(Entry entry, SrcVersion srcVersion, long branchTtlMs) {
+        if (entry == null) {
+            return false;
+        }
+        return srcVersion.isImmutable() || System.currentTimeMillis() - entry.getFetchTime() < branchTtlMs;
+    }
+
+    private static Entry newer(Entry e1, Entry e2) {
+        return e1.getFetchTime() >= e2.getFetchTime() ? e1 : e2;
+    }
+
+    private static String key(FetchId fetchId, SrcVersion srcVersion) {
+        return fetchId.toString() + " " + srcVersion.toString();
+    }
+
+    private static Map<String, Entry> load(Path logFile) {
+        final Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            props.load(r);
+        } catch (NoSuchFileException e) {
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read [%s]", logFile), e);
+        }
+        final Map<String, Entry> result = new ConcurrentHashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            final Entry entry = Entry.parse(props.getProperty(key));
+            if (entry == null) {
+                log.warn("srcdeps: Ignoring a malformed entry [{}] in [{}]", key, logFile);
+            } else {
+                result.put(key, entry);
+            }
+        }
+        return result;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
     private final Set<FetchId> fetchIds = Collections.newSetFromMap(new ConcurrentHashMap<FetchId, Boolean>());
 
+    /** The file where the entries are persisted or {@code null} if this {@link FetchLog} is in-memory only */
+    private final Path logFile;
+
+    /** Guards {@link #logFile} or {@code null} if this {@link FetchLog} is in-memory only */
+    private final LockedLogFile lockedFile;
+
+    /**
+     * Creates a new in-memory only {@link FetchLog}.
+     */
+    public FetchLog() {
+        this(null);
+    }
+
+    /**
+     * Creates a new {@link FetchLog} that persists the fetches recorded via {@link #add(FetchId, SrcVersion, String)}
+     * in the given {@code logFile} and loads the fetches recorded by previous builds from there.
+     *
+     * @param logFile the file to persist the fetches to, typically
+     *        {@link org.srcdeps.core.fs.BuildDirectoriesManager#getFetchLogFile()}; can be {@code null} in which
+     *        case nothing is persisted
+     * @since 5.0.2
+     */
+    public FetchLog(Path logFile) {
+        super();
+        this.logFile = logFile;
+        this.lockedFile = logFile != null ? new LockedLogFile(logFile) : null;
+        if (logFile != null) {
+            entries.putAll(load(logFile));
+        }
+    }
+
     /**
      * Mark the given {@link FetchId} as being up-to-date (i.e. fetched) and eventually re-built in the current JVM.
      *
@@ -51,6 +183,28 @@ public class FetchLog {
         fetchIds.add(fetchId);
     }
 
+    /**
+     * Mark the given {@link FetchId} as being up-to-date (i.e. fetched) in the current JVM and record that the given
+     * {@link SrcVersion} was resolved to the given {@code commitId} now. The record is persisted if this
+     * {@link FetchLog} was created via {@link #FetchLog(Path)}.
+     *
+     * @param fetchId the {@link FetchId} to add
+     * @param srcVersion the {@link SrcVersion} that was fetched
+     * @param commitId the commit the given {@code srcVersion} resolved to
+     * @since 5.0.2
+     */
+    public void add(FetchId fetchId, SrcVersion srcVersion, String commitId) {
+        add(fetchId);
+        final String key = key(fetchId, srcVersion);
+        final Entry entry = new Entry(System.currentTimeMillis(), commitId);
+        log.debug("srcdeps[{}]: Recording fetch in {}: [{}] -> [{}]", fetchId.getScmRepoId(),
+                FetchLog.class.getSimpleName(), key, entry);
+        entries.put(key, entry);
+        if (logFile != null) {
+            persist(key, entry);
+        }
+    }
+
     /**
      * @param fetchId the {@link FetchId} to query
      * @return {@code true} if the repository identified by the given {@link FetchId} can be considered up-to-date (i.e.
@@ -62,4 +216,61 @@ public class FetchLog {
                 FetchLog.class.getSimpleName(), fetchId);
         return result;
     }
+
+    /**
+     * Returns the commit the given {@link SrcVersion} resolved to when it was last fetched, provided that the given
+     * {@code srcVersion} does not need to be fetched again. Immutable {@link SrcVersion}s (tags and revisions) never
+     * need to be fetched again; branches need to be fetched again once {@code branchTtlMs} has elapsed since their last
+     * fetch.
+     *
+     * @param fetchId the {@link FetchId} to query
+     * @param srcVersion the {@link SrcVersion} to query
+     * @param branchTtlMs the number of milliseconds for which a branch fetch is considered up-to-date
+     * @return the commit ID or {@code null} if the given {@code srcVersion} was not fetched yet or if it needs to be
+     *         fetched again
+     * @since 5.0.2
+     */
+    public String getCommitId(FetchId fetchId, SrcVersion srcVersion, long branchTtlMs) {
+        final String key = key(fetchId, srcVersion);
+        Entry entry = entries.get(key);
+        if (logFile != null && !isUpToDate(entry, srcVersion, branchTtlMs)) {
+            /* another process might have fetched in the meantime */
+            final Entry persisted = load(logFile).get(key);
+            if (persisted != null) {
+                entries.merge(key, persisted, FetchLog::newer);
+                entry = entries.get(key);
+            }
+        }
+        final String result = isUpToDate(entry, srcVersion, branchTtlMs) ? entry.getCommitId() : null;
+        log.debug("srcdeps[{}]: {} in {}: [{}] -> [{}]", fetchId.getScmRepoId(),
+                (result != null ? "Up-to-date fetch" : "No up-to-date fetch"), FetchLog.class.getSimpleName(), key,
+                entry);
+        return result;
+    }
+
+    /**
+     * Merges the given entry with the entries stored in {@link #logFile} by other processes and writes the result
+     * atomically back to {@link #logFile}. The access to {@link #logFile} is serialized by {@link #lockedFile}.
+     *
+     * @param key the key of the entry to persist
+     * @param entry the {@link Entry} to persist
+     */
+    private synchronized void persist(String key, Entry entry) {
+        try {
+            lockedFile.withLock(() -> {
+                for (Map.Entry<String, Entry> e : load(logFile).entrySet()) {
+                    entries.merge(e.getKey(), e.getValue(), FetchLog::newer);
+                }
+                entries.merge(key, entry, FetchLog::newer);
+                final Properties props = new Properties();
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    props.setProperty(e.getKey(), e.getValue().toString());
+                }
+                lockedFile.rewrite(w -> props.store(w, null));
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not write to [%s]", logFile), e);
+        }
+    }
 }
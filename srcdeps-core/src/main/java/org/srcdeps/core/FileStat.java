@@ -0,0 +1,132 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable {@link #size}, {@link #lastModified}, {@link #fileKey} triple of a file. If the {@link FileStat} of
+ * an artifact did not change since its sha1 was stored in a {@link BuildMetadataStore}, the artifact is assumed to
+ * be unchanged without reading its content.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class FileStat {
+
+    private static final String NO_FILE_KEY = "-";
+
+    /**
+     * @param path the file to read the attributes from
+     * @return a new {@link FileStat} of the given {@code path}
+     * @throws IOException if the attributes of the given {@code path} cannot be read
+     */
+    public static FileStat of(Path path) throws IOException {
+        final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        final Object fileKey = attrs.fileKey();
+        return new FileStat(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                fileKey == null ? NO_FILE_KEY : fileKey.toString().replaceAll("[^A-Za-z0-9=,.()-]", "_"));
+    }
+
+    /**
+     * Returns a new {@link FileStat} parsed out of the given {@code fileStatString}.
+     *
+     * @param fileStatString the string to parse, something of the form {@code size lastModified fileKey} as produced
+     *        by {@link #toString()}
+     * @return a new {@link FileStat}
+     */
+    public static FileStat parse(String fileStatString) {
+        final String[] parts = fileStatString.split(" ");
+        if (parts.length != 3) {
+            throw new IllegalStateException(
+                    String.format("Cannot parse [%s] to a " + FileStat.class.getName(), fileStatString));
+        }
+        try {
+            return new FileStat(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(
+                    String.format("Cannot parse [%s] to a " + FileStat.class.getName(), fileStatString), e);
+        }
+    }
+
+    private final String fileKey;
+    private final long lastModified;
+    private final long size;
+
+    public FileStat(long size, long lastModified, String fileKey) {
+        super();
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        FileStat other = (FileStat) obj;
+        return this.size == other.size && this.lastModified == other.lastModified
+                && this.fileKey.equals(other.fileKey);
+    }
+
+    /**
+     * @return a string identifying the file within the filesystem, such as the device and inode on Unix, or
+     *         {@code "-"} if the filesystem does not provide any; contains no whitespace and no slashes
+     */
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * @return the last modification time in nanoseconds since the epoch; the actual precision depends on the
+     *         filesystem
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 + (int) (size ^ (size >>> 32));
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        return 31 * result + fileKey.hashCode();
+    }
+
+    /**
+     * @return {@code size lastModified fileKey} that can be parsed back by {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        return size + " " + lastModified + " " + fileKey;
+    }
+
+}
@@ -203,29 +203,14 @@ public class GavSet implements Serializable {
         return INCLUDE_ALL;
     }
 
-    private static boolean matches(String groupId, String artifactId, List<GavPattern> patterns) {
-        for (GavPattern pattern : patterns) {
-            if (pattern.matches(groupId, artifactId)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean matches(String groupId, String artifactId, String version, List<GavPattern> patterns) {
-        for (GavPattern pattern : patterns) {
-            if (pattern.matches(groupId, artifactId, version)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private final List<GavPattern> excludes;
     private final transient int hashcode;;
 
     private final List<GavPattern> includes;
 
+    /** Compiled lazily by {@link #matcher()}; not serialized */
+    private transient volatile GavSetMatcher matcher;
+
     GavSet(List<GavPattern> includes, List<GavPattern> excludes) {
         super();
         this.includes = includes;
@@ -260,7 +245,7 @@ public class GavSet implements Serializable {
      * @return {@code true} if the given GA identifier is a member of this {@link GavSet} and {@code false} otherwise
      */
     public boolean contains(String groupId, String artifactId) {
-        return matches(groupId, artifactId, includes) && !matches(groupId, artifactId, excludes);
+        return matcher().contains(groupId, artifactId, null);
     }
 
     /**
@@ -271,7 +256,7 @@ public class GavSet implements Serializable {
      * @return {@code true} if the given GAV triple is a member of this {@link GavSet} and {@code false} otherwise
      */
     public boolean contains(String groupId, String artifactId, String version) {
-        return matches(groupId, artifactId, version, includes) && !matches(groupId, artifactId, version, excludes);
+        return matcher().contains(groupId, artifactId, version);
     }
 
     @Override
@@ -315,6 +300,19 @@ public class GavSet implements Serializable {
         return hashcode;
     }
 
+    /**
+     * @return the {@link GavSetMatcher} compiled out of {@link #includes} and {@link #excludes}
+     */
+    private GavSetMatcher matcher() {
+        GavSetMatcher result = matcher;
+        if (result == null) {
+            /* a race is harmless here: the matchers compiled concurrently are equivalent */
+            result = new GavSetMatcher(includes, excludes);
+            matcher = result;
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return "GavSet [excludes=" + excludes + ", includes=" + includes + "]";
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.srcdeps.core.GavPattern.GavSegmentPattern;
+
+/**
+ * A {@link GavSet} compiled into a structure that answers {@link GavSet#contains(String, String, String)} without
+ * iterating over all {@link GavPattern}s and without regular expressions in the common cases:
+ * <ul>
+ * <li>Literal segments such as {@code org.my-group} are compared using {@link String#equals(Object)}; literal
+ * groupIds are looked up in a {@link HashMap}.</li>
+ * <li>Prefix segments such as {@code org.my-group.*} are compared using {@link String#startsWith(String)}; prefix
+ * groupIds are looked up in a char trie. The match-all segment {@code *} is a prefix segment with an empty
+ * prefix.</li>
+ * <li>Only the segments having a wildcard elsewhere than at the end fall back to regular expressions.</li>
+ * </ul>
+ * The results are identical to those of matching the {@link GavPattern}s one by one, including the fact that the
+ * {@code *} wildcard does not match line terminators, because it translates to the {@code .*} regular expression.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+class GavSetMatcher {
+
+    /**
+     * A compiled {@link GavPattern} without its groupId part.
+     */
+    static class ArtifactVersionMatcher {
+        private final SegmentMatcher artifactId;
+        private final SegmentMatcher version;
+
+        ArtifactVersionMatcher(GavPattern pattern) {
+            super();
+            this.artifactId = SegmentMatcher.of(pattern.artifactIdPattern);
+            this.version = SegmentMatcher.of(pattern.versionPattern);
+        }
+
+        /**
+         * @param artifactId the artifactId to match
+         * @param version the version to match or {@code null} to disregard the version
+         * @return {@code true} if this matcher matches the given {@code artifactId} and {@code version}
+         */
+        boolean matches(String artifactId, String version) {
+            return this.artifactId.matches(artifactId) && (version == null || this.version.matches(version));
+        }
+    }
+
+    /**
+     * An index of {@link GavPattern}s by their groupId parts.
+     */
+    static class PatternIndex {
+        private final Map<String, ArtifactVersionMatcher[]> literalGroups;
+        private final TrieNode prefixGroups;
+        private final GavSegmentPattern[] regexGroups;
+        private final ArtifactVersionMatcher[] regexGroupMatchers;
+
+        PatternIndex(List<GavPattern> patterns) {
+            super();
+            final Map<String, List<ArtifactVersionMatcher>> literals = new HashMap<>();
+            final TrieNodeBuilder prefixes = new TrieNodeBuilder();
+            final List<GavSegmentPattern> regexes = new ArrayList<>();
+            final List<ArtifactVersionMatcher> regexMatchers = new ArrayList<>();
+            for (GavPattern pattern : patterns) {
+                final ArtifactVersionMatcher matcher = new ArtifactVersionMatcher(pattern);
+                final String source = pattern.groupIdPattern.getSource();
+                final int prefixLength = prefixLength(source);
+                if (prefixLength == NOT_A_PREFIX) {
+                    regexes.add(pattern.groupIdPattern);
+                    regexMatchers.add(matcher);
+                } else if (prefixLength == source.length()) {
+                    List<ArtifactVersionMatcher> list = literals.get(source);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        literals.put(source, list);
+                    }
+                    list.add(matcher);
+                } else {
+                    prefixes.add(source, prefixLength, matcher);
+                }
+            }
+            this.literalGroups = new HashMap<>(literals.size() * 2);
+            for (Map.Entry<String, List<ArtifactVersionMatcher>> en : literals.entrySet()) {
+                literalGroups.put(en.getKey(), en.getValue().toArray(new ArtifactVersionMatcher[0]));
+            }
+            this.prefixGroups = prefixes.build();
+            this.regexGroups = regexes.toArray(new GavSegmentPattern[0]);
+            this.regexGroupMatchers = regexMatchers.toArray(new ArtifactVersionMatcher[0]);
+        }
+
+        /**
+         * @param groupId the groupId to match
+         * @param artifactId the artifactId to match
+         * @param version the version to match or {@code null} to disregard the version
+         * @return {@code true} if any of the indexed {@link GavPattern}s matches
+         */
+        boolean matches(String groupId, String artifactId, String version) {
+            final ArtifactVersionMatcher[] literalMatchers = literalGroups.get(groupId);
+            if (literalMatchers != null && anyMatches(literalMatchers, artifactId, version)) {
+                return true;
+            }
+            if (prefixGroups != null) {
+                /* a prefix matches only if the rest of the groupId contains no line terminators */
+                final int lastTerminator = lastLineTerminator(groupId);
+                TrieNode node = prefixGroups;
+                int i = 0;
+                while (true) {
+                    if (node.matchers != null && lastTerminator < i
+                            && anyMatches(node.matchers, artifactId, version)) {
+                        return true;
+                    }
+                    if (i == groupId.length()) {
+                        break;
+                    }
+                    node = node.child(groupId.charAt(i++));
+                    if (node == null) {
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < regexGroups.length; i++) {
+                if (regexGroups[i].matches(groupId) && regexGroupMatchers[i].matches(artifactId, version)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A compiled {@link GavSegmentPattern}.
+     */
+    abstract static class SegmentMatcher {
+
+        static SegmentMatcher of(GavSegmentPattern pattern) {
+            final String source = pattern.getSource();
+            final int prefixLength = prefixLength(source);
+            if (prefixLength == NOT_A_PREFIX) {
+                return new SegmentMatcher() {
+                    @Override
+                    boolean matches(String input) {
+                        return pattern.matches(input);
+                    }
+                };
+            } else if (prefixLength == source.length()) {
+                return new SegmentMatcher() {
+                    @Override
+                    boolean matches(String input) {
+                        return source.equals(input);
+                    }
+                };
+            } else {
+                final String prefix = source.substring(0, prefixLength);
+                return new SegmentMatcher() {
+                    @Override
+                    boolean matches(String input) {
+                        return input.startsWith(prefix) && lastLineTerminator(input) < prefixLength;
+                    }
+                };
+            }
+        }
+
+        abstract boolean matches(String input);
+    }
+
+    /**
+     * An immutable node of a char trie. The children are looked up by a linear scan as their number is typically
+     * small.
+     */
+    static class TrieNode {
+        private final TrieNode[] children;
+        private final char[] keys;
+        /** The matchers of the prefixes ending at this node or {@code null} */
+        private final ArtifactVersionMatcher[] matchers;
+
+        TrieNode(char[] keys, TrieNode[] children, ArtifactVersionMatcher[] matchers) {
+            super();
+            this.keys = keys;
+            this.children = children;
+            this.matchers = matchers;
+        }
+
+        TrieNode child(char c) {
+            final char[] ks = keys;
+            for (int i = 0; i < ks.length; i++) {
+                if (ks[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A mutable builder of {@link TrieNode}s.
+     */
+    static class TrieNodeBuilder {
+        private final Map<Character, TrieNodeBuilder> children = new HashMap<>();
+        private final List<ArtifactVersionMatcher> matchers = new ArrayList<>();
+
+        void add(String source, int prefixLength, ArtifactVersionMatcher matcher) {
+            TrieNodeBuilder node = this;
+            for (int i = 0; i < prefixLength; i++) {
+                final char c = source.charAt(i);
+                TrieNodeBuilder child = node.children.get(c);
+                if (child == null) {
+                    child = new TrieNodeBuilder();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.matchers.add(matcher);
+        }
+
+        /**
+         * @return a new {@link TrieNode} or {@code null} if no prefix was added
+         */
+        TrieNode build() {
+            if (children.isEmpty() && matchers.isEmpty()) {
+                return null;
+            }
+            final char[] keys = new char[children.size()];
+            final TrieNode[] nodes = new TrieNode[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, TrieNodeBuilder> en : children.entrySet()) {
+                keys[i] = en.getKey();
+                nodes[i] = en.getValue().build();
+                i++;
+            }
+            return new TrieNode(keys, nodes,
+                    matchers.isEmpty() ? null : matchers.toArray(new ArtifactVersionMatcher[0]));
+        }
+    }
+
+    /** The result of {@link #prefixLength(String)} for sources that need a regular expression */
+    static final int NOT_A_PREFIX = -1;
+
+    private static boolean anyMatches(ArtifactVersionMatcher[] matchers, String artifactId, String version) {
+        for (ArtifactVersionMatcher matcher : matchers) {
+            if (matcher.matches(artifactId, version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param input the string to search
+     * @return the index of the last character of {@code input} that the {@code .} regular expression does not
+     *         match, or {@code -1} if there is no such character
+     */
+    static int lastLineTerminator(String input) {
+        for (int i = input.length() - 1; i >= 0; i--) {
+            switch (input.charAt(i)) {
+            case '\n':
+            case '\r':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return i;
+            default:
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param source a wildcard pattern source
+     * @return the length of {@code source} if it contains no wildcards; the length of the literal prefix if the only
+     *         wildcards are at the end of {@code source}; otherwise {@link #NOT_A_PREFIX}
+     */
+    static int prefixLength(String source) {
+        final int wildcardPos = source.indexOf(GavPattern.MULTI_WILDCARD_CHAR);
+        if (wildcardPos < 0) {
+            return source.length();
+        }
+        for (int i = wildcardPos + 1; i < source.length(); i++) {
+            if (source.charAt(i) != '*') {
+                return NOT_A_PREFIX;
+            }
+        }
+        return wildcardPos;
+    }
+
+    private final PatternIndex excludes;
+    private final PatternIndex includes;
+
+    GavSetMatcher(List<GavPattern> includes, List<GavPattern> excludes) {
+        super();
+        this.includes = new PatternIndex(includes);
+        this.excludes = new PatternIndex(excludes);
+    }
+
+    /**
+     * @param groupId the groupId to match
+     * @param artifactId the artifactId to match
+     * @param version the version to match or {@code null} to disregard the version
+     * @return {@code true} if any include matches and no exclude matches
+     */
+    boolean contains(String groupId, String artifactId, String version) {
+        return includes.matches(groupId, artifactId, version) && !excludes.matches(groupId, artifactId, version);
+    }
+
+}
@@ -17,21 +17,39 @@
 package org.srcdeps.core;
 
 import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.srcdeps.core.fs.LocalRepositoryIndex;
 import org.srcdeps.core.util.BitStack;
 import org.srcdeps.core.util.Consumer;
 
@@ -44,26 +62,201 @@ import org.srcdeps.core.util.Consumer;
 public class GavSetWalker {
 
     /**
-     * A simple {@link Consumer} that just collects the GAV {@link Path}s into {@link #gavPaths} {@link Map}.
+     * A {@link RecursiveAction} listing a directory, notifying the {@link #callback} about the artifacts in it if it
+     * is a version directory and forking a new {@link DirectoryTask} for each of its subdirectories. Symbolic links
+     * are not followed, in the same way as in {@link GavtcPathVisitor}.
+     */
+    class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = -1283532418409154826L;
+        private final transient Consumer<GavtcPath> callback;
+        private final transient Path dir;
+
+        DirectoryTask(Path dir, Consumer<GavtcPath> callback) {
+            super();
+            this.dir = dir;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void compute() {
+            final boolean canContainArtifacts = version.equals(dir.getFileName().toString());
+            final List<DirectoryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        subtasks.add(new DirectoryTask(child, callback));
+                    } else if (canContainArtifacts) {
+                        acceptArtifact(localMavenRepoRoot, gavSet, version, child, callback);
+                    }
+                }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                /* nothing to walk */
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * A {@link RecursiveAction} listing a single version directory.
+     */
+    class GavDirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 4766011540455305458L;
+        private final transient Consumer<GavtcPath> callback;
+        private final transient Path gavDir;
+
+        GavDirectoryTask(Path gavDir, Consumer<GavtcPath> callback) {
+            super();
+            this.gavDir = gavDir;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                listGavDirectory(gavDir, callback);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A simple thread safe {@link Consumer} that just collects the GAV {@link Path}s into {@link #gavPaths}
+     * {@link Map}.
      */
     public static class GavPathCollector implements Consumer<GavtcPath> {
 
         private final Map<Path, Gav> gavPaths = new TreeMap<>();
 
         @Override
-        public void accept(GavtcPath t) {
+        public synchronized void accept(GavtcPath t) {
             gavPaths.put(t.getPath().getParent(), t);
         }
 
         /**
          * @return the GAV {@link Path}s collected
          */
-        public Map<Path, Gav> getGavPaths() {
+        public synchronized Map<Path, Gav> getGavPaths() {
             return gavPaths;
         }
 
     }
 
+    /**
+     * A lazy {@link Spliterator} over the artifacts belonging to {@link GavSetWalker#gavSet}. The directories are
+     * listed only when more elements are requested through {@link #tryAdvance(java.util.function.Consumer)}, so that
+     * short-circuiting {@link Stream} operations such as {@link Stream#anyMatch(java.util.function.Predicate)} stop
+     * the traversal of the file system early. {@link #trySplit()} hands over half of the directories not listed yet
+     * to a new {@link GavtcPathSpliterator} which makes the walk usable with parallel {@link Stream}s.
+     * <p>
+     * I/O errors are reported as {@link UncheckedIOException}s like in
+     * {@link Files#walk(Path, java.nio.file.FileVisitOption...)}.
+     */
+    class GavtcPathSpliterator implements Spliterator<GavtcPath> {
+
+        /** The artifacts found in the directories listed so far, but not consumed yet */
+        private final Deque<GavtcPath> found = new ArrayDeque<>();
+
+        /** The directories to list; the head of the deque is listed first */
+        private final Deque<WalkItem> work;
+
+        GavtcPathSpliterator(Deque<WalkItem> work) {
+            super();
+            this.work = work;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL;
+        }
+
+        @Override
+        public long estimateSize() {
+            return found.isEmpty() && work.isEmpty() ? 0 : Long.MAX_VALUE;
+        }
+
+        /**
+         * Lists the directory at the head of {@link #work}.
+         */
+        private void expand() {
+            final WalkItem item = work.pop();
+            final List<String> subdirNames = new ArrayList<>();
+            final List<String> fileNames = new ArrayList<>();
+            list(item.dir, subdirNames, fileNames);
+            final List<WalkItem> subdirs = new ArrayList<>();
+            if (item.artifactPatterns != null) {
+                /* an artifact listing */
+                final String groupId = item.dir.toString().replace(File.separatorChar, '.');
+                for (String artifactId : subdirNames) {
+                    final Path gavDir = item.dir.resolve(artifactId).resolve(version);
+                    if (!plan.getGavDirectories().contains(gavDir)) {
+                        for (GavPattern pattern : item.artifactPatterns) {
+                            if (pattern.matches(groupId, artifactId)) {
+                                subdirs.add(new WalkItem(gavDir, false, null));
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                if (item.recursive) {
+                    for (String subdir : subdirNames) {
+                        subdirs.add(new WalkItem(item.dir.resolve(subdir), true, null));
+                    }
+                }
+                final Path dir = localMavenRepoRoot.resolve(item.dir);
+                if (!fileNames.isEmpty() && version.equals(dir.getFileName().toString())) {
+                    for (String fileName : fileNames) {
+                        acceptArtifact(localMavenRepoRoot, gavSet, version, dir.resolve(fileName), found::add);
+                    }
+                }
+            }
+            /* depth first */
+            for (ListIterator<WalkItem> it = subdirs.listIterator(subdirs.size()); it.hasPrevious();) {
+                work.push(it.previous());
+            }
+        }
+
+        /**
+         * @return the number of directories not listed yet
+         */
+        int pendingDirectoryCount() {
+            return work.size();
+        }
+
+        @Override
+        public boolean tryAdvance(java.util.function.Consumer<? super GavtcPath> action) {
+            while (found.isEmpty()) {
+                if (work.isEmpty()) {
+                    return false;
+                }
+                expand();
+            }
+            action.accept(found.pop());
+            return true;
+        }
+
+        @Override
+        public Spliterator<GavtcPath> trySplit() {
+            if (work.size() == 1 && found.isEmpty()) {
+                expand();
+            }
+            final int splitSize = work.size() / 2;
+            if (splitSize == 0) {
+                return null;
+            }
+            /* The items at the tail are the ones closest to the roots, i.e. likely the biggest subtrees */
+            final Deque<WalkItem> split = new ArrayDeque<>(splitSize);
+            for (int i = 0; i < splitSize; i++) {
+                split.push(work.pollLast());
+            }
+            return new GavtcPathSpliterator(split);
+        }
+
+    }
+
     /**
      * A {@link FileVisitor} for walking the local Maven repository.
      */
@@ -107,46 +300,7 @@ public class GavSetWalker {
         @Override
         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
             if (dirCanContainArtifacts.peek()) {
-                final Path gavPath = file.getParent();
-                final Path gaPath = gavPath.getParent();
-                final String artifactId = gaPath.getFileName().toString();
-                final String name = file.getFileName().toString();
-                if (name.startsWith(artifactId) && !hasIgnorableExtension(name)) {
-                    final Path gPath = localMavenRepoRoot.relativize(gaPath.getParent());
-                    final String groupId = gPath.toString().replace(File.separatorChar, '.');
-
-                    if (gavSet.contains(groupId, artifactId, version)) {
-                        final int avStringLength = artifactId.length() + version.length() + 1;
-                        if (avStringLength + 1 < name.length()) {
-                            switch (name.charAt(avStringLength)) {
-                            case '.': {
-                                final String type = name.substring(avStringLength + 1);
-                                final GavtcPath gavtcPath = new GavtcPath(groupId, artifactId, version, type, null,
-                                        file);
-                                callback.accept(gavtcPath);
-                            }
-                                break;
-                            case '-': {
-                                int ext = name.indexOf('.', avStringLength + 1);
-                                if (ext >= 0) {
-                                    final String classifier = name.substring(avStringLength + 1, ext);
-                                    ext++;
-                                    if (ext < name.length()) {
-                                        final String type = name.substring(ext);
-                                        final GavtcPath gavtcPath = new GavtcPath(groupId, artifactId, version, type,
-                                                classifier, file);
-                                        callback.accept(gavtcPath);
-                                    }
-                                }
-                                break;
-                            }
-                            default:
-                                assert false;
-                                break;
-                            }
-                        }
-                    }
-                }
+                acceptArtifact(localMavenRepoRoot, gavSet, version, file, callback);
             }
             return FileVisitResult.CONTINUE;
         }
@@ -158,6 +312,77 @@ public class GavSetWalker {
 
     }
 
+    /**
+     * A directory to list by {@link GavtcPathSpliterator}.
+     */
+    static class WalkItem {
+        /**
+         * If not {@code null}, {@link #dir} is a group directory whose subdirectories matching any of these patterns
+         * are artifact directories to look into
+         */
+        private final List<GavPattern> artifactPatterns;
+        /** Relative to the local Maven repository root */
+        private final Path dir;
+        /** If {@code true} the subdirectories of {@link #dir} are listed too */
+        private final boolean recursive;
+
+        WalkItem(Path dir, boolean recursive, List<GavPattern> artifactPatterns) {
+            super();
+            this.dir = dir;
+            this.recursive = recursive;
+            this.artifactPatterns = artifactPatterns;
+        }
+    }
+
+    /**
+     * A plan saying which parts of the local Maven repository need to be visited to find all artifacts of a given
+     * {@link GavSet} and version, as computed by {@link GavSetWalker#plan(GavSet, String)}. All {@link Path}s are
+     * relative to the local Maven repository root.
+     * <p>
+     * The plan avoids walking whole subtrees wherever possible: for an include whose {@code groupId} and
+     * {@code artifactId} are literals, the single version directory is listed; for an include with a literal
+     * {@code groupId} and a wildcard {@code artifactId}, the group directory is listed to find the matching artifact
+     * directories; only the includes having a wildcard in {@code groupId} require a walk through a subtree.
+     */
+    static class WalkPlan {
+        /** The group directories to list by the patterns selecting the artifact directories in them */
+        private final Map<Path, List<GavPattern>> artifactListings;
+        /** The version directories to list */
+        private final Set<Path> gavDirectories;
+        /** The subtrees to walk */
+        private final List<Path> subtrees;
+
+        WalkPlan(List<Path> subtrees, Map<Path, List<GavPattern>> artifactListings, Set<Path> gavDirectories) {
+            super();
+            this.subtrees = subtrees;
+            this.artifactListings = artifactListings;
+            this.gavDirectories = gavDirectories;
+        }
+
+        /**
+         * @return a {@link Map} from group directories to the {@link GavPattern}s whose {@code artifactId} patterns
+         *         select the artifact directories to look into
+         */
+        Map<Path, List<GavPattern>> getArtifactListings() {
+            return artifactListings;
+        }
+
+        /**
+         * @return the version directories to list
+         */
+        Set<Path> getGavDirectories() {
+            return gavDirectories;
+        }
+
+        /**
+         * @return the subtrees to walk
+         */
+        List<Path> getSubtrees() {
+            return subtrees;
+        }
+
+    }
+
     private static final Path EMPTY_PATH = Paths.get("");
     private static final List<Path> EMPTY_PATH_LIST;
     private static final List<String> IGNORABLE_EXTENSIONS = Arrays.asList(".sha1", ".md5", ".asc");
@@ -166,6 +391,74 @@ public class GavSetWalker {
         EMPTY_PATH_LIST = Collections.singletonList(EMPTY_PATH);
     }
 
+    /**
+     * Notifies the given {@code callback} if the given {@code file} is an artifact belonging to the given
+     * {@code gavSet} and {@code version}.
+     *
+     * @param localMavenRepoRoot the root directory of the local Maven repository
+     * @param gavSet the {@link GavSet} the artifact must belong to
+     * @param version the version of artifacts to look for
+     * @param file a file in a version directory
+     * @param callback the {@link Consumer} to notify
+     */
+    static void acceptArtifact(Path localMavenRepoRoot, GavSet gavSet, String version, Path file,
+            Consumer<GavtcPath> callback) {
+        final Path gavPath = file.getParent();
+        final Path gaPath = gavPath.getParent();
+        final String artifactId = gaPath.getFileName().toString();
+        final String name = file.getFileName().toString();
+        if (name.startsWith(artifactId) && !GavtcPathVisitor.hasIgnorableExtension(name)) {
+            final Path gPath = localMavenRepoRoot.relativize(gaPath.getParent());
+            final String groupId = gPath.toString().replace(File.separatorChar, '.');
+
+            if (gavSet.contains(groupId, artifactId, version)) {
+                final int avStringLength = artifactId.length() + version.length() + 1;
+                if (avStringLength + 1 < name.length()) {
+                    switch (name.charAt(avStringLength)) {
+                    case '.': {
+                        final String type = name.substring(avStringLength + 1);
+                        final GavtcPath gavtcPath = new GavtcPath(groupId, artifactId, version, type, null, file);
+                        callback.accept(gavtcPath);
+                    }
+                        break;
+                    case '-': {
+                        int ext = name.indexOf('.', avStringLength + 1);
+                        if (ext >= 0) {
+                            final String classifier = name.substring(avStringLength + 1, ext);
+                            ext++;
+                            if (ext < name.length()) {
+                                final String type = name.substring(ext);
+                                final GavtcPath gavtcPath = new GavtcPath(groupId, artifactId, version, type,
+                                        classifier, file);
+                                callback.accept(gavtcPath);
+                            }
+                        }
+                        break;
+                    }
+                    default:
+                        assert false;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param path a {@link Path}
+     * @param subtrees the subtrees to check
+     * @return {@code true} if the given {@code path} is equal to or a descendant of any of the given
+     *         {@code subtrees}
+     */
+    private static boolean isCovered(Path path, List<Path> subtrees) {
+        for (Path subtree : subtrees) {
+            if (EMPTY_PATH.equals(subtree) || path.startsWith(subtree)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @param gavSet  the {@link GavSet} to walk through
      * @param version the version of artifacts to look for
@@ -173,7 +466,16 @@ public class GavSetWalker {
      *         start to cover all artifacts belonging to the given {@link GavSet}
      */
     static List<Path> gavSetToSubtrees(GavSet gavSet, String version) {
-        List<GavPattern> includes = gavSet.getIncludes();
+        return gavSetToSubtrees(gavSet.getIncludes(), version);
+    }
+
+    /**
+     * @param includes the {@link GavPattern}s to cover
+     * @param version the version of artifacts to look for
+     * @return a {@link List} of Paths (relative to local Maven repository root) at which the filesystem travesal should
+     *         start to cover all artifacts matching any of the given {@code includes}
+     */
+    static List<Path> gavSetToSubtrees(List<GavPattern> includes, String version) {
         if (includes.isEmpty()) {
             return Collections.emptyList();
         } else {
@@ -210,6 +512,46 @@ public class GavSetWalker {
         }
     }
 
+    /**
+     * @param gavSet the {@link GavSet} to walk through
+     * @param version the version of artifacts to look for
+     * @return a new {@link WalkPlan} covering all artifacts of the given {@code gavSet} and {@code version}
+     */
+    static WalkPlan plan(GavSet gavSet, String version) {
+        final List<GavPattern> walkIncludes = new ArrayList<>();
+        final List<GavPattern> listIncludes = new ArrayList<>();
+        for (GavPattern include : gavSet.getIncludes()) {
+            if (!include.versionPattern.matches(version)) {
+                /* cannot match anything in the given version */
+            } else if (include.groupIdPattern.getSource().contains(GavPattern.MULTI_WILDCARD)) {
+                walkIncludes.add(include);
+            } else {
+                listIncludes.add(include);
+            }
+        }
+        final List<Path> subtrees = gavSetToSubtrees(walkIncludes, version);
+        final Map<Path, List<GavPattern>> artifactListings = new LinkedHashMap<>();
+        final Set<Path> gavDirectories = new LinkedHashSet<>();
+        for (GavPattern include : listIncludes) {
+            final Path groupDir = EMPTY_PATH.resolve(include.groupIdPattern.getSource().replace('.', '/'));
+            if (isCovered(groupDir, subtrees)) {
+                continue;
+            }
+            final String artifactIdSource = include.artifactIdPattern.getSource();
+            if (artifactIdSource.contains(GavPattern.MULTI_WILDCARD)) {
+                List<GavPattern> patterns = artifactListings.get(groupDir);
+                if (patterns == null) {
+                    patterns = new ArrayList<>();
+                    artifactListings.put(groupDir, patterns);
+                }
+                patterns.add(include);
+            } else {
+                gavDirectories.add(groupDir.resolve(artifactIdSource).resolve(version));
+            }
+        }
+        return new WalkPlan(subtrees, artifactListings, gavDirectories);
+    }
+
     /**
      * @return a Path relative to local Maven repository
      */
@@ -249,30 +591,257 @@ public class GavSetWalker {
     }
 
     private final GavSet gavSet;
+    /** If not {@code null} the directories are listed from this index rather than from the file system */
+    private final LocalRepositoryIndex index;
     private final Path localMavenRepoRoot;
-    private final List<Path> subtrees;
+    private final WalkPlan plan;
     private final String version;
 
+    /**
+     * Creates a new {@link GavSetWalker} answering the queries from the given {@link LocalRepositoryIndex} instead of
+     * listing the directories on the file system.
+     *
+     * @param index the {@link LocalRepositoryIndex} of the local Maven repository to walk
+     * @param gavSet the {@link GavSet} to walk through
+     * @param version the version of artifacts to look for
+     * @since 5.0.2
+     */
+    public GavSetWalker(LocalRepositoryIndex index, GavSet gavSet, String version) {
+        this(index.getLocalRepositoryRoot(), gavSet, version, index);
+    }
+
     public GavSetWalker(Path localMavenRepoRoot, GavSet gavSet, String version) {
+        this(localMavenRepoRoot, gavSet, version, null);
+    }
+
+    private GavSetWalker(Path localMavenRepoRoot, GavSet gavSet, String version, LocalRepositoryIndex index) {
         super();
         this.localMavenRepoRoot = localMavenRepoRoot;
         this.gavSet = gavSet;
         this.version = version;
-        this.subtrees = gavSetToSubtrees(gavSet, version);
+        this.index = index;
+        this.plan = plan(gavSet, version);
     }
 
     /**
-     * Walk through the {@link GavtcPath}s belonging to the given {@link #gavSet}
+     * Adds the names of the subdirectories and files of the given {@code dir} to the given lists, either from
+     * {@link #index} or from the file system. The file system is used also if the {@link #index} could not
+     * {@link LocalRepositoryIndex#watch(Path) watch} the given {@code dir}. Symbolic links are not followed.
+     *
+     * @param dir relative to {@link #localMavenRepoRoot}
+     * @param subdirs the list to add the names of the subdirectories to
+     * @param files the list to add the names of the files to
+     * @throws UncheckedIOException on I/O errors
+     */
+    private void list(Path dir, List<String> subdirs, List<String> files) {
+        if (index != null && index.watch(dir)) {
+            index.list(dir, subdirs, files);
+            return;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(localMavenRepoRoot.resolve(dir))) {
+            for (Path child : children) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirs.add(child.getFileName().toString());
+                } else {
+                    files.add(child.getFileName().toString());
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            /* nothing to list */
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lists the files in the given version directory and notifies the {@code callback} about those that are artifacts
+     * belonging to {@link #gavSet}.
+     */
+    private void listGavDirectory(Path gavDir, Consumer<GavtcPath> callback) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(gavDir)) {
+            for (Path file : files) {
+                if (!Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                    acceptArtifact(localMavenRepoRoot, gavSet, version, file, callback);
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            /* nothing to list */
+        }
+    }
+
+    /**
+     * Expands the {@link WalkPlan#getArtifactListings()} of {@link #plan} by listing the group directories and adds
+     * the resulting version directories to the {@link WalkPlan#getGavDirectories()}.
+     *
+     * @return the version directories to list, relative to {@link #localMavenRepoRoot}
+     * @throws IOException on I/O errors
+     */
+    private Set<Path> resolveGavDirectories() throws IOException {
+        final Set<Path> gavDirectories = new LinkedHashSet<>(plan.getGavDirectories());
+        for (Map.Entry<Path, List<GavPattern>> listing : plan.getArtifactListings().entrySet()) {
+            final Path groupDir = listing.getKey();
+            final String groupId = groupDir.toString().replace(File.separatorChar, '.');
+            try (DirectoryStream<Path> artifactDirs = Files
+                    .newDirectoryStream(localMavenRepoRoot.resolve(groupDir))) {
+                for (Path artifactDir : artifactDirs) {
+                    final String artifactId = artifactDir.getFileName().toString();
+                    for (GavPattern pattern : listing.getValue()) {
+                        if (pattern.matches(groupId, artifactId)) {
+                            gavDirectories.add(groupDir.resolve(artifactId).resolve(version));
+                            break;
+                        }
+                    }
+                }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                /* nothing to list */
+            }
+        }
+        return gavDirectories;
+    }
+
+    /**
+     * @return a new lazy {@link Spliterator} over the {@link GavtcPath}s belonging to the given {@link #gavSet}
+     * @since 5.0.2
+     */
+    public Spliterator<GavtcPath> spliterator() {
+        final Deque<WalkItem> work = new ArrayDeque<>();
+        for (Path path : plan.getSubtrees()) {
+            work.add(new WalkItem(path, true, null));
+        }
+        for (Path gavDir : plan.getGavDirectories()) {
+            work.add(new WalkItem(gavDir, false, null));
+        }
+        for (Map.Entry<Path, List<GavPattern>> listing : plan.getArtifactListings().entrySet()) {
+            work.add(new WalkItem(listing.getKey(), false, listing.getValue()));
+        }
+        return new GavtcPathSpliterator(work);
+    }
+
+    /**
+     * Returns a lazy sequential {@link Stream} of the {@link GavtcPath}s belonging to the given {@link #gavSet}. The
+     * local Maven repository is traversed only as far as needed by the terminal operation, so short-circuiting
+     * operations like {@link Stream#anyMatch(java.util.function.Predicate)} do as little I/O as possible. Call
+     * {@link Stream#parallel()} on the result to traverse the subtrees in parallel. I/O errors are reported as
+     * {@link UncheckedIOException}s.
+     *
+     * @return a new {@link Stream}
+     * @since 5.0.2
+     */
+    public Stream<GavtcPath> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * {@link Flushable#flush() Flushes} the given {@code callback} if it is {@link Flushable}, so that e.g. a
+     * {@link BuildMetadataStore.StoreSha1Consumer} stores its last batch even if its caller never closes it.
+     *
+     * @param callback the {@link Consumer} to flush
+     * @throws IOException if thrown by {@link Flushable#flush()}
+     */
+    private static void flush(Consumer<GavtcPath> callback) throws IOException {
+        if (callback instanceof Flushable) {
+            ((Flushable) callback).flush();
+        }
+    }
+
+    /**
+     * Walk through the {@link GavtcPath}s belonging to the given {@link #gavSet}. If the given {@code callback} is
+     * {@link Flushable}, it gets {@link Flushable#flush() flushed} at the end of the walk.
      *
      * @param callback the {@link Consumer} to notify
      * @throws IOException
      */
     public void walk(Consumer<GavtcPath> callback) throws IOException {
-        FileVisitor<Path> visitor = new GavtcPathVisitor(localMavenRepoRoot, gavSet, version, callback);
-        for (Path path : subtrees) {
+        walkUnflushed(callback);
+        flush(callback);
+    }
+
+    private void walkUnflushed(Consumer<GavtcPath> callback) throws IOException {
+        if (index != null) {
+            try {
+                stream().forEach(callback::accept);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+        final List<Path> subtrees = plan.getSubtrees();
+        if (!subtrees.isEmpty()) {
+            final FileVisitor<Path> visitor = new GavtcPathVisitor(localMavenRepoRoot, gavSet, version, callback);
+            for (Path path : subtrees) {
+                final Path start = localMavenRepoRoot.resolve(path).normalize();
+                if (Files.exists(start)) {
+                    Files.walkFileTree(start, visitor);
+                }
+            }
+        }
+        for (Path gavDir : resolveGavDirectories()) {
+            listGavDirectory(localMavenRepoRoot.resolve(gavDir), callback);
+        }
+    }
+
+    /**
+     * Walk through the {@link GavtcPath}s belonging to the given {@link #gavSet} using the given {@link ForkJoinPool}.
+     * Each directory is listed by a separate {@link ForkJoinTask} so that the subtrees of distinct groupIds and
+     * artifactIds are walked in parallel. This method blocks until the whole walk is finished. If the given
+     * {@code callback} is {@link Flushable}, it gets {@link Flushable#flush() flushed} at the end of the walk.
+     *
+     * @param callback the {@link Consumer} to notify; must be thread safe as it gets called from the threads of the
+     *        given {@code pool} concurrently, as are {@link BuildMetadataStore.CheckSha1Consumer} and
+     *        {@link BuildMetadataStore.StoreSha1Consumer}
+     * @param pool the {@link ForkJoinPool} to run the walk in
+     * @throws IOException on I/O errors
+     * @since 5.0.2
+     */
+    public void walk(Consumer<GavtcPath> callback, ForkJoinPool pool) throws IOException {
+        if (index != null) {
+            /* no I/O involved */
+            walk(callback);
+            return;
+        }
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Path path : plan.getSubtrees()) {
             final Path start = localMavenRepoRoot.resolve(path).normalize();
-            if (Files.exists(start)) {
-                Files.walkFileTree(start, visitor);
+            tasks.add(new DirectoryTask(start, callback));
+        }
+        for (Path gavDir : resolveGavDirectories()) {
+            tasks.add(new GavDirectoryTask(localMavenRepoRoot.resolve(gavDir), callback));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        flush(callback);
+    }
+
+    /**
+     * Walk through the {@link GavtcPath}s belonging to the given {@link #gavSet} using up to {@code parallelism}
+     * threads. See {@link #walk(Consumer, ForkJoinPool)}.
+     *
+     * @param callback the {@link Consumer} to notify; must be thread safe if {@code parallelism} is greater than
+     *        {@code 1}
+     * @param parallelism the number of threads to use; {@code 1} or less means to walk in the calling thread as
+     *        {@link #walk(Consumer)} does
+     * @throws IOException on I/O errors
+     * @since 5.0.2
+     */
+    public void walk(Consumer<GavtcPath> callback, int parallelism) throws IOException {
+        if (parallelism <= 1) {
+            walk(callback);
+        } else {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                walk(callback, pool);
+            } finally {
+                pool.shutdown();
             }
         }
     }
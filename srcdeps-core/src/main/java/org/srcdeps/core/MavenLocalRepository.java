@@ -28,6 +28,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.srcdeps.core.fs.LocalRepositoryIndex;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -144,11 +145,54 @@ public class MavenLocalRepository {
         return new MavenLocalRepository(rootDirectory);
     }
 
+    /** If not {@code null}, {@link #exists(Gavtc)} is answered from this index */
+    private final LocalRepositoryIndex index;
+
     private Path rootDirectory;
 
+    /**
+     * Creates a new {@link MavenLocalRepository} answering the queries from the given {@link LocalRepositoryIndex}
+     * instead of the file system.
+     *
+     * @param index the {@link LocalRepositoryIndex} of the local Maven repository
+     * @since 5.0.2
+     */
+    public MavenLocalRepository(LocalRepositoryIndex index) {
+        super();
+        this.rootDirectory = index.getLocalRepositoryRoot();
+        this.index = index;
+    }
+
     public MavenLocalRepository(Path rootDirectory) {
         super();
         this.rootDirectory = rootDirectory;
+        this.index = null;
+    }
+
+    /**
+     * @param gavtc the artifact to look for
+     * @return {@code true} if the given artifact exists in this {@link MavenLocalRepository}; otherwise
+     *         {@code false}
+     * @since 5.0.2
+     */
+    public boolean exists(Gavtc gavtc) {
+        final Path path = resolve(gavtc);
+        if (index != null) {
+            final Path relPath = rootDirectory.relativize(path);
+            if (index.watch(relPath.getParent())) {
+                return index.getFile(relPath) != null;
+            }
+        }
+        return Files.exists(path);
+    }
+
+    /**
+     * @return the {@link LocalRepositoryIndex} this {@link MavenLocalRepository} answers the queries from or
+     *         {@code null} if it queries the file system directly
+     * @since 5.0.2
+     */
+    public LocalRepositoryIndex getIndex() {
+        return index;
     }
 
     public Path getRootDirectory() {
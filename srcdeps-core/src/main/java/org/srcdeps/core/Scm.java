@@ -26,6 +26,9 @@ import org.srcdeps.core.impl.scm.JGitScm;
  * {@code git:} as in {@code git:https://github.com/srcdeps/srcdeps-test-artifact.git}. This prefix is supposed to be
  * removed by the {@link Scm} implementation when actually checking out. Hence the effective URL that will be used by
  * {@link JGitScm} to checkout is {@code https://github.com/srcdeps/srcdeps-test-artifact.git}.
+ * <p>
+ * {@link #supports(BuildRequest)} allows for choosing among several {@link Scm} implementations supporting the same
+ * kind of URLs based on the configuration of the given {@link BuildRequest}.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  */
@@ -47,4 +50,15 @@ public interface Scm {
      *         {@code false} otherwise.
      */
     boolean supports(String url);
+
+    /**
+     * @param request the {@link BuildRequest} to decide about
+     * @return {@code true} if the present {@link Scm} implementation should be used to checkout the given
+     *         {@code request}, {@code false} otherwise. The default implementation delegates to
+     *         {@link #supports(String)} with the first of {@link BuildRequest#getScmUrls()}.
+     * @since 5.0.2
+     */
+    default boolean supports(BuildRequest request) {
+        return supports(request.getScmUrls().iterator().next());
+    }
 }
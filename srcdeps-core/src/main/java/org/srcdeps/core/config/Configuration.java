@@ -31,6 +31,7 @@ import java.util.Stack;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 
+import org.srcdeps.core.ArtifactDigester;
 import org.srcdeps.core.BuildRequest.Verbosity;
 import org.srcdeps.core.SrcVersion;
 import org.srcdeps.core.config.scalar.Duration;
@@ -52,6 +53,8 @@ import org.srcdeps.core.util.Equals.EqualsImplementations;
 public class Configuration {
     public static class Builder extends DefaultContainerNode<Node> {
 
+        final ScalarNode<String> artifactDigester = new DefaultScalarNode<>("artifactDigester",
+                ArtifactDigester.SHA1);
         final ScalarNode<SrcVersion> buildRef = new DefaultScalarNode<>("buildRef", SrcVersion.getBranchMaster());
         final ScalarNode<Duration> buildTimeout = new DefaultScalarNode<>("buildTimeout", Duration.maxValue());
         final ScalarNode<Pattern> buildVersionPattern = new DefaultScalarNode<>("buildVersionPattern", null,
@@ -90,6 +93,7 @@ public class Configuration {
             super("srcdeps");
             addChildren( //
                     configModelVersion, //
+                    artifactDigester, //
                     encoding, //
                     forwardProperties, //
                     forwardAsMasterConfig, //
@@ -123,6 +127,7 @@ public class Configuration {
 
             Configuration result = new Configuration( //
                     configModelVersion.getValue(), //
+                    artifactDigester.getValue(), //
                     forwardAsMasterConfig.getValue(), Collections.unmodifiableList(repos), //
                     sourcesDirectory.getValue(), //
                     skip.getValue(), //
@@ -133,6 +138,16 @@ public class Configuration {
             return result;
         }
 
+        /**
+         * @param value the name of the {@link ArtifactDigester} algorithm, such as {@code sha1} or {@code xxh64}
+         * @return this {@link Builder}
+         * @since 5.0.2
+         */
+        public Builder artifactDigester(String value) {
+            this.artifactDigester.setValue(value);
+            return this;
+        }
+
         public Builder buildRef(SrcVersion value) {
             this.buildRef.setValue(value);
             return this;
@@ -310,6 +325,7 @@ public class Configuration {
         return SUPPORTED_CONFIG_MODEL_VERSIONS;
     }
 
+    private final String artifactDigester;
     private final String configModelVersion;
     private final boolean forwardAsMasterConfig;
     private final Set<String> forwardProperties;
@@ -319,11 +335,12 @@ public class Configuration {
     private final boolean skip;
     private final Path sourcesDirectory;
 
-    private Configuration(String configModelVersion, boolean forwardAsMasterConfig, List<ScmRepository> repositories,
-            Path sourcesDirectory, boolean skip, Set<String> forwardPropertyNames,
+    private Configuration(String configModelVersion, String artifactDigester, boolean forwardAsMasterConfig,
+            List<ScmRepository> repositories, Path sourcesDirectory, boolean skip, Set<String> forwardPropertyNames,
             Map<String, String> forwardProperties, Maven maven) {
         super();
         this.configModelVersion = configModelVersion;
+        this.artifactDigester = artifactDigester;
         this.forwardAsMasterConfig = forwardAsMasterConfig;
         this.repositories = repositories;
         this.sourcesDirectory = sourcesDirectory;
@@ -342,6 +359,11 @@ public class Configuration {
         if (getClass() != obj.getClass())
             return false;
         Configuration other = (Configuration) obj;
+        if (artifactDigester == null) {
+            if (other.artifactDigester != null)
+                return false;
+        } else if (!artifactDigester.equals(other.artifactDigester))
+            return false;
         if (configModelVersion == null) {
             if (other.configModelVersion != null)
                 return false;
@@ -374,6 +396,15 @@ public class Configuration {
         return true;
     }
 
+    /**
+     * @return the name of the algorithm of the {@link ArtifactDigester} to use for computing the digests of the
+     *         artifacts in the local Maven repository, see {@link ArtifactDigester#forAlgorithm(String)}
+     * @since 5.0.2
+     */
+    public String getArtifactDigester() {
+        return artifactDigester;
+    }
+
     /**
      * @return the version of the configuration model
      */
@@ -437,6 +468,7 @@ public class Configuration {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + ((artifactDigester == null) ? 0 : artifactDigester.hashCode());
         result = prime * result + ((configModelVersion == null) ? 0 : configModelVersion.hashCode());
         result = prime * result + (forwardAsMasterConfig ? 1231 : 1237);
         result = prime * result + ((forwardProperties == null) ? 0 : forwardProperties.hashCode());
@@ -460,7 +492,8 @@ public class Configuration {
 
     @Override
     public String toString() {
-        return "Configuration [configModelVersion=" + configModelVersion + ", forwardAsMasterConfig="
+        return "Configuration [artifactDigester=" + artifactDigester + ", configModelVersion=" + configModelVersion
+                + ", forwardAsMasterConfig="
                 + forwardAsMasterConfig + ", forwardPropertyNames=" + forwardProperties + ", maven=" + maven
                 + ", repositories=" + repositories + ", skip=" + skip + ", sourcesDirectory=" + sourcesDirectory + "]";
     }
@@ -50,7 +50,12 @@ public class ScmRepository {
         final ScalarNode<Boolean> addDefaultBuildArguments = new DefaultScalarNode<>("addDefaultBuildArguments",
                 Boolean.TRUE);
 
+        final ScalarNode<Duration> branchFetchTtl = new DefaultScalarNode<>("branchFetchTtl", Duration.zero());
         final ListOfScalarsNode<String> buildArguments = new DefaultListOfScalarsNode<>("buildArguments", String.class);
+        final ScalarNode<Integer> buildDirectoryPoolSize = new DefaultScalarNode<>("buildDirectoryPoolSize",
+                Integer.valueOf(Runtime.getRuntime().availableProcessors()));
+        final ScalarNode<Duration> buildDirectoryWaitTimeout = new DefaultScalarNode<>("buildDirectoryWaitTimeout",
+                Duration.of("10m"));
         final ScalarNode<SrcVersion> buildRef = new DefaultScalarNode<SrcVersion>("buildRef", SrcVersion.class) {
 
             @Override
@@ -114,6 +119,7 @@ public class ScmRepository {
         };
 
         final ListOfScalarsNode<String> excludes = new DefaultListOfScalarsNode<>("excludes", String.class);
+        final ScalarNode<Boolean> gitCli = new DefaultScalarNode<>("gitCli", Boolean.FALSE);
         final ScmRepositoryGradle.Builder gradle = ScmRepositoryGradle.builder();
         final ListOfScalarsNode<String> includes = new DefaultListOfScalarsNode<>("includes", String.class);
         final ScalarNode<Boolean> logToConsole = new DefaultScalarNode<Boolean>("logToConsole", Boolean.class) {
@@ -147,6 +153,8 @@ public class ScmRepository {
 
         };
         final ScmRepositoryMaven.Builder maven = ScmRepositoryMaven.builder();
+        final ScalarNode<Boolean> raceUrls = new DefaultScalarNode<>("raceUrls", Boolean.FALSE);
+        final ScalarNode<Boolean> shallowFetch = new DefaultScalarNode<>("shallowFetch", Boolean.FALSE);
         final ScalarNode<Boolean> skipTests = new DefaultScalarNode<>("skipTests", Boolean.TRUE);
 
         final ListOfScalarsNode<String> urls = new DefaultListOfScalarsNode<>("urls", String.class);
@@ -174,6 +182,12 @@ public class ScmRepository {
                     includes, //
                     excludes, //
                     urls, //
+                    shallowFetch, //
+                    raceUrls, //
+                    gitCli, //
+                    branchFetchTtl, //
+                    buildDirectoryPoolSize, //
+                    buildDirectoryWaitTimeout, //
                     buildArguments, //
                     addDefaultBuildArguments, //
                     skipTests, //
@@ -209,11 +223,22 @@ public class ScmRepository {
                     logToConsole.getValue(), //
                     verbosity.getValue(), //
                     buildRef.getValue(), //
-                    buildVersionPattern.getValue() //
+                    buildVersionPattern.getValue(), //
+                    shallowFetch.getValue(), //
+                    raceUrls.getValue(), //
+                    branchFetchTtl.getValue(), //
+                    gitCli.getValue(), //
+                    buildDirectoryPoolSize.getValue(), //
+                    buildDirectoryWaitTimeout.getValue() //
             );
             return result;
         }
 
+        public Builder branchFetchTtl(Duration branchFetchTtl) {
+            this.branchFetchTtl.setValue(branchFetchTtl);
+            return this;
+        }
+
         public Builder buildArgument(String buildArgument) {
             this.buildArguments.add(buildArgument);
             return this;
@@ -224,6 +249,16 @@ public class ScmRepository {
             return this;
         }
 
+        public Builder buildDirectoryPoolSize(int buildDirectoryPoolSize) {
+            this.buildDirectoryPoolSize.setValue(buildDirectoryPoolSize);
+            return this;
+        }
+
+        public Builder buildDirectoryWaitTimeout(Duration buildDirectoryWaitTimeout) {
+            this.buildDirectoryWaitTimeout.setValue(buildDirectoryWaitTimeout);
+            return this;
+        }
+
         public Builder buildRef(SrcVersion value) {
             this.buildRef.setValue(value);
             return this;
@@ -264,6 +299,11 @@ public class ScmRepository {
             return children;
         }
 
+        public Builder gitCli(boolean gitCli) {
+            this.gitCli.setValue(gitCli);
+            return this;
+        }
+
         public Builder gradle(ScmRepositoryGradle.Builder gradle) {
             this.gradle.init(gradle);
             return this;
@@ -305,6 +345,11 @@ public class ScmRepository {
             return this;
         }
 
+        public Builder raceUrls(boolean raceUrls) {
+            this.raceUrls.setValue(raceUrls);
+            return this;
+        }
+
         /**
          * Kept for backwards compatibility, as {@code selectors} were renamed to {@code includes}
          *
@@ -316,6 +361,11 @@ public class ScmRepository {
             return this;
         }
 
+        public Builder shallowFetch(boolean shallowFetch) {
+            this.shallowFetch.setValue(shallowFetch);
+            return this;
+        }
+
         public Builder skipTests(boolean skipTests) {
             this.skipTests.setValue(skipTests);
             return this;
@@ -417,19 +467,25 @@ public class ScmRepository {
     }
 
     private final boolean addDefaultBuildArguments;
+    private final Duration branchFetchTtl;
     private final List<String> buildArguments;
+    private final int buildDirectoryPoolSize;
+    private final Duration buildDirectoryWaitTimeout;
     private final SrcVersion buildRef;
     private final Duration buildTimeout;
     private final Pattern buildVersionPattern;
     private final Charset encoding;
     private final List<String> excludes;
     private final GavSet gavSet;
+    private final boolean gitCli;
     private final ScmRepositoryGradle gradle;
     private final String id;
     private final List<String> includes;
     private final boolean logToConsole;
     private final boolean logToFile;
     private final ScmRepositoryMaven maven;
+    private final boolean raceUrls;
+    private final boolean shallowFetch;
     private final boolean skipTests;
     private final List<String> urls;
     private final Verbosity verbosity;
@@ -437,7 +493,9 @@ public class ScmRepository {
     private ScmRepository(String id, Charset encoding, List<String> includes, List<String> excludes, List<String> urls,
             List<String> buildArgs, boolean skipTests, boolean addDefaultBuildArguments, ScmRepositoryMaven maven,
             ScmRepositoryGradle gradle, Duration buildTimeout, boolean logToFile, boolean logToConsole,
-            Verbosity verbosity, SrcVersion buildRef, Pattern buildVersionPattern) {
+            Verbosity verbosity, SrcVersion buildRef, Pattern buildVersionPattern, boolean shallowFetch,
+            boolean raceUrls, Duration branchFetchTtl, boolean gitCli, int buildDirectoryPoolSize,
+            Duration buildDirectoryWaitTimeout) {
         super();
         this.id = id;
         this.includes = includes;
@@ -456,6 +514,12 @@ public class ScmRepository {
         this.verbosity = verbosity;
         this.buildVersionPattern = buildVersionPattern;
         this.buildRef = buildRef;
+        this.shallowFetch = shallowFetch;
+        this.raceUrls = raceUrls;
+        this.branchFetchTtl = branchFetchTtl;
+        this.gitCli = gitCli;
+        this.buildDirectoryPoolSize = buildDirectoryPoolSize;
+        this.buildDirectoryWaitTimeout = buildDirectoryWaitTimeout;
     }
 
     @Override
@@ -528,6 +592,24 @@ public class ScmRepository {
                 return false;
         } else if (!EqualsImplementations.equalsPattern().test(this.buildVersionPattern, other.buildVersionPattern))
             return false;
+        if (shallowFetch != other.shallowFetch)
+            return false;
+        if (raceUrls != other.raceUrls)
+            return false;
+        if (branchFetchTtl == null) {
+            if (other.branchFetchTtl != null)
+                return false;
+        } else if (!branchFetchTtl.equals(other.branchFetchTtl))
+            return false;
+        if (gitCli != other.gitCli)
+            return false;
+        if (buildDirectoryPoolSize != other.buildDirectoryPoolSize)
+            return false;
+        if (buildDirectoryWaitTimeout == null) {
+            if (other.buildDirectoryWaitTimeout != null)
+                return false;
+        } else if (!buildDirectoryWaitTimeout.equals(other.buildDirectoryWaitTimeout))
+            return false;
         if (skipTests != other.skipTests)
             return false;
         if (urls == null) {
@@ -540,6 +622,37 @@ public class ScmRepository {
         return true;
     }
 
+    /**
+     * @return the time span after which a branch fetched from this {@link ScmRepository} by a previous build is
+     *         considered outdated and needs to be fetched again. Tags and revisions are immutable and thus never need
+     *         to be re-fetched once recorded in the {@link org.srcdeps.core.FetchLog}. {@link Duration#zero()} means
+     *         that branches are fetched anew in every build.
+     * @since 5.0.2
+     */
+    public Duration getBranchFetchTtl() {
+        return branchFetchTtl;
+    }
+
+    /**
+     * @return the maximal number of checkout directories to use for this {@link ScmRepository}; if all of them are
+     *         in use, the subsequent builds wait up to {@link #getBuildDirectoryWaitTimeout()} for any of them to get
+     *         free. Values {@code <= 0} mean that the number of directories is not limited. The default is the number
+     *         of the processors available to the current JVM
+     * @since 5.0.2
+     */
+    public int getBuildDirectoryPoolSize() {
+        return buildDirectoryPoolSize;
+    }
+
+    /**
+     * @return the maximal time to wait for a free checkout directory if all {@link #getBuildDirectoryPoolSize()}
+     *         directories are in use; the default is 10 minutes so that a build never waits forever
+     * @since 5.0.2
+     */
+    public Duration getBuildDirectoryWaitTimeout() {
+        return buildDirectoryWaitTimeout;
+    }
+
     /**
      * @return a {@link List} of arguments to append to the list of build tool specific default build arguments. To
      *         override the given # build tool's defaults, see {@link #isAddDefaultBuildArguments()}.
@@ -667,6 +780,12 @@ public class ScmRepository {
         result = prime * result + ((maven == null) ? 0 : maven.hashCode());
         result = prime * result + ((buildRef == null) ? 0 : buildRef.hashCode());
         result = prime * result + ((buildVersionPattern == null) ? 0 : buildVersionPattern.pattern().hashCode());
+        result = prime * result + (shallowFetch ? 1231 : 1237);
+        result = prime * result + (raceUrls ? 1231 : 1237);
+        result = prime * result + ((branchFetchTtl == null) ? 0 : branchFetchTtl.hashCode());
+        result = prime * result + (gitCli ? 1231 : 1237);
+        result = prime * result + buildDirectoryPoolSize;
+        result = prime * result + ((buildDirectoryWaitTimeout == null) ? 0 : buildDirectoryWaitTimeout.hashCode());
         result = prime * result + (skipTests ? 1231 : 1237);
         result = prime * result + ((urls == null) ? 0 : urls.hashCode());
         result = prime * result + ((verbosity == null) ? 0 : verbosity.hashCode());
@@ -684,6 +803,15 @@ public class ScmRepository {
         return addDefaultBuildArguments;
     }
 
+    /**
+     * @return {@code true} if {@code git:} URLs of this {@link ScmRepository} should be checked out using the native
+     *         {@code git} executable rather than JGit; {@code false} otherwise
+     * @since 5.0.2
+     */
+    public boolean isGitCli() {
+        return gitCli;
+    }
+
     /**
      * @return if {@code true} the stdin and stdout of the build process should be forwarded to the parent process'es
      *         console; otherwise the output is not forwarded to the parent process'es console
@@ -700,6 +828,32 @@ public class ScmRepository {
         return logToFile;
     }
 
+    /**
+     * If {@code true} and there are multiple {@link #getUrls()}, all of them will be probed in parallel and the first
+     * one advertising the requested {@link SrcVersion} will be used for the checkout. The remaining URLs are used as
+     * fallbacks, ordered by their past latency and failures. If {@code false}, the URLs are tried one after another
+     * in the given order.
+     *
+     * @return {@code true} or {@code false}
+     * @since 5.0.2
+     */
+    public boolean isRaceUrls() {
+        return raceUrls;
+    }
+
+    /**
+     * If {@code true} and the requested {@link SrcVersion} is immutable (a tag or a revision), only the given tag or
+     * commit will be fetched from the remote repository rather than the whole history of all its branches. If the
+     * remote repository does not allow fetching single commits, srcdeps falls back to fetching all branches. The
+     * default is {@code false}.
+     *
+     * @return {@code true} or {@code false}
+     * @since 5.0.2
+     */
+    public boolean isShallowFetch() {
+        return shallowFetch;
+    }
+
     /**
      * If {@code true} no tests will be run when building a dependency. For dependencies built with Maven, this accounts
      * to adding {@code -DskipTests} to the {@code mvn} arguments.
@@ -717,7 +871,12 @@ public class ScmRepository {
                 + buildTimeout + ", encoding=" + encoding + ", excludes=" + excludes + ", gavSet=" + gavSet
                 + ", gradle=" + gradle + ", id=" + id + ", includes=" + includes + ", maven=" + maven + ", skipTests="
                 + skipTests + ", urls=" + urls + ", verbosity=" + verbosity + ", buildRef=" + buildRef
-                + ", buildVersionPattern=" + buildVersionPattern + "]";
+                + ", buildVersionPattern=" + buildVersionPattern + ", shallowFetch=" + shallowFetch
+                + ", raceUrls=" + raceUrls
+                + ", branchFetchTtl=" + branchFetchTtl
+                + ", gitCli=" + gitCli
+                + ", buildDirectoryPoolSize=" + buildDirectoryPoolSize
+                + ", buildDirectoryWaitTimeout=" + buildDirectoryWaitTimeout + "]";
     }
 
 }
@@ -38,6 +38,7 @@ public class ScmRepositoryMaven {
         final ScalarNode<Boolean> excludeNonRequired = new DefaultScalarNode<>("excludeNonRequired", Boolean.FALSE);
         final ScalarNode<Boolean> includeRequired = new DefaultScalarNode<>("includeRequired", Boolean.FALSE);
         final ListOfScalarsNode<String> includes = new DefaultListOfScalarsNode<>("includes", String.class);
+        final ScalarNode<Boolean> sparseCheckout = new DefaultScalarNode<>("sparseCheckout", Boolean.FALSE);
         ScalarNode<Boolean> useVersionsMavenPlugin = new DefaultScalarNode<Boolean>("useVersionsMavenPlugin", null,
                 Boolean.class) {
 
@@ -74,7 +75,7 @@ public class ScmRepositoryMaven {
         public Builder() {
             super("maven");
             addChildren(versionsMavenPluginVersion, useVersionsMavenPlugin, includeRequired, includes,
-                    excludeNonRequired);
+                    excludeNonRequired, sparseCheckout);
         }
 
         public ScmRepositoryMaven build() {
@@ -82,7 +83,8 @@ public class ScmRepositoryMaven {
                     useVersionsMavenPlugin.getValue(), //
                     includes.asListOfValues(), //
                     includeRequired.getValue(), //
-                    excludeNonRequired.getValue());
+                    excludeNonRequired.getValue(), //
+                    sparseCheckout.getValue());
         }
 
         public Builder commentBefore(String value) {
@@ -115,6 +117,11 @@ public class ScmRepositoryMaven {
             return this;
         }
 
+        public Builder sparseCheckout(boolean value) {
+            this.sparseCheckout.setValue(value);
+            return this;
+        }
+
         public Builder useVersionsMavenPlugin(boolean useVersionsMavenPlugin) {
             this.useVersionsMavenPlugin.setValue(useVersionsMavenPlugin);
             return this;
@@ -137,17 +144,20 @@ public class ScmRepositoryMaven {
 
     private final List<String> includes;
 
+    private final boolean sparseCheckout;
+
     private final boolean useVersionsMavenPlugin;
 
     private final String versionsMavenPluginVersion;
 
     public ScmRepositoryMaven(String versionsMavenPluginVersion, boolean useVersionsMavenPlugin, List<String> includes,
-            boolean includeRequired, boolean excludeNonRequired) {
+            boolean includeRequired, boolean excludeNonRequired, boolean sparseCheckout) {
         super();
         this.versionsMavenPluginVersion = versionsMavenPluginVersion;
         this.includes = includes;
         this.includeRequired = includeRequired;
         this.excludeNonRequired = excludeNonRequired;
+        this.sparseCheckout = sparseCheckout;
         this.useVersionsMavenPlugin = useVersionsMavenPlugin;
     }
 
@@ -169,6 +179,8 @@ public class ScmRepositoryMaven {
                 return false;
         } else if (!includes.equals(other.includes))
             return false;
+        if (sparseCheckout != other.sparseCheckout)
+            return false;
         if (useVersionsMavenPlugin != other.useVersionsMavenPlugin)
             return false;
         if (versionsMavenPluginVersion == null) {
@@ -212,6 +224,7 @@ public class ScmRepositoryMaven {
         result = prime * result + (excludeNonRequired ? 1231 : 1237);
         result = prime * result + (includeRequired ? 1231 : 1237);
         result = prime * result + ((includes == null) ? 0 : includes.hashCode());
+        result = prime * result + (sparseCheckout ? 1231 : 1237);
         result = prime * result + (useVersionsMavenPlugin ? 1231 : 1237);
         result = prime * result + ((versionsMavenPluginVersion == null) ? 0 : versionsMavenPluginVersion.hashCode());
         return result;
@@ -260,6 +273,23 @@ public class ScmRepositoryMaven {
         return includeRequired;
     }
 
+    /**
+     * If this method returns {@code true} and {@link #getIncludes()} returns a non-empty list, {@code srcdeps} will
+     * materialize only the directories of the modules from the closure of {@link #getIncludes()} (see
+     * {@link #isExcludeNonRequired()} for how the closure is computed) and all {@code pom.xml} files in the working
+     * tree of the dependency project. Otherwise, the whole tree gets checked out.
+     * <p>
+     * Sparse checkout is only supported with {@link ScmRepository#isGitCli()}.
+     *
+     * @return {@code true} or {@code false}
+     * @see #getIncludes()
+     * @see MavenSourceTree#computeModuleClosure(java.util.Collection, java.util.function.Predicate)
+     * @since 5.0.2
+     */
+    public boolean isSparseCheckout() {
+        return sparseCheckout;
+    }
+
     /**
      * Tells which tool should be used to set versions in source trees to prepare them for the building of a dependency.
      * If {@code true} the versions will be set using {@code mvn versions:set -DnewVersion=...}; otherwise srcdep's own
@@ -274,8 +304,8 @@ public class ScmRepositoryMaven {
     @Override
     public String toString() {
         return "ScmRepositoryMaven [excludeNonRequired=" + excludeNonRequired + ", includeRequired=" + includeRequired
-                + ", includes=" + includes + ", versionsMavenPluginVersion=" + versionsMavenPluginVersion
-                + ", useVersionsMavenPlugin=" + useVersionsMavenPlugin + "]";
+                + ", includes=" + includes + ", sparseCheckout=" + sparseCheckout + ", versionsMavenPluginVersion="
+                + versionsMavenPluginVersion + ", useVersionsMavenPlugin=" + useVersionsMavenPlugin + "]";
     }
 
 }
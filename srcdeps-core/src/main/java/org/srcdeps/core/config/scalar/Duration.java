@@ -31,6 +31,8 @@ public final class Duration {
     private static final Duration MAX_VALUE = new Duration(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
     private static final Map<TimeUnit, String> UNIT_TO_STRING_MAP;
+
+    private static final Duration ZERO = new Duration(0, TimeUnit.MILLISECONDS);
     static {
         EnumMap<TimeUnit, String> unitToString = new EnumMap<>(TimeUnit.class);
         unitToString.put(TimeUnit.NANOSECONDS, "ns");
@@ -50,6 +52,14 @@ public final class Duration {
         return MAX_VALUE;
     }
 
+    /**
+     * @return {@code 0} milliseconds.
+     * @since 5.0.2
+     */
+    public static Duration zero() {
+        return ZERO;
+    }
+
     /**
      * @param rawDuration a string consisting of a number and unit abbreviation. Valid unit abbreviations are liste in
      *                    {@link #UNIT_TO_STRING_MAP}.
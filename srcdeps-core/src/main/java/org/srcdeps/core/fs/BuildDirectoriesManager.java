@@ -19,12 +19,18 @@ package org.srcdeps.core.fs;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.srcdeps.core.BuildException;
 import org.srcdeps.core.SrcVersion;
 import org.srcdeps.core.config.ScmRepository;
+import org.srcdeps.core.fs.BuildSlotIndex.Slot;
 import org.srcdeps.core.util.SrcdepsCoreUtils;
 
 /**
@@ -36,7 +42,13 @@ import org.srcdeps.core.util.SrcdepsCoreUtils;
  * {@link ScmRepository#getIdAsPath()}. Hence if the {@code id} if the repository is {@code "org.project.component"}
  * then its build home will be {@code "${rootDirectory}/org/project/component"}. Under this build home, the
  * {@link #openBuildDirectory(Path)} method opens up to {@link #CONCURRENCY_THRESHOLD} subdirectories, as required by
- * the concurrent load of the present machine.
+ * the concurrent load of the present machine. All those subdirectories may share a single SCM object store located
+ * in {@link #getSharedObjectStore(Path)}. The fetches done by previous builds are recorded in
+ * {@link #getFetchLogFile()}.
+ * <p>
+ * The {@link SrcVersion} and the commit last checked out in each of the subdirectories are recorded via
+ * {@link #recordCheckout(PathLock, SrcVersion, String)} so that {@link #openBuildDirectory(String, Path, SrcVersion,
+ * String)} can prefer the subdirectories having the given version checked out and built already.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  */
@@ -49,8 +61,45 @@ public class BuildDirectoriesManager {
      */
     private static final int CONCURRENCY_THRESHOLD = 256;
 
+    /**
+     * The name of the file under {@link #rootDirectory} where the {@link org.srcdeps.core.FetchLog} persists the
+     * fetches done by the previous builds. The value is {@value #FETCH_LOG}.
+     */
+    private static final String FETCH_LOG = "fetch-log.properties";
+
     private static final Logger log = LoggerFactory.getLogger(BuildDirectoriesManager.class);
 
+    /**
+     * The name of the directory under the project build home where the SCM objects shared by all checkout directories
+     * are stored. The value is {@value #SHARED_OBJECT_STORE}.
+     */
+    private static final String SHARED_OBJECT_STORE = "shared.git";
+
+    /**
+     * The name of the file under the project build home where the {@link SrcVersion}s and commits last checked out in
+     * the individual subdirectories are recorded. The value is {@value #SLOT_INDEX}.
+     */
+    private static final String SLOT_INDEX = "slots.properties";
+
+    /**
+     * @param slot the {@link Slot} to rank
+     * @param srcVersion the {@link SrcVersion} to be checked out
+     * @param expectedCommitId the commit {@code srcVersion} is expected to resolve to or {@code null} if unknown
+     * @return {@code 0} if {@code slot} has the {@code expectedCommitId} checked out; {@code 1} if {@code slot} has the
+     *         same branch, tag or revision as {@code srcVersion} checked out; {@code 2} otherwise
+     */
+    private static int rank(Slot slot, SrcVersion srcVersion, String expectedCommitId) {
+        if (expectedCommitId != null && expectedCommitId.equals(slot.getCommitId())) {
+            return 0;
+        }
+        final SrcVersion slotVersion = slot.getSrcVersion();
+        if (slotVersion.getWellKnownType() == srcVersion.getWellKnownType()
+                && Objects.equals(slotVersion.getScmVersion(), srcVersion.getScmVersion())) {
+            return 1;
+        }
+        return 2;
+    }
+
     private final PathLocker<SrcVersion> pathLocker;
     private final Path rootDirectory;
 
@@ -60,6 +109,68 @@ public class BuildDirectoriesManager {
         this.pathLocker = pathLocker;
     }
 
+    /**
+     * @return <code>"${rootDirectory}/fetch-log.properties"</code> - the file where the
+     *         {@link org.srcdeps.core.FetchLog} should persist the fetches done by the builds using this
+     *         {@link BuildDirectoriesManager}
+     * @since 5.0.2
+     */
+    public Path getFetchLogFile() {
+        return rootDirectory.resolve(FETCH_LOG);
+    }
+
+    /**
+     * Returns the directory where all checkout directories opened via
+     * {@link #openBuildDirectory(String, Path, SrcVersion)} for the given {@code projectBuildHome} can keep their
+     * common SCM objects. The directory is not created by this method.
+     *
+     * @param projectBuildHome the given project's build home (something like
+     *        {@code Paths.get("org", "project", "component")}) relative to {@link #rootDirectory}
+     * @return <code>"${rootDirectory}/${projectBuildHome}/shared.git"</code>
+     * @since 5.0.2
+     */
+    public Path getSharedObjectStore(Path projectBuildHome) {
+        return rootDirectory.resolve(projectBuildHome).resolve(SHARED_OBJECT_STORE);
+    }
+
+    private static BuildSlotIndex slotIndex(Path scmRepositoryDir) {
+        return new BuildSlotIndex(scmRepositoryDir.resolve(SLOT_INDEX));
+    }
+
+    /**
+     * @param requestId the current request id
+     * @param scmRepositoryDir the project build home
+     * @param srcVersion the {@link SrcVersion} to be checked out
+     * @param expectedCommitId the commit {@code srcVersion} is expected to resolve to or {@code null} if unknown
+     * @param slotCount the number of slots to return
+     * @return the subdirectories {@code 0} to {@code slotCount - 1} of {@code scmRepositoryDir} in the order of
+     *         preference as described in {@link #openBuildDirectory(String, Path, SrcVersion, String)}
+     */
+    private static List<Path> orderSlots(String requestId, Path scmRepositoryDir, SrcVersion srcVersion,
+            String expectedCommitId, int slotCount) {
+        final List<Slot> slots = new ArrayList<>(slotIndex(scmRepositoryDir).load());
+        slots.sort((s1, s2) -> Integer.compare(rank(s1, srcVersion, expectedCommitId),
+                rank(s2, srcVersion, expectedCommitId)));
+        final Set<Integer> order = new LinkedHashSet<>();
+        for (Slot slot : slots) {
+            if (slot.getIndex() >= 0 && slot.getIndex() < slotCount) {
+                order.add(slot.getIndex());
+            }
+        }
+        for (int i = 0; i < slotCount; i++) {
+            order.add(i);
+        }
+        if (!slots.isEmpty()) {
+            log.debug("srcdeps[{}]: Recorded checkouts in [{}] in the order of preference: {}", requestId,
+                    scmRepositoryDir, slots);
+        }
+        final List<Path> result = new ArrayList<>(order.size());
+        for (int i : order) {
+            result.add(scmRepositoryDir.resolve(String.valueOf(i)));
+        }
+        return result;
+    }
+
     /**
      * Goes sequentially over integers form {@code 0} to {@link #CONCURRENCY_THRESHOLD} until it finds such {@code i} of
      * them which when appended to <code>"${rootDirectory}/${projectBuildHome}"</code>, makes up a new or existing
@@ -81,13 +192,41 @@ public class BuildDirectoriesManager {
      */
     public PathLock openBuildDirectory(String requestId, Path projectBuildHome, SrcVersion srcVersion)
             throws BuildException, IOException {
+        return openBuildDirectory(requestId, projectBuildHome, srcVersion, null);
+    }
+
+    /**
+     * Like {@link #openBuildDirectory(String, Path, SrcVersion)} but tries to lock the subdirectories known to contain
+     * a checkout close to the given {@code srcVersion} first so that the checkout and the build can reuse as much of
+     * the previous work as possible. The order, in which the subdirectories are tried is as follows:
+     * <ol>
+     * <li>The subdirectories having the {@code expectedCommitId} checked out
+     * <li>The subdirectories having the same branch, tag or revision as {@code srcVersion} checked out, typically an
+     * older commit of the same branch
+     * <li>Any other subdirectory recorded via {@link #recordCheckout(PathLock, SrcVersion, String)}
+     * <li>Any other subdirectory from {@code 0} to {@link #CONCURRENCY_THRESHOLD}
+     * </ol>
+     * Within the first three groups, the subdirectories checked out most recently are tried first.
+     *
+     * @param requestId the current request id
+     * @param projectBuildHome the given project's build home relative to {@link #rootDirectory}
+     * @param srcVersion the {@link SrcVersion} to be checked out
+     * @param expectedCommitId the commit {@code srcVersion} is expected to resolve to, e.g. as recorded in the
+     *        {@link org.srcdeps.core.FetchLog} by a previous build or {@code null} if unknown
+     * @return a {@link PathLock} whose holder is guaranteed to have an exclusive access to {@link PathLock#getPath()}
+     * @throws BuildException when no subdirectory could be locked
+     * @throws IOException if the project build home cannot be created
+     * @since 5.0.2
+     */
+    public PathLock openBuildDirectory(String requestId, Path projectBuildHome, SrcVersion srcVersion,
+            String expectedCommitId) throws BuildException, IOException {
 
         Path scmRepositoryDir = rootDirectory.resolve(projectBuildHome);
         SrcdepsCoreUtils.ensureDirectoryExists(scmRepositoryDir);
 
         Throwable lastException = null;
-        for (int i = 0; i < CONCURRENCY_THRESHOLD; i++) {
-            Path checkoutDirectoryPath = scmRepositoryDir.resolve(String.valueOf(i));
+        for (Path checkoutDirectoryPath : orderSlots(requestId, scmRepositoryDir, srcVersion, expectedCommitId,
+                CONCURRENCY_THRESHOLD)) {
             try {
                 return pathLocker.lockDirectory(requestId, checkoutDirectoryPath, srcVersion);
             } catch (CannotAcquireLockException e) {
@@ -101,4 +240,73 @@ public class BuildDirectoriesManager {
                 CONCURRENCY_THRESHOLD - 1, scmRepositoryDir), lastException);
 
     }
+
+    /**
+     * Like {@link #openBuildDirectory(String, Path, SrcVersion, String)} but uses only the subdirectories {@code 0}
+     * to {@code poolSize - 1} of the project build home. If all of them are locked, the current thread waits up to
+     * {@code timeoutMs} milliseconds for any of them to get unlocked rather than opening a new subdirectory, see
+     * {@link PathLocker#lockOneOf(String, List, Object, long)}. The threads waiting for the same project build home
+     * are served in the order of their arrival.
+     *
+     * @param requestId the current request id
+     * @param projectBuildHome the given project's build home relative to {@link #rootDirectory}
+     * @param srcVersion the {@link SrcVersion} to be checked out
+     * @param expectedCommitId the commit {@code srcVersion} is expected to resolve to or {@code null} if unknown
+     * @param poolSize the number of subdirectories to use, typically
+     *        {@link ScmRepository#getBuildDirectoryPoolSize()}; if {@code <= 0}, the behavior is the same as with
+     *        {@link #openBuildDirectory(String, Path, SrcVersion, String)}
+     * @param timeoutMs the maximal time to wait in milliseconds, typically
+     *        {@link ScmRepository#getBuildDirectoryWaitTimeout()}
+     * @return a {@link PathLock} whose holder is guaranteed to have an exclusive access to {@link PathLock#getPath()}
+     * @throws BuildException when no subdirectory could be locked within {@code timeoutMs} or when the current thread
+     *         was interrupted while waiting
+     * @throws IOException if the project build home cannot be created
+     * @since 5.0.2
+     */
+    public PathLock openBuildDirectory(String requestId, Path projectBuildHome, SrcVersion srcVersion,
+            String expectedCommitId, int poolSize, long timeoutMs) throws BuildException, IOException {
+        if (poolSize <= 0) {
+            return openBuildDirectory(requestId, projectBuildHome, srcVersion, expectedCommitId);
+        }
+        final Path scmRepositoryDir = rootDirectory.resolve(projectBuildHome);
+        SrcdepsCoreUtils.ensureDirectoryExists(scmRepositoryDir);
+        final int slotCount = Math.min(poolSize, CONCURRENCY_THRESHOLD);
+        try {
+            return pathLocker.lockOneOf(requestId,
+                    orderSlots(requestId, scmRepositoryDir, srcVersion, expectedCommitId, slotCount), srcVersion,
+                    timeoutMs);
+        } catch (CannotAcquireLockException e) {
+            throw new BuildException(
+                    String.format("Could not get PathLock for any of 0-%d subpaths of [%s] within %d ms",
+                            slotCount - 1, scmRepositoryDir, timeoutMs),
+                    e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException(String.format("Interrupted while waiting for any of 0-%d subpaths of [%s]",
+                    slotCount - 1, scmRepositoryDir), e);
+        }
+    }
+
+    /**
+     * Records that the given {@code commitId} was checked out for the given {@code srcVersion} in the directory locked
+     * by the given {@link PathLock} so that subsequent calls of {@link #openBuildDirectory(String, Path, SrcVersion,
+     * String)} can prefer that directory for the same {@code srcVersion}.
+     *
+     * @param lock the {@link PathLock} obtained from {@link #openBuildDirectory(String, Path, SrcVersion, String)}
+     * @param srcVersion the {@link SrcVersion} checked out
+     * @param commitId the commit checked out
+     * @throws IOException if the record cannot be persisted
+     * @since 5.0.2
+     */
+    public void recordCheckout(PathLock lock, SrcVersion srcVersion, String commitId) throws IOException {
+        final Path checkoutDirectoryPath = lock.getPath();
+        final int index;
+        try {
+            index = Integer.parseInt(checkoutDirectoryPath.getFileName().toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    String.format("[%s] is not a directory opened via openBuildDirectory()", checkoutDirectoryPath));
+        }
+        slotIndex(checkoutDirectoryPath.getParent()).put(index, srcVersion, commitId);
+    }
 }
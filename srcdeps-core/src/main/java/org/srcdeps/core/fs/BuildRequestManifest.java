@@ -0,0 +1,230 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only list of the build request hashes known to a {@link PersistentBuildMetadataStore} together with the
+ * times of their last use, so that the hashes can be listed by reading a single file rather than walking the whole
+ * directory tree of the store.
+ * <p>
+ * The first line of the file is a header that is written only when the whole content of the file is written at once
+ * by {@link #rewrite(Map)}. A file without the header was created by {@link #append(String, long)} and it cannot be
+ * assumed to be complete. Each other line consists of a CRC32 checksum and either {@code <hash> <lastUsedMillis>} or
+ * {@code <hash> -} for a removed hash; later lines win over the earlier ones. A partially written line (e.g. due to a
+ * crash) fails the checksum verification and is ignored.
+ * <p>
+ * Writing is serialized by a {@link LockedLogFile} and each append is forced to the storage device before the lock is
+ * released. Reading requires no locking. Once the file has more than {@link #COMPACTION_RATIO} times more lines than
+ * live hashes (and at least {@link #COMPACTION_MIN_LINES} lines), it is compacted on read.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+class BuildRequestManifest {
+
+    /**
+     * The manifest gets compacted once it has this many times more lines than live hashes. The value is
+     * {@value #COMPACTION_RATIO}.
+     */
+    static final int COMPACTION_RATIO = 2;
+
+    /** The manifest is never compacted when shorter than this number of lines. The value is {@value}. */
+    static final int COMPACTION_MIN_LINES = 1024;
+
+    private static final String HEADER = "# srcdeps build request manifest v1";
+
+    private static final Logger log = LoggerFactory.getLogger(BuildRequestManifest.class);
+
+    static final String MANIFEST_FILE = "manifest";
+
+    private static final String REMOVED = "-";
+
+    private static String toLine(String hash, String value) {
+        return LockedLogFile.toLine(hash + " " + value);
+    }
+
+    private final Path file;
+
+    private final LockedLogFile lockedFile;
+
+    BuildRequestManifest(Path rootDirectory) {
+        super();
+        this.file = rootDirectory.resolve(MANIFEST_FILE);
+        this.lockedFile = new LockedLogFile(file);
+    }
+
+    /**
+     * Records that the given {@code hash} was used at the given time.
+     *
+     * @param hash the build request hash
+     * @param lastUsed the time of the use in milliseconds since the epoch
+     */
+    void append(String hash, long lastUsed) {
+        appendLine(toLine(hash, String.valueOf(lastUsed)));
+    }
+
+    private void appendLine(String line) {
+        withLock(() -> lockedFile.append(line.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return the manifest file
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the manifest and compacts it if necessary.
+     *
+     * @return a {@link Map} from build request hashes to the times of their last use or {@code null} if the manifest
+     *         does not exist or it may be incomplete
+     */
+    Map<String, Long> read() {
+        final Map<String, Long> result = new TreeMap<>();
+        final int lineCount;
+        try {
+            lineCount = readInto(result);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read [%s]", file), e);
+        }
+        if (lineCount < 0) {
+            return null;
+        }
+        if (lineCount >= COMPACTION_MIN_LINES && lineCount > COMPACTION_RATIO * result.size()) {
+            log.debug("srcdeps: Compacting [{}] having {} lines out of which {} are live", file, lineCount,
+                    result.size());
+            return withLock(() -> {
+                final Map<String, Long> current = new TreeMap<>();
+                if (readInto(current) < 0) {
+                    return null;
+                }
+                write(current);
+                return current;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * @param result the {@link Map} to fill
+     * @return the number of lines read or {@code -1} if the manifest does not exist or lacks the header
+     * @throws IOException on read errors
+     */
+    private int readInto(Map<String, Long> result) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+        final String content = new String(bytes, StandardCharsets.UTF_8);
+        if (!content.startsWith(HEADER + "\n")) {
+            return -1;
+        }
+        int lineCount = 0;
+        int start = HEADER.length() + 1;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            final String line = content.substring(start, end);
+            start = end + 1;
+            lineCount++;
+            final String payload = LockedLogFile.verifyLine(line);
+            final int space = payload != null ? payload.indexOf(' ') : -1;
+            if (space <= 0) {
+                log.warn("srcdeps: Ignoring malformed line [{}] in [{}]", line, file);
+                continue;
+            }
+            final String hash = payload.substring(0, space);
+            final String value = payload.substring(space + 1);
+            if (REMOVED.equals(value)) {
+                result.remove(hash);
+            } else {
+                try {
+                    result.put(hash, Long.valueOf(value));
+                } catch (NumberFormatException e) {
+                    log.warn("srcdeps: Ignoring malformed line [{}] in [{}]", line, file);
+                }
+            }
+        }
+        return lineCount;
+    }
+
+    /**
+     * Records that the given {@code hash} was removed.
+     *
+     * @param hash the build request hash
+     */
+    void remove(String hash) {
+        appendLine(toLine(hash, REMOVED));
+    }
+
+    /**
+     * Replaces the manifest with the given entries.
+     *
+     * @param entries a {@link Map} from build request hashes to the times of their last use
+     */
+    void rewrite(Map<String, Long> entries) {
+        withLock(() -> {
+            write(entries);
+            return null;
+        });
+    }
+
+    /**
+     * Performs the given {@code action} while holding the lock of {@link #lockedFile}.
+     *
+     * @param action the action to perform
+     * @return the result of {@code action}
+     */
+    <T> T withLock(LockedLogFile.LockedAction<T> action) {
+        try {
+            return lockedFile.withLock(action);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not write to [%s]", file), e);
+        }
+    }
+
+    /**
+     * Writes the given entries to a new file that atomically replaces {@link #file}. The caller must hold the lock of
+     * {@link #lockedFile}.
+     *
+     * @param entries the entries to write
+     * @throws IOException on write errors
+     */
+    void write(Map<String, Long> entries) throws IOException {
+        lockedFile.rewrite(w -> {
+            w.write(HEADER);
+            w.write('\n');
+            for (Map.Entry<String, Long> en : entries.entrySet()) {
+                w.write(toLine(en.getKey(), String.valueOf(en.getValue())));
+            }
+        });
+    }
+
+}
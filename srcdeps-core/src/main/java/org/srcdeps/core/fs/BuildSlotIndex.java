@@ -0,0 +1,180 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.SrcVersion;
+
+/**
+ * A persistent record of the {@link SrcVersion} and commit last checked out in each of the numbered checkout
+ * directories (slots) under a project build home. The records are stored in a single properties file and the
+ * access to it is serialized by a {@link LockedLogFile} so that several processes can share it.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+class BuildSlotIndex {
+
+    /**
+     * An immutable record of the last checkout in a single slot.
+     */
+    static class Slot {
+        private static Slot parse(int index, String rawSlot) {
+            final String[] parts = rawSlot.split(" ");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new Slot(index, Long.parseLong(parts[0]), parts[1], SrcVersion.parse(parts[2]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private final long checkoutTime;
+        private final String commitId;
+        private final int index;
+        private final SrcVersion srcVersion;
+
+        Slot(int index, long checkoutTime, String commitId, SrcVersion srcVersion) {
+            super();
+            this.index = index;
+            this.checkoutTime = checkoutTime;
+            this.commitId = commitId;
+            this.srcVersion = srcVersion;
+        }
+
+        /**
+         * @return the time of the checkout in milliseconds since the epoch
+         */
+        public long getCheckoutTime() {
+            return checkoutTime;
+        }
+
+        /**
+         * @return the commit checked out in this slot
+         */
+        public String getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return the number of this slot, i.e. the name of the checkout directory under the project build home
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the {@link SrcVersion} checked out in this slot
+         */
+        public SrcVersion getSrcVersion() {
+            return srcVersion;
+        }
+
+        /**
+         * @return the value to store in the index file
+         */
+        String serialize() {
+            return checkoutTime + " " + commitId + " " + srcVersion;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + srcVersion + " @ " + commitId;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BuildSlotIndex.class);
+
+    private final Path indexFile;
+
+    private final LockedLogFile lockedFile;
+
+    BuildSlotIndex(Path indexFile) {
+        super();
+        this.indexFile = indexFile;
+        this.lockedFile = new LockedLogFile(indexFile);
+    }
+
+    /**
+     * @return the list of {@link Slot}s with the most recent checkout first
+     */
+    List<Slot> load() {
+        final Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            props.load(r);
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            log.warn(String.format("srcdeps: Could not read [%s]", indexFile), e);
+            return Collections.emptyList();
+        }
+        final List<Slot> result = new ArrayList<>(props.size());
+        for (String key : props.stringPropertyNames()) {
+            Slot slot = null;
+            try {
+                slot = Slot.parse(Integer.parseInt(key), props.getProperty(key));
+            } catch (NumberFormatException e) {
+                /* slot stays null */
+            }
+            if (slot == null) {
+                log.warn("srcdeps: Ignoring a malformed entry [{}] in [{}]", key, indexFile);
+            } else {
+                result.add(slot);
+            }
+        }
+        Collections.sort(result, Comparator.comparingLong(Slot::getCheckoutTime).reversed());
+        return result;
+    }
+
+    /**
+     * Records that the given {@code commitId} was checked out for the given {@code srcVersion} in the slot with the
+     * given {@code index} now.
+     *
+     * @param index the number of the slot
+     * @param srcVersion the {@link SrcVersion} checked out
+     * @param commitId the commit checked out
+     * @throws IOException if the index file cannot be read or written
+     */
+    void put(int index, SrcVersion srcVersion, String commitId) throws IOException {
+        final Slot slot = new Slot(index, System.currentTimeMillis(), commitId, srcVersion);
+        lockedFile.withLock(() -> {
+            final Properties props = new Properties();
+            for (Slot s : load()) {
+                props.setProperty(String.valueOf(s.getIndex()), s.serialize());
+            }
+            props.setProperty(String.valueOf(index), slot.serialize());
+            lockedFile.rewrite(w -> props.store(w, null));
+            return null;
+        });
+    }
+
+}
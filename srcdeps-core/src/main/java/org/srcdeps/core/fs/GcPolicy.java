@@ -0,0 +1,181 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import org.srcdeps.core.MavenLocalRepository;
+
+/**
+ * Limits the growth of a {@link PersistentBuildMetadataStore}. A build request entry is evicted by
+ * {@link PersistentBuildMetadataStore#gc(GcPolicy)} if
+ * <ul>
+ * <li>it was not used for longer than {@link #getMaxAgeMs()}, or</li>
+ * <li>any of the artifacts whose sha1 it stores does not exist in {@link #getLocalRepository()} anymore, or</li>
+ * <li>there are more than {@link #getMaxEntries()} more recently used entries, or</li>
+ * <li>the more recently used entries occupy more than {@link #getMaxTotalSize()} bytes.</li>
+ * </ul>
+ * An entry counts as used when it is stored or when its {@code commitId} is retrieved.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class GcPolicy {
+
+    public static class GcPolicyBuilder {
+        private long intervalMs = UNLIMITED;
+        private MavenLocalRepository localRepository;
+        private long maxAgeMs = UNLIMITED;
+        private int maxEntries = Integer.MAX_VALUE;
+        private long maxTotalSize = UNLIMITED;
+
+        private GcPolicyBuilder() {
+        }
+
+        public GcPolicy build() {
+            return new GcPolicy(maxAgeMs, maxEntries, maxTotalSize, localRepository, intervalMs);
+        }
+
+        /**
+         * @param intervalMs see {@link GcPolicy#getIntervalMs()}
+         * @return this {@link GcPolicyBuilder}
+         */
+        public GcPolicyBuilder intervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+            return this;
+        }
+
+        /**
+         * @param localRepository see {@link GcPolicy#getLocalRepository()}
+         * @return this {@link GcPolicyBuilder}
+         */
+        public GcPolicyBuilder localRepository(MavenLocalRepository localRepository) {
+            this.localRepository = localRepository;
+            return this;
+        }
+
+        /**
+         * @param maxAgeMs see {@link GcPolicy#getMaxAgeMs()}
+         * @return this {@link GcPolicyBuilder}
+         */
+        public GcPolicyBuilder maxAgeMs(long maxAgeMs) {
+            this.maxAgeMs = maxAgeMs;
+            return this;
+        }
+
+        /**
+         * @param maxEntries see {@link GcPolicy#getMaxEntries()}
+         * @return this {@link GcPolicyBuilder}
+         */
+        public GcPolicyBuilder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param maxTotalSize see {@link GcPolicy#getMaxTotalSize()}
+         * @return this {@link GcPolicyBuilder}
+         */
+        public GcPolicyBuilder maxTotalSize(long maxTotalSize) {
+            this.maxTotalSize = maxTotalSize;
+            return this;
+        }
+    }
+
+    private static final GcPolicy NONE = builder().build();
+
+    /** A value of the {@code long} limits meaning that there is no limit */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    public static GcPolicyBuilder builder() {
+        return new GcPolicyBuilder();
+    }
+
+    /**
+     * @return a {@link GcPolicy} evicting nothing and never run automatically
+     */
+    public static GcPolicy none() {
+        return NONE;
+    }
+
+    private final long intervalMs;
+    private final MavenLocalRepository localRepository;
+    private final long maxAgeMs;
+    private final int maxEntries;
+    private final long maxTotalSize;
+
+    private GcPolicy(long maxAgeMs, int maxEntries, long maxTotalSize, MavenLocalRepository localRepository,
+            long intervalMs) {
+        super();
+        this.maxAgeMs = maxAgeMs;
+        this.maxEntries = maxEntries;
+        this.maxTotalSize = maxTotalSize;
+        this.localRepository = localRepository;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * @return the minimal time in milliseconds between two automatic garbage collections performed by
+     *         {@link PersistentBuildMetadataStore} when new entries are stored; {@link #UNLIMITED} means no automatic
+     *         garbage collection
+     */
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * @return the {@link MavenLocalRepository} to check for the presence of the artifacts or {@code null} if the
+     *         presence of the artifacts should not be checked
+     */
+    public MavenLocalRepository getLocalRepository() {
+        return localRepository;
+    }
+
+    /**
+     * @return the time in milliseconds after which an unused entry is evicted or {@link #UNLIMITED}
+     */
+    public long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+
+    /**
+     * @return the maximal number of entries to keep
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the maximal sum of the sizes of the files of all entries in bytes or {@link #UNLIMITED}
+     */
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * @return {@code true} if {@link PersistentBuildMetadataStore} should collect the garbage automatically
+     */
+    public boolean isAutomatic() {
+        return intervalMs != UNLIMITED;
+    }
+
+    @Override
+    public String toString() {
+        return "GcPolicy [intervalMs=" + intervalMs + ", localRepository="
+                + (localRepository == null ? null : localRepository.getRootDirectory()) + ", maxAgeMs=" + maxAgeMs
+                + ", maxEntries=" + maxEntries + ", maxTotalSize=" + maxTotalSize + "]";
+    }
+
+}
@@ -0,0 +1,402 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactCache;
+import org.srcdeps.core.ArtifactDigester;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
+import org.srcdeps.core.impl.digest.ArtifactDigesters;
+
+/**
+ * An {@link ArtifactCache} storing the artifacts in the local filesystem, typically next to a
+ * {@link PersistentBuildMetadataStore}.
+ * <p>
+ * The content of each artifact is stored only once under {@code blobs/} in a file named after its digest. For each
+ * stored build, there is a file {@code entries/<hash-prefix>/<buildRequestIdHash>/<commitId>} listing the digests and
+ * {@link GavtcPath#getGavtcString() gavtc strings} of the artifacts. The blobs are hardlinked to the local Maven
+ * repository and back where the filesystem supports it and copied otherwise. Because a file hardlinked to the local
+ * Maven repository can get overwritten in place there, the digest of each blob is verified before it is restored. A
+ * blob whose digest does not match is deleted and the whole build is treated as not cached.
+ * <p>
+ * All files are written to temporary files first and then atomically moved to their final location so that several
+ * threads and processes can share the same cache.
+ * <p>
+ * Because the entries may come from a remote store, their content is not trusted: each digest must match
+ * {@link #DIGEST_PATTERN} and name a known algorithm, no gavtc segment may contain path separators or {@code ..} and
+ * the blob and artifact paths derived from them are checked to stay under their respective root directories before
+ * anything gets deleted, linked or copied.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class LocalArtifactCache implements ArtifactCache {
+
+    private static final String BLOBS = "blobs";
+
+    /** An optional lowercase algorithm tag followed by a lowercase hex digest of at least two characters */
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("^(?:([a-z0-9]+):)?[0-9a-f]{2,}$");
+
+    private static final String ENTRIES = "entries";
+
+    private static final Logger log = LoggerFactory.getLogger(LocalArtifactCache.class);
+
+    /**
+     * @param root the directory {@code path} must stay under
+     * @param path the path to check
+     * @return the normalized {@code path}
+     * @throws IllegalArgumentException if the normalized {@code path} is not under the normalized {@code root}
+     */
+    static Path checkUnder(Path root, Path path) {
+        final Path normalized = path.normalize();
+        if (!normalized.startsWith(root.normalize())) {
+            throw new IllegalArgumentException(String.format("[%s] is not under [%s]", path, root));
+        }
+        return normalized;
+    }
+
+    /**
+     * @param digest the digest to check
+     * @return {@code true} if the given {@code digest} is an untagged {@value ArtifactDigester#SHA1} digest or a digest
+     *         tagged with a known non-{@value ArtifactDigester#SHA1} algorithm, as returned by
+     *         {@link ArtifactDigester#tag(String, String)}; otherwise {@code false}
+     */
+    public static boolean isValidDigest(String digest) {
+        final Matcher m = DIGEST_PATTERN.matcher(digest);
+        if (!m.matches()) {
+            return false;
+        }
+        final String algorithm = m.group(1);
+        if (algorithm == null) {
+            return true;
+        } else if (ArtifactDigester.SHA1.equals(algorithm)) {
+            /* sha1 digests are never tagged */
+            return false;
+        }
+        try {
+            ArtifactDigesters.forAlgorithm(algorithm);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param gavtc the {@link Gavtc} to check
+     * @return {@code true} if none of the segments of the given {@code gavtc} can make
+     *         {@link MavenLocalRepository#resolve(Gavtc)} escape the root of the local Maven repository; otherwise
+     *         {@code false}
+     */
+    public static boolean isSafeGavtc(Gavtc gavtc) {
+        final String groupId = gavtc.getGroupId();
+        return isSafeSegment(groupId) && !groupId.startsWith(".") && !groupId.endsWith(".")
+                && isSafeSegment(gavtc.getArtifactId()) && isSafeSegment(gavtc.getVersion())
+                && isSafeSegment(gavtc.getType())
+                && (gavtc.getClassifier() == null || isSafeSegment(gavtc.getClassifier()));
+    }
+
+    private static boolean isSafeGavtc(String gavtc) {
+        try {
+            return isSafeGavtc(Gavtc.of(gavtc));
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSafeSegment(String segment) {
+        return !segment.isEmpty() && segment.indexOf('/') < 0 && segment.indexOf('\\') < 0
+                && !segment.contains("..");
+    }
+
+    /**
+     * Makes {@code target} have the same content as {@code source}, either by hardlinking or by copying. The
+     * {@code target} is replaced atomically if it exists.
+     *
+     * @param source the file to link or copy
+     * @param target the file to create or replace
+     * @throws IOException on I/O errors
+     */
+    static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        final Path tmp = target.resolveSibling(target.getFileName().toString() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                Files.createLink(tmp, source);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                /* e.g. a different filesystem */
+                Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private final Path blobsDirectory;
+
+    private final ArtifactDigester digester;
+
+    private final Path entriesDirectory;
+
+    private final Path rootDirectory;
+
+    public LocalArtifactCache(Path rootDirectory) {
+        this(rootDirectory, ArtifactDigesters.forAlgorithm(ArtifactDigester.getDefault().getAlgorithm()));
+    }
+
+    /**
+     * @param rootDirectory the directory to store the artifacts in
+     * @param digester the {@link ArtifactDigester} to compute the digests of newly stored artifacts; note that the
+     *        digests must not be read from any {@code .sha1} files
+     */
+    public LocalArtifactCache(Path rootDirectory, ArtifactDigester digester) {
+        super();
+        this.rootDirectory = rootDirectory;
+        this.blobsDirectory = rootDirectory.resolve(BLOBS);
+        this.entriesDirectory = rootDirectory.resolve(ENTRIES);
+        this.digester = digester;
+        try {
+            Files.createDirectories(rootDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Could not create %s.rootDirectory [%s]", this.getClass().getName(), rootDirectory));
+        }
+    }
+
+    /**
+     * @param digest a digest as returned by {@link ArtifactDigester#tag(String, String)}
+     * @return the path where the content having the given {@code digest} is stored
+     * @throws IllegalArgumentException if the given {@code digest} is not {@link #isValidDigest(String) valid}
+     */
+    public Path createBlobPath(String digest) {
+        if (!isValidDigest(digest)) {
+            throw new IllegalArgumentException(String.format("Invalid digest [%s]", digest));
+        }
+        final String fileName = digest.replace(':', '-');
+        final int colonPos = digest.indexOf(':');
+        final int prefixStart = colonPos + 1;
+        return checkUnder(blobsDirectory,
+                blobsDirectory.resolve(digest.substring(prefixStart, prefixStart + 2)).resolve(fileName));
+    }
+
+    /**
+     * @param buildRequestIdHash hash of a {@link org.srcdeps.core.BuildRequest}
+     * @param commitId the commitId
+     * @return the path of the file listing the artifacts built out of the given {@code buildRequestIdHash} and
+     *         {@code commitId}
+     */
+    public Path createEntryPath(String buildRequestIdHash, String commitId) {
+        return entriesDirectory.resolve(buildRequestIdHash.substring(0, 2)).resolve(buildRequestIdHash)
+                .resolve(commitId);
+    }
+
+    /**
+     * @return the directory where this {@link LocalArtifactCache} stores its data
+     */
+    public Path getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /**
+     * @param requestId the id of the current request, for logging purposes
+     * @param buildRequestIdHash hash of a {@link org.srcdeps.core.BuildRequest}
+     * @param commitId the commitId
+     * @return a {@link Map} from gavtc strings to digests or {@code null} if there is no such entry
+     */
+    public Map<String, String> readEntry(String requestId, String buildRequestIdHash, String commitId) {
+        return readEntry(requestId, createEntryPath(buildRequestIdHash, commitId));
+    }
+
+    /**
+     * @param requestId the id of the current request, for logging purposes
+     * @param entryPath the entry file to read
+     * @return a {@link Map} from gavtc strings to digests or {@code null} if there is no such file or if it is
+     *         malformed, i.e. if it contains any invalid digest or any unsafe gavtc, see
+     *         {@link #isValidDigest(String)} and {@link #isSafeGavtc(Gavtc)}
+     */
+    public static Map<String, String> readEntry(String requestId, Path entryPath) {
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(entryPath, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            log.debug("srcdeps[{}]: No cached artifacts in [{}]", requestId, entryPath);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read [%s]", entryPath), e);
+        }
+        final Map<String, String> result = new LinkedHashMap<>();
+        for (String line : lines) {
+            final int space = line.indexOf(' ');
+            if (space <= 0) {
+                log.warn("srcdeps[{}]: Ignoring malformed cache entry [{}]", requestId, entryPath);
+                return null;
+            }
+            final String digest = line.substring(0, space);
+            final String gavtc = line.substring(space + 1);
+            if (!isValidDigest(digest) || !isSafeGavtc(gavtc)) {
+                log.warn("srcdeps[{}]: Ignoring malformed cache entry [{}]: invalid line [{}]", requestId, entryPath,
+                        line);
+                return null;
+            }
+            result.put(gavtc, digest);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<GavtcPath> restore(String requestId, String buildRequestIdHash, String commitId,
+            MavenLocalRepository localRepository) {
+        final Map<String, String> entry = readEntry(requestId, buildRequestIdHash, commitId);
+        if (entry == null) {
+            return null;
+        }
+        /* Check all targets and verify all blobs before touching the local repository so that we restore either all
+         * or nothing */
+        final Path localRepositoryRoot = localRepository.getRootDirectory();
+        final List<GavtcPath> result = new ArrayList<>(entry.size());
+        for (Map.Entry<String, String> en : entry.entrySet()) {
+            final Path target;
+            try {
+                target = checkUnder(localRepositoryRoot, localRepository.resolve(Gavtc.of(en.getKey())));
+            } catch (IllegalArgumentException e) {
+                log.warn("srcdeps[{}]: Ignoring cached artifact [{}]: {}", requestId, en.getKey(), e.getMessage());
+                return null;
+            }
+            if (!verifyBlob(requestId, en.getValue())) {
+                return null;
+            }
+            result.add(GavtcPath.of(en.getKey(), target));
+        }
+        int i = 0;
+        for (Map.Entry<String, String> en : entry.entrySet()) {
+            final Path target = result.get(i++).getPath();
+            try {
+                linkOrCopy(createBlobPath(en.getValue()), target);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not restore [%s] to [%s]", en.getKey(), target), e);
+            }
+        }
+        log.info("srcdeps[{}]: Restored {} cached artifacts built out of commitId [{}] to [{}]", requestId,
+                result.size(), commitId, localRepository.getRootDirectory());
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(String requestId, String buildRequestIdHash, String commitId,
+            Collection<? extends GavtcPath> artifacts) {
+        final Path entryPath = createEntryPath(buildRequestIdHash, commitId);
+        final Path tmp = entryPath.resolveSibling(commitId + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(entryPath.getParent());
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (GavtcPath artifact : artifacts) {
+                    final String digest = ArtifactDigester.tag(digester.getAlgorithm(),
+                            digester.digest(artifact.getPath()));
+                    if (digest == null) {
+                        throw new NoSuchFileException(artifact.getPath().toString());
+                    }
+                    final Path blob = createBlobPath(digest);
+                    if (!Files.exists(blob)) {
+                        linkOrCopy(artifact.getPath(), blob);
+                    }
+                    w.write(digest);
+                    w.write(' ');
+                    w.write(artifact.getGavtcString());
+                    w.write('\n');
+                }
+            }
+            Files.move(tmp, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("srcdeps[{}]: Cached {} artifacts in [{}]", requestId, artifacts.size(), entryPath);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not store artifacts to [%s]", entryPath), e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.debug("srcdeps[{}]: Could not delete [{}]", requestId, tmp, e);
+            }
+        }
+    }
+
+    /**
+     * @param requestId the id of the current request, for logging purposes
+     * @param digest the expected digest of the blob
+     * @return {@code true} if the blob exists and has the expected {@code digest}; otherwise {@code false}
+     */
+    public boolean verifyBlob(String requestId, String digest) {
+        return verifyBlob(requestId, digest, createBlobPath(digest));
+    }
+
+    /**
+     * Deletes the given {@code blob} if it exists but it does not have the expected {@code digest}.
+     *
+     * @param requestId the id of the current request, for logging purposes
+     * @param digest the expected digest of the blob
+     * @param blob the file to verify
+     * @return {@code true} if the {@code blob} exists and has the expected {@code digest}; otherwise {@code false}
+     */
+    public static boolean verifyBlob(String requestId, String digest, Path blob) {
+        if (!isValidDigest(digest)) {
+            log.warn("srcdeps[{}]: Invalid digest [{}] of cached artifact [{}]", requestId, digest, blob);
+            return false;
+        }
+        final String algorithm = ArtifactDigester.algorithmOf(digest);
+        try {
+            final String actual = ArtifactDigester.tag(algorithm,
+                    ArtifactDigester.forAlgorithm(algorithm).digest(blob));
+            if (actual == null) {
+                log.debug("srcdeps[{}]: Cached artifact [{}] does not exist", requestId, blob);
+                return false;
+            } else if (!actual.equals(digest)) {
+                log.warn("srcdeps[{}]: Deleting cached artifact [{}] not matching its digest [{}]", requestId, blob,
+                        digest);
+                Files.deleteIfExists(blob);
+                return false;
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("srcdeps[{}]: Unknown digest algorithm [{}] of cached artifact [{}]", requestId, algorithm,
+                    blob);
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read [%s]", blob), e);
+        }
+    }
+
+}
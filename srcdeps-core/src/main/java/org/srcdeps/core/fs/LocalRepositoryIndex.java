@@ -0,0 +1,614 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the directories and files of a local Maven repository that lets {@link org.srcdeps.core.GavSetWalker}
+ * and {@link org.srcdeps.core.MavenLocalRepository} answer queries without touching the file system.
+ * <p>
+ * For each directory, the index keeps its last modification time, the names of its subdirectories and the names,
+ * sizes and last modification times of its files. The index is persisted to a single text file by
+ * {@link #save()} and {@link #close()}. {@link #open(Path, Path)} loads the index file and calls {@link #refresh()}
+ * which compares the last modification times of the directories with the stored ones and re-lists only the
+ * directories that changed. Hence a startup costs a {@code stat} per directory rather than a {@code stat} per file.
+ * While the JVM lives, {@link #startWatching()} keeps the index fresh incrementally through a {@link WatchService}.
+ * The directories are registered with the {@link WatchService} lazily, by {@link #watch(Path)}, so that only the
+ * directories actually queried count against the operating system limit of watches.
+ * <p>
+ * Each directory snapshot carries a version taken before the directory was stat-ed and listed. A snapshot replaces
+ * the indexed one only if it is not older, so that a slow {@link #refresh()} cannot overwrite a newer snapshot
+ * installed by the watcher thread in the meantime or vice versa.
+ * <p>
+ * Note that overwriting an existing file in place changes neither the set of files nor the last modification time of
+ * its directory; therefore the sizes and last modification times of the files in the index may be outdated if the
+ * index was not watching at the time of the change. The existence of files is always accurate after a
+ * {@link #refresh()}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class LocalRepositoryIndex implements Closeable {
+
+    /**
+     * An immutable snapshot of a single directory.
+     */
+    static class IndexedDirectory {
+        private final Map<String, IndexedFile> files;
+        private final long lastModified;
+        private final Set<String> subdirectories;
+        /** See {@link LocalRepositoryIndex#versions}; {@code 0} for the snapshots loaded from the index file */
+        private final long version;
+
+        IndexedDirectory(long version, long lastModified, Set<String> subdirectories,
+                Map<String, IndexedFile> files) {
+            super();
+            this.version = version;
+            this.lastModified = lastModified;
+            this.subdirectories = Collections.unmodifiableSet(subdirectories);
+            this.files = Collections.unmodifiableMap(files);
+        }
+    }
+
+    /**
+     * An immutable size and last modification time of a file.
+     */
+    public static class IndexedFile {
+        private final long lastModified;
+        private final long size;
+
+        IndexedFile(long size, long lastModified) {
+            super();
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the last modification time of the file in nanoseconds since the epoch, as seen when the file was
+         *         indexed
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the size of the file in bytes, as seen when the file was indexed
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return size + " " + lastModified;
+        }
+    }
+
+    private static final Path EMPTY_PATH = Paths.get("");
+
+    private static final String HEADER = "# srcdeps local repository index v1";
+
+    private static final Logger log = LoggerFactory.getLogger(LocalRepositoryIndex.class);
+
+    /**
+     * Loads the given {@code indexFile} if it exists and brings it up to date with the given
+     * {@code localRepositoryRoot}.
+     *
+     * @param localRepositoryRoot the root directory of the local Maven repository to index
+     * @param indexFile the file to load the index from and to save it to
+     * @return a new {@link LocalRepositoryIndex}
+     */
+    public static LocalRepositoryIndex open(Path localRepositoryRoot, Path indexFile) {
+        final LocalRepositoryIndex result = new LocalRepositoryIndex(localRepositoryRoot, indexFile);
+        result.load();
+        final int relisted = result.refresh();
+        log.debug("srcdeps: Re-listed {} changed directories of [{}] out of {} indexed in [{}]", relisted,
+                localRepositoryRoot, result.directories.size(), indexFile);
+        return result;
+    }
+
+    /** The indexed directories by their paths relative to {@link #localRepositoryRoot} */
+    private final Map<Path, IndexedDirectory> directories = new ConcurrentHashMap<>();
+
+    private final Path indexFile;
+
+    private final Path localRepositoryRoot;
+
+    /** Guards {@link #indexFile} */
+    private final LockedLogFile lockedFile;
+
+    /** The source of {@link IndexedDirectory#version}s */
+    private final AtomicLong versions = new AtomicLong();
+
+    /** The directories registered with {@link #watchService}, relative to {@link #localRepositoryRoot} */
+    private final Set<Path> watched = ConcurrentHashMap.newKeySet();
+
+    /** {@code true} after the first failed registration, so that the warning is logged only once */
+    private volatile boolean watchFailed;
+
+    private volatile WatchService watchService;
+
+    LocalRepositoryIndex(Path localRepositoryRoot, Path indexFile) {
+        super();
+        this.localRepositoryRoot = localRepositoryRoot;
+        this.indexFile = indexFile;
+        this.lockedFile = new LockedLogFile(indexFile);
+    }
+
+    /**
+     * Stops watching and saves the index.
+     */
+    @Override
+    public void close() {
+        stopWatching();
+        save();
+    }
+
+    /**
+     * @param dir a directory path relative to {@link #getLocalRepositoryRoot()}
+     * @return an unmodifiable {@link Map} from file names to {@link IndexedFile}s of the files in the given
+     *         {@code dir} or {@code null} if the given directory does not exist
+     */
+    public Map<String, IndexedFile> getFiles(Path dir) {
+        final IndexedDirectory d = directories.get(dir);
+        return d == null ? null : d.files;
+    }
+
+    /**
+     * @param file a file path relative to {@link #getLocalRepositoryRoot()}
+     * @return the {@link IndexedFile} or {@code null} if the given {@code file} does not exist
+     */
+    public IndexedFile getFile(Path file) {
+        final Path parent = file.getParent();
+        final IndexedDirectory d = directories.get(parent == null ? EMPTY_PATH : parent);
+        return d == null ? null : d.files.get(file.getFileName().toString());
+    }
+
+    /**
+     * @return the file where this {@link LocalRepositoryIndex} is saved
+     */
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return the root directory of the indexed local Maven repository
+     */
+    public Path getLocalRepositoryRoot() {
+        return localRepositoryRoot;
+    }
+
+    /**
+     * @param dir a directory path relative to {@link #getLocalRepositoryRoot()}
+     * @return an unmodifiable sorted {@link Set} of the names of the subdirectories of the given {@code dir} or
+     *         {@code null} if the given directory does not exist
+     */
+    public Set<String> getSubdirectories(Path dir) {
+        final IndexedDirectory d = directories.get(dir);
+        return d == null ? null : d.subdirectories;
+    }
+
+    /**
+     * @return the directories registered for watching so far, relative to {@link #getLocalRepositoryRoot()}
+     */
+    Set<Path> getWatched() {
+        return Collections.unmodifiableSet(watched);
+    }
+
+    /**
+     * @return {@code true} if {@link #startWatching()} was called and the watching has not stopped since; otherwise
+     *         {@code false}
+     */
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Adds the names of the subdirectories and files of the given {@code dir} to the given collections. Both are
+     * taken from a single consistent snapshot of the directory.
+     *
+     * @param dir a directory path relative to {@link #getLocalRepositoryRoot()}
+     * @param subdirectories the collection to add the names of the subdirectories to
+     * @param files the collection to add the names of the files to
+     * @return {@code true} if the given directory exists; otherwise {@code false}
+     */
+    public boolean list(Path dir, Collection<String> subdirectories, Collection<String> files) {
+        final IndexedDirectory d = directories.get(dir);
+        if (d == null) {
+            return false;
+        }
+        subdirectories.addAll(d.subdirectories);
+        files.addAll(d.files.keySet());
+        return true;
+    }
+
+    /**
+     * Lists the given directory on the file system and replaces its entry in {@link #directories} unless the entry
+     * there has a higher {@link IndexedDirectory#version} than the given {@code version}.
+     *
+     * @param dir relative to {@link #localRepositoryRoot}
+     * @param version taken from {@link #versions} before reading the {@code lastModified}
+     * @param lastModified the last modification time of the directory, read before listing it
+     * @return the {@link IndexedDirectory} in {@link #directories} after this call or {@code null} if the directory
+     *         does not exist
+     */
+    IndexedDirectory list(Path dir, long version, long lastModified) throws IOException {
+        final Set<String> subdirectories = new TreeSet<>();
+        final Map<String, IndexedFile> files = new TreeMap<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(localRepositoryRoot.resolve(dir))) {
+            for (Path child : children) {
+                final BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                final String name = child.getFileName().toString();
+                if (attrs.isDirectory()) {
+                    subdirectories.add(name);
+                } else {
+                    files.put(name, new IndexedFile(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)));
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            removeSubtree(dir);
+            return null;
+        }
+        final IndexedDirectory result = new IndexedDirectory(version, lastModified, subdirectories, files);
+        final IndexedDirectory[] replaced = new IndexedDirectory[1];
+        final IndexedDirectory current = directories.compute(dir, (k, old) -> {
+            if (old != null && old.version > version) {
+                /* a newer snapshot was installed while we were listing */
+                return old;
+            }
+            replaced[0] = old;
+            return result;
+        });
+        if (current != result) {
+            return current;
+        }
+        final IndexedDirectory old = replaced[0];
+        if (old != null) {
+            for (String subdir : old.subdirectories) {
+                if (!subdirectories.contains(subdir)) {
+                    removeSubtree(dir.resolve(subdir));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads {@link #indexFile} into {@link #directories}. A missing or malformed file leaves {@link #directories}
+     * empty, so that {@link #refresh()} rebuilds the whole index.
+     */
+    void load() {
+        directories.clear();
+        try (BufferedReader r = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(r.readLine())) {
+                log.warn("srcdeps: Ignoring [{}] with an unexpected header", indexFile);
+                return;
+            }
+            Path dir = null;
+            long lastModified = 0;
+            Set<String> subdirectories = null;
+            Map<String, IndexedFile> files = null;
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("d ")) {
+                    if (dir != null) {
+                        directories.put(dir, new IndexedDirectory(0, lastModified, subdirectories, files));
+                    }
+                    final int space = line.indexOf(' ', 2);
+                    lastModified = Long.parseLong(line.substring(2, space));
+                    dir = Paths.get(line.substring(space + 1));
+                    subdirectories = new TreeSet<>();
+                    files = new TreeMap<>();
+                } else if (line.startsWith("s ")) {
+                    subdirectories.add(line.substring(2));
+                } else if (line.startsWith("f ")) {
+                    final int space1 = line.indexOf(' ', 2);
+                    final int space2 = line.indexOf(' ', space1 + 1);
+                    files.put(line.substring(space2 + 1), new IndexedFile(Long.parseLong(line.substring(2, space1)),
+                            Long.parseLong(line.substring(space1 + 1, space2))));
+                } else {
+                    throw new IllegalStateException(String.format("Unexpected line [%s]", line));
+                }
+            }
+            if (dir != null) {
+                directories.put(dir, new IndexedDirectory(0, lastModified, subdirectories, files));
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("srcdeps: No local repository index [{}] yet", indexFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn(String.format("srcdeps: Ignoring malformed local repository index [%s]", indexFile), e);
+            directories.clear();
+        }
+    }
+
+    /**
+     * Handles the events of the given {@link WatchKey} by re-listing the watched directory. The newly created
+     * subdirectories get indexed and registered by {@link #watch(Path)} once they are queried.
+     */
+    private void onEvents(WatchKey key) throws IOException {
+        final Path absDir = (Path) key.watchable();
+        final Path dir = localRepositoryRoot.relativize(absDir);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            }
+        }
+        if (overflow) {
+            log.debug("srcdeps: Watch events lost for [{}]; refreshing the whole index", localRepositoryRoot);
+            refresh(EMPTY_PATH);
+        } else {
+            refreshDirectory(dir, true);
+        }
+    }
+
+    /**
+     * Brings this index up to date with the file system by comparing the last modification times of all directories
+     * with the indexed ones and re-listing the directories that changed.
+     *
+     * @return the number of directories re-listed
+     */
+    public int refresh() {
+        try {
+            return refresh(EMPTY_PATH);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not index [%s]", localRepositoryRoot), e);
+        }
+    }
+
+    /**
+     * @param start the directory to start at, relative to {@link #localRepositoryRoot}
+     * @return the number of directories re-listed
+     */
+    private int refresh(Path start) throws IOException {
+        int relisted = 0;
+        final Deque<Path> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            final Path dir = stack.pop();
+            final IndexedDirectory old = directories.get(dir);
+            final IndexedDirectory entry = refreshDirectory(dir, false);
+            if (entry != old) {
+                relisted++;
+            }
+            if (entry != null) {
+                for (String subdir : entry.subdirectories) {
+                    stack.push(dir.resolve(subdir));
+                }
+            }
+        }
+        return relisted;
+    }
+
+    /**
+     * Re-lists the given single directory if its last modification time differs from the indexed one or if
+     * {@code force} is {@code true}.
+     *
+     * @param dir the directory to refresh, relative to {@link #localRepositoryRoot}
+     * @param force if {@code true} the directory is re-listed even if its last modification time has not changed
+     * @return the {@link IndexedDirectory} in {@link #directories} after this call or {@code null} if the directory
+     *         does not exist
+     */
+    private IndexedDirectory refreshDirectory(Path dir, boolean force) throws IOException {
+        final long version = versions.incrementAndGet();
+        final long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(localRepositoryRoot.resolve(dir), LinkOption.NOFOLLOW_LINKS)
+                    .to(TimeUnit.NANOSECONDS);
+        } catch (NoSuchFileException e) {
+            removeSubtree(dir);
+            return null;
+        }
+        final IndexedDirectory entry = directories.get(dir);
+        if (entry == null || entry.lastModified != lastModified || force) {
+            return list(dir, version, lastModified);
+        }
+        return entry;
+    }
+
+    private void removeSubtree(Path dir) {
+        final IndexedDirectory removed = directories.remove(dir);
+        if (removed != null) {
+            for (String subdir : removed.subdirectories) {
+                removeSubtree(dir.resolve(subdir));
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the entry of the given directory is up to date and stays so. If {@link #isWatching()}, the
+     * given directory is registered with the {@link WatchService} unless it was registered before, and re-listed if
+     * it changed since it was indexed. Otherwise this is a no-op and the entry is as fresh as the last
+     * {@link #refresh()}.
+     * <p>
+     * If the registration fails, e.g. because the operating system limit of watches is exceeded, a warning is
+     * logged and {@code false} is returned, so that the caller can look at the file system directly.
+     *
+     * @param dir a directory path relative to {@link #getLocalRepositoryRoot()}
+     * @return {@code true} if the entry of the given {@code dir} in this index can be relied upon; {@code false} if
+     *         the given {@code dir} could not be registered for watching
+     * @since 5.0.2
+     */
+    public boolean watch(Path dir) {
+        final WatchService ws = watchService;
+        if (ws == null || watched.contains(dir)) {
+            return true;
+        }
+        try {
+            localRepositoryRoot.resolve(dir).register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.add(dir);
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            /* Not there; the next call will try to register again */
+            removeSubtree(dir);
+            return true;
+        } catch (ClosedWatchServiceException e) {
+            /* stopped in the meantime */
+            return true;
+        } catch (IOException e) {
+            if (!watchFailed) {
+                watchFailed = true;
+                log.warn(String.format("srcdeps: Could not watch [%s]; listing the directories that cannot be "
+                        + "watched on the file system", localRepositoryRoot.resolve(dir)), e);
+            } else {
+                log.debug("srcdeps: Could not watch [{}]: {}", dir, e.getMessage());
+            }
+            return false;
+        }
+        try {
+            /* catch the changes made before the registration */
+            refreshDirectory(dir, false);
+            return true;
+        } catch (IOException e) {
+            log.debug(String.format("srcdeps: Could not list [%s]", dir), e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes this index to {@link #getIndexFile()} atomically. Concurrent saves from several processes are
+     * serialized by a {@link LockedLogFile}.
+     */
+    public void save() {
+        try {
+            lockedFile.withLock(() -> {
+                lockedFile.rewrite(w -> {
+                    w.write(HEADER);
+                    w.write('\n');
+                    for (Map.Entry<Path, IndexedDirectory> en : new TreeMap<>(directories).entrySet()) {
+                        final IndexedDirectory d = en.getValue();
+                        w.write("d ");
+                        w.write(String.valueOf(d.lastModified));
+                        w.write(' ');
+                        w.write(en.getKey().toString());
+                        w.write('\n');
+                        for (String subdir : d.subdirectories) {
+                            w.write("s ");
+                            w.write(subdir);
+                            w.write('\n');
+                        }
+                        for (Map.Entry<String, IndexedFile> file : d.files.entrySet()) {
+                            w.write("f ");
+                            w.write(file.getValue().toString());
+                            w.write(' ');
+                            w.write(file.getKey());
+                            w.write('\n');
+                        }
+                    }
+                });
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not write [%s]", indexFile), e);
+        }
+    }
+
+    /**
+     * Creates a new {@link WatchService} and starts a daemon thread that keeps this index up to date with the
+     * changes notified by the {@link WatchService}. Only the directories affected by a change are re-listed. No
+     * directory is registered here: each gets registered by {@link #watch(Path)} when it is queried for the first
+     * time. Hence the number of watches stays proportional to the part of the local Maven repository actually used
+     * rather than to its total size, which matters both for the {@code inotify} limits on Linux and for the polling
+     * {@link WatchService} implementations, such as the one on macOS, whose costs grow with the number of registered
+     * directories.
+     *
+     * @throws IOException if the {@link WatchService} cannot be created
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        final WatchService ws = localRepositoryRoot.getFileSystem().newWatchService();
+        watchService = ws;
+        final Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    final WatchKey key = ws.take();
+                    try {
+                        onEvents(key);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn(String.format("srcdeps: Could not update the index of [%s]", localRepositoryRoot),
+                                e);
+                    } finally {
+                        if (!key.reset()) {
+                            /* the directory was removed; watch(Path) registers it again if it reappears */
+                            watched.remove(localRepositoryRoot.relativize((Path) key.watchable()));
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                /* stopped */
+            }
+        }, "srcdeps-local-repository-index");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.debug("srcdeps: Watching [{}]", localRepositoryRoot);
+    }
+
+    /**
+     * Stops the watching started by {@link #startWatching()}. A no-op if not watching.
+     */
+    public synchronized void stopWatching() {
+        final WatchService ws = watchService;
+        watchService = null;
+        watched.clear();
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                log.debug("srcdeps: Could not close the WatchService of [{}]", localRepositoryRoot, e);
+            }
+        }
+    }
+
+}
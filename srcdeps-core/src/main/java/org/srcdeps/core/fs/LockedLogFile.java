@@ -0,0 +1,200 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small text file shared by several threads and processes, such as an append-only log of checksummed lines or a
+ * properties file that is rewritten as a whole.
+ * <p>
+ * Writing is serialized by {@link #withLock(LockedAction)} that locks a sibling {@code <file>.lock} file both on the
+ * thread and filesystem level. {@link #append(byte[])} and {@link #rewrite(ContentWriter)} are meant to be called
+ * while holding that lock. Reading requires no locking because {@link #append(byte[])} only adds complete lines and
+ * {@link #rewrite(ContentWriter)} atomically replaces the file.
+ * <p>
+ * The lines written via {@link #toLine(String)} start with a CRC32 checksum of their payload so that a line partially
+ * written by a crashed process can be detected by {@link #verifyLine(String)}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public final class LockedLogFile {
+
+    /** Writes the whole content of the file */
+    public interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /** An action to perform while holding the lock */
+    public interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(LockedLogFile.class);
+
+    /** Serialize the access to the lock files within the current JVM; {@link FileLock}s work only across JVMs */
+    private static final Map<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    /**
+     * @param payload the bytes to compute the checksum of
+     * @return the CRC32 checksum of the given {@code payload} as eight lower case hex digits
+     */
+    public static String checksum(byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * @param payload the payload of the line; must not contain {@code '\n'}
+     * @return {@code <checksum> <payload>\n}
+     */
+    public static String toLine(String payload) {
+        return checksum(payload.getBytes(StandardCharsets.UTF_8)) + " " + payload + "\n";
+    }
+
+    /**
+     * @param line a line created by {@link #toLine(String)}, without the trailing {@code '\n'}
+     * @return the payload of the given {@code line} or {@code null} if the checksum does not match
+     */
+    public static String verifyLine(String line) {
+        final int checksumEnd = line.indexOf(' ');
+        if (checksumEnd <= 0) {
+            return null;
+        }
+        final String payload = line.substring(checksumEnd + 1);
+        return line.substring(0, checksumEnd).equals(checksum(payload.getBytes(StandardCharsets.UTF_8))) ? payload
+                : null;
+    }
+
+    private final Path file;
+
+    private final Path lockFile;
+
+    /**
+     * @param file the file to guard
+     */
+    public LockedLogFile(Path file) {
+        super();
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName().toString() + ".lock");
+    }
+
+    /**
+     * Appends the given {@code bytes} to {@link #file} and forces them to the storage device. If the file does not end
+     * with {@code '\n'} (e.g. due to a line partially written by a crashed process), a {@code '\n'} is written first
+     * so that {@code bytes} start on a new line. The caller must hold the lock.
+     *
+     * @param bytes the bytes to append, typically one or more complete lines
+     * @return the size of {@link #file} after the append
+     * @throws IOException on write errors
+     */
+    public long append(byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long end = ch.size();
+            if (end > 0) {
+                final ByteBuffer last = ByteBuffer.allocate(1);
+                ch.read(last, end - 1);
+                if (last.get(0) != '\n') {
+                    end += ch.write(ByteBuffer.wrap(new byte[] { '\n' }), end);
+                }
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                end += ch.write(buffer, end);
+            }
+            /* make the lines durable before the lock gets released */
+            ch.force(true);
+            return end;
+        }
+    }
+
+    /**
+     * @return the guarded file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the content produced by the given {@code contentWriter} to a temporary file, forces it to the storage
+     * device and atomically replaces {@link #file} with it. The caller must hold the lock.
+     *
+     * @param contentWriter produces the new content of {@link #file}
+     * @throws IOException on write errors
+     */
+    public void rewrite(ContentWriter contentWriter) throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName().toString() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                final Writer w = new BufferedWriter(
+                        new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8));
+                contentWriter.write(w);
+                w.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.debug("srcdeps: Could not delete [{}]", tmp, e);
+            }
+        }
+    }
+
+    /**
+     * Performs the given {@code action} while holding the lock on the sibling {@code <file>.lock} file. The parent
+     * directory of {@link #file} is created if necessary.
+     *
+     * @param action the action to perform
+     * @return the result of {@code action}
+     * @throws IOException if the lock cannot be acquired or if thrown by {@code action}
+     */
+    public <T> T withLock(LockedAction<T> action) throws IOException {
+        final Object monitor = monitors.computeIfAbsent(lockFile.toAbsolutePath().normalize(), k -> new Object());
+        synchronized (monitor) {
+            Files.createDirectories(file.getParent());
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE); FileLock lock = lockChannel.lock()) {
+                return action.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,495 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactDigester;
+import org.srcdeps.core.BuildMetadataStore;
+import org.srcdeps.core.FileStat;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.util.Consumer;
+
+/**
+ * A {@link BuildMetadataStore} that stores all its entries in a single append-only log file under
+ * {@link #rootDirectory}, rather than creating a file per entry like {@link PersistentBuildMetadataStore}.
+ * <p>
+ * Each entry is a single line consisting of a CRC32 checksum and a payload. The first line of the log is a header
+ * containing a random generation identifier that changes on each compaction. The entries are looked up in an
+ * in-memory index that is kept up to date by reading only the part of the log appended since the last read.
+ * <p>
+ * Appending is serialized by a {@link LockedLogFile} so that several threads and processes can share the same log.
+ * Each append is forced to the storage device before the lock is released. Reading requires no locking. A partially
+ * written entry (e.g. due to a crash) fails the checksum verification and is ignored.
+ * <p>
+ * Once the log is more than {@link #COMPACTION_RATIO} times larger than its live entries (and at least
+ * {@link #COMPACTION_MIN_SIZE} bytes long), it is compacted: the live entries are written to a new file that
+ * atomically replaces the old one.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class LogBuildMetadataStore implements BuildMetadataStore {
+
+    private static final String COMMIT_ID = "c";
+
+    /**
+     * The log gets compacted once it is this many times larger than its live entries. The value is
+     * {@value #COMPACTION_RATIO}.
+     */
+    static final int COMPACTION_RATIO = 2;
+
+    /**
+     * The log is never compacted when shorter than this number of bytes. The value is {@value #COMPACTION_MIN_SIZE}.
+     */
+    static final long COMPACTION_MIN_SIZE = 1024 * 1024;
+
+    private static final String HEADER_PREFIX = "# srcdeps build metadata log v1 ";
+
+    private static final Logger log = LoggerFactory.getLogger(LogBuildMetadataStore.class);
+
+    private static final String LOG_FILE = "build-metadata.log";
+
+    private static final String FILE_STAT = "t";
+
+    private static final String SHA1 = "s";
+
+    private static String key(String buildRequestIdHash, String type, String gavtcString) {
+        return gavtcString == null ? buildRequestIdHash + " " + type
+                : buildRequestIdHash + " " + type + " " + gavtcString;
+    }
+
+    private static byte[] toRecord(String key, String value) {
+        return LockedLogFile.toLine(key + " " + value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** See {@link #getArtifactDigester()} */
+    private final ArtifactDigester digester;
+
+    /** The key of the {@link BasicFileAttributes#fileKey()} of the log file as of the last read */
+    private Object fileKey;
+
+    /** The generation of the log file as of the last read */
+    private String generation;
+
+    /** The build request hashes in the order of their first appearance in the log */
+    private final Set<String> hashes = new LinkedHashSet<>();
+
+    /** The live entries in the order of their first appearance in the log */
+    private final Map<String, String> index = new LinkedHashMap<>();
+
+    /** The number of bytes of {@link #index} entries if they were written to a compacted log */
+    private long liveSize;
+
+    private final Path logFile;
+
+    private final LockedLogFile lockedLog;
+
+    /** The number of bytes of the log file read so far */
+    private long offset;
+
+    private final Path rootDirectory;
+
+    public LogBuildMetadataStore(Path rootDirectory) {
+        this(rootDirectory, ArtifactDigester.getDefault());
+    }
+
+    /**
+     * @param rootDirectory the directory to store the log in
+     * @param digester the {@link ArtifactDigester} to compute the digests of the artifacts with, typically
+     *        {@link ArtifactDigester#forConfiguration(org.srcdeps.core.config.Configuration)}
+     * @since 5.0.2
+     */
+    public LogBuildMetadataStore(Path rootDirectory, ArtifactDigester digester) {
+        super();
+        this.rootDirectory = rootDirectory;
+        this.digester = digester;
+        this.logFile = rootDirectory.resolve(LOG_FILE);
+        this.lockedLog = new LockedLogFile(logFile);
+        try {
+            Files.createDirectories(rootDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Could not create %s.rootDirectory [%s]", this.getClass().getName(), rootDirectory));
+        }
+    }
+
+    /**
+     * Appends the given entries to the log and compacts the log if necessary.
+     *
+     * @param entries the entries to append
+     */
+    private synchronized void append(Map<String, String> entries) {
+        try {
+            lockedLog.withLock(() -> {
+                refresh();
+                if (generation == null) {
+                    writeLog(new LinkedHashMap<String, String>());
+                }
+                final ByteArrayOutputStream records = new ByteArrayOutputStream();
+                for (Map.Entry<String, String> en : entries.entrySet()) {
+                    final byte[] record = toRecord(en.getKey(), en.getValue());
+                    records.write(record, 0, record.length);
+                }
+                offset = lockedLog.append(records.toByteArray());
+                for (Map.Entry<String, String> en : entries.entrySet()) {
+                    put(en.getKey(), en.getValue(), toRecord(en.getKey(), en.getValue()).length);
+                }
+                if (offset >= COMPACTION_MIN_SIZE && offset > COMPACTION_RATIO * liveSize) {
+                    log.debug("srcdeps: Compacting [{}] having {} bytes out of which {} bytes are live", logFile,
+                            offset, liveSize);
+                    writeLog(index);
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not write to [%s]", logFile), e);
+        }
+    }
+
+    /**
+     * Rewrites the log so that it contains only the live entries.
+     */
+    public synchronized void compact() {
+        try {
+            lockedLog.withLock(() -> {
+                refresh();
+                writeLog(index);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not compact [%s]", logFile), e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CheckSha1Consumer createCheckSha1Checker(String requestId, String buildRequestIdHash) {
+        return new CheckSha1Consumer(this, requestId, buildRequestIdHash);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StoreSha1Consumer createStoreSha1Consumer(String requestId, String buildRequestIdHash) {
+        return new StoreSha1Consumer(this, requestId, buildRequestIdHash);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ArtifactDigester getArtifactDigester() {
+        return digester;
+    }
+
+    /**
+     * @return the log file
+     */
+    Path getLogFile() {
+        return logFile;
+    }
+
+    private void put(String key, String value, int recordLength) {
+        final String oldValue = index.put(key, value);
+        if (oldValue != null) {
+            liveSize -= toRecord(key, oldValue).length;
+        }
+        liveSize += recordLength;
+        hashes.add(key.substring(0, key.indexOf(' ')));
+    }
+
+    /**
+     * Reads the part of the log appended since the last read. Reads the whole log if it was replaced by a compaction
+     * in the meantime.
+     *
+     * @throws IOException on read errors
+     */
+    private void refresh() throws IOException {
+        final BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(logFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            reset(null, null);
+            return;
+        }
+        if (generation != null && Objects.equals(attrs.fileKey(), fileKey) && attrs.size() == offset) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            final String header = readHeader(ch);
+            if (header == null) {
+                /* An incomplete header; the log is being created right now */
+                reset(null, null);
+                return;
+            }
+            if (!header.startsWith(HEADER_PREFIX)) {
+                throw new IOException(String.format("Unexpected header [%s] in [%s]", header, logFile));
+            }
+            final String newGeneration = header.substring(HEADER_PREFIX.length());
+            if (!newGeneration.equals(generation) || !Objects.equals(attrs.fileKey(), fileKey)) {
+                reset(newGeneration, attrs.fileKey());
+                offset = header.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+            ch.position(offset);
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+            final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long pos = offset;
+            while (readLine(in, line)) {
+                final int recordLength = line.size() + 1;
+                pos += recordLength;
+                final String record = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                line.reset();
+                final String payload = LockedLogFile.verifyLine(record);
+                final int valueStart = payload != null ? payload.lastIndexOf(' ') : -1;
+                if (valueStart <= 0) {
+                    /* Most probably a record partially written by a crashed process */
+                    log.warn("srcdeps: Ignoring a malformed record [{}] in [{}]", record, logFile);
+                    continue;
+                }
+                put(payload.substring(0, valueStart), payload.substring(valueStart + 1), recordLength);
+            }
+            /* A partial record at the end of the log will be read next time if it gets completed */
+            offset = pos;
+        }
+    }
+
+    /**
+     * Calls {@link #refresh()} and rethrows any {@link IOException} as a {@link RuntimeException}.
+     */
+    private void refreshOrFail() {
+        try {
+            refresh();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read [%s]", logFile), e);
+        }
+    }
+
+    /**
+     * @param ch the log file to read the header from
+     * @return the first line of the given log file without the trailing {@code '\n'} or {@code null} if there is no
+     *         complete first line
+     * @throws IOException on read errors
+     */
+    private static String readHeader(FileChannel ch) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_PREFIX.length() + 64);
+        while (buffer.hasRemaining() && ch.read(buffer, buffer.position()) > 0) {
+            /* read as much as possible */
+        }
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                return new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads bytes from the given {@link InputStream} into the given {@code line} until a {@code '\n'} is found.
+     *
+     * @param in the {@link InputStream} to read from
+     * @param line the buffer to store the line into, without the trailing {@code '\n'}
+     * @return {@code true} if a complete line was read; {@code false} if the end of the stream was reached before any
+     *         {@code '\n'}
+     * @throws IOException on read errors
+     */
+    private static boolean readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                return true;
+            }
+            line.write(b);
+        }
+        return false;
+    }
+
+    private void reset(String newGeneration, Object newFileKey) {
+        index.clear();
+        hashes.clear();
+        liveSize = 0;
+        offset = 0;
+        generation = newGeneration;
+        fileKey = newFileKey;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized String retrieveCommitId(String requestId, String buildRequestIdHash) {
+        final String result = retrieve(key(buildRequestIdHash, COMMIT_ID, null));
+        log.debug("srcdeps[{}]: Build request hash [{}] points at commitId [{}] in [{}]", requestId,
+                buildRequestIdHash, result, logFile);
+        return result;
+    }
+
+    private String retrieve(String key) {
+        refreshOrFail();
+        return index.get(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized String retrieveSha1(String requestId, String buildRequestIdHash, Gavtc gavtc) {
+        final String result = retrieve(key(buildRequestIdHash, SHA1, gavtc.getGavtcString()));
+        log.debug("srcdeps[{}]: Artifact [{}] of build request hash [{}] points at sha1 [{}] in [{}]", requestId,
+                gavtc.getGavtcString(), buildRequestIdHash, result, logFile);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Map<String, FileStat> retrieveFileStats(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        refreshOrFail();
+        final Map<String, FileStat> result = new HashMap<>();
+        for (Gavtc gavtc : gavtcs) {
+            final String fileStat = index.get(key(buildRequestIdHash, FILE_STAT, gavtc.getGavtcString()));
+            if (fileStat != null) {
+                try {
+                    result.put(gavtc.getGavtcString(), FileStat.parse(fileStat.replace('/', ' ')));
+                } catch (IllegalStateException e) {
+                    log.warn("srcdeps[{}]: Ignoring a malformed file stat [{}] in [{}]", requestId, fileStat,
+                            logFile);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Map<String, String> retrieveSha1s(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        refreshOrFail();
+        final Map<String, String> result = new HashMap<>();
+        for (Gavtc gavtc : gavtcs) {
+            final String sha1 = index.get(key(buildRequestIdHash, SHA1, gavtc.getGavtcString()));
+            if (sha1 != null) {
+                result.put(gavtc.getGavtcString(), sha1);
+            }
+        }
+        log.debug("srcdeps[{}]: Found {} out of {} sha1s of build request hash [{}] in [{}]", requestId,
+                result.size(), gavtcs.size(), buildRequestIdHash, logFile);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void storeCommitId(String requestId, String buildRequestIdHash, String commitId) {
+        log.debug("srcdeps[{}]: Build request hash [{}] will point at commitId [{}] in [{}]", requestId,
+                buildRequestIdHash, commitId, logFile);
+        final Map<String, String> entries = new HashMap<>();
+        entries.put(key(buildRequestIdHash, COMMIT_ID, null), commitId);
+        append(entries);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void storeSha1(String requestId, String buildRequestIdHash, Gavtc gavtc, String sha1) {
+        log.debug("srcdeps[{}]: Artifact [{}] of build request hash [{}] will point at sha1 [{}] in [{}]", requestId,
+                gavtc.getGavtcString(), buildRequestIdHash, sha1, logFile);
+        final Map<String, String> entries = new HashMap<>();
+        entries.put(key(buildRequestIdHash, SHA1, gavtc.getGavtcString()), sha1);
+        append(entries);
+    }
+
+    /**
+     * The spaces in {@link FileStat#toString()} are replaced by slashes because the values in the log cannot
+     * contain spaces.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeFileStats(String requestId, String buildRequestIdHash,
+            Map<? extends Gavtc, FileStat> fileStats) {
+        log.debug("srcdeps[{}]: Storing {} file stats of build request hash [{}] in [{}]", requestId,
+                fileStats.size(), buildRequestIdHash, logFile);
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<? extends Gavtc, FileStat> en : fileStats.entrySet()) {
+            entries.put(key(buildRequestIdHash, FILE_STAT, en.getKey().getGavtcString()),
+                    en.getValue().toString().replace(' ', '/'));
+        }
+        append(entries);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void storeSha1s(String requestId, String buildRequestIdHash, Map<? extends Gavtc, String> sha1s) {
+        log.debug("srcdeps[{}]: Storing {} sha1s of build request hash [{}] in [{}]", requestId, sha1s.size(),
+                buildRequestIdHash, logFile);
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<? extends Gavtc, String> en : sha1s.entrySet()) {
+            entries.put(key(buildRequestIdHash, SHA1, en.getKey().getGavtcString()), en.getValue());
+        }
+        append(entries);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void walkBuildRequestHashes(Consumer<String> consumer) {
+        final List<String> snapshot;
+        synchronized (this) {
+            refreshOrFail();
+            snapshot = new ArrayList<>(hashes);
+        }
+        for (String hash : snapshot) {
+            consumer.accept(hash);
+        }
+    }
+
+    /**
+     * Writes the given {@code entries} to a new log file with a new generation and atomically replaces the current
+     * log file with it. The caller must hold the lock of {@link #lockedLog}.
+     *
+     * @param entries the entries to write
+     * @throws IOException on write errors
+     */
+    private void writeLog(Map<String, String> entries) throws IOException {
+        final String newGeneration = UUID.randomUUID().toString();
+        lockedLog.rewrite(w -> {
+            w.write(HEADER_PREFIX + newGeneration + "\n");
+            for (Map.Entry<String, String> en : entries.entrySet()) {
+                w.write(LockedLogFile.toLine(en.getKey() + " " + en.getValue()));
+            }
+        });
+        /* re-read the new log to have the offset, the file key and the live size right */
+        reset(null, null);
+        refresh();
+    }
+
+}
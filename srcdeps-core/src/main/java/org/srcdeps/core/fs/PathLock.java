@@ -36,15 +36,23 @@ public class PathLock implements Closeable {
     private final RandomAccessFile lockFile;
     private final Path lockFilePath;
     private final Path path;
+    /** Called after this {@link PathLock} was released; may be {@code null} */
+    private final Runnable releaseListener;
     private final String requestId;
     private final ReentrantLock threadLevelLock;
 
     PathLock(String requestId, Path path, RandomAccessFile lockFile, Path lockFilePath, ReentrantLock threadLevelLock) {
+        this(requestId, path, lockFile, lockFilePath, threadLevelLock, null);
+    }
+
+    PathLock(String requestId, Path path, RandomAccessFile lockFile, Path lockFilePath, ReentrantLock threadLevelLock,
+            Runnable releaseListener) {
         this.path = path;
         this.lockFile = lockFile;
         this.lockFilePath = lockFilePath;
         this.threadLevelLock = threadLevelLock;
         this.requestId = requestId;
+        this.releaseListener = releaseListener;
     }
 
     /**
@@ -58,6 +66,9 @@ public class PathLock implements Closeable {
             log.warn(String.format("srcdeps[%s]: Could not close lock file [%s]", requestId, lockFilePath), e);
         }
         threadLevelLock.unlock();
+        if (releaseListener != null) {
+            releaseListener.run();
+        }
     }
 
     /**
@@ -22,7 +22,12 @@ import java.io.RandomAccessFile;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Named;
@@ -72,8 +77,43 @@ public class PathLocker<M> {
         }
     }
 
+    /**
+     * A FIFO queue of threads waiting for any of the paths of a bounded pool to get unlocked. Only the thread at the
+     * head of the queue is allowed to try to lock the paths so that the waiting threads are served in the order of
+     * their arrival.
+     *
+     * @since 5.0.2
+     */
+    private static class WaitQueue {
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Condition changed = lock.newCondition();
+        /** The number of {@link #signal()} calls so far; lets the head notice the unlocks done while it was probing */
+        private long unlockCount;
+        private final Deque<Thread> waiters = new ArrayDeque<>();
+
+        /**
+         * Wakes up the waiting threads; to be called when any path of the pool was unlocked.
+         */
+        public void signal() {
+            lock.lock();
+            try {
+                unlockCount++;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(PathLocker.class);
 
+    /**
+     * The maximal time in milliseconds that a thread waiting in {@link #lockOneOf(String, List, Object, long)} sleeps
+     * before it probes the paths again. Needed because the paths may get unlocked by other processes that cannot
+     * signal us. The value is {@value #POLL_INTERVAL_MS}.
+     */
+    private static final long POLL_INTERVAL_MS = 200;
+
     /**
      * An internal null-safe release of all resources
      *
@@ -96,6 +136,9 @@ public class PathLocker<M> {
     /** The map from filesystem paths to {@link LockMetadataPair}s */
     private final ConcurrentHashMap<Path, LockMetadataPair<M>> locks = new ConcurrentHashMap<>();
 
+    /** The map from the parent directories of pooled paths to {@link WaitQueue}s */
+    private final ConcurrentHashMap<Path, WaitQueue> waitQueues = new ConcurrentHashMap<>();
+
     /**
      * Tries to acquire both thread level and OS process level exclusive lock to the given filesystem {@code path}. As
      * for blocking of the current thread during the call of the present method there are four different cases:
@@ -165,7 +208,7 @@ public class PathLocker<M> {
             if (oldMd.equals(pathMetadata)) {
                 lock.lock();
                 log.debug("srcdeps[{}]: Locked on thread level [{}]", requestId, path);
-                return lockInFilesystem(requestId, path, lock);
+                return lockInFilesystem(requestId, path, lock, null);
             } else {
                 /*
                  * in case the mdPair has a different metadata from a previous call we try to lock immediately and
@@ -174,7 +217,7 @@ public class PathLocker<M> {
                 if (lock.tryLock()) {
                     log.debug("srcdeps[{}]: Locked on thread level [{}]", requestId, path);
                     mdPair.setMetadata(pathMetadata);
-                    return lockInFilesystem(requestId, path, lock);
+                    return lockInFilesystem(requestId, path, lock, null);
                 } else {
                     throw new CannotAcquireLockException(
                             String.format("Path [%s] is locked by another thread for [%s]", path, oldPair));
@@ -183,8 +226,8 @@ public class PathLocker<M> {
         }
     }
 
-    private PathLock lockInFilesystem(String requestId, Path path, final ReentrantLock lock)
-            throws CannotAcquireLockException {
+    private PathLock lockInFilesystem(String requestId, Path path, final ReentrantLock lock,
+            Runnable releaseListener) throws CannotAcquireLockException {
         Path lockFilePath = path.resolveSibling(path.getName(path.getNameCount() - 1) + ".lock");
         RandomAccessFile lockFile = null;
         try {
@@ -195,7 +238,7 @@ public class PathLocker<M> {
                 throw new CannotAcquireLockException(
                         String.format("Could not acquire filesystem level lock on [%s]", lockFilePath));
             } else {
-                return new PathLock(requestId, path, lockFile, lockFilePath, lock);
+                return new PathLock(requestId, path, lockFile, lockFilePath, lock, releaseListener);
             }
         } catch (CannotAcquireLockException e) {
             close(requestId, lockFile, lockFilePath, lock);
@@ -217,4 +260,107 @@ public class PathLocker<M> {
         }
     }
 
+    /**
+     * Locks the first of the given {@code paths} that is not locked by any other thread or process, waiting up to
+     * {@code timeoutMs} milliseconds for any of them to get unlocked if they are all locked at the moment. The given
+     * {@code paths} are regarded as a bounded pool; the pool is identified by the parent directory of the first of the
+     * {@code paths}. The threads of the current VM waiting for the same pool are served in the order of their arrival.
+     * The paths unlocked by other processes are detected by polling. The lock files are created and locked without
+     * holding the lock of the queue so that the slow file I/O does not block the threads joining or leaving the queue.
+     * <p>
+     * Unlike {@link #lockDirectory(String, Path, Object)}, this method never blocks on a path locked by another
+     * thread for the same {@code pathMetadata}; it rather waits for any path of the pool to get unlocked.
+     * <p>
+     * The returned {@link PathLock} should be released using its {@link Closeable#close()} method.
+     *
+     * @param requestId the current request id
+     * @param paths the {@link Path}s to choose from in the order of preference
+     * @param pathMetadata a metadata associated with the locked {@code path}
+     * @param timeoutMs the maximal time to wait in milliseconds
+     * @return a {@link PathLock} whose holder is guaranteed to have an exclusive access to {@link PathLock#getPath()}
+     * @throws IOException if any of the given {@code paths} cannot be created as a directory
+     * @throws CannotAcquireLockException if none of the {@code paths} could be locked within {@code timeoutMs}
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @since 5.0.2
+     */
+    public PathLock lockOneOf(String requestId, List<Path> paths, M pathMetadata, long timeoutMs)
+            throws IOException, CannotAcquireLockException, InterruptedException {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Cannot lock one of an empty list of paths");
+        }
+        final WaitQueue queue = waitQueues.computeIfAbsent(paths.get(0).getParent(), k -> new WaitQueue());
+        final long startNanos = System.nanoTime();
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        final Thread self = Thread.currentThread();
+        queue.lock.lock();
+        try {
+            queue.waiters.addLast(self);
+            while (true) {
+                if (queue.waiters.peekFirst() == self) {
+                    final long unlockCount = queue.unlockCount;
+                    /* Nobody can overtake us while we probe unlocked because only the head of the queue probes */
+                    queue.lock.unlock();
+                    try {
+                        for (Path path : paths) {
+                            final PathLock result = tryLock(requestId, path, pathMetadata, queue::signal);
+                            if (result != null) {
+                                return result;
+                            }
+                        }
+                    } finally {
+                        queue.lock.lock();
+                    }
+                    if (queue.unlockCount != unlockCount) {
+                        /* Some path got unlocked while we were probing */
+                        continue;
+                    }
+                }
+                final long restNanos = timeoutNanos - (System.nanoTime() - startNanos);
+                if (restNanos <= 0) {
+                    throw new CannotAcquireLockException(String.format("Could not lock any of %s within %d ms", paths,
+                            timeoutMs));
+                }
+                log.debug("srcdeps[{}]: Waiting for any of {} to get unlocked", requestId, paths);
+                queue.changed.await(Math.min(restNanos, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS)),
+                        TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            queue.waiters.remove(self);
+            queue.changed.signalAll();
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * Tries to lock the given {@code path} on both thread and filesystem level without blocking.
+     *
+     * @param requestId the current request id
+     * @param path the {@link Path} to lock
+     * @param pathMetadata a metadata associated with the given {@code path}
+     * @param releaseListener to pass to the resulting {@link PathLock}
+     * @return a new {@link PathLock} or {@code null} if the {@code path} is locked by another thread or process
+     * @throws IOException if the given {@code path} cannot be created as a directory
+     */
+    private PathLock tryLock(String requestId, Path path, M pathMetadata, Runnable releaseListener)
+            throws IOException {
+        SrcdepsCoreUtils.ensureDirectoryExists(path);
+        final LockMetadataPair<M> newPair = new LockMetadataPair<M>(new ReentrantLock(), pathMetadata);
+        final LockMetadataPair<M> oldPair = locks.putIfAbsent(path, newPair);
+        final LockMetadataPair<M> mdPair = oldPair == null ? newPair : oldPair;
+        synchronized (mdPair) {
+            final ReentrantLock lock = mdPair.getLock();
+            if (lock.isHeldByCurrentThread() || !lock.tryLock()) {
+                return null;
+            }
+            log.debug("srcdeps[{}]: Locked on thread level [{}]", requestId, path);
+            mdPair.setMetadata(pathMetadata);
+            try {
+                return lockInFilesystem(requestId, path, lock, releaseListener);
+            } catch (CannotAcquireLockException e) {
+                log.debug("srcdeps[{}]: Could not lock [{}] on FS level", requestId, path);
+                return null;
+            }
+        }
+    }
+
 }
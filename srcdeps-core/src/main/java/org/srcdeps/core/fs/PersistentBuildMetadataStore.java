@@ -17,26 +17,63 @@
 package org.srcdeps.core.fs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactDigester;
 import org.srcdeps.core.BuildMetadataStore;
+import org.srcdeps.core.FileStat;
 import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.MavenLocalRepository;
 import org.srcdeps.core.util.Consumer;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
 
 /**
  * A {@link BuildMetadataStore} that stores its entries in the filesystem.
+ * <p>
+ * The known build request hashes are additionally recorded in a {@link BuildRequestManifest} so that
+ * {@link #walkBuildRequestHashes(Consumer)} does not need to walk the whole directory tree.
+ * <p>
+ * The entries can be evicted on demand via {@link #gc(GcPolicy)} or automatically after storing a {@code commitId}
+ * if the {@link GcPolicy} passed to the constructor {@link GcPolicy#isAutomatic() is automatic}. The modification
+ * time of the {@code commitId} file serves as the last access time of an entry and it is updated (with a resolution
+ * of {@value #TOUCH_INTERVAL_MS} ms) whenever the {@code commitId} is retrieved.
+ * <p>
+ * The sha1 of an artifact is stored in a file named {@code gavtc.getGavtcString().replace(':', '_')} containing just
+ * the sha1, so that the entries stay readable by older versions of srcdeps. A file of the same name in the
+ * {@value #STATS} subdirectory of the entry contains a single line {@code gavtc size lastModified fileKey} where the
+ * last three fields are the {@link FileStat} of the artifact, if known. The name alone cannot be reliably parsed back
+ * to a {@link Gavtc} because underscores are legal in all its segments. The {@value #STATS} file is removed before
+ * the sha1 file is written and rewritten afterwards, so that it never describes an artifact other than the one the
+ * sha1 was computed for. Entries stored by older versions have no {@value #STATS} files.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  * @since 3.2.2
@@ -68,7 +105,7 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
                         + dir.getName(i++).toString() + dir.getName(i++).toString() + dir.getName(i++).toString();
                 assert dir.getNameCount() == i;
                 consumer.accept(buildRequestIdHash);
-                depth++;
+                /* no depth++ here because postVisitDirectory() is not called for skipped subtrees */
                 return FileVisitResult.SKIP_SUBTREE;
             } else {
                 depth++;
@@ -101,26 +138,293 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
         }
     }
 
+    /**
+     * The data of a single build request entry needed to decide whether it should be evicted by
+     * {@link PersistentBuildMetadataStore#gc(GcPolicy)}.
+     */
+    static class GcEntry {
+        /**
+         * @param hash the build request hash
+         * @param dir the build request directory
+         * @param localRepository the {@link MavenLocalRepository} to check the presence of the artifacts in or
+         *        {@code null}
+         * @return a new {@link GcEntry} or {@code null} if {@code dir} does not exist
+         * @throws IOException on read errors
+         */
+        static GcEntry read(String hash, Path dir, MavenLocalRepository localRepository) throws IOException {
+            long lastModified = 0;
+            long commitIdLastModified = -1;
+            long size = 0;
+            String missingArtifact = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    final String fileName = file.getFileName().toString();
+                    final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    final long mtime = attrs.lastModifiedTime().toMillis();
+                    lastModified = Math.max(lastModified, mtime);
+                    if (attrs.isDirectory()) {
+                        size += directorySize(file);
+                    } else {
+                        size += attrs.size();
+                        if (COMMIT_ID.equals(fileName)) {
+                            commitIdLastModified = mtime;
+                        } else if (localRepository != null && missingArtifact == null) {
+                            final Gavtc gavtc = toGavtc(fileName, readString(dir.resolve(STATS).resolve(fileName)));
+                            if (gavtc != null && !Files.exists(localRepository.resolve(gavtc))) {
+                                missingArtifact = gavtc.getGavtcString();
+                            }
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            /* an entry without commitId is either being stored just now or it is a leftover of a failed eviction */
+            return new GcEntry(hash, dir, commitIdLastModified >= 0 ? commitIdLastModified : lastModified, size,
+                    missingArtifact);
+        }
+
+        private static long directorySize(Path dir) throws IOException {
+            long result = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    result += Files.size(file);
+                }
+            } catch (NoSuchFileException e) {
+                /* removed concurrently */
+            }
+            return result;
+        }
+
+        /**
+         * @param file the file to read
+         * @return the content of the given {@code file} or {@code null} if it does not exist
+         * @throws IOException on read errors
+         */
+        private static String readString(Path file) throws IOException {
+            try {
+                return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                /* removed concurrently */
+                return null;
+            }
+        }
+
+        /**
+         * Determines the {@link Gavtc} of a sha1 file. The gavtc string stored in the {@value #STATS} file is
+         * preferred. Entries stored by older versions have no {@value #STATS} files; the name of their sha1 files is
+         * parsed only if it has exactly four underscore separated parts, because with more parts it is not possible to
+         * tell the classifier from an underscore within any of the segments (such as in {@code akka-actor_2.12}).
+         *
+         * @param fileName the name of a sha1 file
+         * @param content the content of the {@value #STATS} file of the sha1 file or {@code null}
+         * @return the {@link Gavtc} the given sha1 file was stored for or {@code null} if it cannot be determined
+         *         unambiguously
+         */
+        static Gavtc toGavtc(String fileName, String content) {
+            final String gavtcString = content == null ? null : gavtcStringOf(content);
+            try {
+                if (gavtcString != null) {
+                    final Gavtc result = Gavtc.of(gavtcString);
+                    /* a sanity check against hand edited or corrupted files */
+                    return toFileName(result).equals(fileName) ? result : null;
+                } else if (fileName.split("_", -1).length == 4) {
+                    return Gavtc.of(fileName.replace('_', ':'));
+                }
+            } catch (IllegalStateException e) {
+                /* fall through */
+            }
+            return null;
+        }
+
+        private final Path directory;
+        private final String hash;
+        private final long lastUsed;
+        private final String missingArtifact;
+        private final long size;
+
+        GcEntry(String hash, Path directory, long lastUsed, long size, String missingArtifact) {
+            super();
+            this.hash = hash;
+            this.directory = directory;
+            this.lastUsed = lastUsed;
+            this.size = size;
+            this.missingArtifact = missingArtifact;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+    }
+
     private static final String COMMIT_ID = "commitId";
 
     private static final int DISTRIBUTION_DEPTH = 4 + 1;
 
+    /** The file in {@link #rootDirectory} storing the time of the last automatic garbage collection */
+    private static final String LAST_GC = "last-gc";
+
     private static final Logger log = LoggerFactory.getLogger(PersistentBuildMetadataStore.class);
 
+    /** The subdirectory of an entry storing the gavtc and the {@link FileStat} of each artifact */
+    private static final String STATS = "stats";
+
+    /** The minimal time between two updates of the last access time of an entry */
+    private static final long TOUCH_INTERVAL_MS = 60L * 60L * 1000L;
+
+    /**
+     * @param content the content of a {@value #STATS} file
+     * @return the {@link FileStat} stored in the given {@value #STATS} file {@code content} or {@code null} if there
+     *         is none
+     */
+    static FileStat fileStatOf(String content) {
+        final int statStart = content.indexOf(' ');
+        if (statStart < 0) {
+            return null;
+        }
+        try {
+            return FileStat.parse(content.substring(statStart + 1));
+        } catch (IllegalStateException e) {
+            log.warn("srcdeps: Ignoring a malformed file stat in [{}]", content);
+            return null;
+        }
+    }
+
+    /**
+     * @param content the content of a {@value #STATS} file
+     * @return the gavtc string stored in the given {@value #STATS} file {@code content}
+     */
+    static String gavtcStringOf(String content) {
+        final int space = content.indexOf(' ');
+        return space < 0 ? content : content.substring(0, space);
+    }
+
+    /**
+     * @param content the content of a sha1 file
+     * @return the sha1 stored in the given sha1 file {@code content}
+     */
+    static String sha1Of(String content) {
+        final int space = content.indexOf(' ');
+        return space < 0 ? content : content.substring(0, space);
+    }
+
+    /**
+     * @param gavtc the {@link Gavtc} to get the {@value #STATS} file content for
+     * @param fileStat the {@link FileStat} of the artifact or {@code null}
+     * @return the content of the {@value #STATS} file of the given {@code gavtc}
+     */
+    private static String toStatContent(Gavtc gavtc, FileStat fileStat) {
+        return fileStat == null ? gavtc.getGavtcString() : gavtc.getGavtcString() + " " + fileStat;
+    }
+
+    /**
+     * @param gavtc the {@link Gavtc} to get the sha1 file name for
+     * @return the name of the sha1 file of the given {@code gavtc}
+     */
+    static String toFileName(Gavtc gavtc) {
+        return gavtc.getGavtcString().replace(':', '_');
+    }
+
     private static void store(final Path p, String content) {
         try {
-            Files.createDirectories(p.getParent());
             Files.write(p, content.getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             throw new RuntimeException(String.format("Could not write to path [%s]", p), e);
         }
     }
 
+    /**
+     * Stores the sha1 file of the given {@code gavtc} and its {@value #STATS} file.
+     *
+     * @param dir the directory of the entry as returned by {@link #ensureStatsDirectory(Path)}
+     * @param gavtc the artifact to store the sha1 for
+     * @param sha1 the sha1 to store
+     * @param fileStat the {@link FileStat} of the artifact or {@code null}
+     */
+    private static void store(Path dir, Gavtc gavtc, String sha1, FileStat fileStat) {
+        final String fileName = toFileName(gavtc);
+        final Path statPath = dir.resolve(STATS).resolve(fileName);
+        try {
+            Files.deleteIfExists(statPath);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not delete [%s]", statPath), e);
+        }
+        store(dir.resolve(fileName), sha1);
+        store(statPath, toStatContent(gavtc, fileStat));
+    }
+
+    /**
+     * @param dir the directory of an entry
+     * @return the given {@code dir} after making sure that its {@value #STATS} subdirectory exists
+     */
+    private static Path ensureStatsDirectory(Path dir) {
+        final Path statsDir = dir.resolve(STATS);
+        try {
+            Files.createDirectories(statsDir);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not create directory [%s]", statsDir), e);
+        }
+        return dir;
+    }
+
+    /**
+     * Sets the modification time of the given file to now unless it was set less than {@link #TOUCH_INTERVAL_MS} ago.
+     *
+     * @param p the file to touch
+     * @param now the current time in milliseconds since the epoch
+     * @return {@code true} if the modification time was updated, {@code false} otherwise
+     */
+    private static boolean touch(Path p, long now) {
+        try {
+            if (Files.getLastModifiedTime(p).toMillis() + TOUCH_INTERVAL_MS < now) {
+                Files.setLastModifiedTime(p, FileTime.fromMillis(now));
+                return true;
+            }
+        } catch (IOException e) {
+            /* not fatal, the entry may only get evicted earlier than necessary */
+            log.debug("srcdeps: Could not update the last modified time of [{}]", p, e);
+        }
+        return false;
+    }
+
+    /** See {@link #getArtifactDigester()} */
+    private final ArtifactDigester digester;
+
+    private final GcPolicy gcPolicy;
+
+    /** The list of the known build request hashes */
+    private final BuildRequestManifest manifest;
+
     private final Path rootDirectory;
 
     public PersistentBuildMetadataStore(Path rootDirectory) {
+        this(rootDirectory, GcPolicy.none());
+    }
+
+    /**
+     * @param rootDirectory the directory to store the entries in
+     * @param gcPolicy the {@link GcPolicy} to apply automatically after storing new entries if
+     *        {@link GcPolicy#isAutomatic()}
+     * @since 5.0.2
+     */
+    public PersistentBuildMetadataStore(Path rootDirectory, GcPolicy gcPolicy) {
+        this(rootDirectory, gcPolicy, ArtifactDigester.getDefault());
+    }
+
+    /**
+     * @param rootDirectory the directory to store the entries in
+     * @param gcPolicy the {@link GcPolicy} to apply automatically after storing new entries if
+     *        {@link GcPolicy#isAutomatic()}
+     * @param digester the {@link ArtifactDigester} to compute the digests of the artifacts with, typically
+     *        {@link ArtifactDigester#forConfiguration(org.srcdeps.core.config.Configuration)}
+     * @since 5.0.2
+     */
+    public PersistentBuildMetadataStore(Path rootDirectory, GcPolicy gcPolicy, ArtifactDigester digester) {
         super();
         this.rootDirectory = rootDirectory;
+        this.gcPolicy = gcPolicy;
+        this.digester = digester;
+        this.manifest = new BuildRequestManifest(rootDirectory);
         try {
             Files.createDirectories(rootDirectory);
         } catch (IOException e) {
@@ -137,6 +441,30 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
         return p;
     }
 
+    /**
+     * Creates the directory of the given {@code buildRequestIdHash} and records the hash in {@link #manifest} if the
+     * directory did not exist or if {@code used} is {@code true}.
+     *
+     * @param buildRequestIdHash the build request hash
+     * @param used if {@code true} the time of the last use of the entry gets updated in {@link #manifest}
+     * @return the directory of the given {@code buildRequestIdHash}
+     */
+    private Path ensureEntryDirectory(String buildRequestIdHash, boolean used) {
+        final Path dir = createBuildRequestIdPath(buildRequestIdHash);
+        if (!Files.isDirectory(dir)) {
+            try {
+                Files.createDirectories(dir);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not create directory [%s]", dir), e);
+            }
+            used = true;
+        }
+        if (used) {
+            manifest.append(buildRequestIdHash, System.currentTimeMillis());
+        }
+        return dir;
+    }
+
     /** {@inheritDoc} */
     @Override
     public CheckSha1Consumer createCheckSha1Checker(String requestId, String buildRequestIdHash) {
@@ -151,12 +479,162 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
 
     /** {@inheritDoc} */
     @Override
+    public ArtifactDigester getArtifactDigester() {
+        return digester;
+    }
+
+    /**
+     * Evicts the entries as mandated by the given {@link GcPolicy}. The {@code commitId} file of an entry is removed
+     * first so that a partially deleted entry is never taken for a valid one.
+     *
+     * @param policy the {@link GcPolicy} to apply
+     * @return the number of evicted entries
+     * @since 5.0.2
+     */
+    public int gc(GcPolicy policy) {
+        final long start = System.currentTimeMillis();
+        final BuildRequestIdCollector collector = new BuildRequestIdCollector();
+        walkBuildRequestHashes(collector);
+
+        final List<GcEntry> retained = new ArrayList<>();
+        int evicted = 0;
+        for (String hash : collector.getHashes()) {
+            final Path dir = createBuildRequestIdPath(hash);
+            final GcEntry entry;
+            try {
+                entry = GcEntry.read(hash, dir, policy.getLocalRepository());
+            } catch (IOException e) {
+                log.warn("srcdeps: Could not read build metadata entry [{}]", dir, e);
+                continue;
+            }
+            if (entry == null) {
+                /* removed concurrently or by some other means */
+                manifest.remove(hash);
+            } else if (start - entry.lastUsed > policy.getMaxAgeMs()) {
+                log.debug("srcdeps: Evicting build metadata entry [{}] not used for {} ms", dir,
+                        start - entry.lastUsed);
+                evicted += evict(entry);
+            } else if (entry.missingArtifact != null) {
+                log.debug("srcdeps: Evicting build metadata entry [{}] because artifact [{}] does not exist", dir,
+                        entry.missingArtifact);
+                evicted += evict(entry);
+            } else {
+                retained.add(entry);
+            }
+        }
+
+        /* The most recently used first */
+        retained.sort(Comparator.comparingLong(GcEntry::getLastUsed).reversed());
+        int count = 0;
+        long size = 0;
+        for (GcEntry entry : retained) {
+            count++;
+            size += entry.size;
+            if (count > policy.getMaxEntries() || size > policy.getMaxTotalSize()) {
+                log.debug("srcdeps: Evicting build metadata entry [{}] over the count or size limit", entry.directory);
+                evicted += evict(entry);
+            }
+        }
+        log.info("srcdeps: Evicted {} out of {} build metadata entries from [{}] in {} ms", evicted,
+                collector.getHashes().size(), rootDirectory, System.currentTimeMillis() - start);
+        return evicted;
+    }
+
+    /**
+     * Runs {@link #gc(GcPolicy)} with {@link #gcPolicy} if it is {@link GcPolicy#isAutomatic() automatic} and if
+     * {@link GcPolicy#getIntervalMs()} elapsed since the last run. Does nothing if another thread or process is
+     * collecting the garbage in the same {@link #rootDirectory} just now.
+     */
+    void gcIfDue() {
+        if (!gcPolicy.isAutomatic()) {
+            return;
+        }
+        final Path lastGcFile = rootDirectory.resolve(LAST_GC);
+        try (FileChannel channel = FileChannel.open(lastGcFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE); FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                return;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(32);
+            channel.read(buffer, 0);
+            buffer.flip();
+            final String content = StandardCharsets.US_ASCII.decode(buffer).toString().trim();
+            long lastGc = 0;
+            if (!content.isEmpty()) {
+                try {
+                    lastGc = Long.parseLong(content);
+                } catch (NumberFormatException e) {
+                    log.warn("srcdeps: Ignoring malformed content [{}] of [{}]", content, lastGcFile);
+                }
+            }
+            final long now = System.currentTimeMillis();
+            if (now - lastGc >= gcPolicy.getIntervalMs()) {
+                gc(gcPolicy);
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(Long.toString(now).getBytes(StandardCharsets.US_ASCII)), 0);
+            }
+        } catch (OverlappingFileLockException e) {
+            /* another thread of this JVM is collecting */
+        } catch (IOException e) {
+            log.warn("srcdeps: Could not collect garbage in [{}]", rootDirectory, e);
+        }
+    }
+
+    /**
+     * Deletes the directory of the given {@link GcEntry} and the fan-out directories above it that became empty.
+     *
+     * @param entry the entry to delete
+     * @return {@code 1} if the entry was deleted, {@code 0} otherwise
+     */
+    private int evict(GcEntry entry) {
+        final Path dir = entry.directory;
+        try {
+            Files.deleteIfExists(dir.resolve(COMMIT_ID));
+            SrcdepsCoreUtils.deleteDirectory(dir);
+        } catch (IOException e) {
+            log.warn("srcdeps: Could not delete build metadata entry [{}]", dir, e);
+            return 0;
+        }
+        manifest.remove(entry.hash);
+        Path parent = dir.getParent();
+        while (!parent.equals(rootDirectory)) {
+            try {
+                Files.delete(parent);
+            } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+                break;
+            } catch (IOException e) {
+                log.debug("srcdeps: Could not delete [{}]", parent, e);
+                break;
+            }
+            parent = parent.getParent();
+        }
+        return 1;
+    }
+
+    /**
+     * @return the {@link GcPolicy} applied automatically
+     * @since 5.0.2
+     */
+    public GcPolicy getGcPolicy() {
+        return gcPolicy;
+    }
+
+    /**
+     * Also updates the last access time of the entry used by {@link #gc(GcPolicy)}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
     public String retrieveCommitId(String requestId, String buildRequestIdHash) {
         final Path p = createBuildRequestIdPath(buildRequestIdHash).resolve(COMMIT_ID);
         if (Files.exists(p)) {
             try {
                 String result = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
                 log.debug("srcdeps[{}]: Path [{}] points at commitId [{}]", requestId, p, result);
+                final long now = System.currentTimeMillis();
+                if (touch(p, now)) {
+                    manifest.append(buildRequestIdHash, now);
+                }
                 return result;
             } catch (IOException e) {
                 throw new RuntimeException(String.format("Could not read %s", p), e);
@@ -169,11 +647,10 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
     /** {@inheritDoc} */
     @Override
     public String retrieveSha1(String requestId, String buildRequestIdHash, Gavtc gavtc) {
-        final String gavtcString = gavtc.getGavtcString().replace(':', '_');
-        final Path p = createBuildRequestIdPath(buildRequestIdHash).resolve(gavtcString);
+        final Path p = createBuildRequestIdPath(buildRequestIdHash).resolve(toFileName(gavtc));
         if (Files.exists(p)) {
             try {
-                final String result = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+                final String result = sha1Of(new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
                 log.debug("srcdeps[{}]: Path [{}] points at sha1 [{}]", requestId, p, result);
                 return result;
             } catch (IOException e) {
@@ -184,30 +661,198 @@ public class PersistentBuildMetadataStore implements BuildMetadataStore {
         return null;
     }
 
+    /**
+     * Lists the given {@code dir} once and reads only the files of the given {@code gavtcs} that exist there.
+     *
+     * @param dir the directory of an entry or its {@value #STATS} subdirectory
+     * @param gavtcs the artifacts to look up
+     * @return a {@link Map} from {@link Gavtc}s to the contents of their files; the {@link Gavtc}s having no file are
+     *         not present in the {@link Map}
+     */
+    private static Map<Gavtc, String> readContents(String requestId, Path dir, Collection<? extends Gavtc> gavtcs) {
+        final Set<String> fileNames = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                fileNames.add(file.getFileName().toString());
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("srcdeps[{}]: Directory [{}] does not exist", requestId, dir);
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not list %s", dir), e);
+        }
+        final Map<Gavtc, String> result = new HashMap<>();
+        for (Gavtc gavtc : gavtcs) {
+            final String fileName = toFileName(gavtc);
+            if (fileNames.contains(fileName)) {
+                final Path p = dir.resolve(fileName);
+                try {
+                    result.put(gavtc, new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+                } catch (NoSuchFileException e) {
+                    /* removed concurrently */
+                } catch (IOException e) {
+                    throw new RuntimeException(String.format("Could not read %s", p), e);
+                }
+            }
+        }
+        log.debug("srcdeps[{}]: Found {} out of {} files in [{}]", requestId, result.size(), gavtcs.size(), dir);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, FileStat> retrieveFileStats(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        final Map<String, FileStat> result = new HashMap<>();
+        retrieveSha1sAndFileStats(requestId, buildRequestIdHash, gavtcs, result);
+        return result;
+    }
+
+    /**
+     * Lists the directory of the given {@code buildRequestIdHash} once and reads only the files that exist there.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> retrieveSha1s(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs) {
+        final Map<String, String> result = new HashMap<>();
+        final Path dir = createBuildRequestIdPath(buildRequestIdHash);
+        for (Map.Entry<Gavtc, String> en : readContents(requestId, dir, gavtcs).entrySet()) {
+            result.put(en.getKey().getGavtcString(), sha1Of(en.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Reads the sha1 files and the {@value #STATS} files of the given artifacts, listing each of the two directories
+     * only once.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> retrieveSha1sAndFileStats(String requestId, String buildRequestIdHash,
+            Collection<? extends Gavtc> gavtcs, Map<String, FileStat> fileStats) {
+        final Map<String, String> result = new HashMap<>();
+        final Path dir = createBuildRequestIdPath(buildRequestIdHash);
+        final Map<Gavtc, String> sha1s = readContents(requestId, dir, gavtcs);
+        if (sha1s.isEmpty()) {
+            return result;
+        }
+        final Map<Gavtc, String> stats = readContents(requestId, dir.resolve(STATS), sha1s.keySet());
+        for (Map.Entry<Gavtc, String> en : sha1s.entrySet()) {
+            final String gavtcString = en.getKey().getGavtcString();
+            result.put(gavtcString, sha1Of(en.getValue()));
+            final String stat = stats.get(en.getKey());
+            final FileStat fileStat = stat == null ? null : fileStatOf(stat);
+            if (fileStat != null) {
+                fileStats.put(gavtcString, fileStat);
+            }
+        }
+        return result;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void storeCommitId(String requestId, String buildRequestIdHash, String commitId) {
-        final Path p = createBuildRequestIdPath(buildRequestIdHash).resolve(COMMIT_ID);
+        final Path p = ensureEntryDirectory(buildRequestIdHash, true).resolve(COMMIT_ID);
         log.debug("srcdeps[{}]: Path [{}] will point at commitId [{}]", requestId, p, commitId);
         store(p, commitId);
+        gcIfDue();
     }
 
     /** {@inheritDoc} */
     @Override
     public void storeSha1(String requestId, String buildRequestIdHash, Gavtc gavtc, String sha1) {
-        final String gavtcString = gavtc.getGavtcString().replace(':', '_');
-        final Path p = createBuildRequestIdPath(buildRequestIdHash).resolve(gavtcString);
-        log.debug("srcdeps[{}]: Path [{}] will point at sha1 [{}]", requestId, p, sha1);
-        store(p, sha1);
+        final Path dir = ensureStatsDirectory(ensureEntryDirectory(buildRequestIdHash, false));
+        log.debug("srcdeps[{}]: Path [{}] will point at sha1 [{}]", requestId, dir.resolve(toFileName(gavtc)), sha1);
+        store(dir, gavtc, sha1, null);
+    }
+
+    /**
+     * Rewrites the {@value #STATS} files of the given artifacts so that they contain the given {@link FileStat}s. The
+     * artifacts having no sha1 stored are ignored. Prefer {@link #storeSha1sAndFileStats(String, String, Map, Map)}
+     * which does not need to read the sha1 files.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeFileStats(String requestId, String buildRequestIdHash,
+            Map<? extends Gavtc, FileStat> fileStats) {
+        final Map<Gavtc, String> sha1s = new HashMap<>();
+        final Path dir = createBuildRequestIdPath(buildRequestIdHash);
+        for (Map.Entry<Gavtc, String> en : readContents(requestId, dir, fileStats.keySet()).entrySet()) {
+            sha1s.put(en.getKey(), sha1Of(en.getValue()));
+        }
+        storeSha1sAndFileStats(requestId, buildRequestIdHash, sha1s, fileStats);
     }
 
     /** {@inheritDoc} */
     @Override
+    public void storeSha1s(String requestId, String buildRequestIdHash, Map<? extends Gavtc, String> sha1s) {
+        storeSha1sAndFileStats(requestId, buildRequestIdHash, sha1s, Collections.<Gavtc, FileStat>emptyMap());
+    }
+
+    /**
+     * Writes the sha1 of each artifact to its sha1 file and its gavtc and {@link FileStat} to its {@value #STATS}
+     * file.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeSha1sAndFileStats(String requestId, String buildRequestIdHash,
+            Map<? extends Gavtc, String> sha1s, Map<? extends Gavtc, FileStat> fileStats) {
+        final Path dir = ensureStatsDirectory(ensureEntryDirectory(buildRequestIdHash, false));
+        log.debug("srcdeps[{}]: Storing {} sha1s and {} file stats in [{}]", requestId, sha1s.size(),
+                fileStats.size(), dir);
+        for (Map.Entry<? extends Gavtc, String> en : sha1s.entrySet()) {
+            store(dir, en.getKey(), en.getValue(), fileStats.get(en.getKey()));
+        }
+    }
+
+    /**
+     * Rebuilds the manifest of the known build request hashes by walking the whole directory tree of this store. This
+     * is done automatically by {@link #walkBuildRequestHashes(Consumer)} if the manifest does not exist (e.g. in a
+     * store created by an older version of srcdeps) or if it may be incomplete. The time of the last use of each
+     * entry is set to the modification time of its {@code commitId} file or of its directory.
+     *
+     * @return a {@link Map} from build request hashes to the times of their last use
+     * @since 5.0.2
+     */
+    public Map<String, Long> repairManifest() {
+        return manifest.withLock(() -> {
+            final long start = System.currentTimeMillis();
+            final Map<String, Long> result = new TreeMap<>();
+            Files.walkFileTree(rootDirectory, new BuildRequestHashVisitor(hash -> {
+                final Path dir = createBuildRequestIdPath(hash);
+                final Path commitId = dir.resolve(COMMIT_ID);
+                try {
+                    result.put(hash, Files.getLastModifiedTime(Files.exists(commitId) ? commitId : dir).toMillis());
+                } catch (IOException e) {
+                    /* removed concurrently */
+                }
+            }));
+            manifest.write(result);
+            log.info("srcdeps: Rebuilt [{}] with {} build request hashes in {} ms", manifest.getFile(), result.size(),
+                    System.currentTimeMillis() - start);
+            return result;
+        });
+    }
+
+    /**
+     * Lists the hashes in the order of their natural ordering by reading the manifest file. The manifest is rebuilt by
+     * walking the whole directory tree only if necessary, see {@link #repairManifest()}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
     public void walkBuildRequestHashes(Consumer<String> consumer) {
-        try {
-            Files.walkFileTree(rootDirectory, new BuildRequestHashVisitor(consumer));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        Map<String, Long> hashes = manifest.read();
+        if (hashes == null) {
+            hashes = repairManifest();
+        }
+        for (String hash : hashes.keySet()) {
+            consumer.accept(hash);
         }
     }
 
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import org.srcdeps.core.ArtifactCacheTransport;
+
+/**
+ * An {@link ArtifactCacheTransport} storing the files in a directory, typically on a filesystem shared by several
+ * machines, such as NFS. The files are written to temporary files first and then moved atomically to their final
+ * location so that the readers never see partially written files.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class FileSystemTransport implements ArtifactCacheTransport {
+
+    private final Path rootDirectory;
+
+    public FileSystemTransport(Path rootDirectory) {
+        super();
+        this.rootDirectory = rootDirectory;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(rootDirectory.resolve(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean get(String key, Path destination) throws IOException {
+        try {
+            Files.copy(rootDirectory.resolve(key), destination, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the directory where the files are stored
+     */
+    public Path getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void put(String key, Path source) throws IOException {
+        final Path target = rootDirectory.resolve(key);
+        Files.createDirectories(target.getParent());
+        final Path tmp = target.resolveSibling(target.getFileName().toString() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(source, tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return rootDirectory.toUri().toString();
+    }
+
+}
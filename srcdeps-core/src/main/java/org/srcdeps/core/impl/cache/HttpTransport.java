@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.srcdeps.core.ArtifactCacheTransport;
+
+/**
+ * An {@link ArtifactCacheTransport} using plain HTTP {@code HEAD}, {@code GET} and {@code PUT} requests, as supported
+ * by many artifact repository managers and by simple WebDAV servers. The key of a file is resolved against the base
+ * URI to get the URL of the file.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class HttpTransport implements ArtifactCacheTransport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private static final int READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(60);
+
+    private final URI baseUri;
+
+    /**
+     * @param baseUri the base URI of the remote store; a trailing slash is added if there is none
+     */
+    public HttpTransport(URI baseUri) {
+        super();
+        final String uriString = baseUri.toString();
+        this.baseUri = uriString.endsWith("/") ? baseUri : URI.create(uriString + "/");
+    }
+
+    private HttpURLConnection connect(String method, String key) throws IOException {
+        final URL url = baseUri.resolve(key).toURL();
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String key) throws IOException {
+        final HttpURLConnection connection = connect("HEAD", key);
+        try {
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return false;
+            }
+            ensureSuccess(connection, status, key);
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void ensureSuccess(HttpURLConnection connection, int status, String key) throws IOException {
+        if (status / 100 != 2) {
+            throw new IOException(String.format("%s [%s] failed with HTTP status %d", connection.getRequestMethod(),
+                    baseUri.resolve(key), status));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean get(String key, Path destination) throws IOException {
+        final HttpURLConnection connection = connect("GET", key);
+        try {
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return false;
+            }
+            ensureSuccess(connection, status, key);
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the base URI of the remote store, always ending with a slash
+     */
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void put(String key, Path source) throws IOException {
+        final HttpURLConnection connection = connect("PUT", key);
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setFixedLengthStreamingMode(Files.size(source));
+            try (OutputStream out = connection.getOutputStream()) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                try (InputStream in = Files.newInputStream(source)) {
+                    int len;
+                    while ((len = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, len);
+                    }
+                }
+            }
+            ensureSuccess(connection, connection.getResponseCode(), key);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseUri.toString();
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactCache;
+import org.srcdeps.core.ArtifactCacheTransport;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
+import org.srcdeps.core.fs.LocalArtifactCache;
+
+/**
+ * An {@link ArtifactCache} sharing the built artifacts between machines through an {@link ArtifactCacheTransport}.
+ * <p>
+ * The remote store has the same layout as the given {@link LocalArtifactCache}: the artifacts are keyed by the
+ * digests of their content under {@code blobs/} and the lists of artifacts are keyed by
+ * {@link org.srcdeps.core.BuildRequest#getHash()} and commitId under {@code entries/}. When storing, the missing blobs
+ * are uploaded before the entry so that no other machine can see an entry whose blobs are not available yet. When
+ * restoring, the local cache is consulted first; the remote entry and the missing blobs are downloaded only if the
+ * local cache cannot serve the request. Each downloaded blob is verified against its digest before it is put to the
+ * local cache, so a corrupted or tampered remote blob is never restored.
+ * <p>
+ * The remote store is an optimization only: any failure to communicate with it is logged and the build is treated as
+ * not cached.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class RemoteArtifactCache implements ArtifactCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteArtifactCache.class);
+
+    private final LocalArtifactCache localCache;
+
+    private final ArtifactCacheTransport transport;
+
+    /**
+     * @param localCache the local cache to serve the requests from if possible and to download the artifacts to
+     * @param transport the {@link ArtifactCacheTransport} to access the remote store
+     */
+    public RemoteArtifactCache(LocalArtifactCache localCache, ArtifactCacheTransport transport) {
+        super();
+        this.localCache = localCache;
+        this.transport = transport;
+    }
+
+    /**
+     * Downloads the blob having the given {@code digest} to the local cache, verifying its content on the way.
+     *
+     * @return {@code true} if the blob was downloaded and it matches its {@code digest}; otherwise {@code false}
+     */
+    private boolean download(String requestId, String digest) throws IOException {
+        final Path blob = localCache.createBlobPath(digest);
+        Files.createDirectories(blob.getParent());
+        final Path tmp = blob.resolveSibling(blob.getFileName().toString() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            final String key = keyOf(blob);
+            if (!transport.get(key, tmp)) {
+                log.debug("srcdeps[{}]: No artifact [{}] in remote cache [{}]", requestId, key, transport);
+                return false;
+            }
+            if (!LocalArtifactCache.verifyBlob(requestId, digest, tmp)) {
+                log.warn("srcdeps[{}]: Rejecting artifact [{}] from remote cache [{}]: digest mismatch", requestId,
+                        key, transport);
+                return false;
+            }
+            Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the local cache this {@link RemoteArtifactCache} downloads the artifacts to
+     */
+    public LocalArtifactCache getLocalCache() {
+        return localCache;
+    }
+
+    /**
+     * @return the {@link ArtifactCacheTransport} to access the remote store
+     */
+    public ArtifactCacheTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @param path a path under the root directory of {@link #localCache}
+     * @return the key of the given {@code path} in the remote store
+     */
+    private String keyOf(Path path) {
+        return localCache.getRootDirectory().relativize(path).toString().replace('\\', '/');
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<GavtcPath> restore(String requestId, String buildRequestIdHash, String commitId,
+            MavenLocalRepository localRepository) {
+        final List<GavtcPath> result = localCache.restore(requestId, buildRequestIdHash, commitId, localRepository);
+        if (result != null) {
+            return result;
+        }
+        final Path entryPath = localCache.createEntryPath(buildRequestIdHash, commitId);
+        final String entryKey = keyOf(entryPath);
+        final Path tmp = entryPath.resolveSibling(commitId + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(entryPath.getParent());
+            if (!transport.get(entryKey, tmp)) {
+                log.debug("srcdeps[{}]: No entry [{}] in remote cache [{}]", requestId, entryKey, transport);
+                return null;
+            }
+            final Map<String, String> entry = LocalArtifactCache.readEntry(requestId, tmp);
+            if (entry == null) {
+                return null;
+            }
+            int downloaded = 0;
+            for (String digest : new LinkedHashSet<>(entry.values())) {
+                if (!localCache.verifyBlob(requestId, digest)) {
+                    if (!download(requestId, digest)) {
+                        return null;
+                    }
+                    downloaded++;
+                }
+            }
+            Files.move(tmp, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("srcdeps[{}]: Downloaded {} artifacts built out of commitId [{}] from remote cache [{}]",
+                    requestId, downloaded, commitId, transport);
+        } catch (IOException e) {
+            log.warn(String.format("srcdeps[%s]: Could not download [%s] from remote cache [%s]", requestId, entryKey,
+                    transport), e);
+            return null;
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.debug("srcdeps[{}]: Could not delete [{}]", requestId, tmp, e);
+            }
+        }
+        return localCache.restore(requestId, buildRequestIdHash, commitId, localRepository);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(String requestId, String buildRequestIdHash, String commitId,
+            Collection<? extends GavtcPath> artifacts) {
+        localCache.store(requestId, buildRequestIdHash, commitId, artifacts);
+        final Path entryPath = localCache.createEntryPath(buildRequestIdHash, commitId);
+        final Map<String, String> entry = localCache.readEntry(requestId, buildRequestIdHash, commitId);
+        if (entry == null) {
+            return;
+        }
+        final Set<String> digests = new LinkedHashSet<>(entry.values());
+        try {
+            int uploaded = 0;
+            for (String digest : digests) {
+                final Path blob = localCache.createBlobPath(digest);
+                final String key = keyOf(blob);
+                if (!transport.exists(key)) {
+                    transport.put(key, blob);
+                    uploaded++;
+                }
+            }
+            /* The entry goes last so that the other machines never see an entry with missing blobs */
+            transport.put(keyOf(entryPath), entryPath);
+            log.info("srcdeps[{}]: Uploaded {} of {} artifacts built out of commitId [{}] to remote cache [{}]",
+                    requestId, uploaded, digests.size(), commitId, transport);
+        } catch (IOException e) {
+            log.warn(String.format("srcdeps[%s]: Could not upload artifacts built out of commitId [%s] to remote cache"
+                    + " [%s]", requestId, commitId, transport), e);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.srcdeps.core.ArtifactDigester;
+
+/**
+ * A base for {@link ArtifactDigester}s reading the artifacts through a {@link FileChannel} into a direct
+ * {@link ByteBuffer} of {@value #BUFFER_SIZE} bytes reused by all digest computations on the given thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public abstract class AbstractArtifactDigester implements ArtifactDigester {
+
+    /** The size of the per thread read buffer in bytes; the value is {@value #BUFFER_SIZE} */
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+
+    private final String algorithm;
+
+    protected AbstractArtifactDigester(String algorithm) {
+        super();
+        this.algorithm = algorithm;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String digest(Path artifact) throws IOException {
+        try (FileChannel channel = FileChannel.open(artifact, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            return digest(channel, buffer);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the whole given {@code channel} and computes its digest.
+     *
+     * @param channel the channel to read
+     * @param buffer a cleared {@link ByteOrder#LITTLE_ENDIAN} buffer to use for reading
+     * @return the digest in hex form
+     * @throws IOException on read errors
+     */
+    protected abstract String digest(FileChannel channel, ByteBuffer buffer) throws IOException;
+
+    /** {@inheritDoc} */
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + algorithm + "]";
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactDigester;
+
+/**
+ * A registry of the {@link ArtifactDigester}s available via {@link ServiceLoader}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public final class ArtifactDigesters {
+
+    /** Lazily initialized on the first access */
+    private static class RegistryHolder {
+        private static final Map<String, ArtifactDigester> DIGESTERS;
+        static {
+            final Map<String, ArtifactDigester> digesters = new TreeMap<>();
+            for (ArtifactDigester digester : ServiceLoader.load(ArtifactDigester.class,
+                    ArtifactDigesters.class.getClassLoader())) {
+                final ArtifactDigester old = digesters.putIfAbsent(digester.getAlgorithm(), digester);
+                if (old != null) {
+                    log.warn("srcdeps: Ignoring {} because {} is registered for the same algorithm already", digester,
+                            old);
+                }
+            }
+            DIGESTERS = Collections.unmodifiableMap(digesters);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ArtifactDigesters.class);
+
+    /**
+     * @param algorithm the algorithm name, such as {@value ArtifactDigester#SHA1} or
+     *        {@value Xxh64ArtifactDigester#ALGORITHM}
+     * @return the {@link ArtifactDigester} for the given {@code algorithm}
+     * @throws IllegalArgumentException if there is no {@link ArtifactDigester} for the given {@code algorithm}
+     */
+    public static ArtifactDigester forAlgorithm(String algorithm) {
+        final ArtifactDigester result = RegistryHolder.DIGESTERS.get(algorithm);
+        if (result == null) {
+            throw new IllegalArgumentException(String.format("No %s available for algorithm [%s]; expected any of %s",
+                    ArtifactDigester.class.getSimpleName(), algorithm, RegistryHolder.DIGESTERS.keySet()));
+        }
+        return result;
+    }
+
+    /**
+     * @param algorithm the algorithm name
+     * @param sha1Sidecars if {@code true} and {@code algorithm} is {@value ArtifactDigester#SHA1}, the returned
+     *        {@link ArtifactDigester} reads the sha1s from the {@code .sha1} files next to the artifacts where
+     *        possible, see {@link Sha1SidecarArtifactDigester}
+     * @return the {@link ArtifactDigester} for the given {@code algorithm}
+     * @throws IllegalArgumentException if there is no {@link ArtifactDigester} for the given {@code algorithm}
+     */
+    public static ArtifactDigester forAlgorithm(String algorithm, boolean sha1Sidecars) {
+        final ArtifactDigester result = forAlgorithm(algorithm);
+        return sha1Sidecars && ArtifactDigester.SHA1.equals(algorithm) ? new Sha1SidecarArtifactDigester(result)
+                : result;
+    }
+
+    private ArtifactDigesters() {
+    }
+
+}
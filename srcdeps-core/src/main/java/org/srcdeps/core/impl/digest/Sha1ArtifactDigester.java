@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.srcdeps.core.ArtifactDigester;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * An {@link ArtifactDigester} computing the sha1 of the whole content of the artifact. This is the default
+ * {@link ArtifactDigester} compatible with the values stored by srcdeps versions older than 5.0.2.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class Sha1ArtifactDigester extends AbstractArtifactDigester {
+
+    /** A shared instance */
+    public static final Sha1ArtifactDigester INSTANCE = new Sha1ArtifactDigester();
+
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    /**
+     * Public so that it can be instantiated by {@link java.util.ServiceLoader}; prefer {@link #INSTANCE}.
+     */
+    public Sha1ArtifactDigester() {
+        super(ArtifactDigester.SHA1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String digest(FileChannel channel, ByteBuffer buffer) throws IOException {
+        final MessageDigest digest = digests.get();
+        digest.reset();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return SrcdepsCoreUtils.bytesToHexString(digest.digest());
+    }
+
+}
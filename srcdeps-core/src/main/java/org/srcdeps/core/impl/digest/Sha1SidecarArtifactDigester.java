@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.ArtifactDigester;
+
+/**
+ * An {@link ArtifactDigester} that reads the sha1 of an artifact from the {@code .sha1} file next to it, as written
+ * by Maven's install or deploy with checksums enabled. The {@code .sha1} file is used only if it is not older than
+ * the artifact and if it contains a well formed sha1. Otherwise the sha1 is computed by the {@link #delegate}.
+ * <p>
+ * Note that this trusts whatever wrote the {@code .sha1} file to have written the correct value. A {@code .sha1}
+ * file not updated after the artifact was overwritten in place within the timestamp resolution of the filesystem
+ * goes unnoticed.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class Sha1SidecarArtifactDigester implements ArtifactDigester {
+
+    private static final Logger log = LoggerFactory.getLogger(Sha1SidecarArtifactDigester.class);
+
+    private static final Pattern SHA1_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+    /** Longer files cannot be {@code .sha1} files */
+    private static final int SIDECAR_MAX_SIZE = 1024;
+
+    private static final String SIDECAR_SUFFIX = ".sha1";
+
+    /**
+     * @param artifact the artifact whose {@code .sha1} file should be read
+     * @return the sha1 from the {@code .sha1} file next to the given {@code artifact} or {@code null} if there is no
+     *         such file or if it is older than the {@code artifact} or if it does not contain a sha1
+     * @throws IOException on read errors
+     */
+    static String readSidecar(Path artifact) throws IOException {
+        final Path sidecar = artifact.resolveSibling(artifact.getFileName().toString() + SIDECAR_SUFFIX);
+        final BasicFileAttributes sidecarAttrs;
+        final BasicFileAttributes artifactAttrs;
+        try {
+            sidecarAttrs = Files.readAttributes(sidecar, BasicFileAttributes.class);
+            artifactAttrs = Files.readAttributes(artifact, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (sidecarAttrs.size() > SIDECAR_MAX_SIZE
+                || sidecarAttrs.lastModifiedTime().compareTo(artifactAttrs.lastModifiedTime()) < 0) {
+            log.debug("srcdeps: Ignoring stale or oversized [{}]", sidecar);
+            return null;
+        }
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(sidecar), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        /* Some tools append the file name after the sha1 */
+        final int end = content.indexOf(' ');
+        final String sha1 = (end >= 0 ? content.substring(0, end) : content).toLowerCase();
+        if (!SHA1_PATTERN.matcher(sha1).matches()) {
+            log.debug("srcdeps: Ignoring [{}] not containing a sha1", sidecar);
+            return null;
+        }
+        return sha1;
+    }
+
+    /** Computes the sha1 if the {@code .sha1} file cannot be used */
+    private final ArtifactDigester delegate;
+
+    public Sha1SidecarArtifactDigester(ArtifactDigester delegate) {
+        super();
+        this.delegate = delegate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String digest(Path artifact) throws IOException {
+        final String result = readSidecar(artifact);
+        return result != null ? result : delegate.digest(artifact);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getAlgorithm() {
+        return ArtifactDigester.SHA1;
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.srcdeps.core.ArtifactDigester;
+
+/**
+ * An {@link ArtifactDigester} computing the 64-bit <a href="https://cyan4973.github.io/xxHash/">xxHash</a> (XXH64,
+ * seed {@code 0}) of the whole content of the artifact. This is several times faster than SHA-1 and good enough for
+ * change detection, but it is not a cryptographic hash.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public class Xxh64ArtifactDigester extends AbstractArtifactDigester {
+
+    /** The name of the algorithm */
+    public static final String ALGORITHM = "xxh64";
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    /** The number of bytes processed by a single iteration of the main loop */
+    private static final int STRIPE = 32;
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    /**
+     * Public so that it can be instantiated by {@link java.util.ServiceLoader}.
+     */
+    public Xxh64ArtifactDigester() {
+        super(ALGORITHM);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String digest(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long v1 = PRIME1 + PRIME2;
+        long v2 = PRIME2;
+        long v3 = 0;
+        long v4 = -PRIME1;
+        long length = 0;
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            length += read;
+            buffer.flip();
+            while (buffer.remaining() >= STRIPE) {
+                v1 = round(v1, buffer.getLong());
+                v2 = round(v2, buffer.getLong());
+                v3 = round(v3, buffer.getLong());
+                v4 = round(v4, buffer.getLong());
+            }
+            /* keep the unprocessed tail at the beginning of the buffer */
+            buffer.compact();
+        }
+        buffer.flip();
+
+        long h;
+        if (length >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME5;
+        }
+        h += length;
+
+        while (buffer.remaining() >= 8) {
+            h ^= round(0, buffer.getLong());
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (buffer.remaining() >= 4) {
+            h ^= (buffer.getInt() & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+        }
+        while (buffer.hasRemaining()) {
+            h ^= (buffer.get() & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return String.format("%016x", h);
+    }
+
+}
@@ -56,7 +56,7 @@ public class DefaultScmService implements ScmService {
         final String firstUrl = request.getScmUrls().iterator().next();
         log.info("srcdeps[{}]: Executing build request [{}]", request.getScmRepositoryId(), request);
         for (Scm scm : scms) {
-            if (scm.supports(firstUrl)) {
+            if (scm.supports(request)) {
                 log.info("srcdeps[{}]: Using SCM implementation [{}] to check out URL [{}] to directory [{}]",
                         request.getScmRepositoryId(), scm.getClass().getName(), firstUrl, dir);
                 return scm.checkout(request);
@@ -0,0 +1,668 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.scm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.srcdeps.core.BuildException;
+import org.srcdeps.core.BuildRequest;
+import org.srcdeps.core.Ga;
+import org.srcdeps.core.MavenSourceTree;
+import org.srcdeps.core.MavenSourceTree.ActiveProfiles;
+import org.srcdeps.core.MavenSourceTree.Module;
+import org.srcdeps.core.Scm;
+import org.srcdeps.core.ScmException;
+import org.srcdeps.core.SrcVersion;
+import org.srcdeps.core.SrcVersion.WellKnownType;
+import org.srcdeps.core.shell.BadExitCodeException;
+import org.srcdeps.core.shell.LineConsumer;
+import org.srcdeps.core.shell.Shell;
+import org.srcdeps.core.shell.ShellCommand;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * A Git {@link Scm} based on the native {@code git} executable available on {@code PATH}. It is used for URLs
+ * starting with {@value #SCM_GIT_CLI_PREFIX} and for URLs starting with {@code git:} if
+ * {@link BuildRequest#isGitCli()} is {@code true}.
+ * <p>
+ * The directory layout, the remote aliases, the {@link JGitScm#getSrcdepsWorkingBranch()} and the shared object store
+ * are the same as with {@link JGitScm}, so that both implementations can operate on the same checkout directories.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+@Named
+@Singleton
+public class GitCliScm implements Scm {
+    private static final String GIT_EXECUTABLE = "git";
+    private static final Logger log = LoggerFactory.getLogger(GitCliScm.class);
+    private static final String SCM_GIT_CLI_PREFIX = "git-cli:";
+    private static final String SPARSE_CHECKOUT_FILE = "info/sparse-checkout";
+    private static final String SPARSE_CHECKOUT_MARKER_PREFIX = "# srcdeps sparse checkout of ";
+
+    /**
+     * Computes the sparse checkout patterns (in the {@code .gitignore} syntax) selecting the files that belong to the
+     * given {@code includedModuleDirs} plus all {@code pom.xml} files of the source tree so that Maven is still able
+     * to read the whole reactor. A file belongs to the module whose directory is the longest prefix of the file's
+     * path. To keep the number of patterns low, whole directories are selected rather than single files where
+     * possible, i.e. where the directory contains no module directory.
+     *
+     * @param files the paths of all files in the source tree relative to the root directory, using {@code /} as
+     *        separator
+     * @param moduleDirs the directories of all modules of the source tree relative to the root directory, using
+     *        {@code /} as separator; the root directory is represented by an empty string
+     * @param includedModuleDirs the subset of {@code moduleDirs} whose files should be checked out
+     * @return a sorted {@link Set} of patterns
+     */
+    static Set<String> computeSparseCheckoutPatterns(Collection<String> files, Set<String> moduleDirs,
+            Set<String> includedModuleDirs) {
+        /* module directories and their ancestors; we can never select those as a whole */
+        final Set<String> moduleDirAncestors = new HashSet<>();
+        for (String moduleDir : moduleDirs) {
+            String dir = moduleDir;
+            while (!dir.isEmpty() && moduleDirAncestors.add(dir)) {
+                final int slashPos = dir.lastIndexOf('/');
+                dir = slashPos >= 0 ? dir.substring(0, slashPos) : "";
+            }
+        }
+
+        final Set<String> result = new TreeSet<>();
+        result.add("pom.xml");
+        for (String file : files) {
+            String owner = file;
+            do {
+                final int slashPos = owner.lastIndexOf('/');
+                owner = slashPos >= 0 ? owner.substring(0, slashPos) : "";
+            } while (!owner.isEmpty() && !moduleDirs.contains(owner));
+            if (!includedModuleDirs.contains(owner)) {
+                continue;
+            }
+            int slashPos = owner.isEmpty() ? file.indexOf('/') : file.indexOf('/', owner.length() + 1);
+            String pattern = "/" + escapeSparseCheckoutPattern(file);
+            while (slashPos >= 0) {
+                final String dir = file.substring(0, slashPos);
+                if (!moduleDirAncestors.contains(dir)) {
+                    pattern = "/" + escapeSparseCheckoutPattern(dir) + "/";
+                    break;
+                }
+                slashPos = file.indexOf('/', slashPos + 1);
+            }
+            result.add(pattern);
+        }
+        return result;
+    }
+
+    private static String escapeSparseCheckoutPattern(String path) {
+        final StringBuilder result = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            switch (ch) {
+            case '\\':
+            case '*':
+            case '?':
+            case '[':
+                result.append('\\');
+                break;
+            default:
+                break;
+            }
+            result.append(ch);
+        }
+        return result.toString();
+    }
+
+    public static String getScmGitCliPrefix() {
+        return SCM_GIT_CLI_PREFIX;
+    }
+
+    /**
+     * @param request the {@link BuildRequest} to create the marker for
+     * @return the first line of the {@value #SPARSE_CHECKOUT_FILE} file identifying the set of
+     *         {@link BuildRequest#getBuildIncludes()} the sparse checkout was computed for or {@code null} if the
+     *         given {@code request} does not require a sparse checkout
+     */
+    private static String getSparseCheckoutMarker(BuildRequest request) {
+        if (!request.isSparseCheckout() || request.getBuildIncludes().isEmpty()) {
+            return null;
+        }
+        final StringBuilder result = new StringBuilder(SPARSE_CHECKOUT_MARKER_PREFIX);
+        for (Ga ga : new TreeSet<>(request.getBuildIncludes())) {
+            if (result.length() > SPARSE_CHECKOUT_MARKER_PREFIX.length()) {
+                result.append(',');
+            }
+            result.append(ga);
+        }
+        for (String arg : request.getBuildArguments()) {
+            result.append(' ').append(arg);
+        }
+        return result.toString();
+    }
+
+    private static String readSparseCheckoutMarker(Path sparseCheckoutFile) throws IOException {
+        try (BufferedReader r = Files.newBufferedReader(sparseCheckoutFile, StandardCharsets.UTF_8)) {
+            final String line = r.readLine();
+            return line != null && line.startsWith(SPARSE_CHECKOUT_MARKER_PREFIX) ? line : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static String stripUriPrefix(String url) {
+        if (url.startsWith(SCM_GIT_CLI_PREFIX)) {
+            return url.substring(SCM_GIT_CLI_PREFIX.length());
+        } else if (url.startsWith(JGitScm.getScmGitPrefix())) {
+            return url.substring(JGitScm.getScmGitPrefix().length());
+        }
+        return url;
+    }
+
+    /**
+     * Makes sure that the given {@code commitSha1} is reachable from at least one of the remote tracking branches of
+     * {@code remoteAlias}, using {@code git rev-list <commitSha1> --not --remotes=<remoteAlias>}: the
+     * {@code commitSha1} is reachable iff the output is empty. The remote tracking branches are those updated by the
+     * preceding fetch of all branches, so neither the URL needs to be contacted again nor do the tips of all branches
+     * need to be passed on the command line.
+     *
+     * @param requestId the current request id
+     * @param gitDir the repository to search in
+     * @param remoteAlias the alias of the remote whose remote tracking branches should be searched
+     * @param commitSha1 the commit to find
+     * @param url the URL that was used to fetch
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @throws ScmException if the given {@code commitSha1} could not be found in the history of any of the remote
+     *         tracking branches
+     */
+    private void assertRevisionFetched(String requestId, Path gitDir, String remoteAlias, String commitSha1,
+            String url, long timeoutMs) throws ScmException {
+        if (!gitSucceeds(requestId, gitDir, timeoutMs, "cat-file", "-e", commitSha1 + "^{commit}")) {
+            throw new ScmException(String.format("Could not fetch revision [%s] from [%s]", commitSha1, url));
+        }
+        if (!git(requestId, gitDir, timeoutMs, "rev-list", "-n", "1", commitSha1, "--not",
+                "--remotes=" + remoteAlias).isEmpty()) {
+            throw new ScmException(String.format(
+                    "Could not find revision [%s] in the history of any of the branches fetched from [%s]", commitSha1,
+                    url));
+        }
+    }
+
+    /**
+     * Checkout the source tree of a project to build, esp. using {@link BuildRequest#getScmUrls()} and
+     * {@link BuildRequest#getSrcVersion()} of the given {@code request}.
+     * <p>
+     * This implementation works the same way as {@link JGitScm#checkout(BuildRequest)}, including the verification
+     * that the requested branch, tag or revision is really available at the URL it was fetched from, the
+     * {@link BuildRequest#getSharedObjectStoreDirectory()} including the refs that protect the checked out commits
+     * from {@code git gc}, {@link BuildRequest#isShallowFetch()} and skipping the
+     * checkout if the working tree is at the requested commit already. {@link BuildRequest#isRaceUrls()} is not
+     * supported and the URLs are always tried in the given order.
+     * <p>
+     * If {@link BuildRequest#isSparseCheckout()} is {@code true} and {@link BuildRequest#getBuildIncludes()} is not
+     * empty, only the {@code pom.xml} files and the files of the modules required to build the
+     * {@link BuildRequest#getBuildIncludes()} are checked out, see {@link #sparseCheckout(BuildRequest, String)}.
+     *
+     * @param request determines the project to checkout
+     * @return the {@code commitId} the {@code HEAD} points at
+     * @throws ScmException on any SCM related problem
+     * @see org.srcdeps.core.Scm#checkout(org.srcdeps.core.BuildRequest)
+     */
+    @Override
+    public String checkout(BuildRequest request) throws ScmException {
+        final String requestId = request.getScmRepositoryId();
+        final Path dir = request.getProjectRootDirectory();
+        final Path sharedStore = request.getSharedObjectStoreDirectory();
+        final long timeoutMs = request.getTimeoutMs();
+
+        if (!Files.isDirectory(dir.resolve(".git"))) {
+            try {
+                SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+            } catch (IOException e) {
+                throw new ScmException(String.format("Could not create directory [%s]", dir), e);
+            }
+            git(requestId, dir, timeoutMs, "init", "--quiet");
+        }
+        if (sharedStore != null) {
+            try {
+                if (JGitScm.ensureAlternatesAvailable(dir.resolve(".git"), sharedStore)) {
+                    log.debug("srcdeps[{}]: Linked [{}] to the shared object store [{}]", requestId, dir,
+                            sharedStore);
+                }
+            } catch (IOException e) {
+                throw new ScmException(
+                        String.format("Could not link [%s] to the shared object store [%s]", dir, sharedStore), e);
+            }
+        }
+
+        final List<String> urls = request.getScmUrls();
+        int i = 0;
+        for (String url : urls) {
+            final String result = fetchAndReset(request, stripUriPrefix(url), i, urls.size());
+            if (result != null) {
+                return result;
+            }
+            i++;
+        }
+        throw new ScmException(
+                String.format("Could not checkout [%s] from URLs %s", request.getSrcVersion(), request.getScmUrls()));
+    }
+
+    /**
+     * Fetches the given {@code srcVersion} from the given {@code useUrl} into the given {@code gitDir} and makes sure
+     * that it was really available at that URL. For branches and tags, this is ensured by {@code git fetch} itself,
+     * because it fails if the remote does not advertise the ref given in an explicit refspec.
+     *
+     * @param requestId the current request id
+     * @param useUrl the URL to fetch from
+     * @param remoteAlias the alias of the remote to use
+     * @param srcVersion the version to fetch
+     * @param shallowFetch if {@code true} and {@code srcVersion} is immutable, try to fetch just the given tag or
+     *        commit first
+     * @param gitDir the repository to fetch into
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @return the SHA-1 of the commit the {@code srcVersion} points at
+     * @throws ScmException if the {@code srcVersion} could not be fetched from {@code useUrl}
+     */
+    private String fetch(String requestId, String useUrl, String remoteAlias, SrcVersion srcVersion,
+            boolean shallowFetch, Path gitDir, long timeoutMs) throws ScmException {
+        git(requestId, gitDir, timeoutMs, "config", "remote." + remoteAlias + ".url", useUrl);
+        git(requestId, gitDir, timeoutMs, "config", "remote." + remoteAlias + ".fetch",
+                "+refs/heads/*:refs/remotes/" + remoteAlias + "/*");
+
+        if (shallowFetch && srcVersion.getWellKnownType().isImmutable()) {
+            final String result = fetchShallow(requestId, useUrl, remoteAlias, srcVersion, gitDir, timeoutMs);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        final String scmVersion = srcVersion.getScmVersion();
+        final String startPoint;
+        switch (srcVersion.getWellKnownType()) {
+        case branch:
+            startPoint = "refs/remotes/" + remoteAlias + "/" + scmVersion;
+            git(requestId, gitDir, timeoutMs, "fetch", "--quiet", remoteAlias,
+                    "+refs/heads/" + scmVersion + ":" + startPoint);
+            break;
+        case tag:
+            startPoint = "refs/tags/" + scmVersion;
+            git(requestId, gitDir, timeoutMs, "fetch", "--quiet", remoteAlias, "+" + startPoint + ":" + startPoint);
+            break;
+        case revision:
+            startPoint = scmVersion;
+            /* --prune so that the remote tracking branches match what the remote advertises */
+            git(requestId, gitDir, timeoutMs, "fetch", "--quiet", "--prune", remoteAlias);
+            assertRevisionFetched(requestId, gitDir, remoteAlias, scmVersion, useUrl, timeoutMs);
+            break;
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+        return resolveCommit(requestId, gitDir, startPoint, useUrl, timeoutMs);
+    }
+
+    String fetchAndReset(BuildRequest request, String useUrl, int urlIndex, int urlCount) throws ScmException {
+        final String requestId = request.getScmRepositoryId();
+        final SrcVersion srcVersion = request.getSrcVersion();
+        final boolean shallowFetch = request.isShallowFetch();
+        final Path dir = request.getProjectRootDirectory();
+        final Path sharedStore = request.getSharedObjectStoreDirectory();
+        final long timeoutMs = request.getTimeoutMs();
+        log.info("srcdeps[{}]: Fetching version [{}] from SCM URL {}/{} [{}]", requestId, srcVersion, urlIndex + 1,
+                urlCount, useUrl);
+        final String remoteAlias = JGitScm.toRemoteAlias(useUrl);
+        try {
+            final String startCommit;
+            if (sharedStore == null) {
+                startCommit = fetch(requestId, useUrl, remoteAlias, srcVersion, shallowFetch, dir, timeoutMs);
+            } else {
+                startCommit = JGitScm.withSharedObjectStoreLocked(sharedStore, () -> {
+                    if (!Files.exists(sharedStore.resolve("HEAD"))) {
+                        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(sharedStore);
+                        git(requestId, sharedStore, timeoutMs, "init", "--bare", "--quiet");
+                    }
+                    final String commit = fetch(requestId, useUrl, remoteAlias, srcVersion, shallowFetch,
+                            sharedStore, timeoutMs);
+                    /* Keep gc from pruning the commit checked out in dir, see JGitScm.checkout(BuildRequest) */
+                    git(requestId, sharedStore, timeoutMs, "update-ref", JGitScm.toPinRef(dir), commit);
+                    return commit;
+                });
+            }
+
+            final Path sparseCheckoutFile = dir.resolve(".git").resolve(SPARSE_CHECKOUT_FILE);
+            final String sparseCheckoutMarker = getSparseCheckoutMarker(request);
+            final String oldSparseCheckoutMarker = readSparseCheckoutMarker(sparseCheckoutFile);
+            if (Objects.equals(sparseCheckoutMarker, oldSparseCheckoutMarker)
+                    && isCheckedOutCleanly(requestId, dir, startCommit, timeoutMs)) {
+                log.info("srcdeps[{}]: [{}] already checked out cleanly at [{}] in [{}]", requestId,
+                        JGitScm.getSrcdepsWorkingBranch(), startCommit, dir);
+                return startCommit;
+            }
+            if (oldSparseCheckoutMarker != null) {
+                disableSparseCheckout(requestId, dir, timeoutMs);
+            }
+
+            if (sparseCheckoutMarker == null) {
+                reset(requestId, dir, startCommit, timeoutMs);
+            } else {
+                sparseCheckout(request, startCommit);
+            }
+            return resolveCommit(requestId, dir, "HEAD", useUrl, timeoutMs);
+        } catch (ScmException e) {
+            final String msg = String.format("srcdeps[%s]: Could not checkout [%s] from SCM URL %d/%d [%s]", requestId,
+                    srcVersion, urlIndex + 1, urlCount, useUrl);
+            if (urlIndex + 1 == urlCount) {
+                throw new ScmException(msg, e);
+            } else {
+                log.warn(msg, e);
+            }
+        } catch (Exception e) {
+            throw new ScmException(String.format("Could not checkout [%s] from SCM URL %d/%d [%s]", srcVersion,
+                    urlIndex + 1, urlCount, useUrl), e);
+        }
+        return null;
+    }
+
+    /**
+     * Checks out the whole source tree again after a {@link #sparseCheckout(BuildRequest, String)}.
+     *
+     * @param requestId the current request id
+     * @param dir the repository to operate on
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @throws ScmException if any of the {@code git} commands fails
+     * @throws IOException if the {@value #SPARSE_CHECKOUT_FILE} file cannot be written or deleted
+     */
+    private void disableSparseCheckout(String requestId, Path dir, long timeoutMs) throws ScmException, IOException {
+        log.info("srcdeps[{}]: Disabling sparse checkout in [{}]", requestId, dir);
+        final Path sparseCheckoutFile = dir.resolve(".git").resolve(SPARSE_CHECKOUT_FILE);
+        if (gitSucceeds(requestId, dir, timeoutMs, "rev-parse", "--verify", "--quiet", "HEAD")) {
+            /* Re-populate the files marked with the skip-worktree bit */
+            Files.write(sparseCheckoutFile, "/*\n".getBytes(StandardCharsets.UTF_8));
+            git(requestId, dir, timeoutMs, "read-tree", "-mu", "HEAD");
+        }
+        git(requestId, dir, timeoutMs, "config", "core.sparseCheckout", "false");
+        Files.delete(sparseCheckoutFile);
+    }
+
+    private static String[] concat(String[] args, String... moreArgs) {
+        final String[] result = Arrays.copyOf(args, args.length + moreArgs.length);
+        System.arraycopy(moreArgs, 0, result, args.length, moreArgs.length);
+        return result;
+    }
+
+    /**
+     * Fetches just the single tag or commit required by the given immutable {@code srcVersion} rather than all
+     * branches of the remote repository.
+     * <p>
+     * Unlike {@link JGitScm}, this implementation also limits the history of the fetched commit using
+     * {@code --depth 1}, but only if the repository in {@code gitDir} is shallow already or if it has no refs yet.
+     * Fetching with {@code --depth} into a repository having the complete history would make it shallow and hide the
+     * history the repository had before.
+     *
+     * @param requestId the current request id
+     * @param useUrl the URL to fetch from
+     * @param remoteAlias the alias of the remote to use
+     * @param srcVersion the immutable version to fetch
+     * @param gitDir the repository to fetch into
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @return the SHA-1 of the commit the {@code srcVersion} points at or {@code null} if the remote repository does
+     *         not allow fetching the given commit directly and the caller should fall back to fetching all branches
+     * @throws ScmException if the {@code srcVersion} could not be fetched from {@code useUrl}
+     */
+    private String fetchShallow(String requestId, String useUrl, String remoteAlias, SrcVersion srcVersion,
+            Path gitDir, long timeoutMs) throws ScmException {
+        final String scmVersion = srcVersion.getScmVersion();
+        final boolean limitDepth = "true".equals(git(requestId, gitDir, timeoutMs, "rev-parse",
+                "--is-shallow-repository")) || git(requestId, gitDir, timeoutMs, "for-each-ref", "--count=1").isEmpty();
+        final String[] fetchArgs = limitDepth ? new String[] { "fetch", "--quiet", "--no-tags", "--depth", "1" }
+                : new String[] { "fetch", "--quiet", "--no-tags" };
+        switch (srcVersion.getWellKnownType()) {
+        case tag:
+            final String tagRef = "refs/tags/" + scmVersion;
+            git(requestId, gitDir, timeoutMs, concat(fetchArgs, remoteAlias, "+" + tagRef + ":" + tagRef));
+            return resolveCommit(requestId, gitDir, tagRef, useUrl, timeoutMs);
+        case revision:
+            /*
+             * If the commit is not available locally yet, a successful fetch proves that the remote has it. Otherwise
+             * we have to check the reachability from the remote tracking branches; if they do not know the commit,
+             * we fall back to fetching all branches
+             */
+            final boolean available = gitSucceeds(requestId, gitDir, timeoutMs, "cat-file", "-e",
+                    scmVersion + "^{commit}");
+            try {
+                git(requestId, gitDir, timeoutMs, concat(fetchArgs, remoteAlias, scmVersion));
+                if (available) {
+                    assertRevisionFetched(requestId, gitDir, remoteAlias, scmVersion, useUrl, timeoutMs);
+                }
+                return resolveCommit(requestId, gitDir, scmVersion, useUrl, timeoutMs);
+            } catch (ScmException e) {
+                log.info("srcdeps[{}]: Could not fetch the single commit [{}] from [{}]; fetching all branches",
+                        requestId, scmVersion, useUrl);
+                log.debug(String.format("srcdeps[%s]: Single commit fetch failed", requestId), e);
+                return null;
+            }
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+    }
+
+    /**
+     * Executes {@code git} with the given {@code args} in the given {@code workingDirectory}.
+     *
+     * @param requestId the current request id
+     * @param workingDirectory the directory to execute {@code git} in
+     * @param timeoutMs the timeout for the {@code git} command
+     * @param args the arguments to pass to {@code git}
+     * @return the trimmed output of the command
+     * @throws ScmException if the command fails or times out
+     */
+    String git(String requestId, Path workingDirectory, long timeoutMs, String... args) throws ScmException {
+        final LineConsumer out = LineConsumer.string();
+        final ShellCommand command = ShellCommand.builder() //
+                .id(requestId) //
+                .executable(GIT_EXECUTABLE) //
+                .arguments(args) //
+                .workingDirectory(workingDirectory) //
+                .environmentEntry("GIT_TERMINAL_PROMPT", "0") //
+                .output(() -> out) //
+                .timeoutMs(timeoutMs) //
+                .build();
+        try {
+            Shell.execute(command);
+            return out.toString().trim();
+        } catch (BuildException e) {
+            throw new ScmException(String.format("Command %s failed in [%s]: %s",
+                    Arrays.toString(command.asCmdArray()), workingDirectory, out.toString().trim()), e);
+        }
+    }
+
+    private boolean gitSucceeds(String requestId, Path workingDirectory, long timeoutMs, String... args)
+            throws ScmException {
+        try {
+            git(requestId, workingDirectory, timeoutMs, args);
+            return true;
+        } catch (ScmException e) {
+            if (e.getCause() instanceof BadExitCodeException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The native {@code git} counterpart of {@link JGitScm#isCheckedOutCleanly(String, org.eclipse.jgit.api.Git,
+     * String)}. {@code git status} compares the size and modification time of the files with those recorded in the
+     * index and reads the content of a file only if those do not allow for a decision.
+     *
+     * @param requestId the current request id
+     * @param dir the repository to check
+     * @param commitId the SHA-1 of the commit that should be checked out
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @return {@code true} if {@link JGitScm#getSrcdepsWorkingBranch()} is checked out at the given {@code commitId}
+     *         and there are no changes; {@code false} otherwise
+     */
+    boolean isCheckedOutCleanly(String requestId, Path dir, String commitId, long timeoutMs) {
+        try {
+            if (!("refs/heads/" + JGitScm.getSrcdepsWorkingBranch())
+                    .equals(git(requestId, dir, timeoutMs, "symbolic-ref", "--quiet", "HEAD"))
+                    || !commitId.equals(git(requestId, dir, timeoutMs, "rev-parse", "--verify", "--quiet", "HEAD"))) {
+                return false;
+            }
+            final String status = git(requestId, dir, timeoutMs, "status", "--porcelain");
+            if (!status.isEmpty()) {
+                log.debug("srcdeps[{}]: [{}] has uncommitted changes: {}", requestId, dir, status);
+                return false;
+            }
+            return true;
+        } catch (ScmException e) {
+            log.debug(String.format("srcdeps[%s]: Could not check the status of [%s]", requestId, dir), e);
+            return false;
+        }
+    }
+
+    /**
+     * Resets the {@link JGitScm#getSrcdepsWorkingBranch()} to the given {@code commitId}, forgetting any local changes.
+     *
+     * @param requestId the current request id
+     * @param dir the repository to operate on
+     * @param commitId the commit to reset to
+     * @param timeoutMs the timeout for the {@code git} commands
+     * @throws ScmException if any of the {@code git} commands fails
+     */
+    private void reset(String requestId, Path dir, String commitId, long timeoutMs) throws ScmException {
+        git(requestId, dir, timeoutMs, "checkout", "--quiet", "--force", "-B", JGitScm.getSrcdepsWorkingBranch(),
+                commitId);
+        for (String line : git(requestId, dir, timeoutMs, "clean", "-d", "--force").split("\n")) {
+            if (!line.isEmpty()) {
+                log.debug("srcdeps[{}]: {}", requestId, line);
+            }
+        }
+    }
+
+    /**
+     * @param requestId the current request id
+     * @param gitDir the repository to search in
+     * @param startPoint a ref name or a SHA-1 to resolve
+     * @param url the URL that was used to fetch
+     * @param timeoutMs the timeout for the {@code git} command
+     * @return the SHA-1 of the commit the given {@code startPoint} points at
+     * @throws ScmException if the given {@code startPoint} cannot be resolved
+     */
+    private String resolveCommit(String requestId, Path gitDir, String startPoint, String url, long timeoutMs)
+            throws ScmException {
+        try {
+            return git(requestId, gitDir, timeoutMs, "rev-parse", "--verify", "--quiet", startPoint + "^{commit}");
+        } catch (ScmException e) {
+            throw new ScmException(String.format("Could not resolve [%s] fetched from [%s]", startPoint, url), e);
+        }
+    }
+
+    /**
+     * Checks out only those files of the given {@code commitId} that are necessary to build the
+     * {@link BuildRequest#getBuildIncludes()} of the given {@code request}: first, only the {@code pom.xml} files are
+     * checked out so that the {@link MavenSourceTree} can be read and the closure of the modules required by the
+     * {@link BuildRequest#getBuildIncludes()} can be computed. Second, the files of those modules are added to the
+     * working tree, see {@link #computeSparseCheckoutPatterns(Collection, Set, Set)}. If the source tree has no
+     * {@code pom.xml} file in its root directory, the whole source tree is checked out.
+     *
+     * @param request the {@link BuildRequest} to perform the sparse checkout for
+     * @param commitId the commit to check out
+     * @throws ScmException if any of the {@code git} commands fails
+     * @throws IOException if the {@value #SPARSE_CHECKOUT_FILE} file cannot be written
+     */
+    private void sparseCheckout(BuildRequest request, String commitId) throws ScmException, IOException {
+        final String requestId = request.getScmRepositoryId();
+        final Path dir = request.getProjectRootDirectory();
+        final long timeoutMs = request.getTimeoutMs();
+        final String marker = getSparseCheckoutMarker(request);
+        final Path sparseCheckoutFile = dir.resolve(".git").resolve(SPARSE_CHECKOUT_FILE);
+        Files.createDirectories(sparseCheckoutFile.getParent());
+
+        /* Phase 1: the pom.xml files only */
+        git(requestId, dir, timeoutMs, "config", "core.sparseCheckout", "true");
+        Files.write(sparseCheckoutFile, Arrays.asList(marker, "pom.xml"), StandardCharsets.UTF_8);
+        reset(requestId, dir, commitId, timeoutMs);
+        git(requestId, dir, timeoutMs, "read-tree", "-mu", "HEAD");
+
+        final Path rootPom = dir.resolve("pom.xml");
+        if (!Files.exists(rootPom)) {
+            log.warn("srcdeps[{}]: Cannot perform a sparse checkout of [{}]: no root pom.xml file", requestId, dir);
+            disableSparseCheckout(requestId, dir, timeoutMs);
+            return;
+        }
+
+        /* Phase 2: add the files of the required modules */
+        final MavenSourceTree tree = MavenSourceTree.of(rootPom, request.getEncoding());
+        final Set<Ga> requiredGas = tree.computeModuleClosure(request.getBuildIncludes(),
+                ActiveProfiles.ofArgs(request.getBuildArguments()));
+        final Set<String> moduleDirs = new HashSet<>();
+        final Set<String> requiredModuleDirs = new HashSet<>();
+        for (Map.Entry<Ga, Module> en : tree.getModulesByGa().entrySet()) {
+            final String pomPath = en.getValue().getPomPath();
+            final String moduleDir = pomPath.substring(0, Math.max(0, pomPath.length() - "/pom.xml".length()));
+            moduleDirs.add(moduleDir);
+            if (requiredGas.contains(en.getKey())) {
+                requiredModuleDirs.add(moduleDir);
+            }
+        }
+        final List<String> files = Arrays.asList(git(requestId, dir, timeoutMs, "-c", "core.quotePath=false",
+                "ls-tree", "-r", "--name-only", commitId).split("\n"));
+        final Set<String> patterns = computeSparseCheckoutPatterns(files, moduleDirs, requiredModuleDirs);
+        log.info("srcdeps[{}]: Sparse checkout of {} out of {} modules in [{}]", requestId,
+                requiredModuleDirs.size(), moduleDirs.size(), dir);
+        final List<String> lines = new ArrayList<>(patterns.size() + 1);
+        lines.add(marker);
+        lines.addAll(patterns);
+        Files.write(sparseCheckoutFile, lines, StandardCharsets.UTF_8);
+        git(requestId, dir, timeoutMs, "read-tree", "-mu", "HEAD");
+    }
+
+    @Override
+    public boolean supports(String url) {
+        return url.startsWith(SCM_GIT_CLI_PREFIX);
+    }
+
+    /**
+     * @return {@code true} if the first of {@link BuildRequest#getScmUrls()} starts with
+     *         {@value #SCM_GIT_CLI_PREFIX} or if it starts with {@code git:} and {@link BuildRequest#isGitCli()} is
+     *         {@code true}; otherwise {@code false}
+     */
+    @Override
+    public boolean supports(BuildRequest request) {
+        final String firstUrl = request.getScmUrls().iterator().next();
+        return supports(firstUrl) || (request.isGitCli() && firstUrl.startsWith(JGitScm.getScmGitPrefix()));
+    }
+
+}
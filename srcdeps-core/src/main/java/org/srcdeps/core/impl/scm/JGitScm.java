@@ -17,14 +17,34 @@
 package org.srcdeps.core.impl.scm;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -32,15 +52,25 @@ import javax.inject.Singleton;
 import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.srcdeps.core.BuildRequest;
@@ -59,11 +89,76 @@ import org.srcdeps.core.util.SrcdepsCoreUtils;
 @Singleton
 public class JGitScm implements Scm {
     private static final Logger log = LoggerFactory.getLogger(JGitScm.class);
+    /** The prefix of the refs pinning the commits checked out in the directories using a shared object store */
+    private static final String PIN_REF_PREFIX = "refs/srcdeps/";
     private static final String REMOTE = "remote";
     private static final String SCM_GIT_PREFIX = "git:";
 
     private static final String SRCDEPS_WORKING_BRANCH = "srcdeps-working-branch";
 
+    /** Serializes the access to shared object stores within the present JVM */
+    private static final ConcurrentMap<Path, Lock> sharedObjectStoreLocks = new ConcurrentHashMap<>();
+
+    /**
+     * The maximal number of SCM URLs probed in parallel by all {@link JGitScm} instances; the further probes wait in
+     * a queue. The value is {@value}.
+     */
+    static final int URL_PROBE_THREADS = 8;
+
+    /**
+     * Used for probing the SCM URLs in parallel, see {@link #raceUrls(String, List, SrcVersion)}. The pool is shared
+     * by all {@link JGitScm} instances and its idle daemon threads terminate after a minute so that nothing needs to
+     * be shut down.
+     */
+    private static final ExecutorService urlProbeExecutor = newUrlProbeExecutor();
+
+    private static ExecutorService newUrlProbeExecutor() {
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor result = new ThreadPoolExecutor(URL_PROBE_THREADS, URL_PROBE_THREADS, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                    final Thread t = new Thread(r,
+                            JGitScm.class.getSimpleName() + "-url-probe-" + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    /**
+     * Makes sure that the {@code objects/info/alternates} file of the given {@code git} repository points at the
+     * {@code objects} directory of the given {@code sharedStore}.
+     *
+     * @param git the repository whose alternates should be checked
+     * @param sharedStore the bare repository whose objects should be available in {@code git}
+     * @return {@code true} if the alternates file had to be written, {@code false} otherwise
+     * @throws IOException on I/O problems
+     */
+    static boolean ensureAlternatesAvailable(Git git, Path sharedStore) throws IOException {
+        return ensureAlternatesAvailable(git.getRepository().getDirectory().toPath(), sharedStore);
+    }
+
+    /**
+     * Makes sure that the {@code objects/info/alternates} file of the git repository in the given {@code gitDir}
+     * points at the {@code objects} directory of the given {@code sharedStore}.
+     *
+     * @param gitDir the {@code .git} directory of the repository whose alternates should be checked
+     * @param sharedStore the bare repository whose objects should be available in {@code gitDir}
+     * @return {@code true} if the alternates file had to be written, {@code false} otherwise
+     * @throws IOException on I/O problems
+     */
+    static boolean ensureAlternatesAvailable(Path gitDir, Path sharedStore) throws IOException {
+        final Path alternates = gitDir.resolve("objects").resolve("info").resolve("alternates");
+        final String expected = sharedStore.resolve("objects").toAbsolutePath().toString() + "\n";
+        if (Files.exists(alternates)
+                && expected.equals(new String(Files.readAllBytes(alternates), StandardCharsets.UTF_8))) {
+            return false;
+        }
+        SrcdepsCoreUtils.ensureDirectoryExists(alternates.getParent());
+        Files.write(alternates, expected.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
     static void ensureRemoteAvailable(String useUrl, String remoteAlias, Git git) throws IOException {
         final StoredConfig config = git.getRepository().getConfig();
         boolean save = false;
@@ -108,20 +203,176 @@ public class JGitScm implements Scm {
         }
     }
 
+    /**
+     * Opens or creates the git repository in the given {@code dir} and makes sure that it borrows the objects from
+     * the given {@code sharedStore}.
+     *
+     * @param requestId the current request id
+     * @param dir the directory to open or init the git repository in
+     * @param sharedStore the bare repository whose objects should be available in {@code dir}
+     * @return the {@link Git} instance seeing also the objects of the {@code sharedStore}
+     * @throws ScmException on any SCM related problem
+     */
+    private static Git openGit(String requestId, Path dir, Path sharedStore) throws ScmException {
+        final Git git = openGit(requestId, dir);
+        try {
+            if (ensureAlternatesAvailable(git, sharedStore)) {
+                log.debug("srcdeps[{}]: Linked [{}] to the shared object store [{}]", requestId, dir, sharedStore);
+                /* Reopen so that the new alternates get visible */
+                git.close();
+                return Git.open(dir.toFile());
+            }
+            return git;
+        } catch (IOException e) {
+            git.close();
+            throw new ScmException(
+                    String.format("Could not link [%s] to the shared object store [%s]", dir, sharedStore), e);
+        }
+    }
+
+    /**
+     * Checks whether the {@link #SRCDEPS_WORKING_BRANCH} is checked out in the given {@code git} repository, points
+     * at the given {@code commitId} and whether the working tree has no changes against it, so that the usual clean,
+     * reset and checkout sequence can be skipped. The check of the working tree relies on the size and modification
+     * time of the files recorded in the index; the content of a file is compared only if those do not allow for a
+     * decision. Files ignored via {@code .gitignore} are not taken into account, same as with {@code git clean -d}.
+     *
+     * @param requestId the current request id
+     * @param git the repository to check
+     * @param commitId the SHA-1 of the commit that should be checked out
+     * @return {@code true} if {@link #SRCDEPS_WORKING_BRANCH} is checked out at the given {@code commitId} and there
+     *         are no changes; {@code false} otherwise
+     */
+    static boolean isCheckedOutCleanly(String requestId, Git git, String commitId) {
+        try {
+            final Ref head = git.getRepository().exactRef(Constants.HEAD);
+            if (head == null || !head.isSymbolic()
+                    || !(Constants.R_HEADS + SRCDEPS_WORKING_BRANCH).equals(head.getTarget().getName())
+                    || head.getObjectId() == null || !commitId.equals(head.getObjectId().getName())) {
+                return false;
+            }
+            final Status status = git.status().call();
+            if (!status.isClean()) {
+                log.debug("srcdeps[{}]: [{}] has uncommitted changes: {}", requestId,
+                        git.getRepository().getWorkTree(), status.getUncommittedChanges());
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.debug(String.format("srcdeps[%s]: Could not check the status of [%s]", requestId,
+                    git.getRepository().getWorkTree()), e);
+            return false;
+        }
+    }
+
+    /**
+     * Opens or creates the bare git repository in the given {@code sharedStore} directory. The caller is supposed to
+     * hold the lock of the {@code sharedStore}.
+     *
+     * @param requestId the current request id
+     * @param sharedStore the directory to open or init the bare repository in
+     * @return the {@link Git} instance
+     * @throws ScmException on any SCM related problem
+     */
+    private static Git openSharedObjectStore(String requestId, Path sharedStore) throws ScmException {
+        try {
+            return Git.open(sharedStore.toFile());
+        } catch (IOException e) {
+            log.debug(String.format("srcdeps[%s]: No shared object store in [%s]", requestId, sharedStore), e);
+        }
+        try {
+            SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(sharedStore);
+            return Git.init().setBare(true).setDirectory(sharedStore.toFile()).call();
+        } catch (IOException | GitAPIException e) {
+            throw new ScmException(String.format("Could not create shared object store [%s]", sharedStore), e);
+        }
+    }
+
+    /**
+     * Calls the given {@code callable} while holding an exclusive lock of the given {@code sharedStore}. The lock is
+     * exclusive both within the present JVM and across processes, the latter through locking a sibling
+     * {@code <sharedStore>.lock} file.
+     *
+     * @param sharedStore the shared object store to lock
+     * @param callable the action to perform
+     * @return the result of {@code callable}
+     * @throws Exception whatever {@code callable} or the locking throws
+     */
+    static <T> T withSharedObjectStoreLocked(Path sharedStore, Callable<T> callable) throws Exception {
+        final Lock lock = sharedObjectStoreLocks.computeIfAbsent(sharedStore.toAbsolutePath().normalize(),
+                k -> new ReentrantLock());
+        lock.lock();
+        try {
+            final Path lockFile = sharedStore.resolveSibling(sharedStore.getFileName().toString() + ".lock");
+            SrcdepsCoreUtils.ensureDirectoryExists(lockFile.getParent());
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE); FileLock fileLock = channel.lock()) {
+                return callable.call();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates or moves the {@link #toPinRef(Path) pinning ref} of the given {@code dir} in the given shared object
+     * store so that the given {@code commit} cannot be pruned from there.
+     *
+     * @param storeGit the shared object store
+     * @param dir the checkout directory using {@code storeGit}
+     * @param commit the commit to pin
+     * @throws ScmException if the ref could not be updated
+     */
+    private static void pin(Git storeGit, Path dir, String commit) throws ScmException {
+        final String refName = toPinRef(dir);
+        try {
+            final RefUpdate refUpdate = storeGit.getRepository().updateRef(refName);
+            refUpdate.setNewObjectId(ObjectId.fromString(commit));
+            refUpdate.setForceUpdate(true);
+            final RefUpdate.Result result = refUpdate.update();
+            switch (result) {
+            case NEW:
+            case FORCED:
+            case FAST_FORWARD:
+            case NO_CHANGE:
+                break;
+            default:
+                throw new ScmException(String.format("Could not update [%s] to [%s] in [%s]: %s", refName, commit,
+                        storeGit.getRepository().getDirectory(), result));
+            }
+        } catch (IOException e) {
+            throw new ScmException(String.format("Could not update [%s] to [%s] in [%s]", refName, commit,
+                    storeGit.getRepository().getDirectory()), e);
+        }
+    }
+
     private static String stripUriPrefix(String url) {
         return url.substring(SCM_GIT_PREFIX.length());
     }
 
+    /**
+     * @param dir a checkout directory using a shared object store
+     * @return the name of the ref in the shared object store that pins the commit checked out in {@code dir}; it is a
+     *         Byte64 encoded sha1 hash of the absolute {@code dir} path prefixed with {@value #PIN_REF_PREFIX}
+     */
+    static String toPinRef(Path dir) {
+        return PIN_REF_PREFIX + toSha1Base64(dir.toAbsolutePath().normalize().toString());
+    }
+
     /**
      * @param url the git URL to generate a remote alias for
      * @return a Byte64 encoded sha1 hash of the given {@code url} prefixed with {@code origin-}
      */
     static String toRemoteAlias(String url) {
+        return "origin-" + toSha1Base64(url);
+    }
+
+    private static String toSha1Base64(String value) {
         try {
             final MessageDigest sha1Digest = MessageDigest.getInstance("SHA-1");
-            sha1Digest.update(url.getBytes(StandardCharsets.UTF_8));
+            sha1Digest.update(value.getBytes(StandardCharsets.UTF_8));
             final byte[] bytes = sha1Digest.digest();
-            return "origin-" + Base64.getUrlEncoder().encodeToString(bytes);
+            return Base64.getUrlEncoder().encodeToString(bytes);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
@@ -145,7 +396,14 @@ public class JGitScm implements Scm {
     }
 
     /**
-     * Walks back through the history of the {@code advertisedRefs} and tries to find the given {@code commitSha1}.
+     * Makes sure that the given {@code commitSha1} is reachable from at least one of the {@code advertisedRefs}.
+     * <p>
+     * If the {@code commitSha1} is directly one of the advertised tips, no walk is needed at all. Otherwise, if the
+     * given {@code repository} has a reachability bitmap index, the bitmaps are used. Otherwise a single
+     * {@link RevWalk} is started from the {@code commitSha1} with all advertised tips marked as uninteresting: the
+     * {@code commitSha1} is reachable iff it gets marked as uninteresting too, i.e. iff the walk returns no commit.
+     * This way the walk stops as soon as the answer is known rather than traversing the whole history of every
+     * advertised ref.
      *
      * @param repository the current {@link Repository} to search in
      * @param advertisedRefs the list of refs that were fetched and whose histories should be searched through
@@ -156,28 +414,53 @@ public class JGitScm implements Scm {
      */
     private void assertRevisionFetched(Repository repository, Collection<Ref> advertisedRefs, String commitSha1,
             String url) throws ScmException {
-        ObjectId needle = ObjectId.fromString(commitSha1);
-        try {
-            for (Ref ref : advertisedRefs) {
-
-                try (RevWalk walk = new RevWalk(repository)) {
-                    walk.markStart(walk.parseCommit(ref.getTarget().getObjectId()));
-                    walk.setRetainBody(false);
+        final ObjectId needle = ObjectId.fromString(commitSha1);
+        final List<ObjectId> tips = new ArrayList<>(advertisedRefs.size());
+        for (Ref ref : advertisedRefs) {
+            final ObjectId tip = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+            if (needle.equals(tip)) {
+                return;
+            } else if (tip != null) {
+                tips.add(tip);
+            }
+        }
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            final RevCommit needleCommit = walk.parseCommit(needle);
 
-                    for (RevCommit commit : walk) {
-                        if (commit.getId().equals(needle)) {
-                            return;
+            final BitmapIndex bitmapIndex = walk.getObjectReader().getBitmapIndex();
+            if (bitmapIndex != null) {
+                final BitmapWalker bitmapWalker = new BitmapWalker(new ObjectWalk(walk.getObjectReader()),
+                        bitmapIndex, null);
+                if (bitmapWalker.findObjects(tips, null, true).contains(needle)) {
+                    return;
+                }
+            } else {
+                walk.markStart(needleCommit);
+                boolean tipAvailable = false;
+                for (ObjectId tip : tips) {
+                    try {
+                        final RevObject tipObject = walk.peel(walk.parseAny(tip));
+                        if (tipObject instanceof RevCommit) {
+                            walk.markUninteresting((RevCommit) tipObject);
+                            tipAvailable = true;
                         }
+                    } catch (MissingObjectException e) {
+                        /* A ref that was advertised but not fetched to this repository cannot contain the needle */
                     }
                 }
-
+                if (tipAvailable && walk.next() == null) {
+                    return;
+                }
             }
         } catch (IOException e) {
-            new ScmException(String.format("Could not fetch ref [%s] from [%s]", commitSha1, url), e);
+            throw new ScmException(String.format("Could not fetch ref [%s] from [%s]", commitSha1, url), e);
         }
         throw new ScmException(String.format("Could not fetch ref [%s] from [%s]", commitSha1, url));
     }
 
+    private final ScmUrlStats urlStats = new ScmUrlStats();
+
     /**
      * Checkout the source tree of a project to build, esp. using {@link BuildRequest#getScmUrls()} and
      * {@link BuildRequest#getSrcVersion()} of the given {@code request}.
@@ -185,6 +468,30 @@ public class JGitScm implements Scm {
      * This implementation first checks if {@code request.getProjectRootDirectory()} returns a directory containing a
      * valid git repository. If it does not, git init operation is invoked. After that git fetch and git reset are used
      * to checkout the sources.
+     * <p>
+     * If {@link BuildRequest#getSharedObjectStoreDirectory()} is not {@code null}, the fetch is performed into a bare
+     * repository in that directory and the repository in {@code request.getProjectRootDirectory()} only refers to its
+     * objects via {@code objects/info/alternates}. Hence the history of the remote repository needs to be downloaded
+     * and stored only once for all checkout directories sharing the same object store. Because nothing in the shared
+     * store would otherwise refer to the commits checked out in the particular directories (think of a force-pushed
+     * branch or a revision fetched without any ref), a {@code git gc} of the shared store could prune their objects
+     * and thus corrupt the directories. Therefore, each fetch into the shared store creates or moves a ref named by
+     * {@link #toPinRef(Path)} to the commit to be checked out in the given directory. There is one such ref per
+     * directory, so the objects no longer checked out anywhere can still get pruned.
+     * <p>
+     * If {@link BuildRequest#isShallowFetch()} is {@code true} and {@link BuildRequest#getSrcVersion()} is immutable,
+     * only the given tag or commit is fetched rather than all branches of the remote repository, unless the remote
+     * repository refuses to serve the commit in which case all branches are fetched as usual.
+     * <p>
+     * If {@link BuildRequest#isRaceUrls()} is {@code true}, all {@link BuildRequest#getScmUrls()} are probed in
+     * parallel and the first one advertising the requested {@link SrcVersion} is used first, see
+     * {@link #raceUrls(String, List, SrcVersion)}.
+     * <p>
+     * If the {@link #SRCDEPS_WORKING_BRANCH} is already checked out at the fetched commit and there are no local
+     * changes, the working tree is left untouched, see {@link #isCheckedOutCleanly(String, Git, String)}.
+     * <p>
+     * {@link BuildRequest#isSparseCheckout()} is not supported by this implementation and the whole source tree is
+     * always checked out; see {@link GitCliScm#checkout(BuildRequest)}.
      *
      * @param request determines the project to checkout
      * @return the {@code commitId} the {@code HEAD} points at
@@ -194,14 +501,25 @@ public class JGitScm implements Scm {
     @Override
     public String checkout(BuildRequest request) throws ScmException {
         final Path dir = request.getProjectRootDirectory();
+        final Path sharedStore = request.getSharedObjectStoreDirectory();
+        if (request.isSparseCheckout()) {
+            log.info("srcdeps[{}]: Sparse checkout is not supported by {}; checking out the whole source tree",
+                    request.getScmRepositoryId(), JGitScm.class.getSimpleName());
+        }
         int i = 0;
-        final List<String> urls = request.getScmUrls();
+        final List<String> urls = new ArrayList<>(request.getScmUrls().size());
+        for (String url : request.getScmUrls()) {
+            urls.add(stripUriPrefix(url));
+        }
 
-        try (Git git = openGit(request.getScmRepositoryId(), dir)) {
-            for (String url : urls) {
-                final String useUrl = stripUriPrefix(url);
+        try (Git git = sharedStore == null ? openGit(request.getScmRepositoryId(), dir)
+                : openGit(request.getScmRepositoryId(), dir, sharedStore)) {
+            final List<String> useUrls = request.isRaceUrls() && urls.size() > 1
+                    ? raceUrls(request.getScmRepositoryId(), urls, request.getSrcVersion())
+                    : urls;
+            for (String useUrl : useUrls) {
                 final String result = fetchAndReset(request.getScmRepositoryId(), useUrl, i, urls.size(),
-                        request.getSrcVersion(), dir, git);
+                        request.getSrcVersion(), request.isShallowFetch(), dir, git, sharedStore);
                 if (result != null) {
                     return result;
                 }
@@ -212,79 +530,148 @@ public class JGitScm implements Scm {
                 String.format("Could not checkout [%s] from URLs %s", request.getSrcVersion(), request.getScmUrls()));
     }
 
-    String fetchAndReset(String requestId, String useUrl, int urlIndex, int urlCount, SrcVersion srcVersion, Path dir,
-            Git git) throws ScmException {
-        /* Forget local changes */
+    /**
+     * @return the latency and failure statistics of the URLs fetched from or probed by
+     *         {@link #raceUrls(String, List, SrcVersion)}
+     */
+    ScmUrlStats getUrlStats() {
+        return urlStats;
+    }
+
+    /**
+     * Lists the refs of the given {@code url} and checks whether the given {@code srcVersion} is advertised there.
+     * The latency or failure gets recorded in {@link #urlStats}.
+     *
+     * @param url the URL to probe
+     * @param srcVersion the version to look for
+     * @return the given {@code url}
+     * @throws ScmException if the refs could not be listed or if the {@code srcVersion} is not advertised
+     */
+    String probe(String url, SrcVersion srcVersion) throws ScmException {
+        final long start = System.nanoTime();
+        final Map<String, Ref> refs;
         try {
-            Set<String> removedFiles = git.clean().setCleanDirectories(true).call();
-            for (String removedFile : removedFiles) {
-                log.debug("srcdeps[{}]: Removed an unstaged file [{}]", requestId, removedFile);
+            refs = Git.lsRemoteRepository().setRemote(url).callAsMap();
+        } catch (GitAPIException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                urlStats.recordFailure(url);
             }
-            git.reset().setMode(ResetType.HARD).call();
+            throw new ScmException(String.format("Could not list refs of [%s]", url), e);
+        }
+        urlStats.recordSuccess(url, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-        } catch (Exception e) {
-            log.warn(String.format("srcdeps[%s]: Could not forget local changes in [%s]", requestId, dir), e);
+        final String scmVersion = srcVersion.getScmVersion();
+        final String refToFind;
+        switch (srcVersion.getWellKnownType()) {
+        case branch:
+            refToFind = "refs/heads/" + scmVersion;
+            break;
+        case tag:
+            refToFind = "refs/tags/" + scmVersion;
+            break;
+        case revision:
+            /* Revisions are not advertised; the reachability is checked after the fetch */
+            return url;
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+        if (!refs.containsKey(refToFind)) {
+            throw new ScmException(String.format("[%s] does not advertise [%s]", url, refToFind));
+        }
+        return url;
+    }
+
+    /**
+     * Probes all given {@code urls} in parallel and returns them reordered so that the first one advertising the
+     * given {@code srcVersion} comes first. The probes that are still running at that point get cancelled. The
+     * remaining URLs are ordered by their past latency and failures using {@link ScmUrlStats#sort(Collection)}.
+     *
+     * @param requestId the current request id
+     * @param urls the URLs to probe
+     * @param srcVersion the version to look for
+     * @return a new reordered {@link List} of {@code urls}
+     */
+    List<String> raceUrls(String requestId, List<String> urls, SrcVersion srcVersion) {
+        final List<String> sortedUrls = urlStats.sort(urls);
+        final CompletionService<String> completionService = new ExecutorCompletionService<>(urlProbeExecutor);
+        final List<Future<String>> futures = new ArrayList<>(sortedUrls.size());
+        for (String url : sortedUrls) {
+            futures.add(completionService.submit(() -> probe(url, srcVersion)));
+        }
+        String winner = null;
+        try {
+            for (int i = 0; i < sortedUrls.size() && winner == null; i++) {
+                try {
+                    winner = completionService.take().get();
+                } catch (ExecutionException e) {
+                    log.debug(String.format("srcdeps[%s]: SCM URL probe failed", requestId), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
         }
 
+        if (winner == null) {
+            log.warn("srcdeps[{}]: None of the SCM URLs {} advertises [{}]", requestId, sortedUrls, srcVersion);
+            return sortedUrls;
+        }
+        log.info("srcdeps[{}]: SCM URL [{}] was the first one to advertise [{}]", requestId, winner, srcVersion);
+        final List<String> result = new ArrayList<>(sortedUrls.size());
+        result.add(winner);
+        for (String url : sortedUrls) {
+            if (!url.equals(winner)) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+
+    String fetchAndReset(String requestId, String useUrl, int urlIndex, int urlCount, SrcVersion srcVersion,
+            boolean shallowFetch, Path dir, Git git, Path sharedStore) throws ScmException {
         log.info("srcdeps[{}]: Fetching version [{}] from SCM URL {}/{} [{}]", requestId, srcVersion, urlIndex + 1,
                 urlCount, useUrl);
         final String remoteAlias = toRemoteAlias(useUrl);
         try {
+            final String startCommit;
+            if (sharedStore == null) {
+                startCommit = fetchAndRecordStats(requestId, useUrl, remoteAlias, srcVersion, shallowFetch, git);
+            } else {
+                startCommit = withSharedObjectStoreLocked(sharedStore, () -> {
+                    try (Git storeGit = openSharedObjectStore(requestId, sharedStore)) {
+                        final String commit = fetchAndRecordStats(requestId, useUrl, remoteAlias, srcVersion,
+                                shallowFetch, storeGit);
+                        pin(storeGit, dir, commit);
+                        return commit;
+                    }
+                });
+            }
 
-            ensureRemoteAvailable(useUrl, remoteAlias, git);
-
-            final String scmVersion = srcVersion.getScmVersion();
-            final String startPoint;
-            final String refToFetch;
-            final FetchCommand fetch = git.fetch().setRemote(remoteAlias);
-            switch (srcVersion.getWellKnownType()) {
-            case branch:
-                refToFetch = "refs/heads/" + scmVersion;
-                fetch.setRefSpecs(
-                        new RefSpec("+refs/heads/" + scmVersion + ":refs/remotes/" + remoteAlias + "/" + scmVersion));
-                startPoint = remoteAlias + "/" + scmVersion;
-                break;
-            case tag:
-                refToFetch = "refs/tags/" + scmVersion;
-                fetch.setRefSpecs(new RefSpec(refToFetch));
-                startPoint = scmVersion;
-                break;
-            case revision:
-                refToFetch = null;
-                startPoint = scmVersion;
-                break;
-            default:
-                throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
-                        + srcVersion.getWellKnownType() + "'.");
+            if (isCheckedOutCleanly(requestId, git, startCommit)) {
+                log.info("srcdeps[{}]: [{}] already checked out cleanly at [{}] in [{}]", requestId,
+                        SRCDEPS_WORKING_BRANCH, startCommit, dir);
+                return startCommit;
             }
-            FetchResult fetchResult = fetch.call();
 
-            /*
-             * Let's check that the desired startPoint was really fetched from the current URL. Otherwise, the
-             * startPoint may come from an older fetch of the same repo URL (but was removed in between) or it may come
-             * from an older fetch of another URL. These cases may introduce situations when one developer can see a
-             * successful srcdep build (because he still has the outdated ref in his local git repo) but another dev
-             * with exectly the same setup cannot checkout because the ref is not there in any of the remote repos
-             * anymore.
-             */
-            Collection<Ref> advertisedRefs = fetchResult.getAdvertisedRefs();
-            switch (srcVersion.getWellKnownType()) {
-            case branch:
-            case tag:
-                assertRefFetched(advertisedRefs, refToFetch, useUrl);
-                break;
-            case revision:
-                assertRevisionFetched(git.getRepository(), advertisedRefs, scmVersion, useUrl);
-                break;
-            default:
-                throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
-                        + srcVersion.getWellKnownType() + "'.");
+            /* Forget local changes */
+            try {
+                Set<String> removedFiles = git.clean().setCleanDirectories(true).call();
+                for (String removedFile : removedFiles) {
+                    log.debug("srcdeps[{}]: Removed an unstaged file [{}]", requestId, removedFile);
+                }
+                git.reset().setMode(ResetType.HARD).call();
+            } catch (Exception e) {
+                log.warn(String.format("srcdeps[%s]: Could not forget local changes in [%s]", requestId, dir), e);
             }
 
             /* Reset the srcdeps-working-branch */
-            git.branchCreate().setName(SRCDEPS_WORKING_BRANCH).setForce(true).setStartPoint(startPoint).call();
+            git.branchCreate().setName(SRCDEPS_WORKING_BRANCH).setForce(true).setStartPoint(startCommit).call();
             git.checkout().setName(SRCDEPS_WORKING_BRANCH).call();
-            git.reset().setMode(ResetType.HARD).setRef(startPoint).call();
+            git.reset().setMode(ResetType.HARD).setRef(startCommit).call();
             final Ref ref = git.getRepository().exactRef("HEAD");
 
             return ref.getObjectId().getName();
@@ -303,9 +690,198 @@ public class JGitScm implements Scm {
         return null;
     }
 
+    /**
+     * Calls {@link #fetch(String, String, String, SrcVersion, boolean, Git)} and records its duration or failure in
+     * {@link #urlStats} so that {@link #raceUrls(String, List, SrcVersion)} can put the URLs failing also without
+     * racing to the back. The duration is recorded via {@link ScmUrlStats#recordFetch(String, long)} and hence does
+     * not distort the probe latencies.
+     *
+     * @param requestId the current request id
+     * @param useUrl the URL to fetch from
+     * @param remoteAlias the alias of the remote to use
+     * @param srcVersion the version to fetch
+     * @param shallowFetch see {@link #fetch(String, String, String, SrcVersion, boolean, Git)}
+     * @param git the repository to fetch into
+     * @return the SHA-1 of the commit the {@code srcVersion} points at
+     * @throws ScmException if the {@code srcVersion} could not be fetched from {@code useUrl}
+     * @throws IOException on I/O problems
+     * @throws GitAPIException on other git problems
+     */
+    private String fetchAndRecordStats(String requestId, String useUrl, String remoteAlias, SrcVersion srcVersion,
+            boolean shallowFetch, Git git) throws ScmException, IOException, GitAPIException {
+        final long start = System.nanoTime();
+        try {
+            final String result = fetch(requestId, useUrl, remoteAlias, srcVersion, shallowFetch, git);
+            urlStats.recordFetch(useUrl, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        } catch (GitAPIException | ScmException e) {
+            urlStats.recordFailure(useUrl);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the given {@code srcVersion} from the given {@code useUrl} into the given {@code git} repository and
+     * makes sure that it was really available at that URL.
+     *
+     * @param requestId the current request id
+     * @param useUrl the URL to fetch from
+     * @param remoteAlias the alias of the remote to use
+     * @param srcVersion the version to fetch
+     * @param shallowFetch if {@code true} and {@code srcVersion} is immutable, try to fetch just the given tag or
+     *        commit first
+     * @param git the repository to fetch into
+     * @return the SHA-1 of the commit the {@code srcVersion} points at
+     * @throws ScmException if the {@code srcVersion} could not be fetched from {@code useUrl}
+     * @throws IOException on I/O problems
+     * @throws GitAPIException on other git problems
+     */
+    private String fetch(String requestId, String useUrl, String remoteAlias, SrcVersion srcVersion,
+            boolean shallowFetch, Git git) throws ScmException, IOException, GitAPIException {
+        ensureRemoteAvailable(useUrl, remoteAlias, git);
+
+        if (shallowFetch && srcVersion.getWellKnownType().isImmutable()) {
+            final String result = fetchShallow(requestId, useUrl, remoteAlias, srcVersion, git);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        final String scmVersion = srcVersion.getScmVersion();
+        final String startPoint;
+        final String refToFetch;
+        final FetchCommand fetch = git.fetch().setRemote(remoteAlias);
+        switch (srcVersion.getWellKnownType()) {
+        case branch:
+            refToFetch = "refs/heads/" + scmVersion;
+            fetch.setRefSpecs(
+                    new RefSpec("+refs/heads/" + scmVersion + ":refs/remotes/" + remoteAlias + "/" + scmVersion));
+            startPoint = remoteAlias + "/" + scmVersion;
+            break;
+        case tag:
+            refToFetch = "refs/tags/" + scmVersion;
+            fetch.setRefSpecs(new RefSpec(refToFetch));
+            startPoint = scmVersion;
+            break;
+        case revision:
+            refToFetch = null;
+            startPoint = scmVersion;
+            break;
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+        FetchResult fetchResult = fetch.call();
+
+        /*
+         * Let's check that the desired startPoint was really fetched from the current URL. Otherwise, the
+         * startPoint may come from an older fetch of the same repo URL (but was removed in between) or it may come
+         * from an older fetch of another URL. These cases may introduce situations when one developer can see a
+         * successful srcdep build (because he still has the outdated ref in his local git repo) but another dev
+         * with exectly the same setup cannot checkout because the ref is not there in any of the remote repos
+         * anymore.
+         */
+        Collection<Ref> advertisedRefs = fetchResult.getAdvertisedRefs();
+        switch (srcVersion.getWellKnownType()) {
+        case branch:
+        case tag:
+            assertRefFetched(advertisedRefs, refToFetch, useUrl);
+            break;
+        case revision:
+            assertRevisionFetched(git.getRepository(), advertisedRefs, scmVersion, useUrl);
+            break;
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+
+        return resolveCommit(git.getRepository(), startPoint, useUrl);
+    }
+
+    /**
+     * Fetches just the single tag or commit required by the given immutable {@code srcVersion} rather than all
+     * branches of the remote repository.
+     * <p>
+     * JGit does not support limiting the depth of the fetched history. Therefore the history of the given commit is
+     * still fetched, but at least the history of all other branches and tags is not.
+     *
+     * @param requestId the current request id
+     * @param useUrl the URL to fetch from
+     * @param remoteAlias the alias of the remote to use
+     * @param srcVersion the immutable version to fetch
+     * @param git the repository to fetch into
+     * @return the SHA-1 of the commit the {@code srcVersion} points at or {@code null} if the remote repository does
+     *         not allow fetching the given commit directly and the caller should fall back to fetching all branches
+     * @throws ScmException if the {@code srcVersion} could not be fetched from {@code useUrl}
+     * @throws IOException on I/O problems
+     * @throws GitAPIException on other git problems
+     */
+    private String fetchShallow(String requestId, String useUrl, String remoteAlias, SrcVersion srcVersion, Git git)
+            throws ScmException, IOException, GitAPIException {
+        final String scmVersion = srcVersion.getScmVersion();
+        final Repository repository = git.getRepository();
+        switch (srcVersion.getWellKnownType()) {
+        case tag:
+            final String tagRef = "refs/tags/" + scmVersion;
+            final FetchResult tagFetchResult = git.fetch().setRemote(remoteAlias)
+                    .setRefSpecs(new RefSpec("+" + tagRef + ":" + tagRef)).setTagOpt(TagOpt.NO_TAGS).call();
+            assertRefFetched(tagFetchResult.getAdvertisedRefs(), tagRef, useUrl);
+            return resolveCommit(repository, tagRef, useUrl);
+        case revision:
+            /*
+             * If the commit is not available locally yet, a successful fetch proves that the remote has it. Otherwise
+             * JGit does not ask the remote at all and we have to check the reachability from the advertised refs
+             */
+            final boolean available = repository.hasObject(ObjectId.fromString(scmVersion));
+            try {
+                final FetchResult revisionFetchResult = git.fetch().setRemote(remoteAlias)
+                        .setRefSpecs(new RefSpec(scmVersion)).setTagOpt(TagOpt.NO_TAGS).call();
+                if (available) {
+                    assertRevisionFetched(repository, revisionFetchResult.getAdvertisedRefs(), scmVersion, useUrl);
+                }
+                return resolveCommit(repository, scmVersion, useUrl);
+            } catch (TransportException | ScmException e) {
+                log.info("srcdeps[{}]: Could not fetch the single commit [{}] from [{}]; fetching all branches",
+                        requestId, scmVersion, useUrl);
+                log.debug(String.format("srcdeps[%s]: Single commit fetch failed", requestId), e);
+                return null;
+            }
+        default:
+            throw new IllegalStateException("Unexpected " + WellKnownType.class.getName() + " value '"
+                    + srcVersion.getWellKnownType() + "'.");
+        }
+    }
+
+    /**
+     * @param repository the repository to search in
+     * @param startPoint a ref name or a SHA-1 to resolve
+     * @param url the URL that was used to fetch
+     * @return the SHA-1 of the commit the given {@code startPoint} points at
+     * @throws ScmException if the given {@code startPoint} cannot be resolved
+     * @throws IOException on I/O problems
+     */
+    private static String resolveCommit(Repository repository, String startPoint, String url)
+            throws ScmException, IOException {
+        final ObjectId startCommit = repository.resolve(startPoint + "^{commit}");
+        if (startCommit == null) {
+            throw new ScmException(String.format("Could not resolve [%s] fetched from [%s]", startPoint, url));
+        }
+        return startCommit.getName();
+    }
+
     @Override
     public boolean supports(String url) {
         return url.startsWith(SCM_GIT_PREFIX);
     }
 
+    /**
+     * @return {@code true} if the first of {@link BuildRequest#getScmUrls()} starts with {@value #SCM_GIT_PREFIX} and
+     *         {@link BuildRequest#isGitCli()} is {@code false}; otherwise {@code false}
+     * @see GitCliScm
+     */
+    @Override
+    public boolean supports(BuildRequest request) {
+        return !request.isGitCli() && Scm.super.supports(request);
+    }
+
 }
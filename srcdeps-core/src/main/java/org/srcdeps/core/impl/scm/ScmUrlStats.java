@@ -0,0 +1,186 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.scm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency and failure statistics of SCM URLs, used to prefer the fastest healthy mirror of a SCM repository.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+class ScmUrlStats {
+
+    /**
+     * An immutable snapshot of the statistics of a single URL.
+     */
+    static class Entry {
+        /** The weight of the newest sample in {@link #latencyMs} and {@link #fetchMs} */
+        private static final double LATENCY_WEIGHT = 0.3;
+        static final Entry UNKNOWN = new Entry(-1, 0, 0, -1);
+
+        private static long average(long oldAverage, long newSample) {
+            return oldAverage < 0 ? newSample
+                    : Math.round(LATENCY_WEIGHT * newSample + (1 - LATENCY_WEIGHT) * oldAverage);
+        }
+
+        private final int consecutiveFailures;
+        private final long fetchMs;
+        private final long latencyMs;
+        private final int successes;
+
+        Entry(long latencyMs, int successes, int consecutiveFailures, long fetchMs) {
+            super();
+            this.latencyMs = latencyMs;
+            this.successes = successes;
+            this.consecutiveFailures = consecutiveFailures;
+            this.fetchMs = fetchMs;
+        }
+
+        Entry failure() {
+            return new Entry(latencyMs, successes, consecutiveFailures + 1, fetchMs);
+        }
+
+        Entry fetched(long newFetchMs) {
+            return new Entry(latencyMs, successes + 1, 0, average(fetchMs, newFetchMs));
+        }
+
+        /**
+         * @return the number of failures since the last success
+         */
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        /**
+         * @return the exponentially weighted moving average of the durations of the fetches in milliseconds or
+         *         {@code -1} if there was no successful fetch so far; for informational purposes only, as the
+         *         durations depend on the amount of data transferred and thus are not comparable between the URLs
+         */
+        public long getFetchMs() {
+            return fetchMs;
+        }
+
+        /**
+         * @return the exponentially weighted moving average of the probe latencies in milliseconds or {@code -1} if
+         *         there was no successful probe so far
+         */
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+
+        /**
+         * @return the number of successful probes and fetches so far
+         */
+        public int getSuccesses() {
+            return successes;
+        }
+
+        Entry success(long newLatencyMs) {
+            return new Entry(average(latencyMs, newLatencyMs), successes + 1, 0, fetchMs);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry [latencyMs=" + latencyMs + ", fetchMs=" + fetchMs + ", successes=" + successes
+                    + ", consecutiveFailures=" + consecutiveFailures + "]";
+        }
+    }
+
+    /**
+     * Healthy URLs first, then the ones with known probe latency, then the faster ones. {@link Entry#getFetchMs()} is
+     * ignored.
+     *
+     * @param e1 the first {@link Entry} to compare
+     * @param e2 the second {@link Entry} to compare
+     * @return see {@link Comparator#compare(Object, Object)}
+     */
+    private static int compare(Entry e1, Entry e2) {
+        final int failures = Integer.compare(e1.consecutiveFailures, e2.consecutiveFailures);
+        if (failures != 0) {
+            return failures;
+        }
+        final long l1 = e1.latencyMs < 0 ? Long.MAX_VALUE : e1.latencyMs;
+        final long l2 = e2.latencyMs < 0 ? Long.MAX_VALUE : e2.latencyMs;
+        return Long.compare(l1, l2);
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param url the URL to look up
+     * @return the {@link Entry} for the given {@code url}, never {@code null}
+     */
+    public Entry get(String url) {
+        final Entry result = entries.get(url);
+        return result == null ? Entry.UNKNOWN : result;
+    }
+
+    /**
+     * @param url the URL that could not be reached or that did not serve the requested version
+     */
+    public void recordFailure(String url) {
+        entries.compute(url, (k, old) -> (old == null ? Entry.UNKNOWN : old).failure());
+    }
+
+    /**
+     * Records a successful fetch. Unlike {@link #recordSuccess(String, long)}, this does not influence the probe
+     * latency used by {@link #sort(Collection)} because the duration of a fetch grows with the amount of data
+     * transferred.
+     *
+     * @param url the URL fetched from
+     * @param fetchMs the duration of the fetch in milliseconds
+     */
+    public void recordFetch(String url, long fetchMs) {
+        entries.compute(url, (k, old) -> (old == null ? Entry.UNKNOWN : old).fetched(fetchMs));
+    }
+
+    /**
+     * @param url the URL that responded to a probe successfully
+     * @param latencyMs the response time in milliseconds
+     */
+    public void recordSuccess(String url, long latencyMs) {
+        entries.compute(url, (k, old) -> (old == null ? Entry.UNKNOWN : old).success(latencyMs));
+    }
+
+    /**
+     * Returns a new {@link List} containing the given {@code urls} ordered so that the URLs with fewer failures since
+     * their last success come first and among those the faster ones come first. URLs with equal statistics keep their
+     * original order. The statistics are copied before sorting so that the concurrent updates cannot break the
+     * ordering.
+     *
+     * @param urls the URLs to sort
+     * @return a new sorted {@link List}
+     */
+    public List<String> sort(Collection<String> urls) {
+        final Map<String, Entry> snapshot = new HashMap<>();
+        for (String url : urls) {
+            snapshot.put(url, get(url));
+        }
+        final List<String> result = new ArrayList<>(urls);
+        result.sort((url1, url2) -> compare(snapshot.get(url1), snapshot.get(url2)));
+        return result;
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A holder of the {@link ExecutorService} used for computing the hashes of artifacts in parallel.
+ * <p>
+ * The number of threads defaults to the number of available processors and can be overridden with the
+ * {@value #HASHING_THREADS_PROPERTY} system property, e.g. {@code -Dsrcdeps.hashing.threads=1} is advisable if the
+ * local Maven repository resides on a spinning disk where concurrent reads of several files would cause excessive
+ * seeking.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ * @since 5.0.2
+ */
+public final class HashingExecutors {
+
+    /** Lazily initialized on the first access to {@link HashingExecutors#getDefault()} */
+    private static class DefaultHolder {
+        private static final ExecutorService DEFAULT;
+        static {
+            final int threadCount = threadCount(System.getProperty(HASHING_THREADS_PROPERTY),
+                    Runtime.getRuntime().availableProcessors());
+            log.debug("srcdeps: Hashing artifacts using {} threads", threadCount);
+            final AtomicInteger threadIndex = new AtomicInteger();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                        final Thread t = new Thread(r, "srcdeps-hashing-" + threadIndex.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            /* Let the threads die when idle */
+            executor.allowCoreThreadTimeOut(true);
+            DEFAULT = executor;
+        }
+    }
+
+    /** The system property to set the number of hashing threads */
+    public static final String HASHING_THREADS_PROPERTY = "srcdeps.hashing.threads";
+
+    private static final Logger log = LoggerFactory.getLogger(HashingExecutors.class);
+
+    /**
+     * @return the shared {@link ExecutorService} for hashing artifacts, never shut down
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * @param value the value of {@value #HASHING_THREADS_PROPERTY} or {@code null}
+     * @param availableProcessors the number of available processors
+     * @return the number of hashing threads to use
+     */
+    static int threadCount(String value, int availableProcessors) {
+        if (value != null && !value.isEmpty()) {
+            try {
+                final int result = Integer.parseInt(value.trim());
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                /* fall through */
+            }
+            log.warn("srcdeps: Ignoring an invalid value [{}] of {}: expected a positive integer", value,
+                    HASHING_THREADS_PROPERTY);
+        }
+        return Math.max(1, availableProcessors);
+    }
+
+    private HashingExecutors() {
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+public class FetchLogTest {
+
+    private static final Path fetchLogRoot = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(FetchLogTest.class.getSimpleName()).toAbsolutePath();
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static Path logFile(String testName) throws IOException {
+        final Path dir = fetchLogRoot.resolve(testName);
+        SrcdepsCoreUtils.deleteDirectory(dir);
+        return dir.resolve("fetch-log.properties");
+    }
+
+    private final FetchId fetchId = new FetchId("org.srcdeps.example",
+            Arrays.asList("git:https://example.com/repo.git", "git:https://mirror.example.com/repo.git"));
+
+    @Test
+    public void branch() throws IOException {
+        final Path logFile = logFile("branch");
+        final SrcVersion branch = SrcVersion.parse("1.2.3-SRC-branch-master");
+        new FetchLog(logFile).add(fetchId, branch, "deadbeef");
+
+        final FetchLog fetchLog = new FetchLog(logFile);
+        Assert.assertFalse(fetchLog.contains(fetchId));
+        Assert.assertEquals("deadbeef", fetchLog.getCommitId(fetchId, branch, HOUR));
+        Assert.assertNull(fetchLog.getCommitId(fetchId, branch, 0));
+    }
+
+    @Test
+    public void immutable() throws IOException {
+        final Path logFile = logFile("immutable");
+        final SrcVersion tag = SrcVersion.parse("1.2.3-SRC-tag-1.2.3");
+        final SrcVersion revision = SrcVersion.parse("1.2.3-SRC-revision-cafebabe");
+        final FetchLog fetchLog1 = new FetchLog(logFile);
+        Assert.assertNull(fetchLog1.getCommitId(fetchId, tag, 0));
+        fetchLog1.add(fetchId, tag, "deadbeef");
+        fetchLog1.add(fetchId, revision, "cafebabe");
+        Assert.assertTrue(fetchLog1.contains(fetchId));
+
+        final FetchLog fetchLog2 = new FetchLog(logFile);
+        Assert.assertEquals("deadbeef", fetchLog2.getCommitId(fetchId, tag, 0));
+        Assert.assertEquals("cafebabe", fetchLog2.getCommitId(fetchId, revision, 0));
+        Assert.assertNull(fetchLog2.getCommitId(new FetchId("org.srcdeps.other", Arrays.asList("git:other")), tag, 0));
+    }
+
+    @Test
+    public void inMemory() {
+        final SrcVersion tag = SrcVersion.parse("1.2.3-SRC-tag-1.2.3");
+        final FetchLog fetchLog = new FetchLog();
+        fetchLog.add(fetchId, tag, "deadbeef");
+        Assert.assertTrue(fetchLog.contains(fetchId));
+        Assert.assertEquals("deadbeef", fetchLog.getCommitId(fetchId, tag, 0));
+    }
+
+    @Test
+    public void concurrentWriters() throws IOException {
+        final Path logFile = logFile("concurrentWriters");
+        final SrcVersion tag1 = SrcVersion.parse("1.2.3-SRC-tag-1.2.3");
+        final SrcVersion tag2 = SrcVersion.parse("2.0.0-SRC-tag-2.0.0");
+        final FetchLog fetchLog1 = new FetchLog(logFile);
+        final FetchLog fetchLog2 = new FetchLog(logFile);
+        fetchLog1.add(fetchId, tag1, "deadbeef");
+        fetchLog2.add(fetchId, tag2, "cafebabe");
+
+        /* fetchLog2 must have merged the entry written by fetchLog1 rather than overwriting it */
+        final FetchLog fetchLog3 = new FetchLog(logFile);
+        Assert.assertEquals("deadbeef", fetchLog3.getCommitId(fetchId, tag1, 0));
+        Assert.assertEquals("cafebabe", fetchLog3.getCommitId(fetchId, tag2, 0));
+
+        /* fetchLog1 picks the entry written by fetchLog2 lazily */
+        Assert.assertEquals("cafebabe", fetchLog1.getCommitId(fetchId, tag2, 0));
+    }
+
+}
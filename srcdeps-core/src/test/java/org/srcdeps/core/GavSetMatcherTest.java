@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GavSetMatcherTest {
+
+    /** Contains the line terminators that the {@code *} wildcard does not match */
+    private static final String ALPHABET = "ab.-*\n\r\u0085\u2028\u2029";
+
+    /**
+     * @return a string derived from the given {@code source} that is likely to be matched by it
+     */
+    private static String instantiate(Random random, String source) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (c == '*') {
+                sb.append(randomString(random, 3, "ab.-\n"));
+            } else {
+                sb.append(c);
+            }
+        }
+        if (random.nextInt(8) == 0 && sb.length() > 0) {
+            /* mutate a character */
+            sb.setCharAt(random.nextInt(sb.length()), ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    private static List<GavPattern> randomPatterns(Random random, int maxCount) {
+        final int count = random.nextInt(maxCount + 1);
+        final List<GavPattern> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(GavPattern.builder() //
+                    .groupIdPattern(randomSource(random)) //
+                    .artifactIdPattern(randomSource(random)) //
+                    .versionPattern(randomSource(random)) //
+                    .build());
+        }
+        return result;
+    }
+
+    private static String randomSource(Random random) {
+        switch (random.nextInt(6)) {
+        case 0:
+            return "*";
+        case 1:
+            return randomString(random, 4, "ab.") + "*";
+        case 2:
+            return randomString(random, 4, "ab.");
+        default:
+            return randomString(random, 5, ALPHABET);
+        }
+    }
+
+    private static String randomString(Random random, int maxLength, String alphabet) {
+        final int length = random.nextInt(maxLength + 1);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The reference implementation: matches the {@link GavPattern}s one by one.
+     */
+    private static boolean referenceContains(List<GavPattern> includes, List<GavPattern> excludes, String groupId,
+            String artifactId, String version) {
+        boolean included = false;
+        for (GavPattern pattern : includes) {
+            if (version == null ? pattern.matches(groupId, artifactId)
+                    : pattern.matches(groupId, artifactId, version)) {
+                included = true;
+                break;
+            }
+        }
+        if (!included) {
+            return false;
+        }
+        for (GavPattern pattern : excludes) {
+            if (version == null ? pattern.matches(groupId, artifactId)
+                    : pattern.matches(groupId, artifactId, version)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void lineTerminators() {
+        final GavSet set = GavSet.builder().include("org.group*").include("*:artifact1").build();
+        Assert.assertTrue(set.contains("org.group1", "a", "1"));
+        Assert.assertFalse(set.contains("org.group1\n", "a", "1"));
+        /* neither "org.group*" nor "*" matches */
+        Assert.assertFalse(set.contains("org.group\u2028", "artifact1", "1"));
+        Assert.assertTrue(set.contains("org.group\t", "artifact1", "1"));
+        Assert.assertFalse(set.contains("orgXgroup1", "a", "1"));
+        Assert.assertTrue(set.contains("com", "artifact1", "1"));
+        Assert.assertFalse(set.contains("com", "artifact1", "1\r"));
+    }
+
+    @Test
+    public void prefixLength() {
+        Assert.assertEquals(0, GavSetMatcher.prefixLength(""));
+        Assert.assertEquals(3, GavSetMatcher.prefixLength("org"));
+        Assert.assertEquals(4, GavSetMatcher.prefixLength("org.*"));
+        Assert.assertEquals(4, GavSetMatcher.prefixLength("org.**"));
+        Assert.assertEquals(0, GavSetMatcher.prefixLength("*"));
+        Assert.assertEquals(GavSetMatcher.NOT_A_PREFIX, GavSetMatcher.prefixLength("*.org"));
+        Assert.assertEquals(GavSetMatcher.NOT_A_PREFIX, GavSetMatcher.prefixLength("org*a*"));
+    }
+
+    @Test
+    public void sameAsPatternByPattern() {
+        /* a fixed seed keeps the test reproducible; pass -Dsrcdeps.test.seed=... to try other inputs */
+        final long seed = Long.getLong("srcdeps.test.seed", 20190523L);
+        final Random random = new Random(seed);
+        for (int round = 0; round < 3000; round++) {
+            final List<GavPattern> includes = randomPatterns(random, 6);
+            final List<GavPattern> excludes = randomPatterns(random, 3);
+            final GavSet set = new GavSet(includes, excludes);
+            final List<GavPattern> all = new ArrayList<>(includes);
+            all.addAll(excludes);
+            for (int i = 0; i < 40; i++) {
+                final String groupId;
+                final String artifactId;
+                final String version;
+                if (!all.isEmpty() && random.nextInt(4) != 0) {
+                    final GavPattern pattern = all.get(random.nextInt(all.size()));
+                    groupId = instantiate(random, pattern.groupIdPattern.getSource());
+                    artifactId = instantiate(random, pattern.artifactIdPattern.getSource());
+                    version = instantiate(random, pattern.versionPattern.getSource());
+                } else {
+                    groupId = randomString(random, 5, ALPHABET);
+                    artifactId = randomString(random, 5, ALPHABET);
+                    version = randomString(random, 5, ALPHABET);
+                }
+                final String message = "seed " + seed + ": " + set + " "
+                        + Arrays.asList(groupId, artifactId, version);
+                Assert.assertEquals(message, referenceContains(includes, excludes, groupId, artifactId, version),
+                        set.contains(groupId, artifactId, version));
+                Assert.assertEquals(message, referenceContains(includes, excludes, groupId, artifactId, null),
+                        set.contains(groupId, artifactId));
+            }
+        }
+    }
+
+}
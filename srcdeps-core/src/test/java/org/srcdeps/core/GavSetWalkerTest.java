@@ -17,30 +17,43 @@
 package org.srcdeps.core;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.srcdeps.core.util.Consumer;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
 
 public class GavSetWalkerTest {
 
     private static class Collector implements Consumer<GavtcPath> {
 
-        private final TreeSet<GavtcPath> actual = new TreeSet<>(GavtcPath.comparator());
+        private final Set<GavtcPath> actual = new ConcurrentSkipListSet<>(GavtcPath.comparator());
         private final TreeSet<GavtcPath> expected = new TreeSet<>(GavtcPath.comparator());
+        private final AtomicInteger count = new AtomicInteger();
 
         @Override
         public void accept(GavtcPath t) {
+            count.incrementAndGet();
             actual.add(t);
         }
 
         public void assertExpected() {
-            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(expected, new TreeSet<>(actual));
+            /* no duplicates */
+            Assert.assertEquals(expected.size(), count.get());
         }
 
         public Collector expect(String gavtc, String path) {
@@ -58,6 +71,37 @@ public class GavSetWalkerTest {
                 .toAbsolutePath();
     }
 
+    /**
+     * Creates a local Maven repository with 8 groups of 8 artifacts in versions {@code 1.0} and {@code 2.0}.
+     *
+     * @return the {@link GavtcPath}s of version {@code 2.0} not belonging to {@code org.group3.sub}
+     */
+    private static Set<GavtcPath> createRepo(Path repo) throws IOException {
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(repo);
+        final Set<GavtcPath> expected = new TreeSet<>(GavtcPath.comparator());
+        for (int g = 0; g < 8; g++) {
+            for (int a = 0; a < 8; a++) {
+                for (String v : Arrays.asList("1.0", "2.0")) {
+                    final String groupId = "org.group" + g + (g % 2 == 0 ? "" : ".sub");
+                    final String artifactId = "artifact" + a;
+                    final Path gavDir = repo.resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(v);
+                    Files.createDirectories(gavDir);
+                    for (String file : Arrays.asList(".jar", ".pom", ".pom.sha1", "-sources.jar")) {
+                        Files.write(gavDir.resolve(artifactId + "-" + v + file), new byte[0]);
+                    }
+                    if ("2.0".equals(v) && g != 3) {
+                        final String gav = groupId + ":" + artifactId + ":" + v;
+                        final String relPath = repo.relativize(gavDir).toString() + "/" + artifactId + "-" + v;
+                        expected.add(GavtcPath.of(gav + ":jar", repo.resolve(relPath + ".jar")));
+                        expected.add(GavtcPath.of(gav + ":pom", repo.resolve(relPath + ".pom")));
+                        expected.add(GavtcPath.of(gav + ":jar:sources", repo.resolve(relPath + "-sources.jar")));
+                    }
+                }
+            }
+        }
+        return expected;
+    }
+
     private void assertSubtree(String gavPattern, String expectedPath) {
         GavPattern gp = GavPattern.of(gavPattern);
         Path actual = GavSetWalker.patternToSubtree(gp, "1.2.3");
@@ -102,6 +146,32 @@ public class GavSetWalkerTest {
         assertSubtrees(gavSet, "org/group1/compon1");
     }
 
+    @Test
+    public void plan() {
+        final GavSet gavSet = GavSet.builder() //
+                .include("org.group1:artifact1") //
+                .include("org.group1:artifact1:1.2.3") //
+                .include("org.group2:art*") //
+                .include("org.group2:other*") //
+                .include("org.group3:artifact3:2.0.0") //
+                .include("org.group4.*") //
+                .include("org.group4.compon1:artifact4") //
+                .build();
+        final GavSetWalker.WalkPlan plan = GavSetWalker.plan(gavSet, "1.2.3");
+        Assert.assertEquals(Arrays.asList(Paths.get("org/group4")), plan.getSubtrees());
+        Assert.assertEquals(Collections.singleton(Paths.get("org/group1/artifact1/1.2.3")),
+                plan.getGavDirectories());
+        Assert.assertEquals(Collections.singleton(Paths.get("org/group2")), plan.getArtifactListings().keySet());
+        Assert.assertEquals(2, plan.getArtifactListings().get(Paths.get("org/group2")).size());
+
+        final GavSetWalker.WalkPlan literalPlan = GavSetWalker
+                .plan(GavSet.builder().include("org.group1:artifact1").build(), "1.2.3");
+        Assert.assertEquals(Collections.emptyList(), literalPlan.getSubtrees());
+        Assert.assertTrue(literalPlan.getArtifactListings().isEmpty());
+        Assert.assertEquals(Collections.singleton(Paths.get("org/group1/artifact1/1.2.3")),
+                literalPlan.getGavDirectories());
+    }
+
     @Test
     public void patternToSubtree() {
         assertSubtree("*", "");
@@ -115,6 +185,39 @@ public class GavSetWalkerTest {
         assertSubtree("org.mygroup:my.artifact*:1.2.3", "org/mygroup");
     }
 
+    @Test
+    public void stream() throws IOException {
+        final Path repo = BASEDIR.resolve("target/GavSetWalkerTest/stream").normalize().toAbsolutePath();
+        final Set<GavtcPath> expected = createRepo(repo);
+        final GavSet gavSet = GavSet.builder() //
+                .include("org.*") //
+                .include("org.group0:artifact1") //
+                .include("org.group2:art*") //
+                .exclude("org.group3.sub") //
+                .build();
+        final GavSetWalker walker = new GavSetWalker(repo, gavSet, "2.0");
+
+        final List<GavtcPath> sequential = walker.stream().collect(Collectors.toList());
+        Assert.assertEquals(expected.size(), sequential.size());
+        Assert.assertEquals(expected, new TreeSet<>(sequential));
+
+        final List<GavtcPath> parallel = walker.stream().parallel().collect(Collectors.toList());
+        Assert.assertEquals(expected.size(), parallel.size());
+        Assert.assertEquals(expected, new TreeSet<>(parallel));
+
+        final List<GavtcPath> literal = new GavSetWalker(repo,
+                GavSet.builder().include("org.group0:artifact1").include("org.group2:art*").build(), "2.0").stream()
+                        .collect(Collectors.toList());
+        Assert.assertEquals(9 * 3, literal.size());
+
+        /* The traversal stops as soon as the first artifact is found */
+        final GavSetWalker.GavtcPathSpliterator spliterator = (GavSetWalker.GavtcPathSpliterator) walker
+                .spliterator();
+        Assert.assertTrue(spliterator.tryAdvance(gavtcPath -> Assert.assertTrue(expected.contains(gavtcPath))));
+        Assert.assertTrue(spliterator.pendingDirectoryCount() > 0);
+        Assert.assertTrue(walker.stream().anyMatch(gavtcPath -> gavtcPath.getGavtcString().endsWith(":pom")));
+    }
+
     @Test
     public void walkGroup() throws IOException {
         final GavSet gavSet = GavSet.builder() //
@@ -150,4 +253,66 @@ public class GavSetWalkerTest {
         new GavSetWalker(LOCAL_MAVEN_REPO_ROOT_DIR, gavSet, "1.2.3").walk(c);
         c.assertExpected();
     }
+
+    @Test
+    public void walkParallel() throws IOException {
+        final Path repo = BASEDIR.resolve("target/GavSetWalkerTest/walkParallel").normalize().toAbsolutePath();
+        final Collector expected = new Collector();
+        expected.expected.addAll(createRepo(repo));
+        final GavSet gavSet = GavSet.builder() //
+                .include("org.*") //
+                .exclude("org.group3.sub") //
+                .build();
+        for (int parallelism : new int[] { 1, 2, 4 }) {
+            final Collector c = new Collector();
+            c.expected.addAll(expected.expected);
+            new GavSetWalker(repo, gavSet, "2.0").walk(c, parallelism);
+            c.assertExpected();
+        }
+
+        final Collector c = new Collector();
+        c.expected.addAll(expected.expected);
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            new GavSetWalker(repo, gavSet, "2.0").walk(c, pool);
+        } finally {
+            pool.shutdown();
+        }
+        c.assertExpected();
+    }
+
+    @Test
+    public void walkLiteralAndWildcardArtifacts() throws IOException {
+        final GavSet gavSet = GavSet.builder() //
+                .include("org.group1:artifact1") //
+                .include("org.group1:art*") //
+                .include("org.group1.compon1:*") //
+                .include("org.missing:artifact1") //
+                .exclude("org.group1.compon1:*:*:*") //
+                .build();
+        Collector c = new Collector()//
+                .expect("org.group1:artifact1:1.2.4:jar", "org/group1/artifact1/1.2.4/artifact1-1.2.4.jar") //
+                .expect("org.group1:artifact1:1.2.4:pom", "org/group1/artifact1/1.2.4/artifact1-1.2.4.pom") //
+        ;
+        new GavSetWalker(LOCAL_MAVEN_REPO_ROOT_DIR, gavSet, "1.2.4").walk(c);
+        c.assertExpected();
+
+        Collector c2 = new Collector()//
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:jar",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4.jar") //
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:pom",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4.pom") //
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:jar:javadoc",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4-javadoc.jar") //
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:jar:sources",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4-sources.jar") //
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:tar.gz:sources",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4-sources.tar.gz") //
+                .expect("org.group1.compon1:compon-artifact1:2.3.4:tar.gz",
+                        "org/group1/compon1/compon-artifact1/2.3.4/compon-artifact1-2.3.4.tar.gz") //
+        ;
+        new GavSetWalker(LOCAL_MAVEN_REPO_ROOT_DIR, GavSet.builder().include("org.group1.compon1:compon*").build(),
+                "2.3.4").walk(c2);
+        c2.assertExpected();
+    }
 }
@@ -23,6 +23,7 @@ import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.srcdeps.core.ArtifactDigester;
 import org.srcdeps.core.BuildRequest.Verbosity;
 import org.srcdeps.core.SrcVersion;
 import org.srcdeps.core.config.ScmRepository.Builder;
@@ -44,6 +45,7 @@ public class DefaultsAndInheritanceTest {
                 );
 
         Assert.assertNull(configBuilder.configModelVersion.getValue());
+        Assert.assertNull(configBuilder.artifactDigester.getValue());
         Assert.assertEquals(Collections.emptySet(), configBuilder.forwardProperties.asSetOfValues());
         Assert.assertNull(configBuilder.skip.getValue());
         Assert.assertNull(configBuilder.sourcesDirectory.getValue());
@@ -101,6 +103,7 @@ public class DefaultsAndInheritanceTest {
         Assert.assertNull(config.getSourcesDirectory());
         Assert.assertEquals(Verbosity.warn, configBuilder.verbosity.getValue());
         Assert.assertEquals(Configuration.getDefaultEncoding(), configBuilder.encoding.getValue());
+        Assert.assertEquals(ArtifactDigester.SHA1, configBuilder.artifactDigester.getValue());
         Assert.assertEquals(Duration.maxValue(), configBuilder.buildTimeout.getValue());
         Assert.assertNull(configBuilder.buildVersionPattern.getValue());
         Assert.assertEquals(SrcVersion.getBranchMaster(), configBuilder.buildRef.getValue());
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.BuildException;
+import org.srcdeps.core.SrcVersion;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class BuildDirectoriesManagerTest {
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .toAbsolutePath();
+
+    private static String slot(PathLock lock) {
+        return lock.getPath().getFileName().toString();
+    }
+
+    @Test
+    public void slotAffinity() throws IOException, BuildException {
+        final Path rootDirectory = targetDirectory.resolve("BuildDirectoriesManagerTest-slotAffinity");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(rootDirectory);
+        final BuildDirectoriesManager manager = new BuildDirectoriesManager(rootDirectory,
+                new PathLocker<SrcVersion>());
+        final Path home = Paths.get("org", "example");
+        final SrcVersion master = SrcVersion.parse("1.0.0-SRC-branch-master");
+        final SrcVersion tag = SrcVersion.parse("0.9.0-SRC-tag-0.9.0");
+
+        try (PathLock lock = manager.openBuildDirectory("test", home, master)) {
+            Assert.assertEquals("0", slot(lock));
+            manager.recordCheckout(lock, master, "aaaa");
+        }
+        /* The tag takes the most recently used slot 0 while the master is checked out in slot 1 */
+        try (PathLock tagLock = manager.openBuildDirectory("test", home, tag, "bbbb")) {
+            Assert.assertEquals("0", slot(tagLock));
+            manager.recordCheckout(tagLock, tag, "bbbb");
+            try (PathLock masterLock = manager.openBuildDirectory("test", home, master, "cccc")) {
+                Assert.assertEquals("1", slot(masterLock));
+                manager.recordCheckout(masterLock, master, "cccc");
+            }
+        }
+
+        /* Exact commit match */
+        try (PathLock lock = manager.openBuildDirectory("test", home, tag, "bbbb")) {
+            Assert.assertEquals("0", slot(lock));
+        }
+        /* The same tag checked out under a different version */
+        try (PathLock lock = manager.openBuildDirectory("test", home, SrcVersion.parse("0.9.1-SRC-tag-0.9.0"))) {
+            Assert.assertEquals("0", slot(lock));
+        }
+        /* The master branch has moved to a new commit */
+        try (PathLock lock = manager.openBuildDirectory("test", home, master, "dddd")) {
+            Assert.assertEquals("1", slot(lock));
+        }
+        /* A revision checked out in slot 1 already */
+        try (PathLock lock = manager.openBuildDirectory("test", home, SrcVersion.parse("1.0.0-SRC-revision-cccc"),
+                "cccc")) {
+            Assert.assertEquals("1", slot(lock));
+        }
+
+        /* The index survives a new BuildDirectoriesManager instance */
+        final BuildDirectoriesManager manager2 = new BuildDirectoriesManager(rootDirectory,
+                new PathLocker<SrcVersion>());
+        try (PathLock lock = manager2.openBuildDirectory("test", home, master)) {
+            Assert.assertEquals("1", slot(lock));
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
+import org.srcdeps.core.impl.digest.Sha1ArtifactDigester;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+public class LocalArtifactCacheTest {
+
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(LocalArtifactCacheTest.class.getSimpleName()).toAbsolutePath();
+
+    @Test
+    public void isValidDigest() {
+        Assert.assertTrue(LocalArtifactCache.isValidDigest("0123456789abcdef0123456789abcdef01234567"));
+        Assert.assertTrue(LocalArtifactCache.isValidDigest("xxh64:0123456789abcdef"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("sha1:0123456789abcdef0123456789abcdef01234567"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("md5:0123456789abcdef"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("0123456789ABCDEF"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("0"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("sha1:../../.."));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest("../../x"));
+        Assert.assertFalse(LocalArtifactCache.isValidDigest(""));
+    }
+
+    @Test
+    public void isSafeGavtc() {
+        Assert.assertTrue(LocalArtifactCache.isSafeGavtc(Gavtc.of("org.o1:a1:1.2.3:jar:sources")));
+        Assert.assertTrue(LocalArtifactCache.isSafeGavtc(Gavtc.of("org.o1:akka-actor_2.12:1.2.3:jar")));
+        Assert.assertFalse(LocalArtifactCache.isSafeGavtc(Gavtc.of("org.o1:../../a1:1.2.3:jar")));
+        Assert.assertFalse(LocalArtifactCache.isSafeGavtc(Gavtc.of("org.o1:a1:1.2.3:jar:/tmp/x")));
+        Assert.assertFalse(LocalArtifactCache.isSafeGavtc(Gavtc.of("org..o1:a1:1.2.3:jar")));
+        Assert.assertFalse(LocalArtifactCache.isSafeGavtc(Gavtc.of(".org.o1:a1:1.2.3:jar")));
+        Assert.assertFalse(LocalArtifactCache.isSafeGavtc(Gavtc.of("org.o1:a1\\..:1.2.3:jar")));
+    }
+
+    private static GavtcPath install(MavenLocalRepository repo, String gavtcString, String content)
+            throws IOException {
+        final Path path = repo.resolve(Gavtc.of(gavtcString));
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return GavtcPath.of(gavtcString, path);
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void storeRestore() throws IOException {
+        final Path dir = targetDirectory.resolve("storeRestore");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final MavenLocalRepository repo1 = new MavenLocalRepository(dir.resolve("repo1"));
+        final GavtcPath jar = install(repo1, "org.o1:a1:1.2.3:jar", "jar");
+        final GavtcPath pom = install(repo1, "org.o1:a1:1.2.3:pom", "pom");
+        final GavtcPath sources = install(repo1, "org.o1:a1:1.2.3:jar:sources", "jar");
+
+        final LocalArtifactCache cache = new LocalArtifactCache(dir.resolve("cache"), Sha1ArtifactDigester.INSTANCE);
+        Assert.assertNull(cache.restore("test", "hash1", "commit1", repo1));
+        cache.store("test", "hash1", "commit1", Arrays.asList(jar, pom, sources));
+
+        /* the same content is stored only once */
+        final String jarSha1 = Sha1ArtifactDigester.INSTANCE.digest(jar.getPath());
+        final Path jarBlob = cache.createBlobPath(jarSha1);
+        Assert.assertTrue(Files.exists(jarBlob));
+        try (Stream<Path> blobs = Files.walk(cache.getRootDirectory().resolve("blobs"))) {
+            Assert.assertEquals(2, blobs.filter(Files::isRegularFile).count());
+        }
+
+        /* restore to an empty repository */
+        final MavenLocalRepository repo2 = new MavenLocalRepository(dir.resolve("repo2"));
+        Assert.assertNull(cache.restore("test", "hash1", "commit2", repo2));
+        Assert.assertNull(cache.restore("test", "hash2", "commit1", repo2));
+        final List<GavtcPath> restored = cache.restore("test", "hash1", "commit1", repo2);
+        Assert.assertEquals(3, restored.size());
+        Assert.assertEquals("org.o1:a1:1.2.3:jar", restored.get(0).getGavtcString());
+        Assert.assertEquals(repo2.resolve(jar), restored.get(0).getPath());
+        Assert.assertEquals("jar", read(repo2.resolve(jar)));
+        Assert.assertEquals("pom", read(repo2.resolve(pom)));
+        Assert.assertEquals("jar", read(repo2.resolve(sources)));
+
+        /* a blob modified through a hardlink is detected and nothing gets restored */
+        final MavenLocalRepository repo3 = new MavenLocalRepository(dir.resolve("repo3"));
+        Files.write(jarBlob, "modified".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(cache.restore("test", "hash1", "commit1", repo3));
+        Assert.assertFalse(Files.exists(jarBlob));
+        Assert.assertFalse(Files.exists(repo3.resolve(pom)));
+
+        /* storing again repairs the cache */
+        Files.write(jar.getPath(), "jar".getBytes(StandardCharsets.UTF_8));
+        cache.store("test", "hash1", "commit1", Arrays.asList(jar, pom, sources));
+        Assert.assertEquals(3, cache.restore("test", "hash1", "commit1", repo3).size());
+        Assert.assertEquals("jar", read(repo3.resolve(sources)));
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.GavSet;
+import org.srcdeps.core.GavSetWalker;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+public class LocalRepositoryIndexTest {
+
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(LocalRepositoryIndexTest.class.getSimpleName()).toAbsolutePath();
+
+    private static void awaitExists(MavenLocalRepository repo, Gavtc gavtc, boolean expected)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+        while (repo.exists(gavtc) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(gavtc.toString(), expected, repo.exists(gavtc));
+    }
+
+    private static void install(Path repoRoot, String gavtcString) throws IOException {
+        final Path path = new MavenLocalRepository(repoRoot).resolve(Gavtc.of(gavtcString));
+        Files.createDirectories(path.getParent());
+        Files.write(path, gavtcString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<String> walk(GavSetWalker walker) {
+        return walker.stream().map(GavtcPath::getGavtcString).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Test
+    public void indexRefresh() throws IOException {
+        final Path dir = targetDirectory.resolve("indexRefresh");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path repoRoot = dir.resolve("repo");
+        install(repoRoot, "org.group1:artifact1:1.0:jar");
+        install(repoRoot, "org.group1:artifact1:1.0:pom");
+        install(repoRoot, "org.group1:artifact2:1.0:jar:sources");
+        install(repoRoot, "org.group1.sub:artifact3:1.0:jar");
+        install(repoRoot, "org.group2:artifact1:2.0:jar");
+        final Path indexFile = dir.resolve("index");
+
+        final GavSet gavSet = GavSet.builder().include("org.*").build();
+        final Set<String> expected = walk(new GavSetWalker(repoRoot, gavSet, "1.0"));
+        Assert.assertEquals(4, expected.size());
+
+        try (LocalRepositoryIndex index = LocalRepositoryIndex.open(repoRoot, indexFile)) {
+            Assert.assertEquals(expected, walk(new GavSetWalker(index, gavSet, "1.0")));
+            Assert.assertEquals(expected,
+                    walk(new GavSetWalker(index, GavSet.builder().include("org.group1*:artifact*").build(), "1.0")));
+            final MavenLocalRepository repo = new MavenLocalRepository(index);
+            Assert.assertTrue(repo.exists(Gavtc.of("org.group1:artifact1:1.0:pom")));
+            Assert.assertFalse(repo.exists(Gavtc.of("org.group1:artifact1:1.0:war")));
+            Assert.assertEquals(2, index.getFiles(Paths.get("org/group1/artifact1/1.0")).size());
+            Assert.assertEquals("org.group1:artifact1:1.0:jar".length(),
+                    index.getFile(Paths.get("org/group1/artifact1/1.0/artifact1-1.0.jar")).getSize());
+        }
+        Assert.assertTrue(Files.exists(indexFile));
+
+        /* Nothing changed since the index was saved */
+        final LocalRepositoryIndex reloaded = new LocalRepositoryIndex(repoRoot, indexFile);
+        reloaded.load();
+        Assert.assertEquals(0, reloaded.refresh());
+        Assert.assertEquals(expected, walk(new GavSetWalker(reloaded, gavSet, "1.0")));
+
+        /* Only the changed directories are re-listed */
+        install(repoRoot, "org.group1:artifact1:1.1:jar");
+        SrcdepsCoreUtils.deleteDirectory(repoRoot.resolve("org/group1/artifact2"));
+        final int relisted = reloaded.refresh();
+        Assert.assertTrue(String.valueOf(relisted), relisted >= 2 && relisted <= 3);
+        final MavenLocalRepository repo = new MavenLocalRepository(reloaded);
+        Assert.assertTrue(repo.exists(Gavtc.of("org.group1:artifact1:1.1:jar")));
+        Assert.assertFalse(repo.exists(Gavtc.of("org.group1:artifact2:1.0:jar:sources")));
+        Assert.assertNull(reloaded.getSubdirectories(Paths.get("org/group1/artifact2")));
+        Assert.assertEquals(3, walk(new GavSetWalker(reloaded, gavSet, "1.0")).size());
+    }
+
+    @Test
+    public void malformedIndexFile() throws IOException {
+        final Path dir = targetDirectory.resolve("malformedIndexFile");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path repoRoot = dir.resolve("repo");
+        install(repoRoot, "org.group1:artifact1:1.0:jar");
+        final Path indexFile = dir.resolve("index");
+        Files.write(indexFile, "# srcdeps local repository index v1\nd x org\n".getBytes(StandardCharsets.UTF_8));
+        final LocalRepositoryIndex index = LocalRepositoryIndex.open(repoRoot, indexFile);
+        Assert.assertTrue(new MavenLocalRepository(index).exists(Gavtc.of("org.group1:artifact1:1.0:jar")));
+    }
+
+    @Test
+    public void staleSnapshot() throws IOException {
+        final Path dir = targetDirectory.resolve("staleSnapshot");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path repoRoot = dir.resolve("repo");
+        install(repoRoot, "org.group1:artifact1:1.0:jar");
+        final LocalRepositoryIndex index = LocalRepositoryIndex.open(repoRoot, dir.resolve("index"));
+        final Path versionDir = Paths.get("org/group1/artifact1/1.0");
+        final long staleLastModified = Files.getLastModifiedTime(repoRoot.resolve(versionDir))
+                .to(TimeUnit.NANOSECONDS);
+
+        /* A newer listing is installed by someone else while a slow one with an older version is in progress */
+        install(repoRoot, "org.group1:artifact1:1.0:pom");
+        final LocalRepositoryIndex.IndexedDirectory newer = index.list(versionDir, Long.MAX_VALUE,
+                staleLastModified + 1);
+        Assert.assertSame(newer, index.list(versionDir, 1, staleLastModified));
+        Assert.assertEquals(2, index.getFiles(versionDir).size());
+    }
+
+    @Test
+    public void watch() throws IOException, InterruptedException {
+        final Path dir = targetDirectory.resolve("watch");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path repoRoot = dir.resolve("repo");
+        install(repoRoot, "org.group1:artifact1:1.0:jar");
+        try (LocalRepositoryIndex index = LocalRepositoryIndex.open(repoRoot, dir.resolve("index"))) {
+            index.startWatching();
+            Assert.assertTrue(index.isWatching());
+            /* The directories are registered lazily */
+            Assert.assertTrue(index.getWatched().isEmpty());
+            final MavenLocalRepository repo = new MavenLocalRepository(index);
+            Assert.assertTrue(repo.exists(Gavtc.of("org.group1:artifact1:1.0:jar")));
+            Assert.assertEquals(Collections.singleton(Paths.get("org/group1/artifact1/1.0")), index.getWatched());
+
+            /* a new file in a known directory */
+            install(repoRoot, "org.group1:artifact1:1.0:pom");
+            awaitExists(repo, Gavtc.of("org.group1:artifact1:1.0:pom"), true);
+
+            /* a new subtree */
+            install(repoRoot, "org.group2.sub:artifact2:2.0:jar");
+            awaitExists(repo, Gavtc.of("org.group2.sub:artifact2:2.0:jar"), true);
+            install(repoRoot, "org.group2.sub:artifact2:2.0:pom");
+            awaitExists(repo, Gavtc.of("org.group2.sub:artifact2:2.0:pom"), true);
+
+            /* a removed subtree */
+            SrcdepsCoreUtils.deleteDirectory(repoRoot.resolve("org/group1"));
+            awaitExists(repo, Gavtc.of("org.group1:artifact1:1.0:jar"), false);
+
+            final List<GavtcPath> artifacts = new GavSetWalker(index,
+                    GavSet.builder().include("org.group2.sub").build(), "2.0").stream().collect(Collectors.toList());
+            Assert.assertEquals(2, artifacts.size());
+
+            index.stopWatching();
+            Assert.assertFalse(index.isWatching());
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+public class LockedLogFileTest {
+
+    private static final Path testRoot = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(LockedLogFileTest.class.getSimpleName()).toAbsolutePath();
+
+    private static Path testDir(String testName) throws IOException {
+        final Path result = testRoot.resolve(testName);
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(result);
+        return result;
+    }
+
+    @Test
+    public void appendAfterPartialLine() throws IOException {
+        final LockedLogFile file = new LockedLogFile(testDir("appendAfterPartialLine").resolve("log"));
+        file.withLock(() -> file.append(LockedLogFile.toLine("k1 v1").getBytes(StandardCharsets.UTF_8)));
+        /* a line partially written by a crashed process */
+        Files.write(file.getFile(), "0123".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        final long size = file
+                .withLock(() -> file.append(LockedLogFile.toLine("k2 v2").getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(Files.size(file.getFile()), size);
+
+        final List<String> lines = Files.readAllLines(file.getFile(), StandardCharsets.UTF_8);
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("k1 v1", LockedLogFile.verifyLine(lines.get(0)));
+        Assert.assertNull(LockedLogFile.verifyLine(lines.get(1)));
+        Assert.assertEquals("k2 v2", LockedLogFile.verifyLine(lines.get(2)));
+    }
+
+    @Test
+    public void rewrite() throws IOException {
+        final Path dir = testDir("rewrite");
+        final LockedLogFile file = new LockedLogFile(dir.resolve("sub/file"));
+        file.withLock(() -> {
+            file.rewrite(w -> w.write("old\n"));
+            file.rewrite(w -> w.write("new\n"));
+            return null;
+        });
+        Assert.assertEquals(Arrays.asList("new"), Files.readAllLines(file.getFile(), StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(file.getFile().getParent())) {
+            /* no leftover temporary files */
+            Assert.assertEquals(Arrays.asList("file", "file.lock"),
+                    files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void verifyLine() {
+        final String line = LockedLogFile.toLine("hash 123");
+        Assert.assertTrue(line.endsWith("\n"));
+        Assert.assertEquals("hash 123", LockedLogFile.verifyLine(line.substring(0, line.length() - 1)));
+        Assert.assertNull(LockedLogFile.verifyLine(line.substring(0, line.length() - 2)));
+        Assert.assertNull(LockedLogFile.verifyLine("hash"));
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.fs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.FileStat;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.fs.PersistentBuildMetadataStore.BuildRequestIdCollector;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+public class LogBuildMetadataStoreTest {
+
+    private static final Path mdStorePath = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(LogBuildMetadataStoreTest.class.getSimpleName()).toAbsolutePath();
+
+    private static Path storeDir(String testName) throws IOException {
+        final Path result = mdStorePath.resolve(testName);
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(result);
+        return result;
+    }
+
+    @Test
+    public void batch() throws IOException {
+        final Path dir = storeDir("batch");
+        final LogBuildMetadataStore store = new LogBuildMetadataStore(dir);
+        final Gavtc gavtc1 = Gavtc.of("org.o1:a1:1.2.3:jar");
+        final Gavtc gavtc2 = Gavtc.of("org.o2:a2:1.2.3:jar:sources");
+        final Gavtc gavtc3 = Gavtc.of("org.o3:a3:1.2.3:pom");
+        store.storeSha1("test", "hash1", gavtc1, "sha0");
+
+        final Map<Gavtc, String> sha1s = new LinkedHashMap<>();
+        sha1s.put(gavtc1, "sha1");
+        sha1s.put(gavtc2, "sha2");
+        store.storeSha1s("test", "hash1", sha1s);
+        /* the header, the single entry and the two batched entries */
+        Assert.assertEquals(4, Files.readAllLines(store.getLogFile(), StandardCharsets.UTF_8).size());
+
+        final LogBuildMetadataStore store2 = new LogBuildMetadataStore(dir);
+        final Map<String, String> actual = store2.retrieveSha1s("test", "hash1",
+                Arrays.asList(gavtc1, gavtc2, gavtc3));
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals("sha1", actual.get(gavtc1.getGavtcString()));
+        Assert.assertEquals("sha2", actual.get(gavtc2.getGavtcString()));
+        Assert.assertTrue(store2.retrieveSha1s("test", "hash2", Arrays.asList(gavtc1)).isEmpty());
+
+        final FileStat stat = new FileStat(42, 1234567890123456789L, "(dev=fd01,ino=1234)");
+        store.storeFileStats("test", "hash1", Collections.singletonMap(gavtc1, stat));
+        Assert.assertEquals(stat,
+                store2.retrieveFileStats("test", "hash1", Arrays.asList(gavtc1, gavtc2)).get(gavtc1.getGavtcString()));
+        Assert.assertEquals(1, store2.retrieveFileStats("test", "hash1", Arrays.asList(gavtc1, gavtc2)).size());
+    }
+
+    @Test
+    public void compaction() throws IOException {
+        final Path dir = storeDir("compaction");
+        final LogBuildMetadataStore store1 = new LogBuildMetadataStore(dir);
+        final LogBuildMetadataStore store2 = new LogBuildMetadataStore(dir);
+        final Gavtc gavtc = Gavtc.of("org.o1:a1:1.2.3:jar");
+        store1.storeCommitId("test", "hash0", "commit0");
+        Assert.assertEquals("commit0", store2.retrieveCommitId("test", "hash0"));
+
+        long written = 0;
+        long maxSize = 0;
+        int i = 0;
+        for (; i < 30000; i++) {
+            final long oldSize = Files.size(store1.getLogFile());
+            store1.storeSha1("test", "hash1", gavtc, "sha1-" + i);
+            final long newSize = Files.size(store1.getLogFile());
+            written += newSize > oldSize ? newSize - oldSize : 0;
+            maxSize = Math.max(maxSize, newSize);
+        }
+        /* The log was compacted at least once */
+        Assert.assertTrue(written > LogBuildMetadataStore.COMPACTION_MIN_SIZE);
+        Assert.assertTrue(maxSize < LogBuildMetadataStore.COMPACTION_MIN_SIZE);
+
+        /* store2 notices that the log was replaced */
+        Assert.assertEquals("sha1-" + (i - 1), store2.retrieveSha1("test", "hash1", gavtc));
+        Assert.assertEquals("commit0", store2.retrieveCommitId("test", "hash0"));
+
+        store2.compact();
+        Assert.assertEquals(3, Files.readAllLines(store2.getLogFile(), StandardCharsets.UTF_8).size());
+        Assert.assertEquals("sha1-" + (i - 1), store1.retrieveSha1("test", "hash1", gavtc));
+
+        final BuildRequestIdCollector collector = new BuildRequestIdCollector();
+        store1.walkBuildRequestHashes(collector);
+        Assert.assertEquals(Arrays.asList("hash0", "hash1"), collector.getHashes());
+    }
+
+    @Test
+    public void concurrentWriters() throws Exception {
+        final Path dir = storeDir("concurrentWriters");
+        final Gavtc gavtc = Gavtc.of("org.o1:a1:1.2.3:jar");
+        final int threadCount = 4;
+        final int entryCount = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final String hash = "hash" + t;
+                futures.add(executor.submit(() -> {
+                    final LogBuildMetadataStore store = new LogBuildMetadataStore(dir);
+                    for (int i = 0; i < entryCount; i++) {
+                        store.storeSha1("test", hash, gavtc, "sha1-" + i);
+                    }
+                    store.storeCommitId("test", hash, "commit-" + hash);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final LogBuildMetadataStore store = new LogBuildMetadataStore(dir);
+        for (int t = 0; t < threadCount; t++) {
+            Assert.assertEquals("commit-hash" + t, store.retrieveCommitId("test", "hash" + t));
+            Assert.assertEquals("sha1-" + (entryCount - 1), store.retrieveSha1("test", "hash" + t, gavtc));
+        }
+        Assert.assertEquals(threadCount * (entryCount + 1) + 1,
+                Files.readAllLines(store.getLogFile(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void partialRecord() throws IOException {
+        final Path dir = storeDir("partialRecord");
+        final Gavtc gavtc = Gavtc.of("org.o1:a1:1.2.3:jar");
+        final LogBuildMetadataStore store1 = new LogBuildMetadataStore(dir);
+        store1.storeSha1("test", "hash1", gavtc, "sha1-1");
+
+        /* Simulate a process that crashed in the middle of writing a record */
+        Files.write(store1.getLogFile(), "0badc0de hash1 s org.o1:a1:1.2.3:jar sha1-".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final LogBuildMetadataStore store2 = new LogBuildMetadataStore(dir);
+        Assert.assertEquals("sha1-1", store2.retrieveSha1("test", "hash1", gavtc));
+        store2.storeCommitId("test", "hash1", "commit1");
+
+        final LogBuildMetadataStore store3 = new LogBuildMetadataStore(dir);
+        Assert.assertEquals("sha1-1", store3.retrieveSha1("test", "hash1", gavtc));
+        Assert.assertEquals("commit1", store3.retrieveCommitId("test", "hash1"));
+        Assert.assertEquals("commit1", store1.retrieveCommitId("test", "hash1"));
+    }
+
+    @Test
+    public void writeRead() throws IOException {
+        final Path dir = storeDir("writeRead");
+        final LogBuildMetadataStore store = new LogBuildMetadataStore(dir);
+        final Gavtc gavtc1 = Gavtc.of("org.o1:a1:1.2.3:jar");
+        final Gavtc gavtc2 = Gavtc.of("org.o2:a2:1.2.3:jar:sources");
+        Assert.assertNull(store.retrieveCommitId("test", "hash1"));
+        Assert.assertNull(store.retrieveSha1("test", "hash1", gavtc1));
+
+        store.storeCommitId("test", "hash1", "deadbeef");
+        store.storeSha1("test", "hash1", gavtc1, "sha1");
+        store.storeSha1("test", "hash1", gavtc2, "sha2");
+        store.storeSha1("test", "hash2", gavtc1, "sha3");
+
+        final LogBuildMetadataStore store2 = new LogBuildMetadataStore(dir);
+        Assert.assertEquals("deadbeef", store2.retrieveCommitId("test", "hash1"));
+        Assert.assertEquals("sha1", store2.retrieveSha1("test", "hash1", gavtc1));
+        Assert.assertEquals("sha2", store2.retrieveSha1("test", "hash1", gavtc2));
+        Assert.assertEquals("sha3", store2.retrieveSha1("test", "hash2", gavtc1));
+        Assert.assertNull(store2.retrieveCommitId("test", "hash2"));
+
+        /* later writes win */
+        store2.storeCommitId("test", "hash1", "cafebabe");
+        Assert.assertEquals("cafebabe", store.retrieveCommitId("test", "hash1"));
+
+        final BuildRequestIdCollector collector = new BuildRequestIdCollector();
+        store.walkBuildRequestHashes(collector);
+        Assert.assertEquals(Arrays.asList("hash1", "hash2"), collector.getHashes());
+    }
+
+}
@@ -22,8 +22,12 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -150,6 +154,65 @@ public class PathLockerTest {
 
     }
 
+    /**
+     * Makes sure that {@link PathLocker#lockOneOf(String, List, Object, long)} waits for a free path of the pool,
+     * serves the waiting threads in the order of their arrival and times out.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void boundedPool() throws Exception {
+        final PathLocker<SrcVersion> pathLocker = new PathLocker<>();
+        final Path pool = lockerDirectory.resolve(UUID.randomUUID().toString());
+        final List<Path> paths = Arrays.asList(pool.resolve("0"), pool.resolve("1"));
+        final SrcVersion srcVersion = SrcVersion.parse("1.2.3-SRC-revision-deadbeef");
+        final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+
+        final PathLock lock0 = pathLocker.lockOneOf("org.srcdeps.example", paths, srcVersion, 1000);
+        Assert.assertEquals(paths.get(0), lock0.getPath());
+        try (PathLock lock1 = pathLocker.lockOneOf("org.srcdeps.example", paths, srcVersion, 1000)) {
+            Assert.assertEquals(paths.get(1), lock1.getPath());
+
+            /* Both paths locked: times out */
+            try {
+                lockOneOfConcurrently(pathLocker, paths, srcVersion, 300, "timeout", order).get(5, TimeUnit.SECONDS);
+                Assert.fail("CannotAcquireLockException expected");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(CannotAcquireLockException.class, e.getCause().getClass());
+            }
+
+            final List<Future<Path>> waiters = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiters.add(lockOneOfConcurrently(pathLocker, paths, srcVersion, 10000, "waiter" + i, order));
+                Thread.sleep(100);
+            }
+            Assert.assertTrue(order.isEmpty());
+
+            /* Release path 0; all waiters get it one after the other in the order of their arrival */
+            lock0.close();
+            for (Future<Path> waiter : waiters) {
+                Assert.assertEquals(paths.get(0), waiter.get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(Arrays.asList("waiter0", "waiter1", "waiter2"), new ArrayList<>(order));
+        }
+    }
+
+    private Future<Path> lockOneOfConcurrently(final PathLocker<SrcVersion> pathLocker, final List<Path> paths,
+            final SrcVersion srcVersion, final long timeoutMs, final String name,
+            final ConcurrentLinkedQueue<String> order) {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        return executor.submit(new Callable<Path>() {
+            @Override
+            public Path call() throws Exception {
+                try (PathLock lock = pathLocker.lockOneOf("org.srcdeps.example", paths, srcVersion, timeoutMs)) {
+                    order.add(name);
+                    Thread.sleep(50);
+                    return lock.getPath();
+                }
+            }
+        });
+    }
+
     private Future<PathLock> lockConcurrently(final PathLocker<SrcVersion> pathLocker, final Path path,
             final SrcVersion srcVersion) {
         final ExecutorService executor = Executors.newSingleThreadExecutor();
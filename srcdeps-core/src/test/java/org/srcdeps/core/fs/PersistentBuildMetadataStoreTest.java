@@ -16,36 +16,557 @@
  */
 package org.srcdeps.core.fs;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.srcdeps.core.ArtifactDigester;
+import org.srcdeps.core.BuildMetadataStore.CheckSha1Consumer;
+import org.srcdeps.core.BuildMetadataStore.StoreSha1Consumer;
 import org.srcdeps.core.BuildRequest;
 import org.srcdeps.core.BuildRequest.Verbosity;
+import org.srcdeps.core.FileStat;
 import org.srcdeps.core.Ga;
 import org.srcdeps.core.GavSet;
+import org.srcdeps.core.GavSetWalker;
 import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
 import org.srcdeps.core.SrcVersion;
+import org.srcdeps.core.config.Configuration;
+import org.srcdeps.core.config.tree.walk.DefaultsAndInheritanceVisitor;
+import org.srcdeps.core.fs.PersistentBuildMetadataStore.BuildRequestIdCollector;
+import org.srcdeps.core.impl.digest.Sha1ArtifactDigester;
+import org.srcdeps.core.impl.digest.Xxh64ArtifactDigester;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
 
 public class PersistentBuildMetadataStoreTest {
 
     private static final Path mdStorepath = Paths.get(System.getProperty("project.build.directory", "target"))
             .resolve(PersistentBuildMetadataStore.class.getSimpleName()).toAbsolutePath();
 
+    private static Path testDir(String testName) throws IOException {
+        final Path result = mdStorepath.resolveSibling(PersistentBuildMetadataStoreTest.class.getSimpleName())
+                .resolve(testName);
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(result);
+        return result;
+    }
+
+    private static List<String> walk(PersistentBuildMetadataStore store) {
+        final BuildRequestIdCollector collector = new BuildRequestIdCollector();
+        store.walkBuildRequestHashes(collector);
+        return collector.getHashes();
+    }
+
     @Test
     public void createBuildRequestIdPath() {
         final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(mdStorepath);
         Assert.assertEquals(mdStorepath.resolve("a/b/c/d/efgh"), store.createBuildRequestIdPath("abcdefgh"));
     }
 
+    @Test
+    public void fileStats() throws IOException {
+        final Path testDir = testDir("fileStats");
+        final Path repo = testDir.resolve("repo");
+        Files.createDirectories(repo);
+        final GavtcPath jar = new GavtcPath("org.o1", "a1", "1.2.3", "jar", null, repo.resolve("a1-1.2.3.jar"));
+        Files.write(jar.getPath(), "jar".getBytes(StandardCharsets.UTF_8));
+        final FileStat stat = FileStat.of(jar.getPath());
+        Assert.assertEquals(stat, FileStat.parse(stat.toString()));
+
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "fileStats";
+        try (StoreSha1Consumer storeConsumer = store.createStoreSha1Consumer("test", hash)) {
+            storeConsumer.accept(jar);
+            Assert.assertEquals(1, storeConsumer.getCount());
+        }
+        Assert.assertEquals(stat,
+                store.retrieveFileStats("test", hash, Collections.singleton(jar)).get(jar.getGavtcString()));
+        /* The sha1 file contains just the sha1 so that older versions can read it; the file stat is stored aside */
+        final Path entryDir = store.createBuildRequestIdPath(hash);
+        try (Stream<Path> files = Files.list(entryDir)) {
+            Assert.assertEquals(Arrays.asList("org.o1_a1_1.2.3_jar", "stats"),
+                    files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+        Assert.assertEquals(Sha1ArtifactDigester.INSTANCE.digest(jar.getPath()),
+                new String(Files.readAllBytes(entryDir.resolve("org.o1_a1_1.2.3_jar")), StandardCharsets.UTF_8));
+        Assert.assertEquals("org.o1:a1:1.2.3:jar " + stat, new String(
+                Files.readAllBytes(entryDir.resolve("stats/org.o1_a1_1.2.3_jar")), StandardCharsets.UTF_8));
+
+        /* A sha1 not matching the content is not noticed unless paranoid because the file stat has not changed */
+        store.storeSha1sAndFileStats("test", hash, Collections.singletonMap(jar, "bogus"),
+                Collections.singletonMap(jar, stat));
+        final CheckSha1Consumer statBased = store.createCheckSha1Checker("test", hash);
+        statBased.accept(jar);
+        Assert.assertFalse(statBased.isAnyArtifactChanged());
+        final CheckSha1Consumer paranoid = store.createCheckSha1Checker("test", hash, true);
+        paranoid.accept(jar);
+        Assert.assertTrue(paranoid.isAnyArtifactChanged());
+
+        /* A changed stat falls back to the sha1 and gets refreshed if the sha1 matches */
+        try (StoreSha1Consumer restore = store.createStoreSha1Consumer("test", hash)) {
+            restore.accept(jar);
+        }
+        store.storeFileStats("test", hash, Collections.singletonMap(jar, new FileStat(3, 0, stat.getFileKey())));
+        final CheckSha1Consumer refreshed = store.createCheckSha1Checker("test", hash);
+        refreshed.accept(jar);
+        Assert.assertFalse(refreshed.isAnyArtifactChanged());
+        Assert.assertEquals(stat,
+                store.retrieveFileStats("test", hash, Collections.singleton(jar)).get(jar.getGavtcString()));
+    }
+
+    @Test
+    public void walkThenRead() throws IOException {
+        final Path testDir = testDir("walkThenRead");
+        final MavenLocalRepository localRepo = new MavenLocalRepository(testDir.resolve("repo"));
+        /* more than a single batch */
+        final int artifactCount = 300;
+        final List<GavtcPath> artifacts = new ArrayList<>();
+        for (int i = 0; i < artifactCount; i++) {
+            final Gavtc gavtc = Gavtc.of("org.o1:a" + i + ":1.2.3:jar");
+            final Path path = localRepo.resolve(gavtc);
+            Files.createDirectories(path.getParent());
+            Files.write(path, ("jar" + i).getBytes(StandardCharsets.UTF_8));
+            artifacts.add(GavtcPath.of(gavtc.getGavtcString(), path));
+        }
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "walkThenRead";
+        final GavSet gavSet = GavSet.builder().include("org.o1").build();
+        try (StoreSha1Consumer storeConsumer = store.createStoreSha1Consumer("test", hash)) {
+            new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3").walk(storeConsumer);
+        }
+
+        final Map<String, String> sha1s = store.retrieveSha1s("test", hash, artifacts);
+        Assert.assertEquals(artifactCount, sha1s.size());
+        for (GavtcPath artifact : artifacts) {
+            Assert.assertEquals(Sha1ArtifactDigester.INSTANCE.digest(artifact.getPath()),
+                    sha1s.get(artifact.getGavtcString()));
+        }
+    }
+
+    @Test
+    public void walkParallel() throws IOException {
+        final Path testDir = testDir("walkParallel");
+        final MavenLocalRepository localRepo = new MavenLocalRepository(testDir.resolve("repo"));
+        /* more than a single batch spread over several artifactId directories */
+        final int artifactCount = 600;
+        final List<GavtcPath> artifacts = new ArrayList<>();
+        for (int i = 0; i < artifactCount; i++) {
+            final Gavtc gavtc = Gavtc.of("org.o" + (i % 3) + ":a" + i + ":1.2.3:jar");
+            final Path path = localRepo.resolve(gavtc);
+            Files.createDirectories(path.getParent());
+            Files.write(path, ("jar" + i).getBytes(StandardCharsets.UTF_8));
+            artifacts.add(GavtcPath.of(gavtc.getGavtcString(), path));
+        }
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "walkParallel";
+        final GavSet gavSet = GavSet.builder().include("org.o0").include("org.o1").include("org.o2").build();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            try (StoreSha1Consumer storeConsumer = store.createStoreSha1Consumer("test", hash)) {
+                new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3").walk(storeConsumer, pool);
+                Assert.assertEquals(artifactCount, storeConsumer.getCount());
+            }
+            final Map<String, String> sha1s = store.retrieveSha1s("test", hash, artifacts);
+            Assert.assertEquals(artifactCount, sha1s.size());
+            for (GavtcPath artifact : artifacts) {
+                Assert.assertEquals(Sha1ArtifactDigester.INSTANCE.digest(artifact.getPath()),
+                        sha1s.get(artifact.getGavtcString()));
+            }
+
+            final CheckSha1Consumer unchanged = store.createCheckSha1Checker("test", hash, true);
+            new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3").walk(unchanged, pool);
+            Assert.assertFalse(unchanged.isAnyArtifactChanged());
+
+            Files.write(artifacts.get(artifactCount - 1).getPath(), "changed".getBytes(StandardCharsets.UTF_8));
+            final CheckSha1Consumer changed = store.createCheckSha1Checker("test", hash, true);
+            new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3").walk(changed, pool);
+            Assert.assertTrue(changed.isAnyArtifactChanged());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void walkWithoutClose() throws IOException {
+        final Path testDir = testDir("walkWithoutClose");
+        final MavenLocalRepository localRepo = new MavenLocalRepository(testDir.resolve("repo"));
+        /* a full batch and a partial one */
+        final int artifactCount = 300;
+        final List<GavtcPath> artifacts = new ArrayList<>();
+        for (int i = 0; i < artifactCount; i++) {
+            final Gavtc gavtc = Gavtc.of("org.o1:a" + i + ":1.2.3:jar");
+            final Path path = localRepo.resolve(gavtc);
+            Files.createDirectories(path.getParent());
+            Files.write(path, ("jar" + i).getBytes(StandardCharsets.UTF_8));
+            artifacts.add(GavtcPath.of(gavtc.getGavtcString(), path));
+        }
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "walkWithoutClose";
+        final GavSet gavSet = GavSet.builder().include("org.o1").build();
+
+        /* the way of the 3.2.2 callers: the consumer is never closed */
+        new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3")
+                .walk(store.createStoreSha1Consumer("test", hash));
+        Assert.assertEquals(artifactCount, store.retrieveSha1s("test", hash, artifacts).size());
+
+        final CheckSha1Consumer unchanged = store.createCheckSha1Checker("test", hash, true);
+        new GavSetWalker(localRepo.getRootDirectory(), gavSet, "1.2.3").walk(unchanged);
+        Assert.assertFalse(unchanged.isAnyArtifactChanged());
+    }
+
+    @Test
+    public void gc() throws IOException {
+        final Path testDir = testDir("gc");
+        final Path repo = testDir.resolve("repo");
+        final MavenLocalRepository localRepo = new MavenLocalRepository(repo);
+        final Gavtc jar = Gavtc.of("org.o1:a1:1.2.3:jar");
+        final Path jarPath = localRepo.resolve(jar);
+        Files.createDirectories(jarPath.getParent());
+        Files.write(jarPath, "jar".getBytes(StandardCharsets.UTF_8));
+
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final long now = System.currentTimeMillis();
+        final long day = TimeUnit.DAYS.toMillis(1);
+        /* hash0 is the most recently used, hash4 the least recently used */
+        for (int i = 0; i < 5; i++) {
+            final String hash = "hash" + i;
+            store.storeSha1("test", hash, jar, "sha1-" + i);
+            store.storeCommitId("test", hash, "commit-" + i);
+            Files.setLastModifiedTime(store.createBuildRequestIdPath(hash).resolve("commitId"),
+                    FileTime.fromMillis(now - i * day));
+        }
+        store.storeSha1("test", "other", Gavtc.of("org.o1:a1:1.2.3:pom"), "sha1-5");
+        store.storeCommitId("test", "other", "commit-5");
+
+        Assert.assertEquals(0, store.gc(GcPolicy.none()));
+
+        /* other refers to a non-existent pom */
+        Assert.assertEquals(1, store.gc(GcPolicy.builder().localRepository(localRepo).build()));
+        Assert.assertNull(store.retrieveCommitId("test", "other"));
+        /* the empty fan-out directories are removed too */
+        Assert.assertFalse(Files.exists(testDir.resolve("store/o")));
+
+        /* retrieving the commitId counts as a use */
+        Assert.assertEquals("commit-4", store.retrieveCommitId("test", "hash4"));
+        Assert.assertEquals(1, store.gc(GcPolicy.builder().maxAgeMs(2 * day + day / 2).build()));
+        Assert.assertNull(store.retrieveCommitId("test", "hash3"));
+        Assert.assertEquals("sha1-4", store.retrieveSha1("test", "hash4", jar));
+
+        /* hash4, hash0, hash1 are the most recently used ones */
+        Assert.assertEquals(1, store.gc(GcPolicy.builder().maxEntries(3).build()));
+        Assert.assertNull(store.retrieveCommitId("test", "hash2"));
+
+        final long entrySize = "sha1-0 org.o1:a1:1.2.3:jar".length() + "commit-0".length();
+        Assert.assertEquals(1, store.gc(GcPolicy.builder().maxTotalSize(2 * entrySize).build()));
+        Assert.assertNull(store.retrieveCommitId("test", "hash1"));
+
+        final BuildRequestIdCollector collector = new BuildRequestIdCollector();
+        store.walkBuildRequestHashes(collector);
+        Assert.assertEquals(Arrays.asList("hash0", "hash4"), collector.getHashes());
+
+        /* automatic gc runs on storeCommitId at most once per interval */
+        final PersistentBuildMetadataStore autoStore = new PersistentBuildMetadataStore(testDir.resolve("store"),
+                GcPolicy.builder().maxEntries(1).intervalMs(day).build());
+        autoStore.storeCommitId("test", "hash6", "commit-6");
+        Assert.assertEquals("commit-6", autoStore.retrieveCommitId("test", "hash6"));
+        Assert.assertNull(autoStore.retrieveCommitId("test", "hash0"));
+        Assert.assertNull(autoStore.retrieveCommitId("test", "hash4"));
+        autoStore.storeCommitId("test", "hash7", "commit-7");
+        Assert.assertEquals("commit-6", autoStore.retrieveCommitId("test", "hash6"));
+        Assert.assertEquals("commit-7", autoStore.retrieveCommitId("test", "hash7"));
+    }
+
+    @Test
+    public void gcUnderscores() throws IOException {
+        final Path testDir = testDir("gcUnderscores");
+        final MavenLocalRepository localRepo = new MavenLocalRepository(testDir.resolve("repo"));
+        /* underscores are legal in all segments of a gavtc */
+        final Gavtc scalaJar = Gavtc.of("org.o1:akka-actor_2.12:1.2.3:jar");
+        final Path scalaJarPath = localRepo.resolve(scalaJar);
+        Files.createDirectories(scalaJarPath.getParent());
+        Files.write(scalaJarPath, "jar".getBytes(StandardCharsets.UTF_8));
+
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        store.storeSha1("test", "scala", scalaJar, "sha1-1");
+        store.storeCommitId("test", "scala", "commit-1");
+        Assert.assertEquals("sha1-1", store.retrieveSha1("test", "scala", scalaJar));
+
+        /* a sha1 file stored by an older version contains just the sha1 and its name is ambiguous */
+        store.storeCommitId("test", "legacy", "commit-2");
+        Files.write(store.createBuildRequestIdPath("legacy").resolve("org.o1_akka-actor_2.12_1.2.3_jar"),
+                "sha1-2".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("sha1-2", store.retrieveSha1("test", "legacy", scalaJar));
+
+        /* a legacy sha1 file with an unambiguous name referring to a missing artifact */
+        store.storeCommitId("test", "legacyMissing", "commit-3");
+        Files.write(store.createBuildRequestIdPath("legacyMissing").resolve("org.o1_a1_1.2.3_pom"),
+                "sha1-3".getBytes(StandardCharsets.UTF_8));
+
+        /* a missing artifact with underscores */
+        store.storeSha1("test", "scalaMissing", Gavtc.of("org.o1:akka-actor_2.12:1.2.3:pom"), "sha1-4");
+        store.storeCommitId("test", "scalaMissing", "commit-4");
+
+        Assert.assertEquals(2, store.gc(GcPolicy.builder().localRepository(localRepo).build()));
+        Assert.assertEquals("commit-1", store.retrieveCommitId("test", "scala"));
+        Assert.assertEquals("commit-2", store.retrieveCommitId("test", "legacy"));
+        Assert.assertNull(store.retrieveCommitId("test", "legacyMissing"));
+        Assert.assertNull(store.retrieveCommitId("test", "scalaMissing"));
+    }
+
+    @Test
+    public void manifest() throws IOException {
+        final Path testDir = testDir("manifest");
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir);
+        final Gavtc jar = Gavtc.of("org.o1:a1:1.2.3:jar");
+        store.storeCommitId("test", "hash2", "commit-2");
+        store.storeSha1("test", "hash1", jar, "sha1-1");
+        store.storeCommitId("test", "hash1", "commit-1");
+
+        /* the manifest created by appending may be incomplete so it gets rebuilt by walking the tree */
+        final Path manifestFile = testDir.resolve(BuildRequestManifest.MANIFEST_FILE);
+        Assert.assertEquals(3, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).size());
+        Assert.assertEquals(Arrays.asList("hash1", "hash2"), walk(store));
+        Assert.assertEquals(3, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).size());
+
+        /* further entries get appended */
+        store.storeSha1("test", "hash3", jar, "sha1-3");
+        Assert.assertEquals(4, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).size());
+        Assert.assertEquals(Arrays.asList("hash1", "hash2", "hash3"), walk(store));
+
+        /* a partial line written by a crashed process is ignored */
+        Files.write(manifestFile, "hash9 12".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Assert.assertEquals(Arrays.asList("hash1", "hash2", "hash3"), walk(store));
+        store.storeCommitId("test", "hash4", "commit-4");
+        Assert.assertEquals(Arrays.asList("hash1", "hash2", "hash3", "hash4"), walk(store));
+
+        /* the tree is not walked as long as the manifest is there */
+        SrcdepsCoreUtils.deleteDirectory(store.createBuildRequestIdPath("hash2"));
+        Assert.assertEquals(Arrays.asList("hash1", "hash2", "hash3", "hash4"), walk(store));
+        Assert.assertEquals(Arrays.asList("hash1", "hash3", "hash4"),
+                new ArrayList<>(store.repairManifest().keySet()));
+        Files.delete(manifestFile);
+        Assert.assertEquals(Arrays.asList("hash1", "hash3", "hash4"), walk(store));
+
+        /* compaction */
+        for (int i = 0; i < BuildRequestManifest.COMPACTION_MIN_LINES; i++) {
+            store.storeCommitId("test", "hash1", "commit-1");
+        }
+        Assert.assertTrue(Files.readAllLines(manifestFile, StandardCharsets.UTF_8)
+                .size() > BuildRequestManifest.COMPACTION_MIN_LINES);
+        Assert.assertEquals(Arrays.asList("hash1", "hash3", "hash4"), walk(store));
+        Assert.assertEquals(4, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void configuredDigester() throws IOException {
+        final Path testDir = testDir("configuredDigester");
+        final Path repo = testDir.resolve("repo");
+        Files.createDirectories(repo);
+        final GavtcPath jar = new GavtcPath("org.o1", "a1", "1.2.3", "jar", null, repo.resolve("a1-1.2.3.jar"));
+        Files.write(jar.getPath(), "jar".getBytes(StandardCharsets.UTF_8));
+        final Configuration config = Configuration.builder() //
+                .artifactDigester(Xxh64ArtifactDigester.ALGORITHM) //
+                .accept(new DefaultsAndInheritanceVisitor()) //
+                .build();
+
+        final String oldAlgorithm = System.clearProperty(ArtifactDigester.ALGORITHM_PROPERTY);
+        try {
+            final ArtifactDigester digester = ArtifactDigester.forConfiguration(config);
+            Assert.assertEquals(Xxh64ArtifactDigester.ALGORITHM, digester.getAlgorithm());
+            final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"),
+                    GcPolicy.none(), digester);
+            final String hash = "configuredDigester";
+            try (StoreSha1Consumer consumer = store.createStoreSha1Consumer("test", hash)) {
+                consumer.accept(jar);
+            }
+            Assert.assertEquals("xxh64:" + digester.digest(jar.getPath()), store.retrieveSha1("test", hash, jar));
+            final CheckSha1Consumer unchanged = store.createCheckSha1Checker("test", hash, true);
+            unchanged.accept(jar);
+            Assert.assertFalse(unchanged.isAnyArtifactChanged());
+
+            /* The system property overrides the configuration */
+            System.setProperty(ArtifactDigester.ALGORITHM_PROPERTY, ArtifactDigester.SHA1);
+            Assert.assertEquals(ArtifactDigester.SHA1, ArtifactDigester.forConfiguration(config).getAlgorithm());
+        } finally {
+            if (oldAlgorithm == null) {
+                System.clearProperty(ArtifactDigester.ALGORITHM_PROPERTY);
+            } else {
+                System.setProperty(ArtifactDigester.ALGORITHM_PROPERTY, oldAlgorithm);
+            }
+        }
+    }
+
+    @Test
+    public void mixedAlgorithms() throws IOException {
+        final Path testDir = testDir("mixedAlgorithms");
+        final Path repo = testDir.resolve("repo");
+        Files.createDirectories(repo);
+        final GavtcPath jar = new GavtcPath("org.o1", "a1", "1.2.3", "jar", null, repo.resolve("a1-1.2.3.jar"));
+        final GavtcPath pom = new GavtcPath("org.o1", "a1", "1.2.3", "pom", null, repo.resolve("a1-1.2.3.pom"));
+        Files.write(jar.getPath(), "jar".getBytes(StandardCharsets.UTF_8));
+        Files.write(pom.getPath(), "pom".getBytes(StandardCharsets.UTF_8));
+
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "mixedAlgorithms";
+        final ArtifactDigester xxh64 = ArtifactDigester.forAlgorithm(Xxh64ArtifactDigester.ALGORITHM);
+
+        /* the jar gets stored with sha1 and the pom with xxh64 */
+        try (StoreSha1Consumer sha1Consumer = store.createStoreSha1Consumer("test", hash,
+                Sha1ArtifactDigester.INSTANCE)) {
+            sha1Consumer.accept(jar);
+            Assert.assertEquals(1, sha1Consumer.getCount());
+        }
+        try (StoreSha1Consumer xxh64Consumer = store.createStoreSha1Consumer("test", hash, xxh64)) {
+            xxh64Consumer.accept(pom);
+            Assert.assertEquals(1, xxh64Consumer.getCount());
+        }
+
+        Assert.assertEquals(Sha1ArtifactDigester.INSTANCE.digest(jar.getPath()), store.retrieveSha1("test", hash, jar));
+        Assert.assertEquals("xxh64:" + xxh64.digest(pom.getPath()), store.retrieveSha1("test", hash, pom));
+
+        /* Each value gets checked using the algorithm that produced it */
+        for (ArtifactDigester digester : Arrays.asList(Sha1ArtifactDigester.INSTANCE, xxh64)) {
+            final CheckSha1Consumer unchanged = store.createCheckSha1Checker("test", hash, true, digester);
+            unchanged.accept(jar);
+            unchanged.accept(pom);
+            Assert.assertFalse(unchanged.isAnyArtifactChanged());
+        }
+
+        Files.write(pom.getPath(), "pom2".getBytes(StandardCharsets.UTF_8));
+        final CheckSha1Consumer changed = store.createCheckSha1Checker("test", hash, true,
+                Sha1ArtifactDigester.INSTANCE);
+        changed.accept(pom);
+        Assert.assertTrue(changed.isAnyArtifactChanged());
+
+        /* An unknown algorithm means changed */
+        store.storeSha1("test", hash, jar, "unknown:0123");
+        final CheckSha1Consumer unknown = store.createCheckSha1Checker("test", hash, true,
+                Sha1ArtifactDigester.INSTANCE);
+        unknown.accept(jar);
+        Assert.assertTrue(unknown.isAnyArtifactChanged());
+    }
+
+    @Test
+    public void parallelCheckCancellation() throws Exception {
+        final Path testDir = testDir("parallelCheckCancellation");
+        final Path repo = testDir.resolve("repo");
+        Files.createDirectories(repo);
+        final int artifactCount = 20;
+        final List<GavtcPath> artifacts = new ArrayList<>();
+        for (int i = 0; i < artifactCount; i++) {
+            final GavtcPath artifact = new GavtcPath("org.o1", "a" + i, "1.2.3", "jar", null,
+                    repo.resolve("a" + i + "-1.2.3.jar"));
+            Files.write(artifact.getPath(), ("jar" + i).getBytes(StandardCharsets.UTF_8));
+            artifacts.add(artifact);
+        }
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "parallelCheckCancellation";
+        try (StoreSha1Consumer storeConsumer = store.createStoreSha1Consumer("test", hash)) {
+            for (GavtcPath artifact : artifacts) {
+                storeConsumer.accept(artifact);
+            }
+            Assert.assertEquals(artifactCount, storeConsumer.getCount());
+        }
+
+        Files.write(artifacts.get(0).getPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        final AtomicInteger started = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                if (!((Future<?>) r).isCancelled() && started.incrementAndGet() > 1) {
+                    /* give the checking thread a chance to cancel the rest */
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        try {
+            final CheckSha1Consumer checker = new CheckSha1Consumer(store, "test", hash, true, executor,
+                    Sha1ArtifactDigester.INSTANCE);
+            for (GavtcPath artifact : artifacts) {
+                checker.accept(artifact);
+            }
+            Assert.assertTrue(checker.isAnyArtifactChanged());
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertTrue(
+                    "Expected less than " + artifactCount + " artifacts to be hashed but got " + started.get(),
+                    started.get() < artifactCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sha1Consumers() throws IOException {
+        final Path testDir = testDir("sha1Consumers");
+        final Path repo = testDir.resolve("repo");
+        Files.createDirectories(repo);
+        final GavtcPath jar = new GavtcPath("org.o1", "a1", "1.2.3", "jar", null, repo.resolve("a1-1.2.3.jar"));
+        final GavtcPath pom = new GavtcPath("org.o1", "a1", "1.2.3", "pom", null, repo.resolve("a1-1.2.3.pom"));
+        Files.write(jar.getPath(), "jar".getBytes(StandardCharsets.UTF_8));
+        Files.write(pom.getPath(), "pom".getBytes(StandardCharsets.UTF_8));
+
+        final PersistentBuildMetadataStore store = new PersistentBuildMetadataStore(testDir.resolve("store"));
+        final String hash = "sha1Consumers";
+        Assert.assertTrue(store.retrieveSha1s("test", hash, Arrays.asList(jar, pom)).isEmpty());
+
+        try (StoreSha1Consumer storeConsumer = store.createStoreSha1Consumer("test", hash)) {
+            storeConsumer.accept(jar);
+            storeConsumer.accept(pom);
+            Assert.assertEquals(2, storeConsumer.getCount());
+        }
+
+        final Map<String, String> sha1s = store.retrieveSha1s("test", hash, Arrays.asList(jar, pom));
+        Assert.assertEquals(2, sha1s.size());
+        Assert.assertEquals(sha1s.get(jar.getGavtcString()), store.retrieveSha1("test", hash, jar));
+
+        final CheckSha1Consumer unchanged = store.createCheckSha1Checker("test", hash);
+        unchanged.accept(jar);
+        unchanged.accept(pom);
+        Assert.assertFalse(unchanged.isAnyArtifactChanged());
+        Assert.assertFalse(store.createCheckSha1Checker("test", hash).isAnyArtifactChanged(Stream.of(jar, pom)));
+
+        final CheckSha1Consumer unknown = store.createCheckSha1Checker("test", hash);
+        unknown.accept(jar);
+        unknown.accept(new GavtcPath("org.o1", "a1", "1.2.3", "jar", "sources", jar.getPath()));
+        Assert.assertTrue(unknown.isAnyArtifactChanged());
+
+        Files.write(pom.getPath(), "pom2".getBytes(StandardCharsets.UTF_8));
+        final CheckSha1Consumer changed = store.createCheckSha1Checker("test", hash);
+        changed.accept(jar);
+        changed.accept(pom);
+        Assert.assertTrue(changed.isAnyArtifactChanged());
+        Assert.assertTrue(store.createCheckSha1Checker("test", hash).isAnyArtifactChanged(Stream.of(jar, pom)));
+    }
+
     @Test
     public void writeRead() {
         final Map<String, String> env1 = new HashMap<>();
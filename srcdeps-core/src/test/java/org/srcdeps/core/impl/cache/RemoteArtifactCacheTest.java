@@ -0,0 +1,226 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.ArtifactCacheTransport;
+import org.srcdeps.core.Gavtc;
+import org.srcdeps.core.GavtcPath;
+import org.srcdeps.core.MavenLocalRepository;
+import org.srcdeps.core.fs.LocalArtifactCache;
+import org.srcdeps.core.impl.digest.Sha1ArtifactDigester;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class RemoteArtifactCacheTest {
+
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .resolve(RemoteArtifactCacheTest.class.getSimpleName()).toAbsolutePath();
+
+    private static void assertSharing(Path dir, ArtifactCacheTransport transport, Path remoteRoot)
+            throws IOException {
+        final MavenLocalRepository repo1 = new MavenLocalRepository(dir.resolve("repo1"));
+        final GavtcPath jar = install(repo1, "org.o1:a1:1.2.3:jar", "jar");
+        final GavtcPath pom = install(repo1, "org.o1:a1:1.2.3:pom", "pom");
+
+        /* node1 builds and uploads */
+        final RemoteArtifactCache node1 = new RemoteArtifactCache(
+                new LocalArtifactCache(dir.resolve("cache1"), Sha1ArtifactDigester.INSTANCE), transport);
+        Assert.assertNull(node1.restore("test", "hash1", "commit1", repo1));
+        node1.store("test", "hash1", "commit1", Arrays.asList(jar, pom));
+        Assert.assertTrue(transport.exists("entries/ha/hash1/commit1"));
+
+        /* node2 has an empty local cache and downloads */
+        final LocalArtifactCache localCache2 = new LocalArtifactCache(dir.resolve("cache2"),
+                Sha1ArtifactDigester.INSTANCE);
+        final RemoteArtifactCache node2 = new RemoteArtifactCache(localCache2, transport);
+        final MavenLocalRepository repo2 = new MavenLocalRepository(dir.resolve("repo2"));
+        Assert.assertNull(node2.restore("test", "hash1", "commit2", repo2));
+        final List<GavtcPath> restored = node2.restore("test", "hash1", "commit1", repo2);
+        Assert.assertEquals(2, restored.size());
+        Assert.assertEquals("jar", read(repo2.resolve(jar)));
+        Assert.assertEquals("pom", read(repo2.resolve(pom)));
+        Assert.assertNotNull(localCache2.readEntry("test", "hash1", "commit1"));
+
+        /* node3 rejects a corrupted remote blob */
+        final String pomSha1 = Sha1ArtifactDigester.INSTANCE.digest(pom.getPath());
+        final Path remotePomBlob = remoteRoot.resolve("blobs").resolve(pomSha1.substring(0, 2)).resolve(pomSha1);
+        Files.write(remotePomBlob, "corrupted".getBytes(StandardCharsets.UTF_8));
+        final LocalArtifactCache localCache3 = new LocalArtifactCache(dir.resolve("cache3"),
+                Sha1ArtifactDigester.INSTANCE);
+        final RemoteArtifactCache node3 = new RemoteArtifactCache(localCache3, transport);
+        final MavenLocalRepository repo3 = new MavenLocalRepository(dir.resolve("repo3"));
+        Assert.assertNull(node3.restore("test", "hash1", "commit1", repo3));
+        Assert.assertFalse(Files.exists(localCache3.createBlobPath(pomSha1)));
+        Assert.assertNull(localCache3.readEntry("test", "hash1", "commit1"));
+        Assert.assertFalse(Files.exists(repo3.resolve(jar)));
+
+        /* node1 stores again and repairs the remote blob */
+        Files.delete(remotePomBlob);
+        node1.store("test", "hash1", "commit1", Arrays.asList(jar, pom));
+        Assert.assertEquals(2, node3.restore("test", "hash1", "commit1", repo3).size());
+        Assert.assertEquals("pom", read(repo3.resolve(pom)));
+    }
+
+    private static GavtcPath install(MavenLocalRepository repo, String gavtcString, String content)
+            throws IOException {
+        final Path path = repo.resolve(Gavtc.of(gavtcString));
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return GavtcPath.of(gavtcString, path);
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A minimal stand-in for an HTTP server serving {@code HEAD}, {@code GET} and {@code PUT} requests from the given
+     * {@code root} directory.
+     */
+    private static HttpServer startServer(Path root) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", (HttpExchange exchange) -> {
+            try {
+                final Path file = root.resolve(exchange.getRequestURI().getPath().substring("/cache/".length()));
+                switch (exchange.getRequestMethod()) {
+                case "PUT":
+                    Files.createDirectories(file.getParent());
+                    try (InputStream in = exchange.getRequestBody()) {
+                        Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    exchange.sendResponseHeaders(201, -1);
+                    break;
+                case "HEAD":
+                    /* The JDK server does not keep the connection usable after a HEAD response */
+                    exchange.getResponseHeaders().set("Connection", "close");
+                    exchange.sendResponseHeaders(Files.isRegularFile(file) ? 200 : 404, -1);
+                    break;
+                case "GET":
+                    if (Files.isRegularFile(file)) {
+                        exchange.sendResponseHeaders(200, Files.size(file));
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            Files.copy(file, out);
+                        }
+                    } else {
+                        exchange.sendResponseHeaders(404, -1);
+                    }
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+                    break;
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void fileSystem() throws IOException {
+        final Path dir = targetDirectory.resolve("fileSystem");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path remoteRoot = dir.resolve("remote");
+        final ArtifactCacheTransport transport = ArtifactCacheTransport.of(remoteRoot.toUri());
+        Assert.assertTrue(transport instanceof FileSystemTransport);
+        assertSharing(dir, transport, remoteRoot);
+    }
+
+    @Test
+    public void hostileEntry() throws IOException {
+        final Path dir = targetDirectory.resolve("hostileEntry");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path remoteRoot = dir.resolve("remote");
+        final ArtifactCacheTransport transport = ArtifactCacheTransport.of(remoteRoot.toUri());
+        final Path victim = dir.resolve("victim.txt");
+        Files.write(victim, "victim".getBytes(StandardCharsets.UTF_8));
+
+        /* a valid blob the hostile entries can refer to */
+        final Path content = dir.resolve("content.txt");
+        Files.write(content, "evil".getBytes(StandardCharsets.UTF_8));
+        final String sha1 = Sha1ArtifactDigester.INSTANCE.digest(content);
+        final Path remoteBlob = remoteRoot.resolve("blobs").resolve(sha1.substring(0, 2)).resolve(sha1);
+        Files.createDirectories(remoteBlob.getParent());
+        Files.copy(content, remoteBlob);
+
+        final List<String> hostileLines = Arrays.asList( //
+                "sha1:../../../../victim.txt org.o1:a1:1.0:jar", //
+                "../../../../victim.txt org.o1:a1:1.0:jar", //
+                "md5:0123456789abcdef org.o1:a1:1.0:jar", //
+                sha1 + " org.o1:../../../../evil:1.0:jar", //
+                sha1 + " org.o1:a1:1.0:jar:/evil", //
+                sha1 + " org.o1:a1:..:jar", //
+                sha1 + " .org.o1:a1:1.0:jar", //
+                sha1 + " org\\..\\..:a1:1.0:jar" //
+        );
+        final Path remoteEntry = remoteRoot.resolve("entries/ha/hash1/commit1");
+        Files.createDirectories(remoteEntry.getParent());
+        final LocalArtifactCache localCache = new LocalArtifactCache(dir.resolve("cache"),
+                Sha1ArtifactDigester.INSTANCE);
+        final RemoteArtifactCache cache = new RemoteArtifactCache(localCache, transport);
+        final MavenLocalRepository repo = new MavenLocalRepository(dir.resolve("repo"));
+        for (String line : hostileLines) {
+            Files.write(remoteEntry, (line + "\n").getBytes(StandardCharsets.UTF_8));
+            Assert.assertNull(line, cache.restore("test", "hash1", "commit1", repo));
+            Assert.assertEquals(line, "victim", read(victim));
+            Assert.assertFalse(line, Files.exists(dir.resolve("evil")));
+            Assert.assertFalse(line, Files.exists(dir.resolve("repo")));
+            Assert.assertNull(line, localCache.readEntry("test", "hash1", "commit1"));
+        }
+
+        /* the same blob under a sane gavtc gets restored */
+        Files.write(remoteEntry, (sha1 + " org.o1:a1:1.0:jar\n").getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, cache.restore("test", "hash1", "commit1", repo).size());
+        Assert.assertEquals("evil", read(repo.resolve(Gavtc.of("org.o1:a1:1.0:jar"))));
+    }
+
+    @Test
+    public void http() throws IOException {
+        final Path dir = targetDirectory.resolve("http");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path remoteRoot = dir.resolve("remote");
+        final HttpServer server = startServer(remoteRoot);
+        try {
+            final ArtifactCacheTransport transport = ArtifactCacheTransport
+                    .of(URI.create("http://localhost:" + server.getAddress().getPort() + "/cache"));
+            Assert.assertTrue(transport instanceof HttpTransport);
+            assertSharing(dir, transport, remoteRoot);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class Sha1SidecarArtifactDigesterTest {
+    private static final String SIDECAR_SHA1 = "0123456789abcdef0123456789abcdef01234567";
+
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .toAbsolutePath();
+
+    @Test
+    public void digest() throws IOException {
+        final Path dir = targetDirectory.resolve(Sha1SidecarArtifactDigesterTest.class.getSimpleName());
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final Path artifact = dir.resolve("a1-1.2.3.jar");
+        final Path sidecar = dir.resolve("a1-1.2.3.jar.sha1");
+        Files.write(artifact, "jar".getBytes(StandardCharsets.UTF_8));
+        final String actualSha1 = Sha1ArtifactDigester.INSTANCE.digest(artifact);
+        final Sha1SidecarArtifactDigester digester = new Sha1SidecarArtifactDigester(Sha1ArtifactDigester.INSTANCE);
+
+        /* no sidecar */
+        Assert.assertEquals(actualSha1, digester.digest(artifact));
+
+        /* an up to date sidecar is trusted */
+        Files.write(sidecar, SIDECAR_SHA1.getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(SIDECAR_SHA1, digester.digest(artifact));
+
+        /* the file name after the sha1 is ignored */
+        Files.write(sidecar, (SIDECAR_SHA1.toUpperCase() + "  a1-1.2.3.jar\n").getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(SIDECAR_SHA1, digester.digest(artifact));
+
+        /* a malformed sidecar is ignored */
+        Files.write(sidecar, "not a sha1".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(actualSha1, digester.digest(artifact));
+
+        /* a sidecar older than the artifact is ignored */
+        Files.write(sidecar, SIDECAR_SHA1.getBytes(StandardCharsets.US_ASCII));
+        Files.setLastModifiedTime(sidecar,
+                FileTime.fromMillis(Files.getLastModifiedTime(artifact).toMillis() - 10000));
+        Assert.assertEquals(actualSha1, digester.digest(artifact));
+
+        /* a missing artifact */
+        Files.delete(artifact);
+        Assert.assertNull(digester.digest(artifact));
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.digest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.ArtifactDigester;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class Xxh64ArtifactDigesterTest {
+
+    private static final Path targetDirectory = Paths.get(System.getProperty("project.build.directory", "target"))
+            .toAbsolutePath();
+
+    private static Path write(Path dir, String fileName, byte[] content) throws IOException {
+        final Path result = dir.resolve(fileName);
+        Files.write(result, content);
+        return result;
+    }
+
+    @Test
+    public void digest() throws IOException, NoSuchAlgorithmException {
+        final Path dir = targetDirectory.resolve(Xxh64ArtifactDigesterTest.class.getSimpleName());
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final ArtifactDigester digester = new Xxh64ArtifactDigester();
+
+        /* the reference values of XXH64 with seed 0 */
+        Assert.assertEquals("ef46db3751d8e999", digester.digest(write(dir, "empty", new byte[0])));
+        Assert.assertEquals("44bc2cf5ad770999",
+                digester.digest(write(dir, "abc", "abc".getBytes(StandardCharsets.US_ASCII))));
+        Assert.assertEquals("fbcea83c8a378bf1", digester.digest(write(dir, "spam",
+                "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII))));
+
+        /* a file spanning several buffers with a tail not aligned to a stripe */
+        final byte[] bytes = new byte[AbstractArtifactDigester.BUFFER_SIZE * 2 + 45];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        final Path large = write(dir, "large", bytes);
+        Assert.assertEquals("b5b10b0f33f1c603", digester.digest(large));
+        /* the buffer gets reused correctly */
+        Assert.assertEquals("b5b10b0f33f1c603", digester.digest(large));
+        Assert.assertEquals(SrcdepsCoreUtils.sha1HexString(large), Sha1ArtifactDigester.INSTANCE.digest(large));
+
+        Assert.assertNull(digester.digest(dir.resolve("missing")));
+    }
+
+    @Test
+    public void registry() {
+        Assert.assertEquals(Xxh64ArtifactDigester.ALGORITHM,
+                ArtifactDigester.forAlgorithm(Xxh64ArtifactDigester.ALGORITHM).getAlgorithm());
+        Assert.assertEquals(ArtifactDigester.SHA1, ArtifactDigester.forAlgorithm(ArtifactDigester.SHA1).getAlgorithm());
+        Assert.assertTrue(ArtifactDigesters.forAlgorithm(ArtifactDigester.SHA1,
+                true) instanceof Sha1SidecarArtifactDigester);
+        Assert.assertTrue(ArtifactDigesters.forAlgorithm(Xxh64ArtifactDigester.ALGORITHM,
+                true) instanceof Xxh64ArtifactDigester);
+        try {
+            ArtifactDigester.forAlgorithm("md5");
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        Assert.assertEquals("0123", ArtifactDigester.tag(ArtifactDigester.SHA1, "0123"));
+        Assert.assertEquals("xxh64:0123", ArtifactDigester.tag("xxh64", "0123"));
+        Assert.assertNull(ArtifactDigester.tag("xxh64", null));
+        Assert.assertEquals(ArtifactDigester.SHA1, ArtifactDigester.algorithmOf("0123"));
+        Assert.assertEquals("xxh64", ArtifactDigester.algorithmOf("xxh64:0123"));
+    }
+
+}
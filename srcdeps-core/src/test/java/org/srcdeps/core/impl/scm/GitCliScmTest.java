@@ -0,0 +1,326 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.scm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.srcdeps.core.BuildRequest;
+import org.srcdeps.core.Ga;
+import org.srcdeps.core.Scm;
+import org.srcdeps.core.ScmException;
+import org.srcdeps.core.util.SrcdepsCoreUtils;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class GitCliScmTest {
+
+    private static final Path targetDir = Paths.get(System.getProperty("project.build.directory", "target"))
+            .toAbsolutePath();
+
+    private static void assertCheckout(Scm scm, BuildRequest request, String expectedSha1, String expectedContent)
+            throws ScmException, IOException {
+        Assert.assertEquals(expectedSha1, scm.checkout(request));
+        final Path dir = request.getProjectRootDirectory();
+        Assert.assertEquals(expectedContent,
+                new String(Files.readAllBytes(dir.resolve("test.txt")), StandardCharsets.UTF_8));
+        try (Git git = Git.open(dir.toFile())) {
+            Assert.assertEquals("refs/heads/" + JGitScm.getSrcdepsWorkingBranch(),
+                    git.getRepository().getFullBranch());
+        }
+    }
+
+    private static String createMultiModuleUpstream(Path dir) throws IOException, GitAPIException {
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        write(dir, "pom.xml", "<project><modelVersion>4.0.0</modelVersion><groupId>org.srcdeps.test</groupId>"
+                + "<artifactId>root</artifactId><version>0.0.1</version><packaging>pom</packaging>"
+                + "<modules><module>a</module><module>b</module><module>c</module></modules></project>");
+        write(dir, "README.txt", "Readme");
+        write(dir, "tools/tool.txt", "Tool");
+        for (String module : new String[] { "a", "b", "c" }) {
+            final String deps = "b".equals(module) ? "<dependencies><dependency><groupId>org.srcdeps.test</groupId>"
+                    + "<artifactId>a</artifactId><version>0.0.1</version></dependency></dependencies>" : "";
+            write(dir, module + "/pom.xml", "<project><modelVersion>4.0.0</modelVersion><parent>"
+                    + "<groupId>org.srcdeps.test</groupId><artifactId>root</artifactId><version>0.0.1</version>"
+                    + "</parent><artifactId>" + module + "</artifactId>" + deps + "</project>");
+            write(dir, module + "/src/main/java/" + module.toUpperCase() + ".java", "class " + module.toUpperCase()
+                    + " {}");
+        }
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            git.add().addFilepattern(".").call();
+            return git.commit().setMessage("Multi module tree").call().getId().getName();
+        }
+    }
+
+    private static String git(Path dir, String... args) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        final Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            final byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+        final String output = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertEquals(String.format("git %s in [%s] failed: %s", command, dir, output), 0, process.waitFor());
+        return output;
+    }
+
+    private static void write(Path dir, String relPath, String content) throws IOException {
+        final Path file = dir.resolve(relPath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void computeSparseCheckoutPatterns() {
+        final Set<String> files = new TreeSet<>(Arrays.asList( //
+                "pom.xml", //
+                "README.txt", //
+                "tools/tool.txt", //
+                "parent/pom.xml", //
+                "parent/a/pom.xml", //
+                "parent/a/src/main/java/A.java", //
+                "parent/b/pom.xml", //
+                "parent/b/src/main/java/B.java", //
+                "parent/build.txt" //
+        ));
+        final Set<String> moduleDirs = new HashSet<>(Arrays.asList("", "parent", "parent/a", "parent/b"));
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList( //
+                "pom.xml", //
+                "/README.txt", //
+                "/pom.xml", //
+                "/tools/", //
+                "/parent/pom.xml", //
+                "/parent/build.txt", //
+                "/parent/a/pom.xml", //
+                "/parent/a/src/" //
+        )), GitCliScm.computeSparseCheckoutPatterns(files, moduleDirs,
+                new HashSet<>(Arrays.asList("", "parent", "parent/a"))));
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList( //
+                "pom.xml", //
+                "/parent/b/pom.xml", //
+                "/parent/b/src/" //
+        )), GitCliScm.computeSparseCheckoutPatterns(files, moduleDirs, Collections.singleton("parent/b")));
+
+        /* Special characters are escaped */
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("pom.xml", "/\\[x]\\*.java")),
+                GitCliScm.computeSparseCheckoutPatterns(Collections.singleton("[x]*.java"),
+                        Collections.singleton(""), Collections.singleton("")));
+    }
+
+    @Test
+    public void testCheckout() throws IOException, ScmException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-GitCliScmTest-testCheckout");
+        final String[] commits = JGitScmTest.createUpstream(upstream, false);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final GitCliScm scm = new GitCliScm();
+
+        final Path dir = targetDir.resolve("test-repo-GitCliScmTest-testCheckout");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-master", upstreamUri).gitCli(true)
+                .build(), commits[2], "Test2");
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir, "0.0.1-SRC-tag-0.0.1", upstreamUri).gitCli(true)
+                .build(), commits[0], "Test0");
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-side", upstreamUri).gitCli(true)
+                .build(), commits[3], "Test3");
+        /* The upstream does not allow fetching unadvertised commits, so all branches must get fetched */
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri)
+                .gitCli(true).build(), commits[1], "Test1");
+
+        /* Local changes are forgotten */
+        Files.write(dir.resolve("test.txt"), "Modified".getBytes(StandardCharsets.UTF_8));
+        final Path untrackedPath = dir.resolve("untracked.txt");
+        Files.write(untrackedPath, "Untracked".getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(scm.isCheckedOutCleanly("test", dir, commits[1], Long.MAX_VALUE));
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri)
+                .gitCli(true).build(), commits[1], "Test1");
+        Assert.assertFalse(Files.exists(untrackedPath));
+        Assert.assertTrue(scm.isCheckedOutCleanly("test", dir, commits[1], Long.MAX_VALUE));
+
+        /* Remove the side branch in the upstream */
+        try (Git git = Git.open(upstream.toFile())) {
+            git.branchDelete().setBranchNames("side").setForce(true).call();
+        }
+        /* commits[3] is still available locally but the upstream does not have it anymore */
+        for (String version : new String[] { "0.0.1-SRC-branch-side", "0.0.1-SRC-revision-" + commits[3],
+                "0.0.1-SRC-tag-0.0.3" }) {
+            try {
+                scm.checkout(JGitScmTest.requestBuilder(dir, version, upstreamUri).gitCli(true).build());
+                Assert.fail("ScmException expected for " + version);
+            } catch (ScmException expected) {
+            }
+        }
+        try {
+            scm.checkout(JGitScmTest.requestBuilder(dir, "0.0.1-SRC-revision-" + commits[3], upstreamUri).gitCli(true)
+                    .shallowFetch(true).build());
+            Assert.fail("ScmException expected for a shallow fetch of " + commits[3]);
+        } catch (ScmException expected) {
+        }
+    }
+
+    @Test
+    public void testCheckoutShallowSharedObjectStore() throws IOException, ScmException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos")
+                .resolve("upstream-GitCliScmTest-testCheckoutShallowSharedObjectStore");
+        final String[] commits = JGitScmTest.createUpstream(upstream, true);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final GitCliScm scm = new GitCliScm();
+
+        final Path buildHome = targetDir.resolve("test-repo-GitCliScmTest-testCheckoutShallowSharedObjectStore");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(buildHome);
+        final Path sharedStore = buildHome.resolve("shared.git");
+        final Path dir0 = buildHome.resolve("0");
+        final Path dir1 = buildHome.resolve("1");
+
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir0, "0.0.1-SRC-revision-" + commits[1], upstreamUri)
+                .gitCli(true).shallowFetch(true).sharedObjectStoreDirectory(sharedStore).build(), commits[1],
+                "Test1");
+        assertCheckout(scm, JGitScmTest.requestBuilder(dir1, "0.0.1-SRC-tag-0.0.2", upstreamUri).gitCli(true)
+                .shallowFetch(true).sharedObjectStoreDirectory(sharedStore).build(), commits[2], "Test2");
+
+        /* Neither branches nor other tags fetched into the shared store, just the pins of the checked out commits */
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(JGitScm.toPinRef(dir0), JGitScm.toPinRef(dir1),
+                "refs/tags/0.0.2")), JGitScmTest.refNames(sharedStore));
+        /* The history got limited by --depth 1 */
+        Assert.assertTrue(Files.exists(sharedStore.resolve("shallow")));
+        Assert.assertEquals(sharedStore.resolve("objects").toString() + "\n", new String(
+                Files.readAllBytes(dir0.resolve(".git/objects/info/alternates")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSharedObjectStoreGc()
+            throws IOException, ScmException, GitAPIException, InterruptedException {
+        final Path upstream = targetDir.resolve("local-git-repos")
+                .resolve("upstream-GitCliScmTest-testSharedObjectStoreGc");
+        final String[] commits = JGitScmTest.createUpstream(upstream, true);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+
+        final Path buildHome = targetDir.resolve("test-repo-GitCliScmTest-testSharedObjectStoreGc");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(buildHome);
+        final Path sharedStore = buildHome.resolve("shared.git");
+        final Path dir0 = buildHome.resolve("0");
+        final Path dir1 = buildHome.resolve("1");
+
+        /* No branch or tag refers to the revisions in the shared store */
+        assertCheckout(new JGitScm(), JGitScmTest.requestBuilder(dir0, "0.0.1-SRC-revision-" + commits[1],
+                upstreamUri).shallowFetch(true).sharedObjectStoreDirectory(sharedStore).build(), commits[1], "Test1");
+        assertCheckout(new GitCliScm(), JGitScmTest.requestBuilder(dir1, "0.0.1-SRC-revision-" + commits[3],
+                upstreamUri).gitCli(true).shallowFetch(true).sharedObjectStoreDirectory(sharedStore).build(),
+                commits[3], "Test3");
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(JGitScm.toPinRef(dir0), JGitScm.toPinRef(dir1))),
+                JGitScmTest.refNames(sharedStore));
+
+        git(sharedStore, "reflog", "expire", "--expire=now", "--all");
+        git(sharedStore, "gc", "--prune=now", "--quiet");
+
+        /* The objects of the checked out commits survive the gc */
+        Assert.assertEquals("Test1", git(dir0, "cat-file", "-p", commits[1] + ":test.txt"));
+        Assert.assertEquals("Test3", git(dir1, "cat-file", "-p", commits[3] + ":test.txt"));
+
+        /* Checking out another commit moves the pin */
+        assertCheckout(new GitCliScm(), JGitScmTest.requestBuilder(dir1, "0.0.1-SRC-revision-" + commits[1],
+                upstreamUri).gitCli(true).shallowFetch(true).sharedObjectStoreDirectory(sharedStore).build(),
+                commits[1], "Test1");
+        git(sharedStore, "reflog", "expire", "--expire=now", "--all");
+        git(sharedStore, "gc", "--prune=now", "--quiet");
+        Assert.assertEquals("Test1", git(dir1, "cat-file", "-p", commits[1] + ":test.txt"));
+        Assert.assertEquals(commits[1] + "\n", git(sharedStore, "rev-parse", JGitScm.toPinRef(dir1)));
+    }
+
+    @Test
+    public void testSparseCheckout() throws IOException, ScmException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-GitCliScmTest-testSparseCheckout");
+        final String commit = createMultiModuleUpstream(upstream);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final GitCliScm scm = new GitCliScm();
+
+        final Path dir = targetDir.resolve("test-repo-GitCliScmTest-testSparseCheckout");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+
+        /* b depends on a; c is not needed */
+        Assert.assertEquals(commit, scm.checkout(JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-master", upstreamUri)
+                .gitCli(true).sparseCheckout(true).buildInclude(Ga.of("org.srcdeps.test:b")).build()));
+        for (String present : new String[] { "pom.xml", "README.txt", "tools/tool.txt", "a/pom.xml",
+                "a/src/main/java/A.java", "b/pom.xml", "b/src/main/java/B.java", "c/pom.xml" }) {
+            Assert.assertTrue(present, Files.exists(dir.resolve(present)));
+        }
+        Assert.assertFalse(Files.exists(dir.resolve("c/src")));
+
+        /* Only a and its parent are needed */
+        Assert.assertEquals(commit, scm.checkout(JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-master", upstreamUri)
+                .gitCli(true).sparseCheckout(true).buildInclude(Ga.of("org.srcdeps.test:a")).build()));
+        Assert.assertTrue(Files.exists(dir.resolve("a/src/main/java/A.java")));
+        Assert.assertTrue(Files.exists(dir.resolve("b/pom.xml")));
+        Assert.assertFalse(Files.exists(dir.resolve("b/src")));
+        Assert.assertFalse(Files.exists(dir.resolve("c/src")));
+
+        /* A full checkout brings all files back */
+        Assert.assertEquals(commit, scm.checkout(JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-master", upstreamUri)
+                .gitCli(true).build()));
+        Assert.assertTrue(Files.exists(dir.resolve("b/src/main/java/B.java")));
+        Assert.assertTrue(Files.exists(dir.resolve("c/src/main/java/C.java")));
+        Assert.assertFalse(Files.exists(dir.resolve(".git/info/sparse-checkout")));
+        Assert.assertTrue(scm.isCheckedOutCleanly("test", dir, commit, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void supports() {
+        final Path dir = targetDir.resolve("test-repo-GitCliScmTest-supports");
+        final GitCliScm gitCliScm = new GitCliScm();
+        final JGitScm jGitScm = new JGitScm();
+
+        final BuildRequest gitRequest = JGitScmTest.requestBuilder(dir, "0.0.1-SRC-branch-master", "file:///repo")
+                .build();
+        Assert.assertFalse(gitCliScm.supports(gitRequest));
+        Assert.assertTrue(jGitScm.supports(gitRequest));
+
+        final BuildRequest gitCliRequest = JGitScmTest
+                .requestBuilder(dir, "0.0.1-SRC-branch-master", "file:///repo").gitCli(true).build();
+        Assert.assertTrue(gitCliScm.supports(gitCliRequest));
+        Assert.assertFalse(jGitScm.supports(gitCliRequest));
+
+        final String gitCliUrl = GitCliScm.getScmGitCliPrefix() + "file:///repo";
+        Assert.assertTrue(gitCliScm.supports(gitCliUrl));
+        Assert.assertFalse(jGitScm.supports(gitCliUrl));
+    }
+
+}
@@ -21,11 +21,19 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Assert;
 import org.junit.Test;
@@ -239,6 +247,383 @@ public class JGitScmTest {
 
     }
 
+    /**
+     * Creates a git repository in the given {@code dir} with a three commit {@code master} branch, where the first and
+     * the last commits are tagged, and a {@code side} branch with one additional commit.
+     *
+     * @param dir the directory to create the repository in
+     * @param allowReachableSha1InWant the value of {@code uploadpack.allowReachableSHA1InWant}
+     * @return the SHA-1s of the three {@code master} commits and the {@code side} commit
+     */
+    static String[] createUpstream(Path dir, boolean allowReachableSha1InWant)
+            throws IOException, GitAPIException {
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final String[] result = new String[4];
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            final StoredConfig config = git.getRepository().getConfig();
+            config.setBoolean("uploadpack", null, "allowReachableSHA1InWant", allowReachableSha1InWant);
+            config.save();
+            final Path testTxtPath = dir.resolve("test.txt");
+            Files.write(testTxtPath, "Test0".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            result[0] = git.commit().setMessage("Added test.txt").call().getId().getName();
+            git.tag().setName("0.0.1").setMessage("Tag 0.0.1").call();
+            Files.write(testTxtPath, "Test1".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            result[1] = git.commit().setMessage("Changed test.txt").call().getId().getName();
+            Files.write(testTxtPath, "Test2".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            result[2] = git.commit().setMessage("Changed test.txt again").call().getId().getName();
+            git.tag().setName("0.0.2").setMessage("Tag 0.0.2").call();
+            git.checkout().setName("side").setCreateBranch(true).setStartPoint(result[0]).call();
+            Files.write(testTxtPath, "Test3".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            result[3] = git.commit().setMessage("Changed test.txt on side").call().getId().getName();
+            git.checkout().setName("master").call();
+        }
+        return result;
+    }
+
+    static BuildRequest.BuildRequestBuilder requestBuilder(Path dir, String srcVersion, String uri) {
+        return BuildRequest.builder() //
+                .scmRepositoryId("test") //
+                .encoding(StandardCharsets.UTF_8) //
+                .output(LineConsumer::dummy) //
+                .srcVersion(SrcVersion.parse(srcVersion)) //
+                .dependentProjectRootDirectory(dir) //
+                .projectRootDirectory(dir) //
+                .scmUrl("git:" + uri) //
+                .versionsMavenPluginVersion(Maven.getDefaultVersionsMavenPluginVersion()) //
+                .gradleModelTransformer(CharStreamSource.defaultModelTransformer());
+    }
+
+    static Set<String> refNames(Path dir) throws IOException {
+        try (Git git = Git.open(dir.toFile())) {
+            final Set<String> result = new TreeSet<>();
+            for (Ref ref : git.getRepository().getRefDatabase().getRefsByPrefix(RefDatabase.ALL)) {
+                result.add(ref.getName());
+            }
+            return result;
+        }
+    }
+
+    @Test
+    public void testCheckoutShallow() throws IOException, ScmException, NoHeadException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-testCheckoutShallow");
+        final String[] commits = createUpstream(upstream, true);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final JGitScm jGitScm = new JGitScm();
+
+        final Path dir = targetDir.resolve("test-repo-testCheckoutShallow");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+
+        /* A revision that is not advertised by the upstream */
+        Assert.assertEquals(commits[1],
+                jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri)
+                        .shallowFetch(true).build()));
+        assertCommit(dir, commits[1]);
+        /* No branches or tags fetched */
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("HEAD", "refs/heads/" + JGitScm.getSrcdepsWorkingBranch())),
+                refNames(dir));
+
+        /* Only the requested tag fetched */
+        Assert.assertEquals(commits[2],
+                jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-tag-0.0.2", upstreamUri).shallowFetch(true).build()));
+        assertCommit(dir, commits[2]);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("HEAD", "refs/heads/" + JGitScm.getSrcdepsWorkingBranch(),
+                "refs/tags/0.0.2")), refNames(dir));
+
+        /* A revision available locally already */
+        Assert.assertEquals(commits[1],
+                jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri)
+                        .shallowFetch(true).build()));
+        assertCommit(dir, commits[1]);
+
+        /* By default, all branches get fetched also for immutable versions */
+        final Path dir2 = targetDir.resolve("test-repo-testCheckoutShallow-2");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir2);
+        Assert.assertEquals(commits[1], jGitScm.checkout(
+                requestBuilder(dir2, "0.0.1-SRC-revision-" + commits[1], upstreamUri).build()));
+        assertCommit(dir2, commits[1]);
+        Assert.assertTrue(refNames(dir2).contains("refs/remotes/" + JGitScm.toRemoteAlias(upstreamUri) + "/side"));
+
+        /* A non-existent revision */
+        try {
+            jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-0123456789012345678901234567890123456789",
+                    upstreamUri).shallowFetch(true).build());
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+    }
+
+    @Test
+    public void testCheckoutUpToDate() throws IOException, ScmException, NoHeadException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-testCheckoutUpToDate");
+        final String[] commits = createUpstream(upstream, true);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final JGitScm jGitScm = new JGitScm();
+
+        final Path dir = targetDir.resolve("test-repo-testCheckoutUpToDate");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final BuildRequest request = requestBuilder(dir, "0.0.1-SRC-tag-0.0.2", upstreamUri).build();
+
+        Assert.assertEquals(commits[2], jGitScm.checkout(request));
+        try (Git git = Git.open(dir.toFile())) {
+            Assert.assertTrue(JGitScm.isCheckedOutCleanly("test", git, commits[2]));
+            Assert.assertFalse(JGitScm.isCheckedOutCleanly("test", git, commits[1]));
+        }
+
+        /* A modified tracked file */
+        final Path testTxtPath = dir.resolve("test.txt");
+        Files.write(testTxtPath, "Modified".getBytes(StandardCharsets.UTF_8));
+        try (Git git = Git.open(dir.toFile())) {
+            Assert.assertFalse(JGitScm.isCheckedOutCleanly("test", git, commits[2]));
+        }
+        Assert.assertEquals(commits[2], jGitScm.checkout(request));
+        Assert.assertEquals("Test2", new String(Files.readAllBytes(testTxtPath), StandardCharsets.UTF_8));
+
+        /* An untracked file */
+        final Path untrackedPath = dir.resolve("untracked.txt");
+        Files.write(untrackedPath, "Untracked".getBytes(StandardCharsets.UTF_8));
+        try (Git git = Git.open(dir.toFile())) {
+            Assert.assertFalse(JGitScm.isCheckedOutCleanly("test", git, commits[2]));
+        }
+        Assert.assertEquals(commits[2], jGitScm.checkout(request));
+        Assert.assertFalse(Files.exists(untrackedPath));
+
+        /* A clean tree at the same commit is left untouched */
+        final long lastModified = Files.getLastModifiedTime(testTxtPath).toMillis();
+        Assert.assertEquals(commits[2], jGitScm.checkout(request));
+        Assert.assertEquals(lastModified, Files.getLastModifiedTime(testTxtPath).toMillis());
+        assertCommit(dir, commits[2]);
+
+        /* A different commit */
+        Assert.assertEquals(commits[1],
+                jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri).build()));
+        Assert.assertEquals("Test1", new String(Files.readAllBytes(testTxtPath), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCheckoutShallowFallback() throws IOException, ScmException, NoHeadException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-testCheckoutShallowFallback");
+        final String[] commits = createUpstream(upstream, false);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final JGitScm jGitScm = new JGitScm();
+
+        final Path dir = targetDir.resolve("test-repo-testCheckoutShallowFallback");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+
+        /* The upstream does not allow fetching unadvertised commits, so all branches must get fetched */
+        Assert.assertEquals(commits[1],
+                jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri).build()));
+        assertCommit(dir, commits[1]);
+        Assert.assertTrue(refNames(dir).contains("refs/remotes/" + JGitScm.toRemoteAlias(upstreamUri) + "/side"));
+    }
+
+    @Test
+    public void testCheckoutUnreachableRevision()
+            throws IOException, ScmException, NoHeadException, GitAPIException {
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-testCheckoutUnreachableRevision");
+        final String[] commits = createUpstream(upstream, false);
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+        final JGitScm jGitScm = new JGitScm();
+
+        final Path dir = targetDir.resolve("test-repo-testCheckoutUnreachableRevision");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+
+        /* Reachable from the side branch only */
+        Assert.assertEquals(commits[3], jGitScm.checkout(
+                requestBuilder(dir, "0.0.1-SRC-revision-" + commits[3], upstreamUri).shallowFetch(false).build()));
+        /* Reachable from master but not a tip */
+        Assert.assertEquals(commits[1], jGitScm.checkout(
+                requestBuilder(dir, "0.0.1-SRC-revision-" + commits[1], upstreamUri).shallowFetch(false).build()));
+
+        /* Remove the side branch in the upstream */
+        try (Git git = Git.open(upstream.toFile())) {
+            git.branchDelete().setBranchNames("side").setForce(true).call();
+        }
+
+        /* commits[3] is still available locally but the upstream does not have it anymore */
+        try {
+            jGitScm.checkout(
+                    requestBuilder(dir, "0.0.1-SRC-revision-" + commits[3], upstreamUri).shallowFetch(false).build());
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+        try {
+            jGitScm.checkout(requestBuilder(dir, "0.0.1-SRC-revision-" + commits[3], upstreamUri).build());
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+    }
+
+    @Test
+    public void testCheckoutRaceUrls() throws IOException, ScmException, NoHeadException, GitAPIException {
+        final Path localGitRepos = targetDir.resolve("local-git-repos");
+        final Path upstream0 = localGitRepos.resolve("upstream-testCheckoutRaceUrls-0");
+        createUpstream(upstream0, false);
+        final Path upstream1 = localGitRepos.resolve("upstream-testCheckoutRaceUrls-1");
+        createUpstream(upstream1, false);
+        final String extraCommit;
+        try (Git git = Git.open(upstream1.toFile())) {
+            git.checkout().setName("extra").setCreateBranch(true).call();
+            Files.write(upstream1.resolve("extra.txt"), "extra".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("extra.txt").call();
+            extraCommit = git.commit().setMessage("Added extra.txt").call().getId().getName();
+        }
+        final Path missing = localGitRepos.resolve("upstream-testCheckoutRaceUrls-missing");
+        SrcdepsCoreUtils.deleteDirectory(missing);
+
+        final String missingUri = missing.resolve(".git").toUri().toString();
+        final String upstreamUri0 = upstream0.resolve(".git").toUri().toString();
+        final String upstreamUri1 = upstream1.resolve(".git").toUri().toString();
+
+        final Path dir = targetDir.resolve("test-repo-testCheckoutRaceUrls");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(dir);
+        final JGitScm jGitScm = new JGitScm();
+
+        /* Only upstream1 has the extra branch */
+        final BuildRequest request = requestBuilder(dir, "0.0.1-SRC-branch-extra", missingUri) //
+                .scmUrl("git:" + upstreamUri0) //
+                .scmUrl("git:" + upstreamUri1) //
+                .raceUrls(true) //
+                .build();
+        Assert.assertEquals(extraCommit, jGitScm.checkout(request));
+        assertCommit(dir, extraCommit);
+
+        /* The fetches done without racing are recorded too */
+        final JGitScm jGitScm1 = new JGitScm();
+        try {
+            jGitScm1.checkout(requestBuilder(dir, "0.0.1-SRC-branch-extra", missingUri).build());
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+        Assert.assertEquals(extraCommit,
+                jGitScm1.checkout(requestBuilder(dir, "0.0.1-SRC-branch-extra", upstreamUri1).build()));
+        Assert.assertEquals(1, jGitScm1.getUrlStats().get(missingUri).getConsecutiveFailures());
+        Assert.assertEquals(1, jGitScm1.getUrlStats().get(upstreamUri1).getSuccesses());
+        /* the fetch durations are kept apart from the probe latencies */
+        Assert.assertEquals(-1, jGitScm1.getUrlStats().get(upstreamUri1).getLatencyMs());
+        Assert.assertTrue(jGitScm1.getUrlStats().get(upstreamUri1).getFetchMs() >= 0);
+
+        /* Probe one by one to get deterministic stats */
+        final JGitScm jGitScm2 = new JGitScm();
+        final SrcVersion extra = SrcVersion.parse("0.0.1-SRC-branch-extra");
+        try {
+            jGitScm2.probe(missingUri, extra);
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+        try {
+            jGitScm2.probe(upstreamUri0, extra);
+            Assert.fail("ScmException expected");
+        } catch (ScmException expected) {
+        }
+        Assert.assertEquals(upstreamUri1, jGitScm2.probe(upstreamUri1, extra));
+
+        final ScmUrlStats stats = jGitScm2.getUrlStats();
+        Assert.assertEquals(1, stats.get(missingUri).getConsecutiveFailures());
+        Assert.assertEquals(0, stats.get(missingUri).getSuccesses());
+        Assert.assertEquals(0, stats.get(upstreamUri0).getConsecutiveFailures());
+        Assert.assertEquals(1, stats.get(upstreamUri0).getSuccesses());
+        Assert.assertEquals(1, stats.get(upstreamUri1).getSuccesses());
+
+        /* The winner goes first, the failing URL is the last one */
+        final List<String> raced = jGitScm2.raceUrls("test", Arrays.asList(missingUri, upstreamUri0, upstreamUri1),
+                extra);
+        Assert.assertEquals(upstreamUri1, raced.get(0));
+        Assert.assertEquals(missingUri, raced.get(2));
+    }
+
+    @Test
+    public void testCheckoutSharedObjectStore() throws IOException, ScmException, NoHeadException, GitAPIException {
+
+        /* Create an upstream repo */
+        final Path upstream = targetDir.resolve("local-git-repos").resolve("upstream-testCheckoutSharedObjectStore");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(upstream);
+        final String tagCommitId;
+        final String branchCommitId;
+        try (Git git = Git.init().setDirectory(upstream.toFile()).call()) {
+            final Path testTxtPath = upstream.resolve("test.txt");
+            Files.write(testTxtPath, "Test0".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            tagCommitId = git.commit().setMessage("Added test.txt").call().getId().getName();
+            git.tag().setName("0.0.1").setMessage("Tag 0.0.1").call();
+            Files.write(testTxtPath, "Test1".getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("test.txt").call();
+            branchCommitId = git.commit().setMessage("Changed test.txt").call().getId().getName();
+        }
+        final String upstreamUri = upstream.resolve(".git").toUri().toString();
+
+        final Path buildHome = targetDir.resolve("test-repo-testCheckoutSharedObjectStore");
+        SrcdepsCoreUtils.ensureDirectoryExistsAndEmpty(buildHome);
+        final Path sharedStore = buildHome.resolve("shared.git");
+        final JGitScm jGitScm = new JGitScm();
+
+        final Path dir0 = buildHome.resolve("0");
+        final BuildRequest tagRequest = BuildRequest.builder() //
+                .scmRepositoryId("test") //
+                .encoding(StandardCharsets.UTF_8) //
+                .output(LineConsumer::dummy) //
+                .srcVersion(SrcVersion.parse("0.0.1-SRC-tag-0.0.1")) //
+                .dependentProjectRootDirectory(dir0) //
+                .projectRootDirectory(dir0) //
+                .scmUrl("git:" + upstreamUri) //
+                .sharedObjectStoreDirectory(sharedStore) //
+                .versionsMavenPluginVersion(Maven.getDefaultVersionsMavenPluginVersion()) //
+                .gradleModelTransformer(CharStreamSource.defaultModelTransformer()) //
+                .build();
+        Assert.assertEquals(tagCommitId, jGitScm.checkout(tagRequest));
+        assertCommit(dir0, tagCommitId);
+        Assert.assertEquals("Test0",
+                new String(Files.readAllBytes(dir0.resolve("test.txt")), StandardCharsets.UTF_8));
+
+        final Path dir1 = buildHome.resolve("1");
+        final BuildRequest branchRequest = BuildRequest.builder() //
+                .scmRepositoryId("test") //
+                .encoding(StandardCharsets.UTF_8) //
+                .output(LineConsumer::dummy) //
+                .srcVersion(SrcVersion.parse("0.0.1-SRC-branch-master")) //
+                .dependentProjectRootDirectory(dir1) //
+                .projectRootDirectory(dir1) //
+                .scmUrl("git:" + upstreamUri) //
+                .sharedObjectStoreDirectory(sharedStore) //
+                .versionsMavenPluginVersion(Maven.getDefaultVersionsMavenPluginVersion()) //
+                .gradleModelTransformer(CharStreamSource.defaultModelTransformer()) //
+                .build();
+        Assert.assertEquals(branchCommitId, jGitScm.checkout(branchRequest));
+        assertCommit(dir1, branchCommitId);
+
+        /* The slots must not have any objects of their own */
+        for (Path dir : new Path[] { dir0, dir1 }) {
+            final Path objects = dir.resolve(".git").resolve("objects");
+            Assert.assertEquals(sharedStore.resolve("objects").toString() + "\n",
+                    new String(Files.readAllBytes(objects.resolve("info").resolve("alternates")),
+                            StandardCharsets.UTF_8));
+            try (Stream<Path> files = Files.walk(objects)) {
+                Assert.assertFalse(String.format("Unexpected objects in [%s]", objects),
+                        files.anyMatch(p -> Files.isRegularFile(p) && !p.getParent().getFileName().toString()
+                                .equals("info")));
+            }
+        }
+
+        /* The revision is already in the shared store so checking it out in the first slot must work */
+        final BuildRequest revisionRequest = BuildRequest.builder() //
+                .scmRepositoryId("test") //
+                .encoding(StandardCharsets.UTF_8) //
+                .output(LineConsumer::dummy) //
+                .srcVersion(SrcVersion.parse("0.0.1-SRC-revision-" + branchCommitId)) //
+                .dependentProjectRootDirectory(dir0) //
+                .projectRootDirectory(dir0) //
+                .scmUrl("git:" + upstreamUri) //
+                .sharedObjectStoreDirectory(sharedStore) //
+                .versionsMavenPluginVersion(Maven.getDefaultVersionsMavenPluginVersion()) //
+                .gradleModelTransformer(CharStreamSource.defaultModelTransformer()) //
+                .build();
+        Assert.assertEquals(branchCommitId, jGitScm.checkout(revisionRequest));
+        assertCommit(dir0, branchCommitId);
+    }
+
     @Test
     public void toRemoteAlias() {
         Assert.assertEquals("origin-OracyX45LTLgEE14zEKVWpi-CTg=",
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015-2019 Maven Source Dependencies
+ * Plugin contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.srcdeps.core.impl.scm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class ScmUrlStatsTest {
+
+    @Test
+    public void fetch() {
+        final ScmUrlStats stats = new ScmUrlStats();
+        stats.recordSuccess("url1", 100);
+        stats.recordSuccess("url2", 200);
+        stats.recordFailure("url2");
+        /* a long fetch neither slows down url1 nor speeds up url2 but it proves url2 healthy */
+        stats.recordFetch("url1", 5000);
+        stats.recordFetch("url2", 10);
+        Assert.assertEquals(100, stats.get("url1").getLatencyMs());
+        Assert.assertEquals(5000, stats.get("url1").getFetchMs());
+        Assert.assertEquals(2, stats.get("url1").getSuccesses());
+        Assert.assertEquals(0, stats.get("url2").getConsecutiveFailures());
+        Assert.assertEquals(Arrays.asList("url1", "url2"), stats.sort(Arrays.asList("url2", "url1")));
+    }
+
+    @Test
+    public void sortWhileRecording() throws InterruptedException {
+        final ScmUrlStats stats = new ScmUrlStats();
+        final List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            urls.add("url" + i);
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread recorder = new Thread(() -> {
+            final Random random = new Random(42);
+            while (!done.get()) {
+                final String url = urls.get(random.nextInt(urls.size()));
+                if (random.nextBoolean()) {
+                    stats.recordSuccess(url, random.nextInt(1000));
+                } else {
+                    stats.recordFailure(url);
+                }
+            }
+        });
+        recorder.start();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                Assert.assertEquals(urls.size(), stats.sort(urls).size());
+            }
+        } finally {
+            done.set(true);
+            recorder.join();
+        }
+    }
+
+    @Test
+    public void latency() {
+        final ScmUrlStats stats = new ScmUrlStats();
+        stats.recordSuccess("url1", 100);
+        Assert.assertEquals(100, stats.get("url1").getLatencyMs());
+        stats.recordSuccess("url1", 200);
+        Assert.assertEquals(130, stats.get("url1").getLatencyMs());
+        Assert.assertEquals(2, stats.get("url1").getSuccesses());
+
+        Assert.assertEquals(-1, stats.get("url2").getLatencyMs());
+        Assert.assertEquals(0, stats.get("url2").getSuccesses());
+    }
+
+    @Test
+    public void sort() {
+        final ScmUrlStats stats = new ScmUrlStats();
+        Assert.assertEquals(Arrays.asList("url1", "url2", "url3", "url4"),
+                stats.sort(Arrays.asList("url1", "url2", "url3", "url4")));
+
+        stats.recordSuccess("url3", 50);
+        stats.recordSuccess("url2", 100);
+        stats.recordFailure("url1");
+        Assert.assertEquals(Arrays.asList("url3", "url2", "url4", "url1"),
+                stats.sort(Arrays.asList("url1", "url2", "url3", "url4")));
+
+        /* A success resets the failures */
+        stats.recordSuccess("url1", 10);
+        Assert.assertEquals(0, stats.get("url1").getConsecutiveFailures());
+        Assert.assertEquals(Arrays.asList("url1", "url3", "url2", "url4"),
+                stats.sort(Arrays.asList("url1", "url2", "url3", "url4")));
+
+        stats.recordFailure("url3");
+        stats.recordFailure("url3");
+        stats.recordFailure("url2");
+        Assert.assertEquals(Arrays.asList("url1", "url4", "url2", "url3"),
+                stats.sort(Arrays.asList("url1", "url2", "url3", "url4")));
+    }
+
+}